@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.commons.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free log-linear latency histogram. Values are recorded in microseconds. Each power of two range is split into
+ * 2^subBucketBits buckets, so the relative error is below 2^-subBucketBits and the histogram takes
+ * (41 - subBucketBits) * 2^subBucketBits counters. The default of 5 bits gives an error below 4% in around 9 KB.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Sub bucket bits of a histogram small enough to be held for each phase of each widget.
+     */
+    public static final int DEFAULT_SUB_BUCKET_BITS = 5;
+    /**
+     * Sub bucket bits of a histogram with a relative error below 1%, for comparing percentiles between load runs.
+     */
+    public static final int PRECISE_SUB_BUCKET_BITS = 7;
+    // Values from 2^40 microseconds, about 12 days, are recorded in the last bucket.
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        this(DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param subBucketBits number of bits of each value kept, from 1 to 16.
+     */
+    public LatencyHistogram(int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > 16) {
+            throw new IllegalArgumentException("Sub bucket bits must be between 1 and 16, but was " + subBucketBits
+                    + ".");
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.counts = new AtomicLongArray((MAX_VALUE_BITS - subBucketBits + 1) << subBucketBits);
+    }
+
+    /**
+     * Records a single latency value.
+     * @param micros latency in microseconds. Negative values are recorded as zero.
+     */
+    public void record(long micros) {
+        counts.incrementAndGet(indexOf(Math.min(MAX_VALUE, Math.max(0, micros))));
+    }
+
+    /**
+     * Returns the total number of recorded values.
+     * @return number of values recorded so far.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the value at the given percentile.
+     * @param percentile percentile in the range (0, 100].
+     * @return latency in microseconds, or zero if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(counts.length() - 1);
+    }
+
+    /**
+     * Returns the largest recorded value bucket.
+     * @return latency in microseconds, or zero if nothing was recorded.
+     */
+    public long getMaxValue() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return valueOf(i);
+            }
+        }
+        return 0;
+    }
+
+    private int indexOf(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - subBucketBits;
+        return ((shift + 1) << subBucketBits) + (int) ((value >>> shift) - subBucketCount);
+    }
+
+    private long valueOf(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int bucket = index >>> subBucketBits;
+        long subBucket = index & (subBucketCount - 1);
+        return (subBucket + subBucketCount) << (bucket - 1);
+    }
+}
@@ -17,11 +17,17 @@
  */
 package org.wso2.analytics.apim.dashboards.core.data.provider;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import feign.Response;
 import feign.RetryableException;
 import feign.gson.GsonDecoder;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
@@ -29,6 +35,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.analytics.apim.dashboards.core.bean.TenantIdInfo;
 import org.wso2.analytics.apim.dashboards.core.internal.DashboardAuthorizerServiceFactory;
+import org.wso2.analytics.apim.dashboards.core.internal.DashboardAuthorizerServiceStub;
+import org.wso2.analytics.apim.dashboards.core.metrics.AuthorizerMetrics;
 import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
 import org.wso2.carbon.config.ConfigurationException;
 import org.wso2.carbon.config.provider.ConfigProvider;
@@ -48,10 +56,14 @@ import org.wso2.carbon.data.provider.exception.DataProviderException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.wso2.carbon.dashboards.core.utils.DashboardUtil.findWidgets;
 
@@ -85,10 +97,46 @@ public class Authorizer implements DataProviderAuthorizer {
     private static final String TENANT_DOMAIN_KEY = "{{tenantDomain}}";
     private static final String TENANT_ID_KEY = "{{tenantId}}";
     private static final String SUPER_TENANT_DOMAIN = "carbon.super";
+    private static final String TENANT_INFO_RESOURCE_PATH = "/api/am/admin/v1/tenant-info";
+    private static final long TENANT_ID_CACHE_EXPIRY_HOURS = 24;
+    private static final long TENANT_ID_CACHE_MAX_SIZE = 10000;
 
-    private AnalyticsHttpClientBuilderService clientBuilderService;
+    // Tenant ids never change, hence they are cached per tenant domain. Concurrent misses for the same tenant domain
+    // wait for a single call to the admin rest api.
+    private final Cache<String, String> tenantIdCache = CacheBuilder.newBuilder()
+            .maximumSize(TENANT_ID_CACHE_MAX_SIZE)
+            .expireAfterWrite(TENANT_ID_CACHE_EXPIRY_HOURS, TimeUnit.HOURS)
+            .build();
+    private volatile AnalyticsHttpClientBuilderService clientBuilderService;
     private DashboardMetadataProvider dashboardMetadataProvider;
     private ConfigProvider configProvider;
+    private volatile AdminServiceConfig adminServiceConfig;
+    private volatile DataProviderException adminServiceConfigError;
+    private volatile DashboardAuthorizerServiceStub adminServiceStub;
+
+    @Activate
+    protected void activate() {
+        try {
+            adminServiceConfig = readAdminServiceConfig();
+            adminServiceConfigError = null;
+        } catch (DataProviderException e) {
+            // Reported again for each data provider request which needs the tenant id.
+            adminServiceConfig = null;
+            adminServiceConfigError = e;
+            LOGGER.error("Error while reading the admin rest api configuration of the data provider authorizer.", e);
+        }
+        AuthorizerMetrics.getInstance().register();
+        LOGGER.debug("Data provider authorizer '{}' activated.", this.getClass().getName());
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        tenantIdCache.invalidateAll();
+        DashboardMetadataCache.getInstance().invalidateAll();
+        adminServiceStub = null;
+        AuthorizerMetrics.getInstance().unregister();
+        LOGGER.debug("Data provider authorizer '{}' deactivated.", this.getClass().getName());
+    }
 
     @Reference(service = DashboardMetadataProvider.class,
             cardinality = ReferenceCardinality.MANDATORY,
@@ -113,11 +161,13 @@ public class Authorizer implements DataProviderAuthorizer {
     )
     protected void registerAnalyticsHttpClient(AnalyticsHttpClientBuilderService service) {
         this.clientBuilderService = service;
+        this.adminServiceStub = null;
         LOGGER.debug("AnalyticsHttpClientBuilderService '{}' registered.", service.getClass().getName());
     }
 
     protected void unregisterAnalyticsHttpClient(AnalyticsHttpClientBuilderService service) {
         this.clientBuilderService = null;
+        this.adminServiceStub = null;
         LOGGER.debug("AnalyticsHttpClientBuilderService '{}' unregistered.", service.getClass().getName());
     }
 
@@ -154,192 +204,271 @@ public class Authorizer implements DataProviderAuthorizer {
             throw new DataProviderException("Widget Name in the Data Provider Config cannot be empty.");
         }
 
-        Optional<DashboardMetadata> dashboardMetadata;
+        AuthorizerMetrics metrics = AuthorizerMetrics.getInstance();
+        long startTime = System.nanoTime();
+        boolean authorized = false;
         try {
-            dashboardMetadata
-                    = this.dashboardMetadataProvider.getDashboardByUser(username, dashboardId, null);
-        } catch (UnauthorizedException e) {
-            return false;
-        } catch (DashboardException e) {
-            throw new DataProviderException(e);
+            authorized = authorizeWidget(username, dashboardId, widgetName, dataProviderConfigRoot, metrics);
+        } finally {
+            // Only authorized widget names are recorded per widget, since others are sent by the front-end as is.
+            metrics.recordLatency(AuthorizerMetrics.Phase.AUTHORIZE, authorized ? widgetName : null, startTime);
         }
-
-        if (!dashboardMetadata.isPresent()) {
+        if (!authorized) {
+            metrics.recordDeniedRequest();
             return false;
         }
-        DashboardMetadataContent dashboardMetadataContent = dashboardMetadata.get().getContent();
-        Map<WidgetType, Set<String>> widgets  = findWidgets(dashboardMetadataContent);
-
-        boolean isWidgetAvailableInDashboard = false;
-        // Check whether the requested widget is in the CUSTOM type set
-        for (String widget : widgets.get(WidgetType.CUSTOM)) {
-            if (widget.equalsIgnoreCase(widgetName)) {
-                isWidgetAvailableInDashboard = true;
-                break;
+        LOGGER.debug("Authorized via the '{}' class.", this.getClass().getName());
+        return true;
+    }
+
+    /**
+     * This method checks whether the widget is in a dashboard which the user can view, and assembles the query of
+     * the widget if so.
+     *
+     * @param username name of the logged in user
+     * @param dashboardId id of the dashboard
+     * @param widgetName name of the widget
+     * @param dataProviderConfigRoot root configuration for the data provider (comes from the front-end)
+     * @param metrics metrics to record the latency of each phase in
+     * @return whether the request is authorized
+     **/
+    private boolean authorizeWidget(String username, String dashboardId, String widgetName,
+                                    DataProviderConfigRoot dataProviderConfigRoot, AuthorizerMetrics metrics)
+            throws DataProviderException {
+        DashboardMetadataCache metadataCache = DashboardMetadataCache.getInstance();
+        Set<String> widgetNames = metadataCache.getDashboardWidgets(username, dashboardId);
+        if (widgetNames == null) {
+            metrics.recordCacheMiss(AuthorizerMetrics.CacheType.DASHBOARD_WIDGETS);
+            long startTime = System.nanoTime();
+            Optional<DashboardMetadata> dashboardMetadata;
+            try {
+                dashboardMetadata
+                        = this.dashboardMetadataProvider.getDashboardByUser(username, dashboardId, null);
+            } catch (UnauthorizedException e) {
+                return false;
+            } catch (DashboardException e) {
+                throw new DataProviderException(e);
+            } finally {
+                metrics.recordLatency(AuthorizerMetrics.Phase.DASHBOARD_LOOKUP, null, startTime);
             }
-        }
-        // Check whether the requested widget is in the GENERATED type set
-        if (!isWidgetAvailableInDashboard) {
-            for (String widget : widgets.get(WidgetType.GENERATED)) {
-                if (widget.equalsIgnoreCase(widgetName)) {
-                    isWidgetAvailableInDashboard = true;
-                    break;
-                }
+
+            if (!dashboardMetadata.isPresent()) {
+                return false;
             }
+            widgetNames = getWidgetNames(dashboardMetadata.get().getContent());
+            metadataCache.putDashboardWidgets(username, dashboardId, widgetNames);
+        } else {
+            metrics.recordCacheHit(AuthorizerMetrics.CacheType.DASHBOARD_WIDGETS);
         }
 
-        if (!isWidgetAvailableInDashboard) {
+        if (!widgetNames.contains(widgetName.toLowerCase(Locale.ENGLISH))) {
             // Widget is not available in the dashboard. Hence authorization is failed.
             return false;
         }
 
-        WidgetMetadataProvider widgetMetadataProvider = this.dashboardMetadataProvider.getWidgetMetadataProvider();
-        Optional<WidgetMetaInfo> widgetMetaInfo;
-        try {
-            widgetMetaInfo = widgetMetadataProvider.getWidgetConfiguration(widgetName);
-        } catch (DashboardException e) {
-            throw new DataProviderException(e);
+        WidgetQueryTemplates widgetQueries = metadataCache.getWidgetQueries(widgetName);
+        if (widgetQueries == null) {
+            metrics.recordCacheMiss(AuthorizerMetrics.CacheType.WIDGET_QUERIES);
+            long startTime = System.nanoTime();
+            try {
+                WidgetMetadataProvider widgetMetadataProvider
+                        = this.dashboardMetadataProvider.getWidgetMetadataProvider();
+                Optional<WidgetMetaInfo> widgetMetaInfo;
+                try {
+                    widgetMetaInfo = widgetMetadataProvider.getWidgetConfiguration(widgetName);
+                } catch (DashboardException e) {
+                    throw new DataProviderException(e);
+                }
+
+                if (!widgetMetaInfo.isPresent()) {
+                    throw new DataProviderException("Widget configuration cannot be found.");
+                }
+                WidgetConfigs widgetConfigs = widgetMetaInfo.get().getConfigs();
+                widgetQueries = WidgetQueryTemplates.compile(getQueryData(widgetConfigs.getProviderConfig()));
+            } finally {
+                metrics.recordLatency(AuthorizerMetrics.Phase.WIDGET_CONFIGURATION, widgetName, startTime);
+            }
+            metadataCache.putWidgetQueries(widgetName, widgetQueries);
+        } else {
+            metrics.recordCacheHit(AuthorizerMetrics.CacheType.WIDGET_QUERIES);
         }
 
-        if (!widgetMetaInfo.isPresent()) {
-            throw new DataProviderException("Widget configuration cannot be found.");
+        long startTime = System.nanoTime();
+        try {
+            assembleQuery(username, dataProviderConfigRoot, widgetQueries);
+        } finally {
+            metrics.recordLatency(AuthorizerMetrics.Phase.QUERY_ASSEMBLY, widgetName, startTime);
         }
-        WidgetConfigs widgetConfigs = widgetMetaInfo.get().getConfigs();
-        JsonElement dataProviderConfig = widgetConfigs.getProviderConfig();
-        assembleQuery(username, dataProviderConfigRoot, dataProviderConfig);
-        LOGGER.debug("Authorized via the '{}' class.", this.getClass().getName());
         return true;
     }
 
     /**
-     * This method replaces the template values in the query with the values sent from front-end.
+     * This method collects the names of all CUSTOM and GENERATED widgets in the dashboard.
      *
-     * @param username name of the logged in user
-     * @param dataProviderConfigRoot root configuration for the data provider (comes from the front-end)
-     * @param dataProviderConfig data provider config obtained through widget conf. (read by back-end)
+     * @param dashboardMetadataContent content of the dashboard
+     * @return unmodifiable set of lower case widget names
      **/
-    private void assembleQuery(String username, DataProviderConfigRoot dataProviderConfigRoot,
-                               JsonElement dataProviderConfig) throws DataProviderException {
-        JsonElement queryData; // query data obtained through reading the widget conf
-        String queryName; // name of the query need to be run
-        JsonElement queryValues = null; // values needed to be replaced in the query as key/value pairs
-        String query;
-        String contextPath;
-        String contextContainsCondition;
-
-        // As an example if the username is "admin@carbon.super", the tenant domain will be extracted as "carbon.super".
-        String[] usernameSections = username.split("@");
-        String tenantDomain = usernameSections[usernameSections.length - 1];
+    private Set<String> getWidgetNames(DashboardMetadataContent dashboardMetadataContent) {
+        Map<WidgetType, Set<String>> widgets = findWidgets(dashboardMetadataContent);
+        Set<String> widgetNames = new HashSet<>();
+        for (WidgetType widgetType : new WidgetType[]{WidgetType.CUSTOM, WidgetType.GENERATED}) {
+            Set<String> widgetsOfType = widgets.get(widgetType);
+            if (widgetsOfType != null) {
+                for (String widget : widgetsOfType) {
+                    widgetNames.add(widget.toLowerCase(Locale.ENGLISH));
+                }
+            }
+        }
+        return Collections.unmodifiableSet(widgetNames);
+    }
 
+    /**
+     * This method extracts the query data from the data provider config of a widget.
+     *
+     * @param dataProviderConfig data provider config obtained through widget conf. (read by back-end)
+     * @return query data of the widget
+     **/
+    private JsonElement getQueryData(JsonElement dataProviderConfig) throws DataProviderException {
         if (dataProviderConfig.getAsJsonObject().get(MAIN_CONFIG) != null
                 && dataProviderConfig.getAsJsonObject().get(MAIN_CONFIG).getAsJsonObject()
                 .get(DATA_PROVIDER_CONFIG) != null
                 && dataProviderConfig.getAsJsonObject().get(MAIN_CONFIG).getAsJsonObject()
                 .get(DATA_PROVIDER_CONFIG).getAsJsonObject().get(QUERY_DATA) != null) {
-            queryData = dataProviderConfig.getAsJsonObject().get(MAIN_CONFIG).getAsJsonObject()
+            return dataProviderConfig.getAsJsonObject().get(MAIN_CONFIG).getAsJsonObject()
                     .get(DATA_PROVIDER_CONFIG).getAsJsonObject().get(QUERY_DATA);
         } else {
             throw new DataProviderException("Cannot find the query data in the widget configuration.");
         }
+    }
+
+    /**
+     * This method replaces the template values in the query with the values sent from front-end.
+     *
+     * @param username name of the logged in user
+     * @param dataProviderConfigRoot root configuration for the data provider (comes from the front-end)
+     * @param widgetQueries compiled queries obtained through reading the widget conf. (read by back-end)
+     **/
+    private void assembleQuery(String username, DataProviderConfigRoot dataProviderConfigRoot,
+                               WidgetQueryTemplates widgetQueries) throws DataProviderException {
+        // As an example if the username is "admin@carbon.super", the tenant domain will be extracted as "carbon.super".
+        String[] usernameSections = username.split("@");
+        String tenantDomain = usernameSections[usernameSections.length - 1];
+
+        JsonElement dataProviderConfiguration = dataProviderConfigRoot.getDataProviderConfiguration();
+        JsonElement requestQueryData = dataProviderConfiguration == null ? null
+                : dataProviderConfiguration.getAsJsonObject().get(QUERY_DATA);
+        if (requestQueryData == null) {
+            throw new DataProviderException("Query Name cannot be found in the data provider configuration root.");
+        }
+        JsonObject requestQueryDataObject = requestQueryData.getAsJsonObject();
 
         // capture the query name sent from front-end
-        if (dataProviderConfigRoot.getDataProviderConfiguration() != null &&
-                dataProviderConfigRoot.getDataProviderConfiguration().getAsJsonObject().get(QUERY_DATA) != null &&
-                dataProviderConfigRoot.getDataProviderConfiguration().getAsJsonObject().get(QUERY_DATA)
-                        .getAsJsonObject().get(QUERY_NAME) != null) {
-            queryName = dataProviderConfigRoot.getDataProviderConfiguration()
-                    .getAsJsonObject().get(QUERY_DATA).getAsJsonObject().get(QUERY_NAME).getAsString();
-        } else {
+        JsonElement queryName = requestQueryDataObject.get(QUERY_NAME);
+        if (queryName == null) {
             throw new DataProviderException("Query Name cannot be found in the data provider configuration root.");
         }
 
         // get the query need to be run, from widget conf read from backend
-        if (queryName != null && !queryName.isEmpty() && queryData.getAsJsonObject().get(queryName) != null) {
-            query = queryData.getAsJsonObject().get(queryName).getAsString();
-        } else {
+        QueryTemplate template = widgetQueries.getTemplate(queryName.getAsString());
+        if (template == null) {
             throw new DataProviderException("Cannot find the query in the widget configuration.");
         }
+        String[] values = template.newValues();
 
         // capture the query values sent from front-end
-        if (dataProviderConfigRoot.getDataProviderConfiguration() != null &&
-                dataProviderConfigRoot.getDataProviderConfiguration().getAsJsonObject().get(QUERY_DATA) != null &&
-                dataProviderConfigRoot.getDataProviderConfiguration().getAsJsonObject().get(QUERY_DATA)
-                        .getAsJsonObject().get(QUERY_VALUES) != null) {
-            queryValues = dataProviderConfigRoot.getDataProviderConfiguration()
-                    .getAsJsonObject().get(QUERY_DATA).getAsJsonObject().get(QUERY_VALUES);
-        }
-
+        JsonElement queryValues = requestQueryDataObject.get(QUERY_VALUES);
         if (queryValues != null) {
-            // replace the values in the query
-            for (String key : queryValues.getAsJsonObject().keySet()) {
-                String keyValue = queryValues.getAsJsonObject().get(key).getAsString();
-                if (keyValue == null) {
+            for (Map.Entry<String, JsonElement> queryValue : queryValues.getAsJsonObject().entrySet()) {
+                String key = queryValue.getKey();
+                if (isReservedKey(key)) {
+                    throw new DataProviderException("Value for " + key + " cannot be set by the front-end.");
+                }
+                int slot = template.indexOf(key);
+                if (slot < 0) {
+                    // Not used by this query.
+                    continue;
+                }
+                if (queryValue.getValue() == null || queryValue.getValue().isJsonNull()) {
                     throw new DataProviderException("Cannot find the replaceable value for " + key + ".");
                 }
-                query = query.replace(key, keyValue);
+                values[slot] = queryValue.getValue().getAsString();
             }
         }
 
         if (tenantDomain != null && !tenantDomain.isEmpty()) {
-            if (tenantDomain.equalsIgnoreCase(SUPER_TENANT_DOMAIN)) {
-                contextPath = NOT_LIKE_CONTEXT_PATH;
-                contextContainsCondition = STRING_NOT_CONTAIN_CONTEXT;
-            } else {
-                contextPath = LIKE_CONTEXT_PATH;
-                contextContainsCondition = STRING_CONTAIN_CONTEXT;
+            boolean isSuperTenant = tenantDomain.equalsIgnoreCase(SUPER_TENANT_DOMAIN);
+            setValue(template, values, CONTEXT_CONDITION_KEY, isSuperTenant ? NOT_LIKE_CONTEXT_PATH
+                    : LIKE_CONTEXT_PATH.replace(TENANT_DOMAIN_KEY, tenantDomain));
+            setValue(template, values, CONTEXT_CONTAINS_CONDITION_KEY, isSuperTenant ? STRING_NOT_CONTAIN_CONTEXT
+                    : STRING_CONTAIN_CONTEXT.replace(TENANT_DOMAIN_KEY, tenantDomain));
+            setValue(template, values, TENANT_DOMAIN_KEY, tenantDomain);
+            // The admin rest api is only needed by the queries which filter by tenant id.
+            if (template.indexOf(TENANT_ID_KEY) >= 0) {
+                setValue(template, values, TENANT_ID_KEY, getTenantId(username, tenantDomain));
             }
-            String tenantId = getTenantId(username);
-            query = query.replace(CONTEXT_CONDITION_KEY, contextPath)
-                    .replace(CONTEXT_CONTAINS_CONDITION_KEY, contextContainsCondition)
-                    .replace(TENANT_DOMAIN_KEY, tenantDomain)
-                    .replace(TENANT_ID_KEY, tenantId);
         }
 
-        Objects.requireNonNull(dataProviderConfigRoot.getDataProviderConfiguration()).getAsJsonObject()
-                .get(QUERY_DATA).getAsJsonObject().addProperty(QUERY_PROPERTY_NAME, query);
+        requestQueryDataObject.addProperty(QUERY_PROPERTY_NAME, template.render(values));
+    }
+
+    private static boolean isReservedKey(String key) {
+        return CONTEXT_CONDITION_KEY.equals(key) || CONTEXT_CONTAINS_CONDITION_KEY.equals(key)
+                || TENANT_DOMAIN_KEY.equals(key) || TENANT_ID_KEY.equals(key);
+    }
+
+    private static void setValue(QueryTemplate template, String[] values, String placeholder, String value) {
+        int slot = template.indexOf(placeholder);
+        if (slot >= 0) {
+            values[slot] = value;
+        }
     }
 
     /**
-     * This method replaces the template values in the query with the values sent from front-end.
+     * This method returns the id of the tenant which the user belongs to. Tenant ids are cached per tenant domain,
+     * hence the admin rest api is called only for the first user of each tenant.
      *
      * @param username name of the logged in user
+     * @param tenantDomain tenant domain of the logged in user
      * @return id of the tenant
      **/
-    private String getTenantId(String username) throws DataProviderException {
-        String adminServiceUrl;
-        String adminUsername;
-        String adminPassword;
+    private String getTenantId(String username, String tenantDomain) throws DataProviderException {
+        AuthorizerMetrics metrics = AuthorizerMetrics.getInstance();
+        String key = tenantDomain.toLowerCase(Locale.ENGLISH);
+        String tenantId = tenantIdCache.getIfPresent(key);
+        if (tenantId != null) {
+            metrics.recordCacheHit(AuthorizerMetrics.CacheType.TENANT_ID);
+            return tenantId;
+        }
+        metrics.recordCacheMiss(AuthorizerMetrics.CacheType.TENANT_ID);
+        long startTime = System.nanoTime();
         try {
-            Map authConfigs = (Map) this.configProvider.getConfigurationObject(AUTH_CONFIGS_HEADER);
-            if (authConfigs == null) {
-                throw new DataProviderException("Cannot find " + AUTH_CONFIGS_HEADER + " in the deployment.yaml file.");
+            return tenantIdCache.get(key, () -> fetchTenantId(username));
+        } catch (ExecutionException e) {
+            metrics.recordAdminApiError();
+            if (e.getCause() instanceof DataProviderException) {
+                throw (DataProviderException) e.getCause();
             }
-            if (authConfigs.containsKey(AUTH_CONFIGS_PROPERTIES_HEADER)) {
-                Map properties = (Map) authConfigs.get(AUTH_CONFIGS_PROPERTIES_HEADER);
-                if (properties == null) {
-                    throw new DataProviderException(AUTH_CONFIGS_PROPERTIES_HEADER + " header under "
-                            + AUTH_CONFIGS_HEADER + " in the deployment.yaml file cannot be empty");
-                }
-                adminServiceUrl = getPropertyValueFromParentMap(properties, ADMIN_SERVICE_BASE_URL_KEY);
-                adminUsername = getPropertyValueFromParentMap(properties, ADMIN_USERNAME_KEY);
-                adminPassword = getPropertyValueFromParentMap(properties, ADMIN_PASSWORD_KEY);
-            } else {
-                throw new DataProviderException("Cannot find " + AUTH_CONFIGS_PROPERTIES_HEADER + " header under the "
-                        + AUTH_CONFIGS_HEADER + " in the deployment.yaml file.");
-            }
-        } catch (ConfigurationException e) {
-            throw new DataProviderException("Error occurred while getting the " + AUTH_CONFIGS_HEADER
-                    + " configuration from deployment.yaml file.");
+            throw new DataProviderException("Error occurred while getting the tenant id of " + tenantDomain + ".",
+                    e.getCause());
+        } catch (UncheckedExecutionException e) {
+            metrics.recordAdminApiError();
+            throw new DataProviderException("Error occurred while getting the tenant id of " + tenantDomain + ".",
+                    e.getCause());
+        } finally {
+            metrics.recordLatency(AuthorizerMetrics.Phase.TENANT_ID, null, startTime);
         }
+    }
+
+    /**
+     * This method calls the admin rest api to get the id of the tenant which the user belongs to.
+     *
+     * @param username name of the logged in user
+     * @return id of the tenant
+     **/
+    private String fetchTenantId(String username) throws DataProviderException {
         try {
             String encodedUsername = Base64.getEncoder().encodeToString(username.getBytes(StandardCharsets.UTF_8));
-            Response response = DashboardAuthorizerServiceFactory
-                    .getAuthorizerHttpsClient(
-                            this.clientBuilderService,
-                            (adminServiceUrl + "/api/am/admin/v1/tenant-info"),
-                            adminUsername,
-                            adminPassword)
-                    .getTenantId(encodedUsername);
+            Response response = getAdminServiceStub().getTenantId(encodedUsername);
             if (response == null) {
                 throw new DataProviderException("Response returned from the admin rest api is null.");
             } else {
@@ -369,6 +498,66 @@ public class Authorizer implements DataProviderAuthorizer {
         }
     }
 
+    /**
+     * This method returns the client of the admin rest api. The client is created once and reused for all requests,
+     * until the http client builder service changes.
+     *
+     * @return client of the admin rest api
+     **/
+    private DashboardAuthorizerServiceStub getAdminServiceStub() throws DataProviderException {
+        DashboardAuthorizerServiceStub stub = adminServiceStub;
+        if (stub == null) {
+            synchronized (this) {
+                stub = adminServiceStub;
+                if (stub == null) {
+                    AdminServiceConfig config = adminServiceConfig;
+                    if (config == null) {
+                        throw adminServiceConfigError != null ? adminServiceConfigError
+                                : new DataProviderException("Admin rest api configuration is not available.");
+                    }
+                    AnalyticsHttpClientBuilderService service = this.clientBuilderService;
+                    if (service == null) {
+                        throw new DataProviderException("AnalyticsHttpClientBuilderService is not available.");
+                    }
+                    stub = DashboardAuthorizerServiceFactory.getAuthorizerHttpsClient(service,
+                            config.serviceUrl + TENANT_INFO_RESOURCE_PATH, config.username, config.password);
+                    adminServiceStub = stub;
+                }
+            }
+        }
+        return stub;
+    }
+
+    /**
+     * This method reads the admin rest api configuration under auth.configs in the deployment.yaml file.
+     *
+     * @return admin rest api configuration
+     **/
+    private AdminServiceConfig readAdminServiceConfig() throws DataProviderException {
+        try {
+            Map authConfigs = (Map) this.configProvider.getConfigurationObject(AUTH_CONFIGS_HEADER);
+            if (authConfigs == null) {
+                throw new DataProviderException("Cannot find " + AUTH_CONFIGS_HEADER + " in the deployment.yaml file.");
+            }
+            if (authConfigs.containsKey(AUTH_CONFIGS_PROPERTIES_HEADER)) {
+                Map properties = (Map) authConfigs.get(AUTH_CONFIGS_PROPERTIES_HEADER);
+                if (properties == null) {
+                    throw new DataProviderException(AUTH_CONFIGS_PROPERTIES_HEADER + " header under "
+                            + AUTH_CONFIGS_HEADER + " in the deployment.yaml file cannot be empty");
+                }
+                return new AdminServiceConfig(getPropertyValueFromParentMap(properties, ADMIN_SERVICE_BASE_URL_KEY),
+                        getPropertyValueFromParentMap(properties, ADMIN_USERNAME_KEY),
+                        getPropertyValueFromParentMap(properties, ADMIN_PASSWORD_KEY));
+            } else {
+                throw new DataProviderException("Cannot find " + AUTH_CONFIGS_PROPERTIES_HEADER + " header under the "
+                        + AUTH_CONFIGS_HEADER + " in the deployment.yaml file.");
+            }
+        } catch (ConfigurationException e) {
+            throw new DataProviderException("Error occurred while getting the " + AUTH_CONFIGS_HEADER
+                    + " configuration from deployment.yaml file.");
+        }
+    }
+
     /**
      * This method gets property values from the given parent map. This method also validates whether the given key and
      * the corresponding value is not empty.
@@ -392,4 +581,20 @@ public class Authorizer implements DataProviderAuthorizer {
                     + AUTH_CONFIGS_HEADER + " in the deployment.yaml file.");
         }
     }
+
+    /**
+     * Admin rest api configuration read from the deployment.yaml file.
+     */
+    private static final class AdminServiceConfig {
+
+        private final String serviceUrl;
+        private final String username;
+        private final String password;
+
+        private AdminServiceConfig(String serviceUrl, String username, String password) {
+            this.serviceUrl = serviceUrl;
+            this.username = username;
+            this.password = password;
+        }
+    }
 }
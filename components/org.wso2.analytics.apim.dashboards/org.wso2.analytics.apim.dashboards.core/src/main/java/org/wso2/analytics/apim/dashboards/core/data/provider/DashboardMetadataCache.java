@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton which caches the dashboard and widget metadata used to authorize data provider requests. The dashboard
+ * portal neither publishes update events nor lets other bundles hook into its update path, hence entries are only
+ * invalidated by time: a dashboard, widget or role update made through the portal is seen by the authorizer at most
+ * one expiry interval, 60 seconds, later.
+ */
+public final class DashboardMetadataCache {
+
+    private static final long EXPIRY_SECONDS = 60;
+    private static final long MAX_SIZE = 10000;
+    private static final DashboardMetadataCache instance = new DashboardMetadataCache();
+
+    // Keyed by user and dashboard id, since whether a user can view a dashboard depends on the roles of the user.
+    private final Cache<String, Set<String>> dashboardWidgetsCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(EXPIRY_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private final Cache<String, WidgetQueryTemplates> widgetQueriesCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(EXPIRY_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private DashboardMetadataCache() {
+
+    }
+
+    /**
+     * This method can be used to get the singleton instance of this class.
+     * @return the singleton instance.
+     */
+    public static DashboardMetadataCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the names of the widgets of a dashboard which the user can view.
+     * @param username name of the user.
+     * @param dashboardId id of the dashboard.
+     * @return lower case widget names, or null if they are not cached.
+     */
+    public Set<String> getDashboardWidgets(String username, String dashboardId) {
+        return dashboardWidgetsCache.getIfPresent(dashboardKey(username, dashboardId));
+    }
+
+    /**
+     * Caches the names of the widgets of a dashboard which the user can view.
+     * @param username name of the user.
+     * @param dashboardId id of the dashboard.
+     * @param widgetNames unmodifiable set of lower case widget names.
+     */
+    public void putDashboardWidgets(String username, String dashboardId, Set<String> widgetNames) {
+        dashboardWidgetsCache.put(dashboardKey(username, dashboardId), widgetNames);
+    }
+
+    /**
+     * Returns the compiled queries of a widget.
+     * @param widgetName name of the widget.
+     * @return templates of the queries in the provider config of the widget, or null if they are not cached.
+     */
+    public WidgetQueryTemplates getWidgetQueries(String widgetName) {
+        return widgetQueriesCache.getIfPresent(widgetName);
+    }
+
+    /**
+     * Caches the compiled queries of a widget.
+     * @param widgetName name of the widget.
+     * @param queries templates of the queries in the provider config of the widget.
+     */
+    public void putWidgetQueries(String widgetName, WidgetQueryTemplates queries) {
+        widgetQueriesCache.put(widgetName, queries);
+    }
+
+    /**
+     * Invalidates all cached metadata. Called when the authorizer is deactivated.
+     */
+    public void invalidateAll() {
+        dashboardWidgetsCache.invalidateAll();
+        widgetQueriesCache.invalidateAll();
+    }
+
+    private static String dashboardKey(String username, String dashboardId) {
+        return username + '\n' + dashboardId;
+    }
+}
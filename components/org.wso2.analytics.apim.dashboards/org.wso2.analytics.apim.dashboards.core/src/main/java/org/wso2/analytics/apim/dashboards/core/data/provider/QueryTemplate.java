@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Widget query parsed into literal segments and {{placeholder}} slots. A template is parsed once and rendered for
+ * each data provider request by filling the slots in a single pass, instead of replacing each placeholder in a new
+ * copy of the query. A placeholder used several times in the query shares a single slot. As with replacing the
+ * placeholders one by one, a placeholder without a value, or a malformed one, is left in the query as it is.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class QueryTemplate {
+
+    private static final String PLACEHOLDER_START = "{{";
+    private static final String PLACEHOLDER_END = "}}";
+    private static final int MAX_RETAINED_BUILDER_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+
+    // segments[i] is followed by the value of slot segmentSlots[i]. The last segment is not followed by a slot.
+    private final String[] segments;
+    private final int[] segmentSlots;
+    private final String[] placeholders;
+    private final Map<String, Integer> slotIndex;
+    private final int literalLength;
+
+    private QueryTemplate(String[] segments, int[] segmentSlots, String[] placeholders,
+                          Map<String, Integer> slotIndex) {
+        this.segments = segments;
+        this.segmentSlots = segmentSlots;
+        this.placeholders = placeholders;
+        this.slotIndex = slotIndex;
+        int length = 0;
+        for (String segment : segments) {
+            length += segment.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parses a query into a template.
+     * @param query query with {{placeholder}} tokens.
+     * @return the template.
+     */
+    public static QueryTemplate compile(String query) {
+        List<String> segments = new ArrayList<>();
+        List<Integer> segmentSlots = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        Map<String, Integer> slotIndex = new HashMap<>();
+        int position = 0;
+        int searchFrom = 0;
+        int start;
+        while ((start = query.indexOf(PLACEHOLDER_START, searchFrom)) >= 0) {
+            int end = query.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+            if (end < 0) {
+                // Unterminated, hence the rest of the query is literal.
+                break;
+            }
+            end += PLACEHOLDER_END.length();
+            String placeholder = query.substring(start, end);
+            if (!isValidPlaceholder(placeholder)) {
+                // Malformed, hence kept as literal text.
+                searchFrom = start + PLACEHOLDER_START.length();
+                continue;
+            }
+            Integer slot = slotIndex.get(placeholder);
+            if (slot == null) {
+                slot = placeholders.size();
+                placeholders.add(placeholder);
+                slotIndex.put(placeholder, slot);
+            }
+            segments.add(query.substring(position, start));
+            segmentSlots.add(slot);
+            position = end;
+            searchFrom = end;
+        }
+        segments.add(query.substring(position));
+        int[] slots = new int[segmentSlots.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = segmentSlots.get(i);
+        }
+        return new QueryTemplate(segments.toArray(new String[0]), slots, placeholders.toArray(new String[0]),
+                Collections.unmodifiableMap(slotIndex));
+    }
+
+    /**
+     * Returns the slot of a placeholder.
+     * @param placeholder placeholder including the braces, e.g. {{tenantDomain}}.
+     * @return index of the slot, or -1 if the query does not have the placeholder.
+     */
+    public int indexOf(String placeholder) {
+        Integer slot = slotIndex.get(placeholder);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Creates an array to hold the values of the slots of this template.
+     * @return array with an empty element for each slot.
+     */
+    public String[] newValues() {
+        return new String[placeholders.length];
+    }
+
+    /**
+     * Renders the query with the given slot values.
+     * @param values values indexed by slot, as returned by {@link #indexOf(String)}. A slot without a value is
+     *               rendered as its placeholder.
+     * @return the query.
+     */
+    public String render(String[] values) {
+        int length = literalLength;
+        for (int slot : segmentSlots) {
+            length += valueOf(values, slot).length();
+        }
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        builder.ensureCapacity(length);
+        for (int i = 0; i < segmentSlots.length; i++) {
+            builder.append(segments[i]).append(valueOf(values, segmentSlots[i]));
+        }
+        builder.append(segments[segments.length - 1]);
+        String query = builder.toString();
+        if (builder.capacity() > MAX_RETAINED_BUILDER_CAPACITY) {
+            BUILDER.remove();
+        }
+        return query;
+    }
+
+    private String valueOf(String[] values, int slot) {
+        String value = values[slot];
+        return value != null ? value : placeholders[slot];
+    }
+
+    private static boolean isValidPlaceholder(String placeholder) {
+        int end = placeholder.length() - PLACEHOLDER_END.length();
+        if (end == PLACEHOLDER_START.length()) {
+            return false;
+        }
+        for (int i = PLACEHOLDER_START.length(); i < end; i++) {
+            char c = placeholder.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled templates of the queries in the query data of a widget configuration, keyed by query name.
+ */
+public final class WidgetQueryTemplates {
+
+    private final Map<String, QueryTemplate> templates;
+
+    private WidgetQueryTemplates(Map<String, QueryTemplate> templates) {
+        this.templates = templates;
+    }
+
+    /**
+     * Compiles the queries in the query data of a widget configuration.
+     * @param queryData query data object, with the query names as keys and the queries as values.
+     * @return the compiled templates.
+     * @throws DataProviderException if the query data is not an object.
+     */
+    public static WidgetQueryTemplates compile(JsonElement queryData) throws DataProviderException {
+        if (!queryData.isJsonObject()) {
+            throw new DataProviderException("Query data in the widget configuration should be an object.");
+        }
+        Map<String, QueryTemplate> templates = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : ((JsonObject) queryData).entrySet()) {
+            JsonElement query = entry.getValue();
+            if (query.isJsonPrimitive()) {
+                templates.put(entry.getKey(), QueryTemplate.compile(query.getAsString()));
+            }
+        }
+        return new WidgetQueryTemplates(Collections.unmodifiableMap(templates));
+    }
+
+    /**
+     * Returns the template of a query.
+     * @param queryName name of the query.
+     * @return the template, or null if the widget does not have the query.
+     */
+    public QueryTemplate getTemplate(String queryName) {
+        return templates.get(queryName);
+    }
+}
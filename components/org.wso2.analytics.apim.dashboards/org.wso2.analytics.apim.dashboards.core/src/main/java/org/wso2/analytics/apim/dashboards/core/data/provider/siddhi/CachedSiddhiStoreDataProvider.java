@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider.siddhi;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.event.Event;
+import io.siddhi.query.api.definition.Attribute;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.data.provider.AbstractDataProvider;
+import org.wso2.carbon.data.provider.DataProvider;
+import org.wso2.carbon.data.provider.ProviderConfig;
+import org.wso2.carbon.data.provider.bean.DataSetMetadata;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import java.util.ArrayList;
+
+/**
+ * Data provider which runs the store query of a widget like the Siddhi store data provider, but reads the result
+ * through the shared store query result cache. Subscriptions with the same final query, e.g. users of the same tenant
+ * viewing the same widget, share a single query against the store.
+ */
+@Component(
+        service = DataProvider.class,
+        immediate = true
+)
+public class CachedSiddhiStoreDataProvider extends AbstractDataProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachedSiddhiStoreDataProvider.class);
+    private static final String PROVIDER_NAME = "CachedSiddhiStoreDataProvider";
+    private static final String QUERY = "query";
+    private static final String AGG_TIMESTAMP = "AGG_TIMESTAMP";
+
+    private CachedSiddhiStoreDataProviderConfig providerConfig;
+    private DataSetMetadata metadata;
+    private SiddhiAppRuntime siddhiAppRuntime;
+    private String acquiredSiddhiApp;
+    private String query;
+
+    @Override
+    public DataProvider init(String topic, String sessionId, JsonElement jsonElement) throws DataProviderException {
+        providerConfig = new Gson().fromJson(jsonElement, CachedSiddhiStoreDataProviderConfig.class);
+        if (!configValidator(providerConfig)) {
+            throw new DataProviderException("Siddhi app and query data are required for " + PROVIDER_NAME + ".");
+        }
+        JsonElement queryElement = providerConfig.getQueryData().getAsJsonObject().get(QUERY);
+        if (queryElement == null) {
+            throw new DataProviderException("Query is not set in the query data of " + PROVIDER_NAME + ".");
+        }
+        query = queryElement.getAsString();
+        super.init(topic, sessionId, providerConfig);
+        try {
+            siddhiAppRuntime = StoreQueryRuntimes.getInstance().acquire(providerConfig.getSiddhiApp());
+            acquiredSiddhiApp = providerConfig.getSiddhiApp();
+            Attribute[] attributes = siddhiAppRuntime.getStoreQueryOutputAttributes(query);
+            metadata = new DataSetMetadata(attributes.length);
+            for (int i = 0; i < attributes.length; i++) {
+                metadata.put(i, attributes[i].getName(), getMetadataType(attributes[i]));
+            }
+        } catch (RuntimeException e) {
+            releaseRuntime();
+            throw new DataProviderException("Error while initializing " + PROVIDER_NAME + " for the query: "
+                    + query, e);
+        }
+        return this;
+    }
+
+    @Override
+    public void publish(String topic, String sessionId) {
+        try {
+            Event[] events = StoreQueryResultCache.getInstance().query(siddhiAppRuntime, query);
+            ArrayList<Object[]> data = new ArrayList<>(events.length);
+            for (Event event : events) {
+                data.add(event.getData());
+            }
+            publishToEndPoint(data, sessionId, topic);
+        } catch (DataProviderException e) {
+            LOGGER.error("Error while publishing the result of the store query of topic '{}'.", topic, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        releaseRuntime();
+    }
+
+    @Override
+    public void purging() {
+        // Store data is purged by the aggregations and tables themselves.
+    }
+
+    @Override
+    public boolean configValidator(ProviderConfig providerConfig) throws DataProviderException {
+        CachedSiddhiStoreDataProviderConfig config = (CachedSiddhiStoreDataProviderConfig) providerConfig;
+        return config.getSiddhiApp() != null && !config.getSiddhiApp().isEmpty() && config.getQueryData() != null
+                && config.getQueryData().isJsonObject();
+    }
+
+    @Override
+    public String providerName() {
+        return PROVIDER_NAME;
+    }
+
+    @Override
+    public DataSetMetadata dataSetMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public String providerConfig() {
+        return new Gson().toJson(new CachedSiddhiStoreDataProviderConfig());
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        StoreQueryResultCache.getInstance().invalidateAll();
+        StoreQueryRuntimes.getInstance().shutdown();
+    }
+
+    private synchronized void releaseRuntime() {
+        if (acquiredSiddhiApp != null) {
+            StoreQueryRuntimes.getInstance().release(acquiredSiddhiApp);
+            acquiredSiddhiApp = null;
+        }
+    }
+
+    static DataSetMetadata.Types getMetadataType(Attribute attribute) {
+        if (AGG_TIMESTAMP.equals(attribute.getName())) {
+            return DataSetMetadata.Types.TIME;
+        }
+        switch (attribute.getType()) {
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return DataSetMetadata.Types.LINEAR;
+            default:
+                return DataSetMetadata.Types.ORDINAL;
+        }
+    }
+}
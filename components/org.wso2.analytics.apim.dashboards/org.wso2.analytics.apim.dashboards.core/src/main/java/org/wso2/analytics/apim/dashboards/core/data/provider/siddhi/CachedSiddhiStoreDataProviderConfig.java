@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider.siddhi;
+
+import com.google.gson.JsonElement;
+import org.wso2.carbon.data.provider.ProviderConfig;
+
+/**
+ * Configuration of the cached Siddhi store data provider. Widgets use the same configuration as for the Siddhi store
+ * data provider.
+ */
+public class CachedSiddhiStoreDataProviderConfig implements ProviderConfig {
+
+    private String siddhiApp;
+    private JsonElement queryData;
+    private long publishingInterval;
+    private long purgingInterval;
+    private boolean isPurgingEnable;
+
+    public CachedSiddhiStoreDataProviderConfig() {
+        this.siddhiApp = "";
+        this.publishingInterval = 5;
+        this.purgingInterval = 60;
+        this.isPurgingEnable = false;
+    }
+
+    public String getSiddhiApp() {
+        return siddhiApp;
+    }
+
+    public void setSiddhiApp(String siddhiApp) {
+        this.siddhiApp = siddhiApp;
+    }
+
+    public JsonElement getQueryData() {
+        return queryData;
+    }
+
+    public void setQueryData(JsonElement queryData) {
+        this.queryData = queryData;
+    }
+
+    @Override
+    public long getPublishingInterval() {
+        return publishingInterval;
+    }
+
+    public void setPublishingInterval(long publishingInterval) {
+        this.publishingInterval = publishingInterval;
+    }
+
+    @Override
+    public long getPurgingInterval() {
+        return purgingInterval;
+    }
+
+    public void setPurgingInterval(long purgingInterval) {
+        this.purgingInterval = purgingInterval;
+    }
+
+    @Override
+    public boolean isPurgingEnable() {
+        return isPurgingEnable;
+    }
+
+    public void setPurgingEnable(boolean purgingEnable) {
+        isPurgingEnable = purgingEnable;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider.siddhi;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.util.transport.InMemoryBroker;
+import io.siddhi.query.api.definition.Attribute;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.data.provider.AbstractDataProvider;
+import org.wso2.carbon.data.provider.DataProvider;
+import org.wso2.carbon.data.provider.ProviderConfig;
+import org.wso2.carbon.data.provider.bean.DataSetMetadata;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Data provider for widgets which chart an aggregation over time. The full query is run once when the widget
+ * subscribes. Afterwards only the buckets from the latest published bucket onwards are queried, and only the rows
+ * which are new or changed since they were last published are pushed to the widget, which merges them by
+ * AGG_TIMESTAMP and its group by columns. If a trigger topic is configured, the buckets are queried after an event
+ * was published to the in-memory topic since the last query, and at least once per fallback refresh interval, since
+ * the events received by the other nodes of a cluster are not published to the topic of this node.
+ * <p>
+ * Queries without a numeric within clause, without AGG_TIMESTAMP or any of the group by columns in the output, or
+ * with a limit, cannot be split into buckets. Those are re-run in full on each publishing interval, as with the
+ * cached Siddhi store data provider.
+ */
+@Component(
+        service = DataProvider.class,
+        immediate = true
+)
+public class IncrementalSiddhiStoreDataProvider extends AbstractDataProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalSiddhiStoreDataProvider.class);
+    private static final String PROVIDER_NAME = "IncrementalSiddhiStoreDataProvider";
+    private static final String QUERY = "query";
+    private static final String AGG_TIMESTAMP = "AGG_TIMESTAMP";
+    private static final Pattern LIMIT_PATTERN = Pattern.compile("\\blimit\\s+\\d+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern GROUP_BY_PATTERN = Pattern.compile(
+            "\\bgroup\\s+by\\s+(.+?)(?=\\s+having\\b|\\s+order\\s+by\\b|\\s+limit\\b|\\s+offset\\b|;|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private IncrementalSiddhiStoreDataProviderConfig providerConfig;
+    private DataSetMetadata metadata;
+    private SiddhiAppRuntime siddhiAppRuntime;
+    private String acquiredSiddhiApp;
+    private String query;
+    // Parts of the query around its within clause, used to build the queries of the latest buckets.
+    private String queryPrefix;
+    private String querySuffix;
+    private String withinEnd;
+    private int timestampIndex = -1;
+    // Group by columns which identify a row within a bucket, together with AGG_TIMESTAMP.
+    private int[] keyIndexes;
+    // Accessed only by the publishing thread.
+    private final Map<List<Object>, Object[]> publishedRows = new HashMap<>();
+    private long latestBucket = Long.MIN_VALUE;
+    private boolean initialResultPublished;
+    private volatile boolean updated = true;
+    private long lastQueryTime;
+    private InMemoryBroker.Subscriber triggerSubscriber;
+
+    @Override
+    public DataProvider init(String topic, String sessionId, JsonElement jsonElement) throws DataProviderException {
+        providerConfig = new Gson().fromJson(jsonElement, IncrementalSiddhiStoreDataProviderConfig.class);
+        if (!configValidator(providerConfig)) {
+            throw new DataProviderException("Siddhi app and query data are required for " + PROVIDER_NAME + ".");
+        }
+        JsonElement queryElement = providerConfig.getQueryData().getAsJsonObject().get(QUERY);
+        if (queryElement == null) {
+            throw new DataProviderException("Query is not set in the query data of " + PROVIDER_NAME + ".");
+        }
+        query = queryElement.getAsString();
+        super.init(topic, sessionId, providerConfig);
+        Attribute[] attributes;
+        try {
+            siddhiAppRuntime = StoreQueryRuntimes.getInstance().acquire(providerConfig.getSiddhiApp());
+            acquiredSiddhiApp = providerConfig.getSiddhiApp();
+            attributes = siddhiAppRuntime.getStoreQueryOutputAttributes(query);
+        } catch (RuntimeException e) {
+            releaseRuntime();
+            throw new DataProviderException("Error while initializing " + PROVIDER_NAME + " for the query: "
+                    + query, e);
+        }
+        metadata = new DataSetMetadata(attributes.length);
+        Map<String, Integer> attributeIndexes = new HashMap<>();
+        for (int i = 0; i < attributes.length; i++) {
+            metadata.put(i, attributes[i].getName(), CachedSiddhiStoreDataProvider.getMetadataType(attributes[i]));
+            attributeIndexes.put(attributes[i].getName(), i);
+            if (AGG_TIMESTAMP.equals(attributes[i].getName())) {
+                timestampIndex = i;
+            }
+        }
+        keyIndexes = getKeyIndexes(attributeIndexes);
+        Matcher withinMatcher = StoreQueryResultCache.WITHIN_PATTERN.matcher(query);
+        if (timestampIndex >= 0 && keyIndexes != null && withinMatcher.find()
+                && !LIMIT_PATTERN.matcher(query).find()) {
+            queryPrefix = query.substring(0, withinMatcher.start());
+            withinEnd = withinMatcher.group(2);
+            querySuffix = query.substring(withinMatcher.end());
+        }
+        String triggerTopic = providerConfig.getTriggerTopic();
+        if (isIncremental() && triggerTopic != null && !triggerTopic.isEmpty()) {
+            triggerSubscriber = new InMemoryBroker.Subscriber() {
+                @Override
+                public void onMessage(Object message) {
+                    updated = true;
+                }
+
+                @Override
+                public String getTopic() {
+                    return triggerTopic;
+                }
+            };
+            InMemoryBroker.subscribe(triggerSubscriber);
+        }
+        return this;
+    }
+
+    @Override
+    public void publish(String topic, String sessionId) {
+        try {
+            if (!initialResultPublished || !isIncremental()) {
+                // The full result is the same for all subscribers of the query, hence it is shared.
+                Event[] events = StoreQueryResultCache.getInstance().query(siddhiAppRuntime, query);
+                ArrayList<Object[]> data = new ArrayList<>(events.length);
+                for (Event event : events) {
+                    data.add(event.getData());
+                    if (isIncremental()) {
+                        track(event.getData());
+                    }
+                }
+                publishToEndPoint(data, sessionId, topic);
+                initialResultPublished = true;
+                return;
+            }
+            long currentTime = System.currentTimeMillis();
+            if (!updated && currentTime - lastQueryTime
+                    < TimeUnit.SECONDS.toMillis(providerConfig.getFallbackRefreshInterval())) {
+                return;
+            }
+            updated = triggerSubscriber == null;
+            lastQueryTime = currentTime;
+            Event[] events = siddhiAppRuntime.query(getLatestBucketsQuery());
+            ArrayList<Object[]> changedRows = new ArrayList<>();
+            if (events != null) {
+                for (Event event : events) {
+                    if (track(event.getData())) {
+                        changedRows.add(event.getData());
+                    }
+                }
+            }
+            pruneOlderBuckets();
+            if (!changedRows.isEmpty()) {
+                publishToEndPoint(changedRows, sessionId, topic);
+            }
+        } catch (DataProviderException | RuntimeException e) {
+            LOGGER.error("Error while publishing the result of the store query of topic '{}'.", topic, e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (triggerSubscriber != null) {
+            InMemoryBroker.unsubscribe(triggerSubscriber);
+            triggerSubscriber = null;
+        }
+        super.stop();
+        releaseRuntime();
+    }
+
+    @Override
+    public void purging() {
+        // Store data is purged by the aggregations and tables themselves.
+    }
+
+    @Override
+    public boolean configValidator(ProviderConfig providerConfig) throws DataProviderException {
+        IncrementalSiddhiStoreDataProviderConfig config = (IncrementalSiddhiStoreDataProviderConfig) providerConfig;
+        return config.getSiddhiApp() != null && !config.getSiddhiApp().isEmpty() && config.getQueryData() != null
+                && config.getQueryData().isJsonObject();
+    }
+
+    @Override
+    public String providerName() {
+        return PROVIDER_NAME;
+    }
+
+    @Override
+    public DataSetMetadata dataSetMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public String providerConfig() {
+        return new Gson().toJson(new IncrementalSiddhiStoreDataProviderConfig());
+    }
+
+    private synchronized void releaseRuntime() {
+        if (acquiredSiddhiApp != null) {
+            StoreQueryRuntimes.getInstance().release(acquiredSiddhiApp);
+            acquiredSiddhiApp = null;
+        }
+    }
+
+    private boolean isIncremental() {
+        return queryPrefix != null;
+    }
+
+    /**
+     * Resolves the output columns of the group by columns of the query, other than AGG_TIMESTAMP.
+     * @param attributeIndexes indexes of the output attributes by name
+     * @return indexes of the group by columns, or null if a group by column is not in the output
+     */
+    private int[] getKeyIndexes(Map<String, Integer> attributeIndexes) {
+        Matcher groupByMatcher = GROUP_BY_PATTERN.matcher(query);
+        if (!groupByMatcher.find()) {
+            // Without a group by clause each bucket has a single row.
+            return new int[0];
+        }
+        List<Integer> keys = new ArrayList<>();
+        for (String column : groupByMatcher.group(1).split(",")) {
+            String name = column.trim();
+            int dotIndex = name.lastIndexOf('.');
+            if (dotIndex >= 0) {
+                name = name.substring(dotIndex + 1);
+            }
+            if (AGG_TIMESTAMP.equals(name)) {
+                continue;
+            }
+            Integer index = attributeIndexes.get(name);
+            if (index == null) {
+                // Rows of different groups could not be told apart, hence the query is re-run in full.
+                LOGGER.debug("Group by column '{}' is not in the output of the query: {}", name, query);
+                return null;
+            }
+            keys.add(index);
+        }
+        return keys.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private String getLatestBucketsQuery() {
+        if (latestBucket == Long.MIN_VALUE) {
+            return query;
+        }
+        return queryPrefix + "within " + latestBucket + "L, " + withinEnd + "L" + querySuffix;
+    }
+
+    /**
+     * Records a row as published.
+     * @param row row of the query result
+     * @return true if the row is new or differs from the row published for the same bucket and group
+     */
+    private boolean track(Object[] row) {
+        Object timestamp = row[timestampIndex];
+        if (timestamp instanceof Long) {
+            latestBucket = Math.max(latestBucket, (Long) timestamp);
+        }
+        List<Object> key = new ArrayList<>(keyIndexes.length + 1);
+        key.add(timestamp);
+        for (int keyIndex : keyIndexes) {
+            key.add(row[keyIndex]);
+        }
+        Object[] previousRow = publishedRows.put(key, row);
+        return previousRow == null || !Arrays.equals(previousRow, row);
+    }
+
+    private void pruneOlderBuckets() {
+        // Buckets before the latest one are complete and are not queried again.
+        Iterator<List<Object>> iterator = publishedRows.keySet().iterator();
+        while (iterator.hasNext()) {
+            Object timestamp = iterator.next().get(0);
+            if (timestamp instanceof Long && (Long) timestamp < latestBucket) {
+                iterator.remove();
+            }
+        }
+    }
+}
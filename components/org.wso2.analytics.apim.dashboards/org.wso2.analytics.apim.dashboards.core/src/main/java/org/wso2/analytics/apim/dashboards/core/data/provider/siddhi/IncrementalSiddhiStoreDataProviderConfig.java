@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider.siddhi;
+
+/**
+ * Configuration of the incremental Siddhi store data provider.
+ */
+public class IncrementalSiddhiStoreDataProviderConfig extends CachedSiddhiStoreDataProviderConfig {
+
+    // Optional in-memory topic of the events which update the queried aggregation, e.g. APIM_REQUEST.
+    private String triggerTopic;
+    // Interval in seconds after which the latest buckets are queried even if no trigger event was received, since
+    // events received by the other nodes of a cluster are not published to the in-memory topic of this node.
+    private long fallbackRefreshInterval;
+
+    public IncrementalSiddhiStoreDataProviderConfig() {
+        this.fallbackRefreshInterval = 60;
+    }
+
+    public String getTriggerTopic() {
+        return triggerTopic;
+    }
+
+    public void setTriggerTopic(String triggerTopic) {
+        this.triggerTopic = triggerTopic;
+    }
+
+    public long getFallbackRefreshInterval() {
+        return fallbackRefreshInterval;
+    }
+
+    public void setFallbackRefreshInterval(long fallbackRefreshInterval) {
+        this.fallbackRefreshInterval = fallbackRefreshInterval;
+    }
+}
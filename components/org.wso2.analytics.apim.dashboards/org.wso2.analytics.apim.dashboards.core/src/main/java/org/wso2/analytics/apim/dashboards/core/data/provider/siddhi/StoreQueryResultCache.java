@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider.siddhi;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.event.Event;
+import org.wso2.analytics.apim.dashboards.core.metrics.AuthorizerMetrics;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Singleton which caches the results of widget store queries, keyed by the Siddhi app and the final query after the
+ * tenant values are substituted by the authorizer. Users of the same tenant viewing the same widget therefore share
+ * a single result. Concurrent requests for a query which is not cached wait for a single execution of the query.
+ * The time a result is kept depends on the granularity of the aggregation it was read from, since coarse buckets
+ * change less often than fine ones.
+ * <p>
+ * Widgets compute the numeric within bounds of their queries from the current time, hence the bounds are rounded up
+ * before the query is run and used as a key. The within clause selects the buckets with start time &gt;= start and
+ * &lt; end. The bounds are rounded to a step at which every bucket of the granularity starts, in any time zone the
+ * aggregation may use, so the rounded query returns the same buckets as the original one. The step is a second or
+ * a minute for those granularities, and 15 minutes, the finest step of time zone offsets, for coarser ones.
+ */
+public final class StoreQueryResultCache {
+
+    private static final Pattern GRANULARITY_PATTERN = Pattern.compile("\\bper\\s+[\"']\\s*(\\w+?)s?\\s*[\"']",
+            Pattern.CASE_INSENSITIVE);
+    static final Pattern WITHIN_PATTERN = Pattern.compile("\\bwithin\\s+(-?\\d+)L?\\s*,\\s*(-?\\d+)L?",
+            Pattern.CASE_INSENSITIVE);
+    private static final long SECOND_STEP_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MINUTE_STEP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long TIME_ZONE_STEP_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long SECONDS_TTL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MINUTES_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long HOURS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long DAYS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long MONTHS_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // Store queries on tables, which are not aggregations and have no granularity.
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_SIZE = 1000;
+    private static final StoreQueryResultCache instance = new StoreQueryResultCache();
+
+    // Entries expire according to their own time to live, which is at most the expiry of the cache.
+    private final Cache<String, CachedResult> results = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(MONTHS_TTL_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    private StoreQueryResultCache() {
+
+    }
+
+    /**
+     * This method can be used to get the singleton instance of this class.
+     * @return the singleton instance.
+     */
+    public static StoreQueryResultCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the result of a store query, running the query only if there is no unexpired result for it.
+     * @param runtime runtime of the Siddhi app which defines the queried store.
+     * @param query store query.
+     * @return events returned by the query. Must not be modified.
+     * @throws DataProviderException if the query fails.
+     */
+    public Event[] query(SiddhiAppRuntime runtime, String query) throws DataProviderException {
+        String normalizedQuery = normalizeWithin(query);
+        String key = runtime.getName() + '\n' + normalizedQuery;
+        AuthorizerMetrics metrics = AuthorizerMetrics.getInstance();
+        boolean[] loaded = new boolean[1];
+        try {
+            while (true) {
+                CachedResult result = results.get(key, () -> {
+                    loaded[0] = true;
+                    long startTime = System.nanoTime();
+                    try {
+                        return new CachedResult(runtime.query(normalizedQuery),
+                                System.currentTimeMillis() + getTimeToLiveMillis(query));
+                    } finally {
+                        metrics.recordLatency(AuthorizerMetrics.Phase.STORE_QUERY, null, startTime);
+                    }
+                });
+                if (!result.isExpired(System.currentTimeMillis())) {
+                    if (loaded[0]) {
+                        metrics.recordCacheMiss(AuthorizerMetrics.CacheType.STORE_QUERY_RESULT);
+                    } else {
+                        metrics.recordCacheHit(AuthorizerMetrics.CacheType.STORE_QUERY_RESULT);
+                    }
+                    return result.events;
+                }
+                results.asMap().remove(key, result);
+            }
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new DataProviderException("Error while running the store query: " + query, e.getCause());
+        }
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    /**
+     * Rounds the numeric bounds of the within clause of an aggregation query up to a step at which all buckets of
+     * the granularity in its per clause start.
+     * @param query store query.
+     * @return query which returns the same result, or the query itself if it has no such clauses.
+     */
+    static String normalizeWithin(String query) {
+        long step = getWithinStepMillis(getGranularity(query));
+        if (step <= 0) {
+            return query;
+        }
+        Matcher matcher = WITHIN_PATTERN.matcher(query);
+        if (!matcher.find()) {
+            return query;
+        }
+        long start;
+        long end;
+        try {
+            start = roundUp(Long.parseLong(matcher.group(1)), step);
+            end = roundUp(Long.parseLong(matcher.group(2)), step);
+        } catch (NumberFormatException e) {
+            return query;
+        }
+        return query.substring(0, matcher.start()) + "within " + start + "L, " + end + "L"
+                + query.substring(matcher.end());
+    }
+
+    /**
+     * Returns how long the result of a query is cached, based on the granularity given in its per clause.
+     * @param query store query.
+     * @return time to live in milliseconds.
+     */
+    static long getTimeToLiveMillis(String query) {
+        String granularity = getGranularity(query);
+        if (granularity == null) {
+            return DEFAULT_TTL_MILLIS;
+        }
+        switch (granularity) {
+            case "sec":
+            case "second":
+                return SECONDS_TTL_MILLIS;
+            case "min":
+            case "minute":
+                return MINUTES_TTL_MILLIS;
+            case "hour":
+                return HOURS_TTL_MILLIS;
+            case "day":
+                return DAYS_TTL_MILLIS;
+            case "month":
+            case "year":
+                return MONTHS_TTL_MILLIS;
+            default:
+                return DEFAULT_TTL_MILLIS;
+        }
+    }
+
+    private static String getGranularity(String query) {
+        Matcher matcher = GRANULARITY_PATTERN.matcher(query);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ENGLISH) : null;
+    }
+
+    private static long getWithinStepMillis(String granularity) {
+        if (granularity == null) {
+            return 0;
+        }
+        switch (granularity) {
+            case "sec":
+            case "second":
+                return SECOND_STEP_MILLIS;
+            case "min":
+            case "minute":
+                return MINUTE_STEP_MILLIS;
+            case "hour":
+            case "day":
+            case "month":
+            case "year":
+                return TIME_ZONE_STEP_MILLIS;
+            default:
+                return 0;
+        }
+    }
+
+    private static long roundUp(long value, long step) {
+        long remainder = Math.floorMod(value, step);
+        return remainder == 0 ? value : value - remainder + step;
+    }
+
+    /**
+     * Result of a query together with the time it expires.
+     */
+    private static final class CachedResult {
+
+        private final Event[] events;
+        private final long expiryTimeMillis;
+
+        private CachedResult(Event[] events, long expiryTimeMillis) {
+            this.events = events == null ? new Event[0] : events;
+            this.expiryTimeMillis = expiryTimeMillis;
+        }
+
+        private boolean isExpired(long currentTimeMillis) {
+            return currentTimeMillis >= expiryTimeMillis;
+        }
+    }
+}
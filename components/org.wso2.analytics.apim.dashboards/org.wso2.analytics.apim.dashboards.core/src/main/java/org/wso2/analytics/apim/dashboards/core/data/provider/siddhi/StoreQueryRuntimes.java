@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.data.provider.siddhi;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Singleton which holds a Siddhi app runtime for each distinct Siddhi app of the widgets. Widgets only run store
+ * queries against the aggregations and tables defined in their apps, hence a single runtime per app is shared by all
+ * subscriptions instead of creating one for each.
+ * <p>
+ * Runtimes are acquired by data providers and released when they stop. At most {@value #MAX_RUNTIMES} runtimes
+ * are kept, and the least recently used runtimes which no data provider holds are shut down beyond that. Runtimes in
+ * use are never shut down, hence the limit can be exceeded while more apps are in use.
+ */
+public final class StoreQueryRuntimes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreQueryRuntimes.class);
+    private static final int MAX_RUNTIMES = 32;
+    private static final StoreQueryRuntimes instance = new StoreQueryRuntimes();
+
+    // In access order, so that iteration starts from the least recently used runtime. Guarded by this.
+    private final Map<String, RuntimeEntry> runtimes = new LinkedHashMap<>(16, 0.75f, true);
+    private SiddhiManager siddhiManager;
+
+    private StoreQueryRuntimes() {
+
+    }
+
+    /**
+     * This method can be used to get the singleton instance of this class.
+     * @return the singleton instance.
+     */
+    public static StoreQueryRuntimes getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the started runtime of a Siddhi app, creating it on first use. Each call must be followed by a call to
+     * {@link #release(String)} once the runtime is no longer used.
+     * @param siddhiApp Siddhi app of the widget.
+     * @return the runtime.
+     */
+    public SiddhiAppRuntime acquire(String siddhiApp) {
+        RuntimeEntry entry;
+        List<RuntimeEntry> evicted;
+        synchronized (this) {
+            entry = runtimes.computeIfAbsent(siddhiApp, RuntimeEntry::new);
+            entry.references++;
+            evicted = evictIdleRuntimes();
+        }
+        shutdownAll(evicted);
+        try {
+            return entry.getRuntime();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                entry.references--;
+                if (entry.references == 0) {
+                    runtimes.remove(siddhiApp, entry);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Releases a runtime acquired with {@link #acquire(String)}.
+     * @param siddhiApp Siddhi app of the widget.
+     */
+    public void release(String siddhiApp) {
+        List<RuntimeEntry> evicted;
+        synchronized (this) {
+            RuntimeEntry entry = runtimes.get(siddhiApp);
+            if (entry == null || entry.references == 0) {
+                return;
+            }
+            entry.references--;
+            evicted = evictIdleRuntimes();
+        }
+        shutdownAll(evicted);
+    }
+
+    /**
+     * Shuts down all runtimes.
+     */
+    public void shutdown() {
+        List<RuntimeEntry> entries;
+        SiddhiManager manager;
+        synchronized (this) {
+            entries = new ArrayList<>(runtimes.values());
+            runtimes.clear();
+            manager = siddhiManager;
+            siddhiManager = null;
+        }
+        shutdownAll(entries);
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    /**
+     * Removes the least recently used runtimes which are not in use while there are more than the limit.
+     * @return the removed runtimes, to be shut down without holding the lock.
+     */
+    private List<RuntimeEntry> evictIdleRuntimes() {
+        List<RuntimeEntry> evicted = new ArrayList<>();
+        Iterator<RuntimeEntry> iterator = runtimes.values().iterator();
+        while (runtimes.size() > MAX_RUNTIMES && iterator.hasNext()) {
+            RuntimeEntry entry = iterator.next();
+            if (entry.references == 0) {
+                iterator.remove();
+                evicted.add(entry);
+            }
+        }
+        return evicted;
+    }
+
+    private static void shutdownAll(List<RuntimeEntry> entries) {
+        for (RuntimeEntry entry : entries) {
+            entry.shutdown();
+        }
+    }
+
+    private synchronized SiddhiManager getSiddhiManager() {
+        if (siddhiManager == null) {
+            siddhiManager = new SiddhiManager();
+        }
+        return siddhiManager;
+    }
+
+    /**
+     * Runtime of a Siddhi app, created on first use, together with the number of data providers holding it.
+     */
+    private final class RuntimeEntry {
+
+        private final String siddhiApp;
+        // Guarded by the enclosing instance.
+        private int references;
+        // Guarded by this entry.
+        private SiddhiAppRuntime runtime;
+        private boolean shutdown;
+
+        private RuntimeEntry(String siddhiApp) {
+            this.siddhiApp = siddhiApp;
+        }
+
+        private synchronized SiddhiAppRuntime getRuntime() {
+            if (shutdown) {
+                throw new IllegalStateException("Store query runtimes are shut down.");
+            }
+            if (runtime == null) {
+                SiddhiAppRuntime created = getSiddhiManager().createSiddhiAppRuntime(siddhiApp);
+                created.start();
+                runtime = created;
+                LOGGER.debug("Siddhi app runtime '{}' created for store queries.", runtime.getName());
+            }
+            return runtime;
+        }
+
+        private synchronized void shutdown() {
+            shutdown = true;
+            if (runtime != null) {
+                runtime.shutdown();
+                LOGGER.debug("Siddhi app runtime '{}' for store queries shut down.", runtime.getName());
+                runtime = null;
+            }
+        }
+    }
+}
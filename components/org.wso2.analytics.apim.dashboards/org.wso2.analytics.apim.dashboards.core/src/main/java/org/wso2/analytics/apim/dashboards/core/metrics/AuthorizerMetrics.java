@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.analytics.apim.commons.metrics.LatencyHistogram;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Singleton which records the latency of each phase of authorizing and serving widget data requests, the hit ratios
+ * of the caches involved, and the errors of the admin rest api. The metrics are published as an MXBean and through
+ * the dashboard metrics rest api. Latencies are kept over all widgets, and for each widget which passed the
+ * authorization check, up to a maximum number of widgets.
+ */
+public final class AuthorizerMetrics implements AuthorizerMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorizerMetrics.class);
+    private static final String OBJECT_NAME = "org.wso2.analytics.apim.dashboards:type=AuthorizerMetrics";
+    private static final int MAX_WIDGETS = 200;
+    private static final AuthorizerMetrics instance = new AuthorizerMetrics();
+
+    private volatile Recorder recorder = new Recorder();
+    private ObjectName objectName;
+
+    /**
+     * Phases of a widget data request.
+     */
+    public enum Phase {
+        AUTHORIZE,
+        DASHBOARD_LOOKUP,
+        WIDGET_CONFIGURATION,
+        TENANT_ID,
+        QUERY_ASSEMBLY,
+        STORE_QUERY
+    }
+
+    /**
+     * Caches used while serving a widget data request.
+     */
+    public enum CacheType {
+        DASHBOARD_WIDGETS,
+        WIDGET_QUERIES,
+        TENANT_ID,
+        STORE_QUERY_RESULT
+    }
+
+    private AuthorizerMetrics() {
+
+    }
+
+    /**
+     * This method can be used to get the singleton instance of this class.
+     * @return the singleton instance.
+     */
+    public static AuthorizerMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records the latency of a phase.
+     * @param phase the phase.
+     * @param widgetName name of the widget, or null if the widget is not known or not yet authorized.
+     * @param startNanos value of System.nanoTime() when the phase started.
+     */
+    public void recordLatency(Phase phase, String widgetName, long startNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        Recorder current = recorder;
+        current.phases.get(phase).record(micros);
+        if (widgetName != null) {
+            Map<Phase, LatencyHistogram> widgetPhases = current.widgets.get(widgetName);
+            if (widgetPhases == null && current.widgets.size() < MAX_WIDGETS) {
+                widgetPhases = current.widgets.computeIfAbsent(widgetName, name -> newHistograms());
+            }
+            if (widgetPhases != null) {
+                widgetPhases.get(phase).record(micros);
+            }
+        }
+    }
+
+    public void recordCacheHit(CacheType cacheType) {
+        recorder.cacheHits.get(cacheType).increment();
+    }
+
+    public void recordCacheMiss(CacheType cacheType) {
+        recorder.cacheMisses.get(cacheType).increment();
+    }
+
+    public void recordAdminApiError() {
+        recorder.adminApiErrors.increment();
+    }
+
+    public void recordDeniedRequest() {
+        recorder.deniedRequests.increment();
+    }
+
+    @Override
+    public Map<String, PhaseStatistics> getPhaseStatistics() {
+        Map<String, PhaseStatistics> statistics = new LinkedHashMap<>();
+        for (Map.Entry<Phase, LatencyHistogram> entry : recorder.phases.entrySet()) {
+            statistics.put(entry.getKey().name(), PhaseStatistics.of(entry.getValue()));
+        }
+        return statistics;
+    }
+
+    @Override
+    public Map<String, PhaseStatistics> getWidgetPhaseStatistics() {
+        Map<String, PhaseStatistics> statistics = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<Phase, LatencyHistogram>> widget : recorder.widgets.entrySet()) {
+            for (Map.Entry<Phase, LatencyHistogram> entry : widget.getValue().entrySet()) {
+                if (entry.getValue().getCount() > 0) {
+                    statistics.put(widget.getKey() + "/" + entry.getKey().name(),
+                            PhaseStatistics.of(entry.getValue()));
+                }
+            }
+        }
+        return statistics;
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRatios() {
+        Recorder current = recorder;
+        Map<String, Double> ratios = new LinkedHashMap<>();
+        for (CacheType cacheType : CacheType.values()) {
+            long hits = current.cacheHits.get(cacheType).sum();
+            long lookups = hits + current.cacheMisses.get(cacheType).sum();
+            ratios.put(cacheType.name(), lookups == 0 ? 0 : (double) hits / lookups);
+        }
+        return ratios;
+    }
+
+    @Override
+    public long getAdminApiErrorCount() {
+        return recorder.adminApiErrors.sum();
+    }
+
+    @Override
+    public long getDeniedRequestCount() {
+        return recorder.deniedRequests.sum();
+    }
+
+    @Override
+    public void reset() {
+        recorder = new Recorder();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     */
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(this, name);
+            }
+            objectName = name;
+        } catch (JMException e) {
+            LOGGER.warn("Could not register the dashboard authorizer metrics MBean.", e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.debug("Could not unregister the dashboard authorizer metrics MBean.", e);
+        }
+        objectName = null;
+    }
+
+    private static Map<Phase, LatencyHistogram> newHistograms() {
+        Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+        return histograms;
+    }
+
+    /**
+     * Recorded values since the last reset.
+     */
+    private static final class Recorder {
+
+        private final Map<Phase, LatencyHistogram> phases = newHistograms();
+        private final Map<String, Map<Phase, LatencyHistogram>> widgets = new ConcurrentHashMap<>();
+        private final Map<CacheType, LongAdder> cacheHits = new EnumMap<>(CacheType.class);
+        private final Map<CacheType, LongAdder> cacheMisses = new EnumMap<>(CacheType.class);
+        private final LongAdder adminApiErrors = new LongAdder();
+        private final LongAdder deniedRequests = new LongAdder();
+
+        private Recorder() {
+            for (CacheType cacheType : CacheType.values()) {
+                cacheHits.put(cacheType, new LongAdder());
+                cacheMisses.put(cacheType, new LongAdder());
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the latency and cache metrics of widget data requests.
+ */
+public interface AuthorizerMetricsMXBean {
+
+    /**
+     * Returns the latency of each phase over all widgets.
+     * @return statistics keyed by phase name.
+     */
+    Map<String, PhaseStatistics> getPhaseStatistics();
+
+    /**
+     * Returns the latency of each phase of each widget.
+     * @return statistics keyed by widget name and phase name, separated by a slash.
+     */
+    Map<String, PhaseStatistics> getWidgetPhaseStatistics();
+
+    /**
+     * Returns the ratio of lookups served from each cache.
+     * @return hit ratios keyed by cache name.
+     */
+    Map<String, Double> getCacheHitRatios();
+
+    long getAdminApiErrorCount();
+
+    long getDeniedRequestCount();
+
+    /**
+     * Discards all recorded values.
+     */
+    void reset();
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
+import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
+import org.wso2.carbon.analytics.idp.client.core.models.Role;
+import org.wso2.carbon.analytics.msf4j.interceptor.common.AuthenticationInterceptor;
+import org.wso2.carbon.analytics.msf4j.interceptor.common.util.InterceptorConstants;
+import org.wso2.msf4j.Microservice;
+import org.wso2.msf4j.Request;
+import org.wso2.msf4j.interceptor.annotation.RequestInterceptor;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Rest api of the dashboard profile which returns the latency and cache metrics of widget data requests. The same
+ * metrics are available through JMX. Only the users with the admin role can read the metrics.
+ */
+@Component(
+        name = "org.wso2.analytics.apim.dashboards.core.metrics.DashboardMetricsApi",
+        service = Microservice.class,
+        immediate = true
+)
+@Path("/analytics-dashboard/apis/v1.[\\d]+/metrics")
+@RequestInterceptor(AuthenticationInterceptor.class)
+public class DashboardMetricsApi implements Microservice {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DashboardMetricsApi.class);
+    private static final Gson GSON = new Gson();
+
+    private volatile IdPClient idPClient;
+
+    @GET
+    @Path("/widget-requests")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getWidgetRequestMetrics(@Context Request request) {
+        String username = (String) request.getProperty(InterceptorConstants.PROPERTY_USERNAME);
+        if (!isAdmin(username)) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity("User '" + username + "' is not authorized to read the dashboard metrics.").build();
+        }
+        AuthorizerMetrics metrics = AuthorizerMetrics.getInstance();
+        JsonObject body = new JsonObject();
+        body.add("phases", GSON.toJsonTree(metrics.getPhaseStatistics()));
+        body.add("widgetPhases", GSON.toJsonTree(metrics.getWidgetPhaseStatistics()));
+        body.add("cacheHitRatios", GSON.toJsonTree(metrics.getCacheHitRatios()));
+        body.addProperty("adminApiErrors", metrics.getAdminApiErrorCount());
+        body.addProperty("deniedRequests", metrics.getDeniedRequestCount());
+        return Response.ok().entity(GSON.toJson(body)).build();
+    }
+
+    /**
+     * Checks whether the user has the admin role of the identity provider.
+     *
+     * @param username name of the authenticated user
+     * @return true if the user has the admin role
+     */
+    private boolean isAdmin(String username) {
+        IdPClient client = idPClient;
+        if (username == null || client == null) {
+            return false;
+        }
+        try {
+            String adminRole = client.getAdminRole().getDisplayName();
+            for (Role role : client.getUser(username).getRoles()) {
+                if (adminRole.equals(role.getDisplayName())) {
+                    return true;
+                }
+            }
+        } catch (IdPClientException e) {
+            LOGGER.error("Error while checking whether the user '{}' has the admin role.", username, e);
+        }
+        return false;
+    }
+
+    @Reference(
+            name = "IdPClient",
+            service = IdPClient.class,
+            cardinality = ReferenceCardinality.MANDATORY,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetIdPClient"
+    )
+    protected void setIdPClient(IdPClient idPClient) {
+        this.idPClient = idPClient;
+    }
+
+    protected void unsetIdPClient(IdPClient idPClient) {
+        this.idPClient = null;
+    }
+}
@@ -17,7 +17,9 @@
  */
 package org.wso2.analytics.apim.dashboards.theme.config.provider;
 
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
@@ -31,6 +33,7 @@ import org.wso2.carbon.dashboards.core.bean.DashboardConfigurations;
 import org.wso2.carbon.dashboards.core.exception.DashboardException;
 
 import java.io.File;
+import java.nio.file.Paths;
 import java.util.Map;
 
 /**
@@ -45,10 +48,8 @@ public class CustomDashboardThemeConfigProvider implements DashboardThemeConfigP
     private static final Logger LOGGER = LoggerFactory.getLogger(CustomDashboardThemeConfigProvider.class);
     private static final String AT = "@";
 
-    private static final String THEME_DIR = File.separator + "wso2" + File.separator + "dashboard" + File.separator +
-            "deployment" + File.separator + "web-ui-apps" + File.separator + "analytics-dashboard" + File.separator +
-            "public";
-    private static final String IMAGES_DIR = File.separator + "analytics" + File.separator + "images" + File.separator;
+    private static final String[] THEME_DIR = {"wso2", "dashboard", "deployment", "web-ui-apps", "analytics-dashboard",
+            "public"};
     private static final String THEME_URL = "/public/app";
 
     private static final String DEFAULT_IMAGE_DIR = File.separator + "public" + File.separator + "app" +
@@ -63,12 +64,30 @@ public class CustomDashboardThemeConfigProvider implements DashboardThemeConfigP
 
     private IdPClientConfiguration idPClientConfiguration;
     private DashboardConfigurations dashboardConfigurations;
+    private volatile String defaultFaviconUrl;
+    private volatile String defaultLogoUrl;
+    private volatile ThemeAssetIndex themeAssetIndex;
+    private boolean active;
+
+    @Activate
+    protected synchronized void activate() {
+        active = true;
+        startThemeAssetIndex();
+        LOGGER.debug("Dashboard theme config provider '{}' activated.", this.getClass().getName());
+    }
+
+    @Deactivate
+    protected synchronized void deactivate() {
+        active = false;
+        stopThemeAssetIndex();
+        LOGGER.debug("Dashboard theme config provider '{}' deactivated.", this.getClass().getName());
+    }
 
     @Reference(service = ConfigProvider.class,
             cardinality = ReferenceCardinality.MANDATORY,
             policy = ReferencePolicy.DYNAMIC,
             unbind = "unsetConfigProvider")
-    protected void setConfigProvider(ConfigProvider configProvider) {
+    protected synchronized void setConfigProvider(ConfigProvider configProvider) {
         try {
             this.idPClientConfiguration = configProvider.getConfigurationObject(IdPClientConfiguration.class);
             this.dashboardConfigurations = configProvider.getConfigurationObject(DashboardConfigurations.class);
@@ -77,6 +96,14 @@ public class CustomDashboardThemeConfigProvider implements DashboardThemeConfigP
             this.idPClientConfiguration = new IdPClientConfiguration();
             this.dashboardConfigurations = new DashboardConfigurations();
         }
+        String appUrl = getAppUrl();
+        this.defaultFaviconUrl = appUrl + DEFAULT_IMAGE_DIR + DEFAULT_FAVICON_FILE;
+        this.defaultLogoUrl = appUrl + DEFAULT_IMAGE_DIR + DEFAULT_LOGO_FILE;
+        if (active) {
+            // Asset urls and file names depend on the configurations.
+            stopThemeAssetIndex();
+            startThemeAssetIndex();
+        }
     }
 
     protected void unsetConfigProvider(ConfigProvider configProvider) {
@@ -87,42 +114,62 @@ public class CustomDashboardThemeConfigProvider implements DashboardThemeConfigP
     @Override
     public String getFaviconPath(String username) throws DashboardException {
         String tenantDomain = extractTenantDomainFromUserName(username);
-        String faviconPath = File.separator + tenantDomain + IMAGES_DIR +
-                this.dashboardConfigurations.getFaviconFileName();
-
-        File faviconFile = new File(System.getProperty("carbon.home") + THEME_DIR + faviconPath);
-        if (faviconFile.exists()) {
+        ThemeAssetIndex index = this.themeAssetIndex;
+        ThemeAssetIndex.ThemeAsset favicon = index == null ? null : index.getFavicon(tenantDomain);
+        if (favicon != null) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Custom favicon file '{}' returned via '{}' class for user: '{}.'",
-                        faviconPath, this.getClass().getName(), username);
+                        favicon.getUrl(), this.getClass().getName(), username);
             }
-            return getAppUrl() + THEME_URL + faviconPath;
+            return favicon.getUrl();
         } else {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Custom favicon file doesn't exist and falling back to defaults");
             }
-            return getAppUrl() + DEFAULT_IMAGE_DIR + DEFAULT_FAVICON_FILE;
+            return defaultFaviconUrl;
         }
     }
 
     @Override
     public String getLogoPath(String username) throws DashboardException {
         String tenantDomain = extractTenantDomainFromUserName(username);
-        String logoPath = File.separator + tenantDomain + IMAGES_DIR +
-                this.dashboardConfigurations.getLogoFileName();
-
-        File logoFile = new File(System.getProperty("carbon.home") + THEME_DIR + logoPath);
-        if (logoFile.exists()) {
+        ThemeAssetIndex index = this.themeAssetIndex;
+        ThemeAssetIndex.ThemeAsset logo = index == null ? null : index.getLogo(tenantDomain);
+        if (logo != null) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Custom logo file '{}' returned via '{}' class for user: '{}.'",
-                        logoPath, this.getClass().getName(), username);
+                        logo.getUrl(), this.getClass().getName(), username);
             }
-            return getAppUrl() + THEME_URL + logoPath;
+            return logo.getUrl();
         } else {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Custom logo file doesn't exist and falling back to defaults");
             }
-            return getAppUrl() + DEFAULT_IMAGE_DIR + DEFAULT_LOGO_FILE;
+            return defaultLogoUrl;
+        }
+    }
+
+    /**
+     * This method builds the index of the custom favicons and logos of the tenants in the analytics dashboard public
+     * directory, which is kept up to date until it is stopped.
+     */
+    private void startThemeAssetIndex() {
+        String carbonHome = System.getProperty("carbon.home");
+        if (carbonHome == null) {
+            LOGGER.warn("carbon.home is not set. Default theme assets will be used.");
+            return;
+        }
+        ThemeAssetIndex index = new ThemeAssetIndex(Paths.get(carbonHome, THEME_DIR), getAppUrl() + THEME_URL,
+                this.dashboardConfigurations.getFaviconFileName(), this.dashboardConfigurations.getLogoFileName());
+        index.start();
+        this.themeAssetIndex = index;
+    }
+
+    private void stopThemeAssetIndex() {
+        ThemeAssetIndex index = this.themeAssetIndex;
+        this.themeAssetIndex = null;
+        if (index != null) {
+            index.stop();
         }
     }
 
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.theme.config.provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index of the custom favicon and logo of each tenant, under
+ * {@code <public directory>/<tenant domain>/analytics/images}. The index is built once and kept up to date with a
+ * watch service, so resolving the theme assets of a user does not touch the file system. Since file system events are
+ * not delivered for changes made by other nodes on shared file systems such as NFS, the whole index is also rebuilt
+ * periodically.
+ */
+final class ThemeAssetIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThemeAssetIndex.class);
+    private static final String ANALYTICS_DIR = "analytics";
+    private static final String IMAGES_DIR = "images";
+    private static final int IMAGES_DIR_DEPTH = 3;
+    private static final long RESCAN_INTERVAL_MINUTES = 5;
+    private static final int CONTENT_HASH_BYTES = 8;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path publicDir;
+    private final String assetUrlPrefix;
+    private final String faviconFileName;
+    private final String logoFileName;
+    private final Map<String, TenantAssets> tenantAssets = new ConcurrentHashMap<>();
+    private volatile WatchService watchService;
+    private Thread watcherThread;
+
+    /**
+     * @param publicDir public directory of the analytics dashboard web app
+     * @param assetUrlPrefix url under which the public directory is served
+     * @param faviconFileName file name of the custom favicons
+     * @param logoFileName file name of the custom logos
+     */
+    ThemeAssetIndex(Path publicDir, String assetUrlPrefix, String faviconFileName, String logoFileName) {
+        this.publicDir = publicDir;
+        this.assetUrlPrefix = assetUrlPrefix;
+        this.faviconFileName = faviconFileName;
+        this.logoFileName = logoFileName;
+    }
+
+    /**
+     * Builds the index and starts watching the public directory for changes.
+     */
+    synchronized void start() {
+        if (!Files.isDirectory(publicDir)) {
+            LOGGER.warn("Dashboard public directory '{}' does not exist. Default theme assets will be used.",
+                    publicDir);
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            register(publicDir);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot watch the dashboard public directory '{}'. Custom theme assets will be refreshed every "
+                    + RESCAN_INTERVAL_MINUTES + " minutes.", publicDir, e);
+            closeWatchService();
+        }
+        rebuild();
+        watcherThread = new Thread(this::watch, "dashboard-theme-asset-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Stops watching the public directory.
+     */
+    synchronized void stop() {
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+            watcherThread = null;
+        }
+        closeWatchService();
+        tenantAssets.clear();
+    }
+
+    /**
+     * Returns the custom favicon of a tenant.
+     * @param tenantDomain tenant domain
+     * @return the favicon, or null if the tenant has no custom favicon
+     */
+    ThemeAsset getFavicon(String tenantDomain) {
+        TenantAssets assets = tenantAssets.get(tenantDomain);
+        return assets == null ? null : assets.favicon;
+    }
+
+    /**
+     * Returns the custom logo of a tenant.
+     * @param tenantDomain tenant domain
+     * @return the logo, or null if the tenant has no custom logo
+     */
+    ThemeAsset getLogo(String tenantDomain) {
+        TenantAssets assets = tenantAssets.get(tenantDomain);
+        return assets == null ? null : assets.logo;
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchService service = watchService;
+            WatchKey key;
+            try {
+                if (service == null) {
+                    TimeUnit.MINUTES.sleep(RESCAN_INTERVAL_MINUTES);
+                    key = null;
+                } else {
+                    key = service.poll(RESCAN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            if (key == null) {
+                rebuild();
+                continue;
+            }
+            Path dir = (Path) key.watchable();
+            Set<String> changedTenants = new HashSet<>();
+            boolean overflowed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflowed = true;
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        register(changed);
+                    } catch (IOException e) {
+                        LOGGER.warn("Cannot watch the theme directory '{}'.", changed, e);
+                    }
+                }
+                Path relativePath = publicDir.relativize(changed);
+                if (relativePath.getNameCount() > 0 && !relativePath.toString().isEmpty()) {
+                    changedTenants.add(relativePath.getName(0).toString());
+                }
+            }
+            key.reset();
+            if (overflowed) {
+                rebuild();
+            } else {
+                changedTenants.forEach(this::indexTenant);
+            }
+        }
+    }
+
+    /**
+     * Registers the given directory, and the directories under it which can lead to the images directory of a tenant,
+     * in the watch service.
+     */
+    private void register(Path dir) throws IOException {
+        WatchService service = watchService;
+        if (service == null) {
+            return;
+        }
+        Path relativePath = publicDir.relativize(dir);
+        int depth = relativePath.toString().isEmpty() ? 0 : relativePath.getNameCount();
+        if (depth > IMAGES_DIR_DEPTH || (depth == 2 && !ANALYTICS_DIR.equals(relativePath.getName(1).toString()))
+                || (depth == 3 && !IMAGES_DIR.equals(relativePath.getName(2).toString()))) {
+            return;
+        }
+        dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        if (depth < IMAGES_DIR_DEPTH) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isDirectory)) {
+                for (Path child : children) {
+                    register(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes all tenant directories again, and watches the ones created since the last scan.
+     */
+    private void rebuild() {
+        Set<String> tenants = new HashSet<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(publicDir, Files::isDirectory)) {
+            for (Path child : children) {
+                tenants.add(child.getFileName().toString());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read the dashboard public directory '{}'.", publicDir, e);
+            return;
+        }
+        try {
+            register(publicDir);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot watch the dashboard public directory '{}'.", publicDir, e);
+        }
+        tenantAssets.keySet().retainAll(tenants);
+        tenants.forEach(this::indexTenant);
+    }
+
+    private void indexTenant(String tenantDomain) {
+        Path imagesDir = publicDir.resolve(tenantDomain).resolve(ANALYTICS_DIR).resolve(IMAGES_DIR);
+        ThemeAsset favicon = loadAsset(tenantDomain, imagesDir, faviconFileName);
+        ThemeAsset logo = loadAsset(tenantDomain, imagesDir, logoFileName);
+        if (favicon == null && logo == null) {
+            tenantAssets.remove(tenantDomain);
+        } else {
+            tenantAssets.put(tenantDomain, new TenantAssets(favicon, logo));
+        }
+        LOGGER.debug("Theme assets of tenant '{}' indexed.", tenantDomain);
+    }
+
+    private ThemeAsset loadAsset(String tenantDomain, Path imagesDir, String fileName) {
+        if (fileName == null || fileName.isEmpty()) {
+            return null;
+        }
+        Path file = imagesDir.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            String contentHash = hash(Files.readAllBytes(file));
+            String url = assetUrlPrefix + "/" + tenantDomain + "/" + ANALYTICS_DIR + "/" + IMAGES_DIR + "/" + fileName
+                    + "?v=" + contentHash;
+            return new ThemeAsset(url, contentHash);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read the theme asset '{}'.", file, e);
+            return null;
+        }
+    }
+
+    private synchronized void closeWatchService() {
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error while closing the theme asset watch service.", e);
+            }
+        }
+    }
+
+    private static String hash(byte[] content) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM.", e);
+        }
+        char[] hex = new char[CONTENT_HASH_BYTES * 2];
+        for (int i = 0; i < CONTENT_HASH_BYTES; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Custom theme asset of a tenant.
+     */
+    static final class ThemeAsset {
+
+        private final String url;
+        private final String contentHash;
+
+        private ThemeAsset(String url, String contentHash) {
+            this.url = url;
+            this.contentHash = contentHash;
+        }
+
+        /**
+         * @return url of the asset, versioned by its content hash so it can be cached by browsers indefinitely
+         */
+        String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return hash of the content of the asset, which can be used as its entity tag
+         */
+        String getContentHash() {
+            return contentHash;
+        }
+    }
+
+    private static final class TenantAssets {
+
+        private final ThemeAsset favicon;
+        private final ThemeAsset logo;
+
+        private TenantAssets(ThemeAsset favicon, ThemeAsset logo) {
+            this.favicon = favicon;
+            this.logo = logo;
+        }
+    }
+}
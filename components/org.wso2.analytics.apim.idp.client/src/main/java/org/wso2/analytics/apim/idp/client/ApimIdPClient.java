@@ -19,6 +19,10 @@ package org.wso2.analytics.apim.idp.client;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.Gson;
 import feign.Response;
 import feign.gson.GsonDecoder;
@@ -30,6 +34,11 @@ import org.wso2.analytics.apim.idp.client.dto.CustomUrlInfoDevPortalDTO;
 import org.wso2.analytics.apim.idp.client.dto.DCRClientInfo;
 import org.wso2.analytics.apim.idp.client.dto.DCRClientResponse;
 import org.wso2.analytics.apim.idp.client.dto.DCRError;
+import org.wso2.analytics.apim.idp.client.dto.JwtClaimsDTO;
+import org.wso2.analytics.apim.idp.client.http.AsyncOAuth2ServiceStubs;
+import org.wso2.analytics.apim.idp.client.jwt.JwtTokenValidator;
+import org.wso2.analytics.apim.idp.client.token.ScopeRoles;
+import org.wso2.analytics.apim.idp.client.token.SessionCacheEntry;
 import org.wso2.analytics.apim.idp.client.token.TokenData;
 import org.wso2.analytics.apim.idp.client.token.TokenDataHolder;
 import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
@@ -50,6 +59,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.ANY_TENANT_DOMAIN_SCOPE_POSTFIX;
@@ -73,10 +89,22 @@ import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.UNDERSCO
 public class ApimIdPClient extends ExternalIdPClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(ApimIdPClient.class);
-    private static final Object OAuthAppCreationLock = new Object();
+    private static final int SCOPE_ROLES_CACHE_SIZE = 10000;
+    // Tenant domains come from the requests, hence the tenant caches are bounded and drop tenants which are not used.
+    private static final int TENANT_INFO_CACHE_SIZE = 1000;
+    private static final long TENANT_INFO_CACHE_EXPIRY_MINUTES = 60;
+    private static final ExecutorService TENANT_INFO_REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("apim-idp-tenant-info-refresh-%d").setDaemon(true).build());
     private final String portalAppContext;
     private final String brAppContext;
-    private Map<String, CustomUrlInfo> customUrlInfoMap = new HashMap<>();
+    private final Map<String, Object> systemAppCreationLocks = new ConcurrentHashMap<>();
+    private LoadingCache<String, CustomUrlInfo> customUrlInfoCache;
+    private LoadingCache<SystemAppKey, OAuthApplicationInfo> systemAppCache;
+    private volatile boolean systemAppsTableVerified;
+    // Roles derived from a scope string, keyed by "<tenant domain> <scopes>".
+    private final Cache<String, ScopeRoles> scopeRolesCache = CacheBuilder.newBuilder()
+            .maximumSize(SCOPE_ROLES_CACHE_SIZE)
+            .build();
 
     private DCRMServiceStub dcrmServiceStub;
     private OAuth2ServiceStubs oAuth2ServiceStubs;
@@ -88,21 +116,30 @@ public class ApimIdPClient extends ExternalIdPClient {
     private String adminScopeName;
     private String allScopes;
     private OAuthAppDAO oAuthAppDAO;
-    private Cache<String, ExternalSession> tokenCache;
+    private Cache<String, SessionCacheEntry> tokenCache;
+    private long cacheTimeoutMillis;
+    private long negativeCacheTimeoutMillis;
     private boolean isSSOEnabled;
     private String ssoLogoutURL;
     private boolean isHostnameVerifierEnabled;
     private ApimAdminApiClient apimAdminApiClient;
+    private JwtTokenValidator jwtTokenValidator;
+    private AsyncOAuth2ServiceStubs asyncOAuth2ServiceStubs;
+    // Asynchronous validations in progress, so that concurrent requests with the same token share one call.
+    private final Map<String, CompletableFuture<SessionCacheEntry>> inFlightValidations = new ConcurrentHashMap<>();
 
     // Here the user given context are mapped to the OAuthApp Info.
     private Map<String, OAuthApplicationInfo> oAuthAppInfoMap;
 
     public ApimIdPClient(String adminServiceUsername, String baseUrl, OAuthAppDAO oAuthAppDAO, String authorizeEndpoint,
                          String grantType, String adminScopeName, String allScopes,
-                         Map<String, OAuthApplicationInfo> oAuthAppInfoMap, int cacheTimeout, String kmUserName,
+                         Map<String, OAuthApplicationInfo> oAuthAppInfoMap, int cacheTimeout,
+                         int negativeCacheTimeout, int tenantInfoRefreshInterval, String kmUserName,
                          DCRMServiceStub dcrmServiceStub, OAuth2ServiceStubs oAuth2ServiceStubs,
                          boolean isSSOEnabled, String ssoLogoutURL, boolean isHostnameVerifierEnabled,
-                         ApimAdminApiClient apimAdminApiClient, String portalAppContext, String brAppContext) {
+                         ApimAdminApiClient apimAdminApiClient, JwtTokenValidator jwtTokenValidator,
+                         AsyncOAuth2ServiceStubs asyncOAuth2ServiceStubs, String portalAppContext,
+                         String brAppContext) {
         super(baseUrl, authorizeEndpoint, grantType, null, adminScopeName, oAuthAppInfoMap,
                 cacheTimeout, null, dcrmServiceStub, oAuth2ServiceStubs, null, null, isSSOEnabled, ssoLogoutURL);
         this.adminServiceUsername = adminServiceUsername;
@@ -116,26 +153,49 @@ public class ApimIdPClient extends ExternalIdPClient {
         this.oAuthAppDAO = oAuthAppDAO;
         this.dcrmServiceStub = dcrmServiceStub;
         this.oAuth2ServiceStubs = oAuth2ServiceStubs;
+        // Entries are written with their own expiry time, which is never later than the configured cache timeout.
         this.tokenCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(cacheTimeout, TimeUnit.SECONDS)
                 .build();
+        this.cacheTimeoutMillis = TimeUnit.SECONDS.toMillis(cacheTimeout);
+        this.negativeCacheTimeoutMillis = TimeUnit.SECONDS.toMillis(negativeCacheTimeout);
+        // Custom url info and system apps rarely change. After the refresh interval the cached value keeps being
+        // served while it is reloaded in the background, so logins do not wait on the admin API or the database.
+        this.customUrlInfoCache = CacheBuilder.newBuilder()
+                .maximumSize(TENANT_INFO_CACHE_SIZE)
+                .expireAfterAccess(TENANT_INFO_CACHE_EXPIRY_MINUTES, TimeUnit.MINUTES)
+                .refreshAfterWrite(tenantInfoRefreshInterval, TimeUnit.SECONDS)
+                .build(CacheLoader.asyncReloading(new CacheLoader<String, CustomUrlInfo>() {
+                    @Override
+                    public CustomUrlInfo load(String tenantDomain) throws IdPClientException {
+                        CustomUrlInfo customUrlInfo = getCustomUrlInfo(tenantDomain);
+                        if (customUrlInfo == null) {
+                            throw new IdPClientException("Unable to retrieve custom url info from APIM Admin API");
+                        }
+                        return customUrlInfo;
+                    }
+                }, TENANT_INFO_REFRESH_EXECUTOR));
+        this.systemAppCache = CacheBuilder.newBuilder()
+                .maximumSize(TENANT_INFO_CACHE_SIZE)
+                .expireAfterAccess(TENANT_INFO_CACHE_EXPIRY_MINUTES, TimeUnit.MINUTES)
+                .refreshAfterWrite(tenantInfoRefreshInterval, TimeUnit.SECONDS)
+                .build(CacheLoader.asyncReloading(new CacheLoader<SystemAppKey, OAuthApplicationInfo>() {
+                    @Override
+                    public OAuthApplicationInfo load(SystemAppKey key) throws IdPClientException {
+                        return loadSystemApp(key);
+                    }
+                }, TENANT_INFO_REFRESH_EXECUTOR));
         this.isSSOEnabled = isSSOEnabled;
         this.ssoLogoutURL = ssoLogoutURL;
         this.isHostnameVerifierEnabled = isHostnameVerifierEnabled;
         this.apimAdminApiClient = apimAdminApiClient;
+        this.jwtTokenValidator = jwtTokenValidator;
+        this.asyncOAuth2ServiceStubs = asyncOAuth2ServiceStubs;
         this.portalAppContext = portalAppContext;
         this.brAppContext = brAppContext;
     }
 
     public void init(String kmUserName, CustomUrlInfo customUrlInfo, String appContext) throws IdPClientException {
-        if (!isHostnameVerifierEnabled) {
-            System.setProperty("httpclient.hostnameVerifier", "AllowAll");
-        }
-        this.oAuthAppDAO.init();
-        if (!this.oAuthAppDAO.systemAppsTableExists()) {
-            throw new IdPClientException(
-                    OAUTHAPP_TABLE + " does not exist in the " + this.oAuthAppDAO.getDatabaseName() + " database.");
-        }
         String clientName = getClientName(appContext);
         String tenantDomain = SUPER_TENANT_DOMAIN;
         String appOwner = kmUserName;
@@ -147,24 +207,101 @@ public class ApimIdPClient extends ExternalIdPClient {
             appOwner = customUrlInfo.getTenantAdminUsername();
         }
 
-        OAuthApplicationInfo persistedOAuthApp = this.oAuthAppDAO.getOAuthApp(clientName, tenantDomain);
-        if (persistedOAuthApp == null) {
-            synchronized (OAuthAppCreationLock) {
-                persistedOAuthApp = this.oAuthAppDAO.getOAuthApp(clientName, tenantDomain);
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("System app not found in database for client name: " + clientName + " tenant : " +
-                            tenantDomain + ". Hence creating service provider via DCR.");
-                }
-                if (persistedOAuthApp == null) {
-                    registerApplication(appContext, clientName, appOwner, customUrlInfo);
+        OAuthApplicationInfo oAuthApplicationInfo;
+        try {
+            oAuthApplicationInfo = this.systemAppCache.get(
+                    new SystemAppKey(appContext, clientName, tenantDomain, appOwner, customUrlInfo));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IdPClientException) {
+                throw (IdPClientException) e.getCause();
+            }
+            throw new IdPClientException("Error occurred while retrieving the system app '" + clientName
+                    + "' of tenant '" + tenantDomain + "'.", e.getCause());
+        }
+        if (isCustomUrlApplicable) {
+            appContext = appContext + "_" + customUrlInfo.getTenantDomain();
+        }
+        this.oAuthAppInfoMap.put(appContext, oAuthApplicationInfo);
+    }
+
+    /**
+     * Loads the custom url info of the super tenant and the system apps of the dashboard, portal and business rules
+     * contexts in the background, so that the first logins after startup are served from the cache.
+     */
+    public void warmUp() {
+        TENANT_INFO_REFRESH_EXECUTOR.submit(() -> {
+            try {
+                CustomUrlInfo customUrlInfo = getCachedCustomUrlInfo(SUPER_TENANT_DOMAIN);
+                for (String appContext : new String[]{ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT,
+                        this.portalAppContext, this.brAppContext}) {
+                    init(this.kmUserName, customUrlInfo, appContext);
                 }
+            } catch (IdPClientException e) {
+                LOG.warn("Unable to preload the system apps. They will be loaded on the first login.", e);
             }
-        } else {
-            if (isCustomUrlApplicable) {
-                appContext = appContext + "_" + customUrlInfo.getTenantDomain();
+        });
+    }
+
+    /**
+     * Verifies that the system apps table exists. This is done only once, after which the DAO is not re-initialized.
+     * @throws IdPClientException thrown when the table does not exist or the data source cannot be initialized
+     */
+    private void verifySystemAppsTable() throws IdPClientException {
+        if (systemAppsTableVerified) {
+            return;
+        }
+        synchronized (this) {
+            if (systemAppsTableVerified) {
+                return;
+            }
+            if (!isHostnameVerifierEnabled) {
+                System.setProperty("httpclient.hostnameVerifier", "AllowAll");
+            }
+            this.oAuthAppDAO.init();
+            if (!this.oAuthAppDAO.systemAppsTableExists()) {
+                throw new IdPClientException(
+                        OAUTHAPP_TABLE + " does not exist in the " + this.oAuthAppDAO.getDatabaseName() + " database.");
+            }
+            systemAppsTableVerified = true;
+        }
+    }
+
+    /**
+     * Retrieves the system app from the database, creating it via DCR if it does not exist yet.
+     * @param key identifies the system app
+     * @return OAuth application info of the system app
+     * @throws IdPClientException thrown when the app cannot be retrieved or created
+     */
+    private OAuthApplicationInfo loadSystemApp(SystemAppKey key) throws IdPClientException {
+        verifySystemAppsTable();
+        OAuthApplicationInfo persistedOAuthApp = this.oAuthAppDAO.getOAuthApp(key.clientName, key.tenantDomain);
+        if (persistedOAuthApp != null) {
+            return persistedOAuthApp;
+        }
+        Object lock = systemAppCreationLocks.computeIfAbsent(key.clientName + AT + key.tenantDomain,
+                k -> new Object());
+        synchronized (lock) {
+            persistedOAuthApp = this.oAuthAppDAO.getOAuthApp(key.clientName, key.tenantDomain);
+            if (persistedOAuthApp != null) {
+                return persistedOAuthApp;
             }
-            this.oAuthAppInfoMap.put(appContext, persistedOAuthApp);
-            this.customUrlInfoMap.put(customUrlInfo.getTenantDomain(), customUrlInfo);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("System app not found in database for client name: " + key.clientName + " tenant : " +
+                        key.tenantDomain + ". Hence creating service provider via DCR.");
+            }
+            return registerApplication(key.appContext, key.clientName, key.appOwner, key.customUrlInfo);
+        }
+    }
+
+    private CustomUrlInfo getCachedCustomUrlInfo(String tenantDomain) throws IdPClientException {
+        try {
+            return this.customUrlInfoCache.get(tenantDomain);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IdPClientException) {
+                throw (IdPClientException) e.getCause();
+            }
+            throw new IdPClientException("Error occurred while fetching custom url info for tenant :" + tenantDomain,
+                    e.getCause());
         }
     }
 
@@ -188,16 +325,7 @@ public class ApimIdPClient extends ExternalIdPClient {
     @Override
     public List<Role> getAllRolesOfTenant(String username) throws IdPClientException {
         String tenantDomain = extractTenantDomainFromUserName(username);
-        String[] scopeList = this.allScopes.split(SPACE);
-        ArrayList<String> newScopes = new ArrayList<>();
-        for (String scope: scopeList) {
-            if (!scope.equalsIgnoreCase(OPEN_ID_SCOPE) && !scope.equalsIgnoreCase(API_VIEW_SCOPE)
-                    && !scope.equalsIgnoreCase(SUBSCRIBE_SCOPE)) {
-                newScopes.add(scope + ANY_TENANT_DOMAIN_SCOPE_POSTFIX);
-                newScopes.add(scope + UNDERSCORE + tenantDomain);
-            }
-        }
-        return getRolesFromArray(newScopes.toArray(new String[0]));
+        return getScopeRoles(this.allScopes, tenantDomain).getRoles();
     }
 
     @Override
@@ -222,29 +350,64 @@ public class ApimIdPClient extends ExternalIdPClient {
     @Override
     public User getUser(String name) throws IdPClientException {
         String tenantDomain = extractTenantDomainFromUserName(name);
-        TokenData tokenData = TokenDataHolder.getInstance().getTokenMap().get(name);
+        TokenData tokenData = TokenDataHolder.getInstance().getTokenData(name);
         ArrayList<Role> roles;
         Map<String, String> properties = new HashMap<>();
-        if (tokenData == null) {
+        if (tokenData == null || tokenData.getScopes() == null) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Cannot find the token data for the user: " + name + " in the token data map. Hence, cannot" +
                         " retrieve user scopes. Empty array returned for roles.");
             }
             roles = new ArrayList<>();
         } else {
-            String scopes = tokenData.getScopes();
-            String[] scopeList = scopes.split(SPACE);
-            ArrayList<String> newScopes = new ArrayList<>();
-            for (String scope: scopeList) {
-                if (!scope.equalsIgnoreCase(OPEN_ID_SCOPE) && !scope.equalsIgnoreCase(API_VIEW_SCOPE)
-                        && !scope.equalsIgnoreCase(SUBSCRIBE_SCOPE)) {
-                    newScopes.add(scope + ANY_TENANT_DOMAIN_SCOPE_POSTFIX);
-                    newScopes.add(scope + UNDERSCORE + tenantDomain);
+            roles = new ArrayList<>(getScopeRoles(tokenData.getScopes(), tenantDomain).getRoles());
+        }
+        return new User(name, properties, roles);
+    }
+
+    /**
+     * Checks whether the current token of the user grants the given role, without building the user's role list.
+     * @param name username with the tenant domain
+     * @param roleName display name of the role, e.g. "apim_analytics:admin_any"
+     * @return true if the user has the role
+     * @throws IdPClientException thrown when the tenant domain cannot be extracted from the username
+     */
+    public boolean hasRole(String name, String roleName) throws IdPClientException {
+        String tenantDomain = extractTenantDomainFromUserName(name);
+        TokenData tokenData = TokenDataHolder.getInstance().getTokenData(name);
+        return tokenData != null && tokenData.getScopes() != null
+                && getScopeRoles(tokenData.getScopes(), tenantDomain).hasRole(roleName);
+    }
+
+    /**
+     * Returns the roles of the given scopes in the tenant. The roles are computed once per scope string and tenant
+     * and shared afterwards.
+     * @param scopes space separated scopes
+     * @param tenantDomain tenant domain of the user
+     * @return the roles
+     * @throws IdPClientException thrown when the scopes do not contain any role
+     */
+    private ScopeRoles getScopeRoles(String scopes, String tenantDomain) throws IdPClientException {
+        try {
+            return scopeRolesCache.get(tenantDomain + SPACE + scopes, () -> {
+                String[] scopeList = scopes.split(SPACE);
+                ArrayList<String> newScopes = new ArrayList<>();
+                for (String scope: scopeList) {
+                    if (!scope.equalsIgnoreCase(OPEN_ID_SCOPE) && !scope.equalsIgnoreCase(API_VIEW_SCOPE)
+                            && !scope.equalsIgnoreCase(SUBSCRIBE_SCOPE)) {
+                        newScopes.add(scope + ANY_TENANT_DOMAIN_SCOPE_POSTFIX);
+                        newScopes.add(scope + UNDERSCORE + tenantDomain);
+                    }
                 }
+                return new ScopeRoles(getRolesFromArray(newScopes.toArray(new String[0])));
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IdPClientException) {
+                throw (IdPClientException) e.getCause();
             }
-            roles = getRolesFromArray(newScopes.toArray(new String[0]));
+            throw new IdPClientException("Error occurred while getting the roles of scopes '" + scopes + "'.",
+                    e.getCause());
         }
-        return new User(name, properties, roles);
     }
 
     /**
@@ -291,11 +454,8 @@ public class ApimIdPClient extends ExternalIdPClient {
     public Map<String, String> login(Map<String, String> properties) throws IdPClientException {
 
         Map<String, String> returnProperties = new HashMap<>();
-        CustomUrlInfo customUrlInfo = getCustomUrlInfo(properties.getOrDefault(IdPClientConstants.DOMAIN,
+        CustomUrlInfo customUrlInfo = getCachedCustomUrlInfo(properties.getOrDefault(IdPClientConstants.DOMAIN,
                 SUPER_TENANT_DOMAIN));
-        if (customUrlInfo == null) {
-            throw new IdPClientException("Unable to retrieve custom url info from APIM Admin API");
-        }
         String grantType = properties.getOrDefault(IdPClientConstants.GRANT_TYPE, this.grantType);
         String oAuthAppContext = properties.get(IdPClientConstants.APP_NAME);
         if (!IdPClientConstants.REFRESH_GRANT_TYPE.equals(grantType)) {
@@ -381,8 +541,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                         tokenValidityPeriod
                 );
                 TokenDataHolder.getInstance().addTokenDataToMap(username, tokenData);
-                tokenCache.put(oAuth2TokenInfo.getAccessToken(),
-                        new ExternalSession(username, oAuth2TokenInfo.getAccessToken()));
+                cacheSession(oAuth2TokenInfo.getAccessToken(), username, tokenValidityPeriod);
                 return returnProperties;
             } catch (IOException e) {
                 throw new IdPClientException("Error occurred while parsing token response for user. Response: '" +
@@ -411,9 +570,9 @@ public class ApimIdPClient extends ExternalIdPClient {
         if (!this.oAuthAppInfoMap.containsKey(oAuthAppContext)) {
             oAuthAppContext = ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT;
         }
-        ExternalSession session = tokenCache.getIfPresent(token);
+        SessionCacheEntry cacheEntry = getCacheEntry(token);
         String username;
-        if (session == null) {
+        if (cacheEntry == null || !cacheEntry.isActive()) {
             try {
                 OAuth2IntrospectionResponse introspectResponse = getIntrospectResponse(token);
                 username = introspectResponse.getUsername();
@@ -421,12 +580,15 @@ public class ApimIdPClient extends ExternalIdPClient {
                 throw new IdPClientException("Error occurred while introspecting the token '" + token + "'.", e);
             }
         } else {
-            username = session.getUserName();
+            username = cacheEntry.getSession().getUserName();
         }
         TokenDataHolder.getInstance().removeTokenDataFromMap(username);
         tokenCache.invalidate(token);
+        if (jwtTokenValidator != null) {
+            jwtTokenValidator.revoke(token);
+        }
 
-        CustomUrlInfo customUrlInfo = customUrlInfoMap.get(tenantDomain);
+        CustomUrlInfo customUrlInfo = customUrlInfoCache.getIfPresent(tenantDomain);
         String baseUrl = this.baseUrl;
         String ssoLogoutURL = this.ssoLogoutURL;
         boolean isCustomUrlApplicable = customUrlInfo != null && customUrlInfo.isEnabled() &&
@@ -478,7 +640,7 @@ public class ApimIdPClient extends ExternalIdPClient {
         OAuthApplicationInfo oAuthApplicationInfo;
         String baseUrl;
         String tenantDomain = properties.getOrDefault(IdPClientConstants.DOMAIN, SUPER_TENANT_DOMAIN);
-        CustomUrlInfo customUrlInfo = customUrlInfoMap.get(tenantDomain);
+        CustomUrlInfo customUrlInfo = customUrlInfoCache.getIfPresent(tenantDomain);
         if (customUrlInfo != null && customUrlInfo.isEnabled() &&
                 oAuthAppContext.equals(this.portalAppContext)) {
             oAuthApplicationInfo = this.oAuthAppInfoMap.get(oAuthAppContext + "_" + tenantDomain);
@@ -529,8 +691,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                     }
                 }
                 if (authUser != null) {
-                    tokenCache.put(oAuth2TokenInfo.getAccessToken(),
-                            new ExternalSession(authUser, oAuth2TokenInfo.getAccessToken()));
+                    cacheSession(oAuth2TokenInfo.getAccessToken(), authUser, tokenValidityPeriod);
                     TokenData tokenData = new TokenData(
                             oAuth2TokenInfo.getAccessToken(),
                             oAuth2TokenInfo.getScope(),
@@ -558,16 +719,190 @@ public class ApimIdPClient extends ExternalIdPClient {
 
     @Override
     public String authenticate(String token) throws AuthenticationException, IdPClientException {
-        ExternalSession session = tokenCache.getIfPresent(token);
-        if (session != null) {
-            return session.getUserName();
-        }
-        OAuth2IntrospectionResponse introspectResponse = getIntrospectResponse(token);
-        String username = introspectResponse.getUsername();
-        tokenCache.put(token, new ExternalSession(username, token));
-        TokenData tokenData = new TokenData(token, introspectResponse.getScope(), introspectResponse.getExp());
+        SessionCacheEntry cacheEntry = getCacheEntry(token);
+        if (cacheEntry == null) {
+            try {
+                // Concurrent misses for the same token wait for a single introspection call.
+                cacheEntry = tokenCache.get(token, () -> introspectToken(token));
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                if (e.getCause() instanceof IdPClientException) {
+                    throw (IdPClientException) e.getCause();
+                }
+                throw new IdPClientException("Error occurred while authenticating token '" + token + "'.",
+                        e.getCause());
+            }
+        }
+        if (!cacheEntry.isActive()) {
+            throw new AuthenticationException("The token is not active.");
+        }
+        return cacheEntry.getSession().getUserName();
+    }
+
+    /**
+     * Asynchronous variant of {@link #authenticate(String)}. When the pooled http client is not enabled, the token is
+     * validated on the calling thread.
+     * @param token access token
+     * @return future of the username, which completes exceptionally with an AuthenticationException if the token is
+     * not active, or with an IdPClientException if it could not be validated
+     */
+    public CompletableFuture<String> authenticateAsync(String token) {
+        if (asyncOAuth2ServiceStubs == null) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            try {
+                future.complete(authenticate(token));
+            } catch (AuthenticationException | IdPClientException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+        SessionCacheEntry cacheEntry = getCacheEntry(token);
+        CompletableFuture<SessionCacheEntry> future;
+        if (cacheEntry != null) {
+            future = CompletableFuture.completedFuture(cacheEntry);
+        } else {
+            future = inFlightValidations.get(token);
+            if (future == null) {
+                CompletableFuture<SessionCacheEntry> validation = new CompletableFuture<>();
+                future = inFlightValidations.putIfAbsent(token, validation);
+                if (future == null) {
+                    future = validation;
+                    validateTokenAsync(token, validation);
+                }
+            }
+        }
+        return future.thenApply(entry -> {
+            if (!entry.isActive()) {
+                throw new CompletionException(new AuthenticationException("The token is not active."));
+            }
+            return entry.getSession().getUserName();
+        });
+    }
+
+    private void validateTokenAsync(String token, CompletableFuture<SessionCacheEntry> validation) {
+        validation.whenComplete((entry, throwable) -> {
+            if (entry != null) {
+                tokenCache.put(token, entry);
+            }
+            inFlightValidations.remove(token, validation);
+        });
+        SessionCacheEntry jwtCacheEntry = validateJwt(token);
+        if (jwtCacheEntry != null) {
+            validation.complete(jwtCacheEntry);
+            return;
+        }
+        asyncOAuth2ServiceStubs.introspectAccessToken(token).whenComplete((introspectResponse, throwable) -> {
+            if (throwable == null) {
+                if (jwtTokenValidator != null) {
+                    jwtTokenValidator.confirm(token);
+                }
+                validation.complete(createSessionCacheEntry(token, introspectResponse.getUsername(),
+                        introspectResponse.getScope(), introspectResponse.getExp()));
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof AuthenticationException) {
+                validation.complete(
+                        SessionCacheEntry.inactive(System.currentTimeMillis() + negativeCacheTimeoutMillis));
+            } else {
+                validation.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * Returns the cache entry of the token, discarding it if it has passed its own expiry time.
+     * @param token access token
+     * @return the cache entry, or null if the token is not cached
+     */
+    private SessionCacheEntry getCacheEntry(String token) {
+        SessionCacheEntry cacheEntry = tokenCache.getIfPresent(token);
+        if (cacheEntry != null && cacheEntry.isExpired(System.currentTimeMillis())) {
+            tokenCache.asMap().remove(token, cacheEntry);
+            return null;
+        }
+        return cacheEntry;
+    }
+
+    /**
+     * Validates the token and creates its cache entry. JWT access tokens signed by the key manager are validated
+     * locally, other tokens are introspected. Inactive tokens are cached for the negative cache timeout.
+     * @param token access token
+     * @return the cache entry
+     * @throws IdPClientException thrown when an error occurred when performing introspect
+     */
+    private SessionCacheEntry introspectToken(String token) throws IdPClientException {
+        SessionCacheEntry jwtCacheEntry = validateJwt(token);
+        if (jwtCacheEntry != null) {
+            return jwtCacheEntry;
+        }
+        OAuth2IntrospectionResponse introspectResponse;
+        try {
+            introspectResponse = getIntrospectResponse(token);
+        } catch (AuthenticationException e) {
+            return SessionCacheEntry.inactive(System.currentTimeMillis() + negativeCacheTimeoutMillis);
+        }
+        if (jwtTokenValidator != null) {
+            jwtTokenValidator.confirm(token);
+        }
+        return createSessionCacheEntry(token, introspectResponse.getUsername(), introspectResponse.getScope(),
+                introspectResponse.getExp());
+    }
+
+    /**
+     * Validates the token locally if it is a JWT signed by the key manager.
+     * @param token access token
+     * @return the cache entry, or null if the token has to be introspected
+     */
+    private SessionCacheEntry validateJwt(String token) {
+        if (jwtTokenValidator == null) {
+            return null;
+        }
+        try {
+            JwtClaimsDTO claims = jwtTokenValidator.validate(token, this::isDashboardClientId);
+            if (claims == null) {
+                return null;
+            }
+            return createSessionCacheEntry(token, claims.getSubject(), claims.getScope(), claims.getExpiryTime());
+        } catch (AuthenticationException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Local validation of the JWT access token failed. " + e.getMessage());
+            }
+            return SessionCacheEntry.inactive(System.currentTimeMillis() + negativeCacheTimeoutMillis);
+        }
+    }
+
+    private boolean isDashboardClientId(String clientId) {
+        for (OAuthApplicationInfo oAuthApplicationInfo : oAuthAppInfoMap.values()) {
+            if (clientId.equals(oAuthApplicationInfo.getClientId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SessionCacheEntry createSessionCacheEntry(String token, String username, String scope,
+                                                      long expireTimestamp) {
+        TokenData tokenData = new TokenData(token, scope, expireTimestamp);
         TokenDataHolder.getInstance().addTokenDataToMap(username, tokenData);
-        return username;
+        return SessionCacheEntry.active(new ExternalSession(username, token), getExpiryTimeMillis(expireTimestamp));
+    }
+
+    private void cacheSession(String token, String username, long expireTimestamp) {
+        tokenCache.put(token, SessionCacheEntry.active(new ExternalSession(username, token),
+                getExpiryTimeMillis(expireTimestamp)));
+    }
+
+    /**
+     * Returns the time a session can be cached until, which is the earlier of the token expiry and the cache timeout.
+     * @param expireTimestamp token expiry time in seconds since the epoch, or 0 if unknown
+     * @return expiry time of the cache entry in milliseconds since the epoch
+     */
+    private long getExpiryTimeMillis(long expireTimestamp) {
+        long cacheExpiry = System.currentTimeMillis() + cacheTimeoutMillis;
+        if (expireTimestamp <= 0) {
+            return cacheExpiry;
+        }
+        return Math.min(cacheExpiry, TimeUnit.SECONDS.toMillis(expireTimestamp));
     }
 
     /**
@@ -618,17 +953,17 @@ public class ApimIdPClient extends ExternalIdPClient {
     }
 
     /**
-     * This method registers an application using a DCR call if the OAuth application does not exists. If is exists it
-     * retrieves the application data and saved in oAuthAppInfoMap.
+     * This method registers an application using a DCR call and persists it as a system app.
      * @param appContext  context of the application
      * @param clientName name of the client
      * @param kmUserName username of the key manager
      * @param customUrlInfo CustomUrlinfo for the tenant domain
+     * @return OAuth application info of the registered application
      * @throws IdPClientException thrown when an error occurred when sending the DCR call or retrieving application
      * data using OAuthAdminService service
      */
-    private void registerApplication(String appContext, String clientName, String kmUserName, CustomUrlInfo
-            customUrlInfo) throws IdPClientException {
+    private OAuthApplicationInfo registerApplication(String appContext, String clientName, String kmUserName,
+                                                     CustomUrlInfo customUrlInfo) throws IdPClientException {
 
         String grantType =
                 IdPClientConstants.PASSWORD_GRANT_TYPE + SPACE + IdPClientConstants.AUTHORIZATION_CODE_GRANT_TYPE +
@@ -677,11 +1012,8 @@ public class ApimIdPClient extends ExternalIdPClient {
                 );
                 String tenantDomain = SUPER_TENANT_DOMAIN;
                 if (isCustomUrlApplicable) {
-                    appContext = appContext + "_" + customUrlInfo.getTenantDomain();
                     tenantDomain = customUrlInfo.getTenantDomain();
                 }
-                this.oAuthAppInfoMap.put(appContext, oAuthApplicationInfo);
-                this.customUrlInfoMap.put(customUrlInfo.getTenantDomain(), customUrlInfo);
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("OAuth2 application created: " + oAuthApplicationInfo.toString());
                 }
@@ -689,6 +1021,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("System app created: " + oAuthApplicationInfo.toString());
                 }
+                return oAuthApplicationInfo;
             } catch (IOException e) {
                 throw new IdPClientException("Error occurred while parsing the DCR application creation response " +
                         "message. Response: '" + response.body().toString() + "'.", e);
@@ -746,4 +1079,45 @@ public class ApimIdPClient extends ExternalIdPClient {
         }
         return null;
     }
+
+    /**
+     * Identifies a system app in the system app cache. The app owner and custom url info are only carried along to
+     * register the app if it does not exist.
+     */
+    private static final class SystemAppKey {
+
+        private final String appContext;
+        private final String clientName;
+        private final String tenantDomain;
+        private final String appOwner;
+        private final CustomUrlInfo customUrlInfo;
+
+        private SystemAppKey(String appContext, String clientName, String tenantDomain, String appOwner,
+                             CustomUrlInfo customUrlInfo) {
+            this.appContext = appContext;
+            this.clientName = clientName;
+            this.tenantDomain = tenantDomain;
+            this.appOwner = appOwner;
+            this.customUrlInfo = customUrlInfo;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SystemAppKey that = (SystemAppKey) o;
+            return Objects.equals(appContext, that.appContext) && Objects.equals(clientName, that.clientName)
+                    && Objects.equals(tenantDomain, that.tenantDomain) && Objects.equals(appOwner, that.appOwner)
+                    && Objects.equals(customUrlInfo, that.customUrlInfo);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(appContext, clientName, tenantDomain, appOwner, customUrlInfo);
+        }
+    }
 }
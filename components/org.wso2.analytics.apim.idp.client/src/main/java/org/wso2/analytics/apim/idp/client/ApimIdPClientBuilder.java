@@ -18,6 +18,8 @@
 package org.wso2.analytics.apim.idp.client;
 
 import org.wso2.analytics.apim.idp.client.dao.OAuthAppDAO;
+import org.wso2.analytics.apim.idp.client.http.AsyncOAuth2ServiceStubs;
+import org.wso2.analytics.apim.idp.client.jwt.JwtTokenValidator;
 import org.wso2.carbon.analytics.idp.client.external.impl.DCRMServiceStub;
 import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
 import org.wso2.carbon.analytics.idp.client.external.models.OAuthApplicationInfo;
@@ -38,6 +40,8 @@ public class ApimIdPClientBuilder {
     private String allScopes;
     private Map<String, OAuthApplicationInfo> oAuthAppInfoMap;
     private int cacheTimeout;
+    private int negativeCacheTimeout;
+    private int tenantInfoRefreshInterval;
     private String kmUserName;
     private DCRMServiceStub dcrmServiceStub;
     private OAuth2ServiceStubs oAuth2ServiceStubs;
@@ -45,6 +49,8 @@ public class ApimIdPClientBuilder {
     private String ssoLogoutURL;
     private boolean isHostnameVerifierEnabled;
     private ApimAdminApiClient apimAdminApiClient;
+    private JwtTokenValidator jwtTokenValidator;
+    private AsyncOAuth2ServiceStubs asyncOAuth2ServiceStubs;
     private String portalAppContext;
     private String brAppContext;
 
@@ -102,6 +108,18 @@ public class ApimIdPClientBuilder {
         return this;
     }
 
+    public ApimIdPClientBuilder setNegativeCacheTimeout(int negativeCacheTimeout) {
+
+        this.negativeCacheTimeout = negativeCacheTimeout;
+        return this;
+    }
+
+    public ApimIdPClientBuilder setTenantInfoRefreshInterval(int tenantInfoRefreshInterval) {
+
+        this.tenantInfoRefreshInterval = tenantInfoRefreshInterval;
+        return this;
+    }
+
     public ApimIdPClientBuilder setKmUserName(String kmUserName) {
 
         this.kmUserName = kmUserName;
@@ -144,6 +162,18 @@ public class ApimIdPClientBuilder {
         return this;
     }
 
+    public ApimIdPClientBuilder setJwtTokenValidator(JwtTokenValidator jwtTokenValidator) {
+
+        this.jwtTokenValidator = jwtTokenValidator;
+        return this;
+    }
+
+    public ApimIdPClientBuilder setAsyncOAuth2ServiceStubs(AsyncOAuth2ServiceStubs asyncOAuth2ServiceStubs) {
+
+        this.asyncOAuth2ServiceStubs = asyncOAuth2ServiceStubs;
+        return this;
+    }
+
     public ApimIdPClientBuilder setPortalAppContext(String portalAppContext) {
 
         this.portalAppContext = portalAppContext;
@@ -159,8 +189,9 @@ public class ApimIdPClientBuilder {
     public ApimIdPClient createApimIdPClient() {
 
         return new ApimIdPClient(adminServiceUsername, baseUrl, oAuthAppDAO, authorizeEndpoint, grantType,
-                adminScopeName, allScopes, oAuthAppInfoMap, cacheTimeout, kmUserName, dcrmServiceStub,
-                oAuth2ServiceStubs, isSSOEnabled, ssoLogoutURL, isHostnameVerifierEnabled, apimAdminApiClient,
+                adminScopeName, allScopes, oAuthAppInfoMap, cacheTimeout, negativeCacheTimeout,
+                tenantInfoRefreshInterval, kmUserName, dcrmServiceStub, oAuth2ServiceStubs, isSSOEnabled, ssoLogoutURL,
+                isHostnameVerifierEnabled, apimAdminApiClient, jwtTokenValidator, asyncOAuth2ServiceStubs,
                 portalAppContext, brAppContext);
     }
 
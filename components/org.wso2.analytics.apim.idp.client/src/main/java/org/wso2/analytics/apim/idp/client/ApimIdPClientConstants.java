@@ -45,6 +45,18 @@ public class ApimIdPClientConstants {
     public static final String PORTAL_CLIENT_SECRET = "portalClientSecret";
     public static final String BR_DB_CLIENT_SECRET = "businessRulesClientSecret";
     public static final String CACHE_TIMEOUT = "cacheTimeout";
+    public static final String NEGATIVE_CACHE_TIMEOUT = "negativeCacheTimeout";
+    public static final String TENANT_INFO_REFRESH_INTERVAL = "tenantInfoRefreshInterval";
+    public static final String TOKEN_DATA_MAX_SIZE = "tokenDataMaxSize";
+    public static final String LOCAL_JWT_VALIDATION_ENABLED = "localJwtValidationEnabled";
+    public static final String JWKS_URL = "jwksUrl";
+    public static final String JWKS_REFRESH_INTERVAL = "jwksRefreshInterval";
+    public static final String JWT_ISSUER = "jwtIssuer";
+    public static final String LOCAL_JWT_MAX_AGE = "localJwtMaxAge";
+    public static final String POOLED_HTTP_CLIENT_ENABLED = "pooledHttpClientEnabled";
+    public static final String HTTP_MAX_IDLE_CONNECTIONS = "httpMaxIdleConnections";
+    public static final String HTTP_KEEP_ALIVE_DURATION = "httpKeepAliveDuration";
+    public static final String HTTP_MAX_REQUESTS = "httpMaxRequests";
     public static final String DATABASE_NAME = "databaseName";
     public static final String DCR_APP_OWNER = "dcrAppOwner";
     public static final String CONNECTION_TIMEOUT = "connectionTimeout";
@@ -68,6 +80,16 @@ public class ApimIdPClientConstants {
     public static final String DEFAULT_PORTAL_APP_CONTEXT = "analytics-dashboard";
     public static final String DEFAULT_BR_DB_APP_CONTEXT = "business-rules";
     public static final String DEFAULT_CACHE_TIMEOUT = "30";
+    public static final String DEFAULT_NEGATIVE_CACHE_TIMEOUT = "5";
+    public static final String DEFAULT_TENANT_INFO_REFRESH_INTERVAL = "300";
+    public static final String DEFAULT_TOKEN_DATA_MAX_SIZE = "100000";
+    public static final String DEFAULT_LOCAL_JWT_VALIDATION_ENABLED = "false";
+    public static final String DEFAULT_JWKS_REFRESH_INTERVAL = "3600";
+    public static final String DEFAULT_LOCAL_JWT_MAX_AGE = "300";
+    public static final String DEFAULT_POOLED_HTTP_CLIENT_ENABLED = "false";
+    public static final String DEFAULT_HTTP_MAX_IDLE_CONNECTIONS = "20";
+    public static final String DEFAULT_HTTP_KEEP_ALIVE_DURATION = "300";
+    public static final String DEFAULT_HTTP_MAX_REQUESTS = "64";
     public static final String DEFAULT_DATABASE_NAME = "AM_DB";
     public static final String DEFAULT_CONNECTION_TIMEOUT = "10000";
     public static final String DEFAULT_READ_TIMEOUT = "60000";
@@ -95,6 +117,7 @@ public class ApimIdPClientConstants {
     public static final String REVOKE_POSTFIX = "/revoke";
     public static final String TOKEN_POSTFIX = "/token";
     public static final String INTROSPECT_POSTFIX = "/introspect";
+    public static final String JWKS_POSTFIX = "/jwks";
     public static final String AUTHORIZE_POSTFIX = "/authorize";
     public static final String OAUTH2_POSTFIX = "/oauth2";
     public static final String OIDC_LOGOUT_POSTFIX = "/oidc/logout";
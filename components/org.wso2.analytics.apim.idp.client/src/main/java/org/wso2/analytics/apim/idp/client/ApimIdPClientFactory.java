@@ -27,7 +27,12 @@ import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.analytics.apim.idp.client.dao.OAuthAppDAO;
-import org.wso2.analytics.apim.idp.client.token.TokenDataMapCleaner;
+import org.wso2.analytics.apim.idp.client.http.AsyncOAuth2ServiceStubs;
+import org.wso2.analytics.apim.idp.client.http.KeyManagerHttpClient;
+import org.wso2.analytics.apim.idp.client.http.PooledOAuth2ServiceStubs;
+import org.wso2.analytics.apim.idp.client.jwt.JwksKeyCache;
+import org.wso2.analytics.apim.idp.client.jwt.JwtTokenValidator;
+import org.wso2.analytics.apim.idp.client.token.TokenDataHolder;
 import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
@@ -42,8 +47,9 @@ import org.wso2.carbon.config.provider.ConfigProvider;
 import org.wso2.carbon.datasource.core.api.DataSourceService;
 import org.wso2.carbon.kernel.config.model.CarbonConfiguration;
 
-import java.util.HashMap;
+import java.security.GeneralSecurityException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Factory for APIM IdPClient.
@@ -57,24 +63,29 @@ public class ApimIdPClientFactory implements IdPClientFactory {
     private DataSourceService dataSourceService;
     private boolean isHostnameVerifierEnabled;
     private AnalyticsHttpClientBuilderService analyticsHttpClientBuilderService;
+    private KeyManagerHttpClient keyManagerHttpClient;
     private static final String CUSTOM_URL_API_ENDPOINT = "/api/am/admin/v1/custom-urls";
-    private TokenDataMapCleaner tokenDataMapCleaner;
 
     @Activate
     protected void activate(BundleContext bundleContext) {
         LOG.debug("APIM IDP client factory activated.");
 
-        // Start tokenData map cleaner.
-        this.tokenDataMapCleaner = new TokenDataMapCleaner();
-        this.tokenDataMapCleaner.startTokenDataMapCleaner();
+        // Start evicting expired token data.
+        TokenDataHolder.getInstance().startExpiryTask();
+        TokenDataHolder.getInstance().registerMBean();
     }
 
     @Deactivate
     protected void deactivate(BundleContext bundleContext) {
         LOG.debug("APIM IDP client factory deactivated.");
 
-        // Stop tokenData map cleaner.
-        this.tokenDataMapCleaner.stopTokenDataMapCleaner();
+        // Stop evicting expired token data.
+        TokenDataHolder.getInstance().stopExpiryTask();
+        TokenDataHolder.getInstance().unregisterMBean();
+        if (keyManagerHttpClient != null) {
+            keyManagerHttpClient.shutdown();
+            keyManagerHttpClient = null;
+        }
     }
 
     /**
@@ -199,12 +210,13 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 properties.get(ApimIdPClientConstants.BR_DB_CLIENT_ID),
                 properties.get(ApimIdPClientConstants.BR_DB_CLIENT_SECRET));
 
-        Map<String, OAuthApplicationInfo> oAuthAppInfoMap = new HashMap<>();
+        Map<String, OAuthApplicationInfo> oAuthAppInfoMap = new ConcurrentHashMap<>();
         oAuthAppInfoMap.put(ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT, spOAuthApp);
         oAuthAppInfoMap.put(portalAppContext, portalOAuthApp);
         oAuthAppInfoMap.put(businessAppContext, businessOAuthApp);
 
-        int cacheTimeout, connectionTimeout, readTimeout;
+        int cacheTimeout, negativeCacheTimeout, tenantInfoRefreshInterval, tokenDataMaxSize, jwksRefreshInterval,
+                connectionTimeout, readTimeout, httpMaxIdleConnections, httpKeepAliveDuration, httpMaxRequests;
         try {
             cacheTimeout = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.CACHE_TIMEOUT,
                     ApimIdPClientConstants.DEFAULT_CACHE_TIMEOUT));
@@ -212,6 +224,35 @@ public class ApimIdPClientFactory implements IdPClientFactory {
             throw new IdPClientException("Cache timeout overriding property '" +
                     properties.get(ApimIdPClientConstants.CACHE_TIMEOUT) + "' is invalid.", e);
         }
+        try {
+            negativeCacheTimeout = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants
+                    .NEGATIVE_CACHE_TIMEOUT, ApimIdPClientConstants.DEFAULT_NEGATIVE_CACHE_TIMEOUT));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Negative cache timeout overriding property '" +
+                    properties.get(ApimIdPClientConstants.NEGATIVE_CACHE_TIMEOUT) + "' is invalid.", e);
+        }
+        try {
+            tenantInfoRefreshInterval = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants
+                    .TENANT_INFO_REFRESH_INTERVAL, ApimIdPClientConstants.DEFAULT_TENANT_INFO_REFRESH_INTERVAL));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Tenant info refresh interval overriding property '" +
+                    properties.get(ApimIdPClientConstants.TENANT_INFO_REFRESH_INTERVAL) + "' is invalid.", e);
+        }
+        try {
+            tokenDataMaxSize = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.TOKEN_DATA_MAX_SIZE,
+                    ApimIdPClientConstants.DEFAULT_TOKEN_DATA_MAX_SIZE));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Token data max size overriding property '" +
+                    properties.get(ApimIdPClientConstants.TOKEN_DATA_MAX_SIZE) + "' is invalid.", e);
+        }
+        TokenDataHolder.getInstance().setMaxSize(tokenDataMaxSize);
+        try {
+            jwksRefreshInterval = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants
+                    .JWKS_REFRESH_INTERVAL, ApimIdPClientConstants.DEFAULT_JWKS_REFRESH_INTERVAL));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("JWKS refresh interval overriding property '" +
+                    properties.get(ApimIdPClientConstants.JWKS_REFRESH_INTERVAL) + "' is invalid.", e);
+        }
         try {
             connectionTimeout = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.CONNECTION_TIMEOUT,
                     ApimIdPClientConstants.DEFAULT_CONNECTION_TIMEOUT));
@@ -226,18 +267,89 @@ public class ApimIdPClientFactory implements IdPClientFactory {
             throw new IdPClientException("Read timeout overriding property '" +
                     properties.get(ApimIdPClientConstants.READ_TIMEOUT) + "' is invalid.", e);
         }
+        try {
+            httpMaxIdleConnections = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants
+                    .HTTP_MAX_IDLE_CONNECTIONS, ApimIdPClientConstants.DEFAULT_HTTP_MAX_IDLE_CONNECTIONS));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("HTTP max idle connections overriding property '" +
+                    properties.get(ApimIdPClientConstants.HTTP_MAX_IDLE_CONNECTIONS) + "' is invalid.", e);
+        }
+        try {
+            httpKeepAliveDuration = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants
+                    .HTTP_KEEP_ALIVE_DURATION, ApimIdPClientConstants.DEFAULT_HTTP_KEEP_ALIVE_DURATION));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("HTTP keep alive duration overriding property '" +
+                    properties.get(ApimIdPClientConstants.HTTP_KEEP_ALIVE_DURATION) + "' is invalid.", e);
+        }
+        try {
+            httpMaxRequests = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.HTTP_MAX_REQUESTS,
+                    ApimIdPClientConstants.DEFAULT_HTTP_MAX_REQUESTS));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("HTTP max requests overriding property '" +
+                    properties.get(ApimIdPClientConstants.HTTP_MAX_REQUESTS) + "' is invalid.", e);
+        }
 
         String databaseName = properties.getOrDefault(ApimIdPClientConstants.DATABASE_NAME,
                 ApimIdPClientConstants.DEFAULT_DATABASE_NAME);
         OAuthAppDAO oAuthAppDAO = new OAuthAppDAO(this.dataSourceService, databaseName,
                 idPClientConfiguration.getQueries());
 
-        DCRMServiceStub dcrmServiceStub = this.analyticsHttpClientBuilderService
-                .build(kmUsername, kmPassword, connectionTimeout, readTimeout, DCRMServiceStub.class, dcrEndpoint);
-        OAuth2ServiceStubs keyManagerServiceStubs = new OAuth2ServiceStubs(
-                this.analyticsHttpClientBuilderService, kmTokenUrl + ApimIdPClientConstants.TOKEN_POSTFIX,
-                kmTokenUrl + ApimIdPClientConstants.REVOKE_POSTFIX, introspectUrl,
-                kmUsername, kmPassword, connectionTimeout, readTimeout);
+        DCRMServiceStub dcrmServiceStub;
+        OAuth2ServiceStubs keyManagerServiceStubs;
+        AsyncOAuth2ServiceStubs asyncOAuth2ServiceStubs = null;
+        if (Boolean.parseBoolean(properties.getOrDefault(ApimIdPClientConstants.POOLED_HTTP_CLIENT_ENABLED,
+                ApimIdPClientConstants.DEFAULT_POOLED_HTTP_CLIENT_ENABLED))) {
+            // Key manager calls share one pool of kept alive connections, and can be made without blocking.
+            if (this.keyManagerHttpClient != null) {
+                this.keyManagerHttpClient.shutdown();
+            }
+            try {
+                this.keyManagerHttpClient = new KeyManagerHttpClient(httpMaxIdleConnections, httpKeepAliveDuration,
+                        httpMaxRequests, connectionTimeout, readTimeout, this.isHostnameVerifierEnabled);
+            } catch (GeneralSecurityException e) {
+                throw new IdPClientException("Error occurred while initializing the key manager http client.", e);
+            } catch (NoClassDefFoundError e) {
+                // OkHttp is an optional import of this bundle.
+                throw new IdPClientException("The pooled key manager http client requires the OkHttp and Feign "
+                        + "OkHttp bundles, which are not available.", e);
+            }
+            dcrmServiceStub = this.keyManagerHttpClient.buildStub(DCRMServiceStub.class, dcrEndpoint, kmUsername,
+                    kmPassword);
+            keyManagerServiceStubs = new PooledOAuth2ServiceStubs(this.analyticsHttpClientBuilderService,
+                    this.keyManagerHttpClient, kmTokenUrl + ApimIdPClientConstants.TOKEN_POSTFIX,
+                    kmTokenUrl + ApimIdPClientConstants.REVOKE_POSTFIX, introspectUrl,
+                    kmUsername, kmPassword, connectionTimeout, readTimeout);
+            asyncOAuth2ServiceStubs = new AsyncOAuth2ServiceStubs(this.keyManagerHttpClient,
+                    kmTokenUrl + ApimIdPClientConstants.TOKEN_POSTFIX, introspectUrl, kmUsername, kmPassword);
+        } else {
+            dcrmServiceStub = this.analyticsHttpClientBuilderService
+                    .build(kmUsername, kmPassword, connectionTimeout, readTimeout, DCRMServiceStub.class, dcrEndpoint);
+            keyManagerServiceStubs = new OAuth2ServiceStubs(
+                    this.analyticsHttpClientBuilderService, kmTokenUrl + ApimIdPClientConstants.TOKEN_POSTFIX,
+                    kmTokenUrl + ApimIdPClientConstants.REVOKE_POSTFIX, introspectUrl,
+                    kmUsername, kmPassword, connectionTimeout, readTimeout);
+        }
+
+        JwtTokenValidator jwtTokenValidator = null;
+        if (Boolean.parseBoolean(properties.getOrDefault(ApimIdPClientConstants.LOCAL_JWT_VALIDATION_ENABLED,
+                ApimIdPClientConstants.DEFAULT_LOCAL_JWT_VALIDATION_ENABLED))) {
+            String jwksUrl = properties.getOrDefault(ApimIdPClientConstants.JWKS_URL,
+                    kmTokenUrl + ApimIdPClientConstants.JWKS_POSTFIX);
+            String jwtIssuer = properties.getOrDefault(ApimIdPClientConstants.JWT_ISSUER,
+                    kmTokenUrl + ApimIdPClientConstants.TOKEN_POSTFIX);
+            int localJwtMaxAge;
+            try {
+                localJwtMaxAge = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.LOCAL_JWT_MAX_AGE,
+                        ApimIdPClientConstants.DEFAULT_LOCAL_JWT_MAX_AGE));
+            } catch (NumberFormatException e) {
+                throw new IdPClientException("Local JWT max age overriding property '" +
+                        properties.get(ApimIdPClientConstants.LOCAL_JWT_MAX_AGE) + "' is invalid.", e);
+            }
+            JwksClient jwksClient = this.analyticsHttpClientBuilderService
+                    .build(kmUsername, kmPassword, connectionTimeout, readTimeout, JwksClient.class, jwksUrl);
+            jwtTokenValidator = new JwtTokenValidator(new JwksKeyCache(jwksClient, jwksRefreshInterval), jwtIssuer,
+                    Math.max(1, localJwtMaxAge));
+        }
 
         String targetURIForRedirection = properties.getOrDefault(ApimIdPClientConstants.EXTERNAL_SSO_LOGOUT_URL,
                             ApimIdPClientConstants.DEFAULT_EXTERNAL_SSO_LOGOUT_URL);
@@ -248,7 +360,7 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                         adminServicePassword);
 
         // Using builder pattern to create ApimIdpClient object.
-        return new ApimIdPClientBuilder()
+        ApimIdPClient apimIdPClient = new ApimIdPClientBuilder()
                 .setAdminServiceUsername(adminServiceUsername)
                 .setBaseUrl(baseUrl).setoAuthAppDAO(oAuthAppDAO)
                 .setAuthorizeEndpoint(kmTokenUrlForRedirectUrl + ApimIdPClientConstants.AUTHORIZE_POSTFIX)
@@ -257,6 +369,8 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 .setAllScopes(allScopes)
                 .setoAuthAppInfoMap(oAuthAppInfoMap)
                 .setCacheTimeout(cacheTimeout)
+                .setNegativeCacheTimeout(negativeCacheTimeout)
+                .setTenantInfoRefreshInterval(tenantInfoRefreshInterval)
                 .setKmUserName(dcrAppOwner)
                 .setDcrmServiceStub(dcrmServiceStub)
                 .setoAuth2ServiceStubs(keyManagerServiceStubs)
@@ -264,8 +378,12 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 .setSsoLogoutURL(targetURIForRedirection)
                 .setIsHostnameVerifierEnabled(this.isHostnameVerifierEnabled)
                 .setApimAdminApiClient(apimAdminApiClient)
+                .setJwtTokenValidator(jwtTokenValidator)
+                .setAsyncOAuth2ServiceStubs(asyncOAuth2ServiceStubs)
                 .setPortalAppContext(portalAppContext)
                 .setBrAppContext(businessAppContext)
                 .createApimIdPClient();
+        apimIdPClient.warmUp();
+        return apimIdPClient;
     }
 }
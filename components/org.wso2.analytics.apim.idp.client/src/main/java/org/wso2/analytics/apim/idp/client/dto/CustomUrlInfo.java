@@ -19,6 +19,8 @@ package org.wso2.analytics.apim.idp.client.dto;
 
 import com.google.gson.annotations.SerializedName;
 
+import java.util.Objects;
+
 /**
  *  DTO for custom url info.
  */
@@ -73,6 +75,27 @@ public class CustomUrlInfo {
         this.devPortalUrlDTO = devPortalUrlDTO;
     }
 
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CustomUrlInfo that = (CustomUrlInfo) o;
+        return isEnabled == that.isEnabled && Objects.equals(tenantDomain, that.tenantDomain)
+                && Objects.equals(tenantAdminUsername, that.tenantAdminUsername)
+                && Objects.equals(devPortalUrlDTO, that.devPortalUrlDTO);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(tenantDomain, tenantAdminUsername, isEnabled, devPortalUrlDTO);
+    }
+
     @Override
     public String toString() {
 
@@ -19,6 +19,8 @@ package org.wso2.analytics.apim.idp.client.dto;
 
 import com.google.gson.annotations.SerializedName;
 
+import java.util.Objects;
+
 /**
  *  DTO for devportal custom URL, the same URL is used for analytics as well.
  */
@@ -33,6 +35,21 @@ public class CustomUrlInfoDevPortalDTO {
     this.url = url;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return Objects.equals(url, ((CustomUrlInfoDevPortalDTO) o).url);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(url);
+  }
 
   @Override
   public String toString()  {
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.dto;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ *  DTO for a key of a JSON web key set.
+ */
+public class JwkDTO {
+
+    @SerializedName("kty")
+    private String keyType;
+    @SerializedName("kid")
+    private String keyId;
+    @SerializedName("use")
+    private String use;
+    @SerializedName("n")
+    private String modulus;
+    @SerializedName("e")
+    private String exponent;
+
+    public String getKeyType() {
+
+        return keyType;
+    }
+
+    public void setKeyType(String keyType) {
+
+        this.keyType = keyType;
+    }
+
+    public String getKeyId() {
+
+        return keyId;
+    }
+
+    public void setKeyId(String keyId) {
+
+        this.keyId = keyId;
+    }
+
+    public String getUse() {
+
+        return use;
+    }
+
+    public void setUse(String use) {
+
+        this.use = use;
+    }
+
+    public String getModulus() {
+
+        return modulus;
+    }
+
+    public void setModulus(String modulus) {
+
+        this.modulus = modulus;
+    }
+
+    public String getExponent() {
+
+        return exponent;
+    }
+
+    public void setExponent(String exponent) {
+
+        this.exponent = exponent;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JwkDTO{" +
+                "keyType='" + keyType + '\'' +
+                ", keyId='" + keyId + '\'' +
+                ", use='" + use + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.dto;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *  DTO for the claims of a JSON web token access token.
+ */
+public class JwtClaimsDTO {
+
+    @SerializedName("iss")
+    private String issuer;
+    @SerializedName("sub")
+    private String subject;
+    @SerializedName("aud")
+    private JsonElement audience;
+    @SerializedName("azp")
+    private String authorizedParty;
+    @SerializedName("scope")
+    private String scope;
+    @SerializedName("exp")
+    private long expiryTime;
+    @SerializedName("nbf")
+    private long notBeforeTime;
+    @SerializedName("iat")
+    private long issuedAtTime;
+
+    public String getIssuer() {
+
+        return issuer;
+    }
+
+    public void setIssuer(String issuer) {
+
+        this.issuer = issuer;
+    }
+
+    public String getSubject() {
+
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+
+        this.subject = subject;
+    }
+
+    /**
+     * Returns the audiences of the token. The aud claim may be a single string or an array of strings.
+     * @return the audiences, or an empty list if the token has no aud claim
+     */
+    public List<String> getAudiences() {
+
+        if (audience == null || audience.isJsonNull()) {
+            return Collections.emptyList();
+        }
+        if (audience.isJsonPrimitive()) {
+            return Collections.singletonList(audience.getAsString());
+        }
+        List<String> audiences = new ArrayList<>();
+        if (audience.isJsonArray()) {
+            JsonArray audienceArray = audience.getAsJsonArray();
+            for (JsonElement element : audienceArray) {
+                if (element.isJsonPrimitive()) {
+                    audiences.add(element.getAsString());
+                }
+            }
+        }
+        return audiences;
+    }
+
+    public String getAuthorizedParty() {
+
+        return authorizedParty;
+    }
+
+    public void setAuthorizedParty(String authorizedParty) {
+
+        this.authorizedParty = authorizedParty;
+    }
+
+    public String getScope() {
+
+        return scope;
+    }
+
+    public void setScope(String scope) {
+
+        this.scope = scope;
+    }
+
+    public long getExpiryTime() {
+
+        return expiryTime;
+    }
+
+    public void setExpiryTime(long expiryTime) {
+
+        this.expiryTime = expiryTime;
+    }
+
+    public long getNotBeforeTime() {
+
+        return notBeforeTime;
+    }
+
+    public void setNotBeforeTime(long notBeforeTime) {
+
+        this.notBeforeTime = notBeforeTime;
+    }
+
+    public long getIssuedAtTime() {
+
+        return issuedAtTime;
+    }
+
+    public void setIssuedAtTime(long issuedAtTime) {
+
+        this.issuedAtTime = issuedAtTime;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JwtClaimsDTO{" +
+                "issuer='" + issuer + '\'' +
+                ", subject='" + subject + '\'' +
+                ", audience=" + audience +
+                ", authorizedParty='" + authorizedParty + '\'' +
+                ", scope='" + scope + '\'' +
+                ", expiryTime=" + expiryTime +
+                ", notBeforeTime=" + notBeforeTime +
+                ", issuedAtTime=" + issuedAtTime +
+                '}';
+    }
+}
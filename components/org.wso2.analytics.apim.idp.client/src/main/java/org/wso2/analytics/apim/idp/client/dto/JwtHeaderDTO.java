@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.dto;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ *  DTO for the header of a JSON web token.
+ */
+public class JwtHeaderDTO {
+
+    @SerializedName("alg")
+    private String algorithm;
+    @SerializedName("kid")
+    private String keyId;
+    @SerializedName("typ")
+    private String type;
+
+    public String getAlgorithm() {
+
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+
+        this.algorithm = algorithm;
+    }
+
+    public String getKeyId() {
+
+        return keyId;
+    }
+
+    public void setKeyId(String keyId) {
+
+        this.keyId = keyId;
+    }
+
+    public String getType() {
+
+        return type;
+    }
+
+    public void setType(String type) {
+
+        this.type = type;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JwtHeaderDTO{" +
+                "algorithm='" + algorithm + '\'' +
+                ", keyId='" + keyId + '\'' +
+                ", type='" + type + '\'' +
+                '}';
+    }
+}
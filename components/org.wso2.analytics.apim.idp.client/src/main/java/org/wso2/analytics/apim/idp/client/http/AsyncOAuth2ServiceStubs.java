@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.http;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
+import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
+import org.wso2.carbon.analytics.idp.client.external.dto.OAuth2IntrospectionResponse;
+import org.wso2.carbon.analytics.idp.client.external.dto.OAuth2TokenInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ *  Asynchronous variants of the token and introspection calls of OAuth2ServiceStubs. The returned futures complete
+ *  exceptionally with an AuthenticationException when the key manager rejects the token or grant, and with an
+ *  IdPClientException on any other failure.
+ */
+public class AsyncOAuth2ServiceStubs {
+
+    private static final String GRANT_TYPE = "grant_type";
+    private static final String AUTHORIZATION_CODE_GRANT_TYPE = "authorization_code";
+    private static final String REFRESH_TOKEN_GRANT_TYPE = "refresh_token";
+    private static final String CODE = "code";
+    private static final String REDIRECT_URI = "redirect_uri";
+    private static final String REFRESH_TOKEN = "refresh_token";
+    private static final String SCOPE = "scope";
+    private static final String TOKEN = "token";
+
+    private final KeyManagerHttpClient httpClient;
+    private final String tokenEndpoint;
+    private final String introspectEndpoint;
+    private final String username;
+    private final String password;
+    private final Gson gson = new Gson();
+
+    public AsyncOAuth2ServiceStubs(KeyManagerHttpClient httpClient, String tokenEndpoint, String introspectEndpoint,
+                                   String username, String password) {
+        this.httpClient = httpClient;
+        this.tokenEndpoint = tokenEndpoint;
+        this.introspectEndpoint = introspectEndpoint;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Introspects an access token.
+     * @param token access token
+     * @return future of the introspection response of an active token
+     */
+    public CompletableFuture<OAuth2IntrospectionResponse> introspectAccessToken(String token) {
+        Map<String, String> formParams = new HashMap<>();
+        formParams.put(TOKEN, token);
+        return send(introspectEndpoint, username, password, formParams).thenApply(response -> {
+            if (response.getStatus() != 200) {
+                throw new CompletionException(new IdPClientException("Token introspection request failed. HTTP "
+                        + "error code: '" + response.getStatus() + "'. Error Response Body: '" + response.getBody()
+                        + "'."));
+            }
+            OAuth2IntrospectionResponse introspectResponse = parse(response, OAuth2IntrospectionResponse.class);
+            if (!introspectResponse.isActive()) {
+                throw new CompletionException(new AuthenticationException("The token is not active."));
+            }
+            return introspectResponse;
+        });
+    }
+
+    /**
+     * Generates an access token from an authorization code.
+     * @param code authorization code
+     * @param redirectUri redirect uri the code was issued to
+     * @param scopes requested scopes, or null
+     * @param clientId client id of the app
+     * @param clientSecret client secret of the app
+     * @return future of the token
+     */
+    public CompletableFuture<OAuth2TokenInfo> generateAuthCodeGrantAccessToken(String code, String redirectUri,
+                                                                               String scopes, String clientId,
+                                                                               String clientSecret) {
+        Map<String, String> formParams = new HashMap<>();
+        formParams.put(GRANT_TYPE, AUTHORIZATION_CODE_GRANT_TYPE);
+        formParams.put(CODE, code);
+        formParams.put(REDIRECT_URI, redirectUri);
+        formParams.put(SCOPE, scopes);
+        return send(tokenEndpoint, clientId, clientSecret, formParams).thenApply(this::toTokenInfo);
+    }
+
+    /**
+     * Generates an access token from a refresh token.
+     * @param refreshToken refresh token
+     * @param scopes requested scopes, or null
+     * @param clientId client id of the app
+     * @param clientSecret client secret of the app
+     * @return future of the token
+     */
+    public CompletableFuture<OAuth2TokenInfo> generateRefreshGrantAccessToken(String refreshToken, String scopes,
+                                                                              String clientId, String clientSecret) {
+        Map<String, String> formParams = new HashMap<>();
+        formParams.put(GRANT_TYPE, REFRESH_TOKEN_GRANT_TYPE);
+        formParams.put(REFRESH_TOKEN, refreshToken);
+        formParams.put(SCOPE, scopes);
+        return send(tokenEndpoint, clientId, clientSecret, formParams).thenApply(this::toTokenInfo);
+    }
+
+    private CompletableFuture<KeyManagerResponse> send(String url, String username, String password,
+                                                       Map<String, String> formParams) {
+        CompletableFuture<KeyManagerResponse> future = new CompletableFuture<>();
+        httpClient.postForm(url, username, password, formParams).whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                future.complete(response);
+            } else {
+                future.completeExceptionally(new IdPClientException("Error occurred while calling the key manager "
+                        + "at '" + url + "'.", throwable));
+            }
+        });
+        return future;
+    }
+
+    private OAuth2TokenInfo toTokenInfo(KeyManagerResponse response) {
+        if (response.getStatus() == 200) {
+            return parse(response, OAuth2TokenInfo.class);
+        } else if (response.getStatus() == 400 || response.getStatus() == 401) {
+            throw new CompletionException(new AuthenticationException("Token request was rejected. HTTP error "
+                    + "code: '" + response.getStatus() + "'."));
+        }
+        throw new CompletionException(new IdPClientException("Token generation request failed. HTTP error code: '"
+                + response.getStatus() + "'. Error Response Body: '" + response.getBody() + "'."));
+    }
+
+    private <T> T parse(KeyManagerResponse response, Class<T> type) {
+        T value;
+        try {
+            value = gson.fromJson(response.getBody(), type);
+        } catch (JsonParseException e) {
+            throw new CompletionException(new IdPClientException("Error occurred while parsing the response of the "
+                    + "key manager. Response : '" + response.getBody() + "'", e));
+        }
+        if (value == null) {
+            throw new CompletionException(new IdPClientException("Response of the key manager is empty."));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.http;
+
+import feign.Feign;
+import feign.Request;
+import feign.auth.BasicAuthRequestInterceptor;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Credentials;
+import okhttp3.Dispatcher;
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ *  HTTP client for the key manager, shared by its stubs. Connections are kept alive in a single sized pool, and
+ *  asynchronous calls are dispatched by OkHttp without holding the caller's thread for the round trip.
+ *  TLS uses the default socket factory and trust store of the JVM, which carbon points at its client trust store.
+ *  The stubs built by AnalyticsHttpClientBuilderService use the same socket factory.
+ */
+public class KeyManagerHttpClient {
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String ACCEPT_HEADER = "Accept";
+    private static final String APPLICATION_JSON = "application/json";
+
+    private final OkHttpClient httpClient;
+    private final int connectionTimeout;
+    private final int readTimeout;
+
+    /**
+     * @param maxIdleConnections number of idle connections kept in the pool.
+     * @param keepAliveDuration time in seconds an idle connection is kept in the pool.
+     * @param maxRequests number of concurrent asynchronous requests. Further requests are queued.
+     * @param connectionTimeout connection timeout in milliseconds.
+     * @param readTimeout read timeout in milliseconds.
+     * @param isHostnameVerifierEnabled whether the hostname of the key manager is verified.
+     * @throws GeneralSecurityException thrown when the default trust store cannot be loaded.
+     */
+    public KeyManagerHttpClient(int maxIdleConnections, int keepAliveDuration, int maxRequests,
+                                int connectionTimeout, int readTimeout, boolean isHostnameVerifierEnabled)
+            throws GeneralSecurityException {
+        this.connectionTimeout = connectionTimeout;
+        this.readTimeout = readTimeout;
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        // All requests go to the key manager, so the per host limit is the overall limit.
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .sslSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory(), getDefaultTrustManager())
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveDuration, TimeUnit.SECONDS))
+                .connectTimeout(connectionTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout, TimeUnit.MILLISECONDS);
+        if (!isHostnameVerifierEnabled) {
+            builder.hostnameVerifier((hostName, sslSession) -> true);
+        }
+        this.httpClient = builder.build();
+    }
+
+    private static X509TrustManager getDefaultTrustManager() throws GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init((KeyStore) null);
+        for (TrustManager trustManager : trustManagerFactory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                return (X509TrustManager) trustManager;
+            }
+        }
+        throw new GeneralSecurityException("No X509 trust manager found in the default trust store.");
+    }
+
+    /**
+     * Creates a Feign stub which sends its requests over the shared connection pool.
+     * @param type stub interface.
+     * @param url base url of the stub.
+     * @param username username for basic authentication.
+     * @param password password for basic authentication.
+     * @param <T> type of the stub.
+     * @return the stub.
+     */
+    public <T> T buildStub(Class<T> type, String url, String username, String password) {
+        return Feign.builder()
+                .client(new feign.okhttp.OkHttpClient(httpClient))
+                .requestInterceptor(new BasicAuthRequestInterceptor(username, password))
+                .options(new Request.Options(connectionTimeout, readTimeout))
+                .target(type, url);
+    }
+
+    /**
+     * Posts a form asynchronously. The returned future completes with the response, or exceptionally with the
+     * IOException of a failed call.
+     * @param url url to post to.
+     * @param username username for basic authentication.
+     * @param password password for basic authentication.
+     * @param formParams form parameters. Parameters with null values are skipped.
+     * @return future of the response.
+     */
+    public CompletableFuture<KeyManagerResponse> postForm(String url, String username, String password,
+                                                          Map<String, String> formParams) {
+        FormBody.Builder formBody = new FormBody.Builder();
+        for (Map.Entry<String, String> formParam : formParams.entrySet()) {
+            if (formParam.getValue() != null) {
+                formBody.add(formParam.getKey(), formParam.getValue());
+            }
+        }
+        okhttp3.Request request = new okhttp3.Request.Builder()
+                .url(url)
+                .header(AUTHORIZATION_HEADER, Credentials.basic(username, password))
+                .header(ACCEPT_HEADER, APPLICATION_JSON)
+                .post(formBody.build())
+                .build();
+        CompletableFuture<KeyManagerResponse> future = new CompletableFuture<>();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, okhttp3.Response response) {
+                // Reading the body to the end releases the connection back to the pool.
+                try (ResponseBody body = response.body()) {
+                    future.complete(new KeyManagerResponse(response.code(), body == null ? "" : body.string()));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    public int getConnectionCount() {
+        return httpClient.connectionPool().connectionCount();
+    }
+
+    public int getIdleConnectionCount() {
+        return httpClient.connectionPool().idleConnectionCount();
+    }
+
+    public int getRunningCallsCount() {
+        return httpClient.dispatcher().runningCallsCount();
+    }
+
+    public int getQueuedCallsCount() {
+        return httpClient.dispatcher().queuedCallsCount();
+    }
+
+    /**
+     * Cancels the outstanding calls and closes the pooled connections.
+     */
+    public void shutdown() {
+        httpClient.dispatcher().cancelAll();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+}
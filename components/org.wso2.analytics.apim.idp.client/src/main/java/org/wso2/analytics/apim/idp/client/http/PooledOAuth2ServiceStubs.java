@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.http;
+
+import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
+import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
+
+/**
+ *  OAuth2ServiceStubs whose token, revoke and introspection stubs send their requests over the connection pool of a
+ *  {@link KeyManagerHttpClient}, instead of opening a connection for each call.
+ */
+public class PooledOAuth2ServiceStubs extends OAuth2ServiceStubs {
+
+    private final TokenServiceStub tokenServiceStub;
+    private final RevokeServiceStub revokeServiceStub;
+    private final IntrospectionServiceStub introspectionServiceStub;
+
+    public PooledOAuth2ServiceStubs(AnalyticsHttpClientBuilderService analyticsHttpClientBuilderService,
+                                    KeyManagerHttpClient httpClient, String tokenEndpoint, String revokeEndpoint,
+                                    String introspectEndpoint, String username, String password,
+                                    int connectionTimeout, int readTimeout) {
+        super(analyticsHttpClientBuilderService, tokenEndpoint, revokeEndpoint, introspectEndpoint, username,
+                password, connectionTimeout, readTimeout);
+        this.tokenServiceStub = httpClient.buildStub(TokenServiceStub.class, tokenEndpoint, username, password);
+        this.revokeServiceStub = httpClient.buildStub(RevokeServiceStub.class, revokeEndpoint, username, password);
+        this.introspectionServiceStub = httpClient.buildStub(IntrospectionServiceStub.class, introspectEndpoint,
+                username, password);
+    }
+
+    @Override
+    public TokenServiceStub getTokenServiceStub() {
+        return tokenServiceStub;
+    }
+
+    @Override
+    public RevokeServiceStub getRevokeServiceStub() {
+        return revokeServiceStub;
+    }
+
+    @Override
+    public IntrospectionServiceStub getIntrospectionServiceStub() {
+        return introspectionServiceStub;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.jwt;
+
+import com.google.gson.JsonParseException;
+import feign.Response;
+import feign.gson.GsonDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.analytics.apim.idp.client.JwksClient;
+import org.wso2.analytics.apim.idp.client.dto.JwkDTO;
+import org.wso2.analytics.apim.idp.client.dto.JwksDTO;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Signing keys of the key manager, fetched from its JWKS endpoint. The key set is fetched again after the refresh
+ *  interval, and also when a token refers to an unknown key id, since that is how a key rotation shows up. Fetches
+ *  triggered by unknown key ids are rate limited, so that tokens signed by foreign keys cannot flood the endpoint.
+ */
+public class JwksKeyCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwksKeyCache.class);
+    private static final long MIN_FETCH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final String RSA_KEY_TYPE = "RSA";
+    private static final String SIGNATURE_USE = "sig";
+    private static final String NO_KEY_ID = "";
+
+    private final JwksClient jwksClient;
+    private final long refreshIntervalMillis;
+    private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+    private volatile long lastFetchTimeMillis;
+
+    public JwksKeyCache(JwksClient jwksClient, int refreshInterval) {
+        this.jwksClient = jwksClient;
+        this.refreshIntervalMillis = TimeUnit.SECONDS.toMillis(refreshInterval);
+    }
+
+    /**
+     * Returns the public key with the given key id.
+     * @param keyId key id from the token header, or null if the header has none.
+     * @return the public key, or null if the key manager has no such key.
+     */
+    public PublicKey getKey(String keyId) {
+        long fetchTimeMillis = lastFetchTimeMillis;
+        if (System.currentTimeMillis() - fetchTimeMillis >= refreshIntervalMillis) {
+            fetchKeys(fetchTimeMillis);
+        }
+        PublicKey key = findKey(keyId);
+        fetchTimeMillis = lastFetchTimeMillis;
+        if (key == null && System.currentTimeMillis() - fetchTimeMillis >= MIN_FETCH_INTERVAL_MILLIS) {
+            // The key manager may have rotated its keys.
+            fetchKeys(fetchTimeMillis);
+            key = findKey(keyId);
+        }
+        return key;
+    }
+
+    private PublicKey findKey(String keyId) {
+        Map<String, PublicKey> currentKeys = keys;
+        if (keyId == null) {
+            return currentKeys.size() == 1 ? currentKeys.values().iterator().next() : null;
+        }
+        return currentKeys.get(keyId);
+    }
+
+    /**
+     * Fetches the key set, unless another thread has done so since the given fetch time. The previous keys are kept
+     * when the fetch fails.
+     * @param observedFetchTimeMillis fetch time seen by the caller.
+     */
+    private synchronized void fetchKeys(long observedFetchTimeMillis) {
+        if (lastFetchTimeMillis != observedFetchTimeMillis) {
+            return;
+        }
+        lastFetchTimeMillis = System.currentTimeMillis();
+        try {
+            keys = readKeys();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Fetched " + keys.size() + " signing keys from the JWKS endpoint.");
+            }
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException | JsonParseException e) {
+            LOG.warn("Error occurred while fetching the signing keys from the JWKS endpoint. Tokens signed by "
+                    + "unknown keys will be introspected.", e);
+        }
+    }
+
+    private Map<String, PublicKey> readKeys() throws IOException, GeneralSecurityException {
+        Response response = jwksClient.getJwks();
+        if (response == null) {
+            throw new IOException("Response of the JWKS endpoint is null.");
+        }
+        if (response.status() != 200) {
+            throw new IOException("JWKS request failed. HTTP error code: '" + response.status() + "'.");
+        }
+        JwksDTO jwks = (JwksDTO) new GsonDecoder().decode(response, JwksDTO.class);
+        Map<String, PublicKey> fetchedKeys = new HashMap<>();
+        if (jwks != null && jwks.getKeys() != null) {
+            KeyFactory keyFactory = KeyFactory.getInstance(RSA_KEY_TYPE);
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            for (JwkDTO jwk : jwks.getKeys()) {
+                if (!RSA_KEY_TYPE.equals(jwk.getKeyType()) || jwk.getModulus() == null || jwk.getExponent() == null
+                        || (jwk.getUse() != null && !SIGNATURE_USE.equals(jwk.getUse()))) {
+                    continue;
+                }
+                RSAPublicKeySpec keySpec = new RSAPublicKeySpec(new BigInteger(1, decoder.decode(jwk.getModulus())),
+                        new BigInteger(1, decoder.decode(jwk.getExponent())));
+                fetchedKeys.put(jwk.getKeyId() == null ? NO_KEY_ID : jwk.getKeyId(),
+                        keyFactory.generatePublic(keySpec));
+            }
+        }
+        return Collections.unmodifiableMap(fetchedKeys);
+    }
+}
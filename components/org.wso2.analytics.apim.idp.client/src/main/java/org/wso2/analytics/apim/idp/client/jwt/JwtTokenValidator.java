@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.jwt;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.analytics.apim.idp.client.dto.JwtClaimsDTO;
+import org.wso2.analytics.apim.idp.client.dto.JwtHeaderDTO;
+import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.AT;
+
+/**
+ *  Validates self-contained (JWT) access tokens locally, using the signing keys of the key manager. Only access tokens
+ *  of the dashboard clients which can be fully validated here are accepted. Anything else, such as opaque tokens,
+ *  tokens of another issuer or client, tokens without scopes or tokens signed by an unknown key, is left to token
+ *  introspection. Revocations are only known to the node which revoked the token. To eventually honor revocations at
+ *  the key manager or on other nodes, a token is validated locally only within the maximum age after it was issued,
+ *  or after it was last found active by introspection. Beyond that, the token is introspected again.
+ */
+public class JwtTokenValidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwtTokenValidator.class);
+    private static final long NOT_BEFORE_SKEW_SECONDS = 30;
+    private static final int REVOKED_TOKENS_CACHE_SIZE = 10000;
+    private static final int REVOKED_TOKENS_RETENTION_HOURS = 24;
+    private static final int CONFIRMED_TOKENS_CACHE_SIZE = 10000;
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = new HashMap<>();
+    private static final String JWT_TYPE = "JWT";
+    private static final String ACCESS_TOKEN_JWT_TYPE = "at+jwt";
+
+    static {
+        SIGNATURE_ALGORITHMS.put("RS256", "SHA256withRSA");
+        SIGNATURE_ALGORITHMS.put("RS384", "SHA384withRSA");
+        SIGNATURE_ALGORITHMS.put("RS512", "SHA512withRSA");
+    }
+
+    private final JwksKeyCache keyCache;
+    private final String issuer;
+    private final Gson gson = new Gson();
+    // Signatures of tokens revoked through this client. The key manager still considers them valid until they expire.
+    private final Cache<String, Boolean> revokedTokens = CacheBuilder.newBuilder()
+            .maximumSize(REVOKED_TOKENS_CACHE_SIZE)
+            .expireAfterWrite(REVOKED_TOKENS_RETENTION_HOURS, TimeUnit.HOURS)
+            .build();
+    private final long maxAgeSeconds;
+    // Signatures of tokens which introspection found active within the maximum age.
+    private final Cache<String, Boolean> confirmedTokens;
+
+    /**
+     * @param keyCache signing keys of the key manager.
+     * @param issuer expected issuer of the tokens, or null or empty to accept any issuer.
+     * @param maxAgeSeconds time a token is validated locally after it is issued or found active by introspection.
+     */
+    public JwtTokenValidator(JwksKeyCache keyCache, String issuer, long maxAgeSeconds) {
+        this.keyCache = keyCache;
+        this.issuer = issuer == null || issuer.isEmpty() ? null : issuer;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.confirmedTokens = CacheBuilder.newBuilder()
+                .maximumSize(CONFIRMED_TOKENS_CACHE_SIZE)
+                .expireAfterWrite(maxAgeSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Validates the token if it is a JWT access token signed by the key manager for one of the dashboard clients.
+     * @param token access token
+     * @param isClientId tells whether a client id is the id of a dashboard client
+     * @return the claims of the token, or null if the token cannot be validated locally and should be introspected,
+     * which includes tokens past the maximum age
+     * @throws AuthenticationException thrown when the token is signed by the key manager but is not valid
+     */
+    public JwtClaimsDTO validate(String token, Predicate<String> isClientId) throws AuthenticationException {
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            // Opaque token.
+            return null;
+        }
+        String encodedSignature = token.substring(payloadEnd + 1);
+        if (revokedTokens.getIfPresent(encodedSignature) != null) {
+            throw new AuthenticationException("The token has been revoked.");
+        }
+        JwtHeaderDTO header;
+        JwtClaimsDTO claims;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            header = gson.fromJson(new String(decoder.decode(token.substring(0, headerEnd)),
+                    StandardCharsets.UTF_8), JwtHeaderDTO.class);
+            claims = gson.fromJson(new String(decoder.decode(token.substring(headerEnd + 1, payloadEnd)),
+                    StandardCharsets.UTF_8), JwtClaimsDTO.class);
+            signature = decoder.decode(encodedSignature);
+        } catch (IllegalArgumentException | JsonParseException e) {
+            LOG.debug("Token is not a parsable JWT. It will be introspected.", e);
+            return null;
+        }
+        if (header == null || claims == null || !SIGNATURE_ALGORITHMS.containsKey(header.getAlgorithm())
+                || !isAccessTokenType(header.getType()) || claims.getExpiryTime() <= 0 || claims.getSubject() == null
+                || claims.getScope() == null || (issuer != null && !issuer.equals(claims.getIssuer()))) {
+            return null;
+        }
+        if (!isIssuedToClient(claims, isClientId)) {
+            return null;
+        }
+        if (!claims.getSubject().contains(AT)) {
+            // The tenant of the user is unknown, introspection returns the tenant qualified username.
+            return null;
+        }
+        PublicKey key = keyCache.getKey(header.getKeyId());
+        if (key == null) {
+            return null;
+        }
+        if (!verifySignature(SIGNATURE_ALGORITHMS.get(header.getAlgorithm()), key,
+                token.substring(0, payloadEnd), signature)) {
+            throw new AuthenticationException("The token signature is not valid.");
+        }
+        long currentTimeSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        if (claims.getExpiryTime() <= currentTimeSeconds) {
+            throw new AuthenticationException("The token has expired.");
+        }
+        if (claims.getNotBeforeTime() > currentTimeSeconds + NOT_BEFORE_SKEW_SECONDS) {
+            throw new AuthenticationException("The token is not valid yet.");
+        }
+        boolean withinMaxAge = claims.getIssuedAtTime() > 0
+                && currentTimeSeconds < claims.getIssuedAtTime() + maxAgeSeconds;
+        if (!withinMaxAge && confirmedTokens.getIfPresent(encodedSignature) == null) {
+            // The token may have been revoked at the key manager or on another node since then.
+            return null;
+        }
+        return claims;
+    }
+
+    /**
+     * Records that introspection found the token active, so that it is validated locally for the maximum age again.
+     * @param token access token which was found active
+     */
+    public void confirm(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart >= 0 && token.indexOf('.') != signatureStart) {
+            confirmedTokens.put(token.substring(signatureStart + 1), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Rejects the token from now on, if it is a JWT.
+     * @param token access token which was revoked
+     */
+    public void revoke(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart >= 0) {
+            revokedTokens.put(token.substring(signatureStart + 1), Boolean.TRUE);
+        }
+    }
+
+    private static boolean isAccessTokenType(String type) {
+        return type == null || JWT_TYPE.equalsIgnoreCase(type) || ACCESS_TOKEN_JWT_TYPE.equalsIgnoreCase(type);
+    }
+
+    /**
+     * Checks that the token was issued to a dashboard client. The audience should contain the client id, and the
+     * authorized party, if present, should be that client.
+     */
+    private static boolean isIssuedToClient(JwtClaimsDTO claims, Predicate<String> isClientId) {
+        if (claims.getAuthorizedParty() != null && !isClientId.test(claims.getAuthorizedParty())) {
+            return false;
+        }
+        for (String audience : claims.getAudiences()) {
+            if (isClientId.test(audience)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean verifySignature(String algorithm, PublicKey key, String signedContent, byte[] signature) {
+        try {
+            Signature verifier = Signature.getInstance(algorithm);
+            verifier.initVerify(key);
+            verifier.update(signedContent.getBytes(StandardCharsets.US_ASCII));
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            LOG.debug("Error occurred while verifying the token signature.", e);
+            return false;
+        }
+    }
+}
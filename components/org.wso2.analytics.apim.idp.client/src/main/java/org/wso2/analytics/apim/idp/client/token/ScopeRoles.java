@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.token;
+
+import org.wso2.carbon.analytics.idp.client.core.models.Role;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *  Immutable roles derived from a scope string for a tenant. Instances are shared between all users with the same
+ *  scopes in the same tenant.
+ */
+public final class ScopeRoles {
+
+    private final List<Role> roles;
+    private final Set<String> roleNames;
+
+    public ScopeRoles(List<Role> roles) {
+        this.roles = Collections.unmodifiableList(new ArrayList<>(roles));
+        Set<String> names = new HashSet<>();
+        for (Role role : roles) {
+            names.add(role.getDisplayName());
+        }
+        this.roleNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Returns the roles.
+     * @return unmodifiable list of roles.
+     */
+    public List<Role> getRoles() {
+        return roles;
+    }
+
+    /**
+     * Checks whether the given role is one of the roles.
+     * @param roleName display name of the role.
+     * @return true if the role is present.
+     */
+    public boolean hasRole(String roleName) {
+        return roleNames.contains(roleName);
+    }
+}
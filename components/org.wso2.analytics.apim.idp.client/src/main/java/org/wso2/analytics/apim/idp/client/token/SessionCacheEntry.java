@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.token;
+
+import org.wso2.carbon.analytics.idp.client.external.models.ExternalSession;
+
+/**
+ *  Cached result of validating an access token. An entry either holds the session of an active token, or marks the
+ *  token as inactive so that repeated requests with the same bad token do not reach the key manager.
+ */
+public class SessionCacheEntry {
+
+    private final ExternalSession session;
+    private final long expiryTimeMillis;
+
+    private SessionCacheEntry(ExternalSession session, long expiryTimeMillis) {
+        this.session = session;
+        this.expiryTimeMillis = expiryTimeMillis;
+    }
+
+    public static SessionCacheEntry active(ExternalSession session, long expiryTimeMillis) {
+        return new SessionCacheEntry(session, expiryTimeMillis);
+    }
+
+    public static SessionCacheEntry inactive(long expiryTimeMillis) {
+        return new SessionCacheEntry(null, expiryTimeMillis);
+    }
+
+    public ExternalSession getSession() {
+        return session;
+    }
+
+    public boolean isActive() {
+        return session != null;
+    }
+
+    public boolean isExpired(long currentTimeMillis) {
+        return currentTimeMillis >= expiryTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionCacheEntry{" +
+                "active=" + isActive() +
+                ", expiryTimeMillis=" + expiryTimeMillis +
+                '}';
+    }
+}
@@ -17,21 +17,52 @@
  */
 package org.wso2.analytics.apim.idp.client.token;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
- *  Singleton which stores the token data in a map.
+ *  Singleton which stores the token data of each user. Entries are indexed by their expiry time, so that each entry
+ *  is evicted when its token expires instead of by a periodic scan of the whole map. When the number of users exceeds
+ *  the maximum size, the least recently used entries are evicted first, and the evictions are counted and logged.
+ *  The size and the hit, miss and eviction counts are published as an MXBean.
  */
-public class TokenDataHolder {
+public class TokenDataHolder implements TokenDataHolderMXBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(TokenDataHolder.class);
-    private static Map<String, TokenData> tokenDataMap = new ConcurrentHashMap<>();
+    private static final long EXPIRY_CHECK_INTERVAL_MILLIS = 1000;
+    private static final String OBJECT_NAME = "org.wso2.analytics.apim.idp.client:type=TokenData";
     private static TokenDataHolder instance = new TokenDataHolder();
 
+    private final Map<String, TokenData> tokenDataMap = new ConcurrentHashMap<>();
+    // Guarded by expiryIndex. Holds one entry for each key of the token data map.
+    private final TreeSet<ExpiryIndexEntry> expiryIndex = new TreeSet<>();
+    // Guarded by expiryIndex. In access order, hence the first entry is the least recently used one.
+    private final LinkedHashMap<String, ExpiryIndexEntry> expiryIndexEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong indexEntrySequence = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder sizeEvictionCount = new LongAdder();
+    private volatile int maxSize = Integer.MAX_VALUE;
+    private ScheduledExecutorService expiryExecutor;
+    private ObjectName objectName;
+
     private TokenDataHolder() {
 
     }
@@ -51,8 +82,35 @@ public class TokenDataHolder {
      */
     public void addTokenDataToMap(String key, TokenData value) {
         if (key != null && value != null) {
-            tokenDataMap.put(key, value);
-            LOG.debug("Adding token data key, value pair to the token map :" + key + " , " + value.toString());
+            ExpiryIndexEntry entry = new ExpiryIndexEntry(key, value, indexEntrySequence.incrementAndGet());
+            synchronized (expiryIndex) {
+                tokenDataMap.put(key, value);
+                ExpiryIndexEntry replacedEntry = expiryIndexEntries.put(key, entry);
+                if (replacedEntry != null) {
+                    expiryIndex.remove(replacedEntry);
+                }
+                expiryIndex.add(entry);
+                Iterator<ExpiryIndexEntry> leastRecentlyUsed = expiryIndexEntries.values().iterator();
+                while (tokenDataMap.size() > maxSize && leastRecentlyUsed.hasNext()) {
+                    ExpiryIndexEntry evictedEntry = leastRecentlyUsed.next();
+                    leastRecentlyUsed.remove();
+                    expiryIndex.remove(evictedEntry);
+                    tokenDataMap.remove(evictedEntry.key);
+                    evictionCount.increment();
+                    sizeEvictionCount.increment();
+                    if (sizeEvictionCount.sum() == 1) {
+                        LOG.warn("Token data of more than " + maxSize + " users is cached. The least recently used "
+                                + "token data is evicted, which causes additional token introspection calls. "
+                                + "Consider increasing the token data max size.");
+                    } else if (LOG.isDebugEnabled()) {
+                        LOG.debug("Token data map is full. Evicted the least recently used token data of user: "
+                                + evictedEntry.key);
+                    }
+                }
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Adding token data key, value pair to the token map :" + key + " , " + value.toString());
+            }
         }
     }
 
@@ -62,16 +120,181 @@ public class TokenDataHolder {
      */
     public void removeTokenDataFromMap(String key) {
         if (key != null) {
-            tokenDataMap.remove(key);
+            synchronized (expiryIndex) {
+                tokenDataMap.remove(key);
+                ExpiryIndexEntry entry = expiryIndexEntries.remove(key);
+                if (entry != null) {
+                    expiryIndex.remove(entry);
+                }
+            }
             LOG.debug("Removed token data key, value pair from the token map for key:" + key + ".");
         }
     }
 
     /**
-     * Fetches the token map.
-     * @return tokenDataMap
+     * Returns the token data of a user, if the token has not expired.
+     * @param key name of the user which the access token belongs to.
+     * @return data of the token, or null if there is no unexpired token of the user.
+     */
+    public TokenData getTokenData(String key) {
+        TokenData tokenData = tokenDataMap.get(key);
+        if (tokenData != null && isExpired(tokenData, System.currentTimeMillis())) {
+            // Not evicted by the expiry task yet.
+            tokenData = null;
+        }
+        if (tokenData == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+            if (maxSize != Integer.MAX_VALUE) {
+                // Recency is only tracked when entries can be evicted because of the maximum size.
+                synchronized (expiryIndex) {
+                    expiryIndexEntries.get(key);
+                }
+            }
+        }
+        return tokenData;
+    }
+
+    /**
+     * Sets the maximum number of users whose token data is kept.
+     * @param maxSize maximum number of entries.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Starts the task which evicts the entries of expired tokens.
+     */
+    public synchronized void startExpiryTask() {
+        if (expiryExecutor == null) {
+            expiryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("apim-idp-token-data-expiry").setDaemon(true).build());
+            expiryExecutor.scheduleWithFixedDelay(this::evictExpiredEntries, EXPIRY_CHECK_INTERVAL_MILLIS,
+                    EXPIRY_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the task which evicts the entries of expired tokens.
      */
-    public Map<String, TokenData> getTokenMap() {
-        return tokenDataMap;
+    public synchronized void stopExpiryTask() {
+        if (expiryExecutor != null) {
+            expiryExecutor.shutdownNow();
+            expiryExecutor = null;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return tokenDataMap.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public long getSizeEvictionCount() {
+        return sizeEvictionCount.sum();
+    }
+
+    /**
+     * Registers the token data statistics in the platform MBean server.
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(this, name);
+            }
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("Could not register the token data MBean.", e);
+        }
+    }
+
+    /**
+     * Removes the token data statistics from the platform MBean server.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.debug("Could not unregister the token data MBean.", e);
+        }
+        objectName = null;
+    }
+
+    private void evictExpiredEntries() {
+        long currentTimeMillis = System.currentTimeMillis();
+        int count = 0;
+        synchronized (expiryIndex) {
+            ExpiryIndexEntry head;
+            while (!expiryIndex.isEmpty() && (head = expiryIndex.first()).expiryTimeMillis <= currentTimeMillis) {
+                evict(head);
+                count++;
+            }
+        }
+        if (count > 0 && LOG.isDebugEnabled()) {
+            LOG.debug("Number of removed tokens from the tokenData map : " + count);
+        }
+    }
+
+    /**
+     * Removes an indexed entry from the map and from the index. Should be called while holding the index lock.
+     * @param entry index entry
+     */
+    private void evict(ExpiryIndexEntry entry) {
+        expiryIndex.remove(entry);
+        expiryIndexEntries.remove(entry.key);
+        tokenDataMap.remove(entry.key);
+        evictionCount.increment();
+    }
+
+    private static boolean isExpired(TokenData tokenData, long currentTimeMillis) {
+        return currentTimeMillis > TimeUnit.SECONDS.toMillis(tokenData.getExpireTimestamp());
+    }
+
+    /**
+     * Position of a token data entry in the expiry index.
+     */
+    private static final class ExpiryIndexEntry implements Comparable<ExpiryIndexEntry> {
+
+        private final String key;
+        private final long expiryTimeMillis;
+        // Orders entries with the same expiry time, so that none of them is dropped from the index.
+        private final long sequence;
+
+        private ExpiryIndexEntry(String key, TokenData tokenData, long sequence) {
+            this.key = key;
+            this.expiryTimeMillis = TimeUnit.SECONDS.toMillis(tokenData.getExpireTimestamp());
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(ExpiryIndexEntry other) {
+            int comparison = Long.compare(expiryTimeMillis, other.expiryTimeMillis);
+            return comparison != 0 ? comparison : Long.compare(sequence, other.sequence);
+        }
     }
 }
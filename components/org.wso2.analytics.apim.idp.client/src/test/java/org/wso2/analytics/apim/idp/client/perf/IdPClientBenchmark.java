@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.perf;
+
+import feign.Feign;
+import feign.Request;
+import feign.auth.BasicAuthRequestInterceptor;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.analytics.apim.idp.client.ApimAdminApiClient;
+import org.wso2.analytics.apim.idp.client.ApimIdPClient;
+import org.wso2.analytics.apim.idp.client.ApimIdPClientBuilder;
+import org.wso2.analytics.apim.idp.client.ApimIdPClientConstants;
+import org.wso2.analytics.apim.idp.client.dao.OAuthAppDAO;
+import org.wso2.analytics.apim.idp.client.http.AsyncOAuth2ServiceStubs;
+import org.wso2.analytics.apim.idp.client.http.KeyManagerHttpClient;
+import org.wso2.analytics.apim.idp.client.http.PooledOAuth2ServiceStubs;
+import org.wso2.analytics.apim.idp.client.token.TokenDataHolder;
+import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
+import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
+import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
+import org.wso2.carbon.analytics.idp.client.core.utils.IdPClientConstants;
+import org.wso2.carbon.analytics.idp.client.external.impl.DCRMServiceStub;
+import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
+import org.wso2.carbon.analytics.idp.client.external.models.OAuthApplicationInfo;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JMH benchmarks of login, authCodeLogin and authenticate of the APIM IdP client under concurrent load, without a
+ * running API Manager. The client talks to a {@link KeyManagerStandIn} over HTTP and keeps its system apps in an
+ * in-memory H2 AM_SYSTEM_APPS table. JMH reports the throughput and the latency percentiles of each benchmark, and
+ * the remote calls per operation are printed at the end of each iteration, so that the effect of caching and of the
+ * pooled client can be compared.
+ *
+ * Example, with a key manager round trip of 20 ms:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main IdPClientBenchmark -t 32 -p latencyMillis=20"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class IdPClientBenchmark {
+
+    private static final String USERNAME = "admin@" + ApimIdPClientConstants.SUPER_TENANT_DOMAIN;
+    private static final String DATABASE_NAME = "AM_DB";
+    private static final int CONNECTION_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 60000;
+
+    /**
+     * Delay of each key manager response in milliseconds.
+     */
+    @Param("5")
+    public long latencyMillis;
+
+    /**
+     * Number of threads serving the key manager stand-in.
+     */
+    @Param("64")
+    public int standInThreads;
+
+    /**
+     * Number of distinct access tokens used by the authenticate benchmark.
+     */
+    @Param("1000")
+    public int tokenCount;
+
+    /**
+     * Whether the key manager stubs use the pooled http client, which also enables the asynchronous validation.
+     */
+    @Param("false")
+    public boolean pooled;
+
+    private KeyManagerStandIn standIn;
+    private KeyManagerHttpClient keyManagerHttpClient;
+    private ApimIdPClient idPClient;
+    private final List<String> tokens = new ArrayList<>();
+    private final LongAdder operations = new LongAdder();
+    private Map<String, Long> callsBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException, GeneralSecurityException {
+        standIn = new KeyManagerStandIn(0, standInThreads, latencyMillis, USERNAME,
+                ApimIdPClientConstants.DEFAULT_ADMIN_SCOPE + " " + ApimIdPClientConstants.OPEN_ID_SCOPE);
+        standIn.start();
+        TokenDataHolder.getInstance().startExpiryTask();
+        if (pooled) {
+            keyManagerHttpClient = new KeyManagerHttpClient(standInThreads, 300, standInThreads, CONNECTION_TIMEOUT,
+                    READ_TIMEOUT, true);
+        }
+        idPClient = createIdPClient(standIn, keyManagerHttpClient);
+        for (int i = 0; i < tokenCount; i++) {
+            tokens.add(standIn.issueAccessToken());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        TokenDataHolder.getInstance().stopExpiryTask();
+        if (keyManagerHttpClient != null) {
+            keyManagerHttpClient.shutdown();
+        }
+        standIn.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        operations.reset();
+        callsBefore = standIn.getCallCounts();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printRemoteCalls() {
+        long count = operations.sum();
+        StringBuilder callsPerOperation = new StringBuilder("remote calls/op:");
+        for (Map.Entry<String, Long> calls : standIn.getCallCounts().entrySet()) {
+            long delta = calls.getValue() - callsBefore.getOrDefault(calls.getKey(), 0L);
+            if (delta > 0) {
+                callsPerOperation.append(String.format(Locale.ENGLISH, " %s=%.3f", calls.getKey(),
+                        count == 0 ? 0 : (double) delta / count));
+            }
+        }
+        System.out.println(callsPerOperation);
+    }
+
+    /**
+     * Authenticates one of a fixed set of tokens, so that most calls are served from the token cache.
+     */
+    @Benchmark
+    public String authenticate() throws AuthenticationException, IdPClientException {
+        operations.increment();
+        return idPClient.authenticate(tokens.get(ThreadLocalRandom.current().nextInt(tokens.size())));
+    }
+
+    /**
+     * Authenticates a newly issued token, which is always introspected.
+     */
+    @Benchmark
+    public String authenticateCold() throws AuthenticationException, IdPClientException {
+        operations.increment();
+        return idPClient.authenticate(standIn.issueAccessToken());
+    }
+
+    /**
+     * Authenticates a newly issued token with the asynchronous variant, waiting for the result.
+     */
+    @Benchmark
+    public String authenticateAsync() {
+        operations.increment();
+        return idPClient.authenticateAsync(standIn.issueAccessToken()).join();
+    }
+
+    /**
+     * Logs in with the refresh grant.
+     */
+    @Benchmark
+    public Map<String, String> login() throws IdPClientException {
+        operations.increment();
+        Map<String, String> properties = new HashMap<>();
+        properties.put(IdPClientConstants.GRANT_TYPE, IdPClientConstants.REFRESH_GRANT_TYPE);
+        properties.put(IdPClientConstants.REFRESH_TOKEN, standIn.issueRefreshToken());
+        properties.put(IdPClientConstants.APP_NAME, ApimIdPClientConstants.DEFAULT_PORTAL_APP_CONTEXT);
+        return idPClient.login(properties);
+    }
+
+    /**
+     * Logs in with an authorization code.
+     */
+    @Benchmark
+    public Map<String, String> authCodeLogin() throws IdPClientException {
+        operations.increment();
+        return idPClient.authCodeLogin(ApimIdPClientConstants.DEFAULT_PORTAL_APP_CONTEXT,
+                UUID.randomUUID().toString());
+    }
+
+    /**
+     * Creates the IdP client the same way as the factory does, with its key manager, admin API and database
+     * dependencies pointed at the stand-ins.
+     */
+    private static ApimIdPClient createIdPClient(KeyManagerStandIn standIn, KeyManagerHttpClient keyManagerHttpClient)
+            throws SQLException {
+        String baseUrl = standIn.getBaseUrl();
+        String kmUrl = baseUrl + KeyManagerStandIn.OAUTH2_CONTEXT;
+        AnalyticsHttpClientBuilderService httpClientBuilderService = newProxy(AnalyticsHttpClientBuilderService.class,
+                (method, args) -> "build".equals(method.getName()) && args.length == 6
+                        ? Feign.builder()
+                        .requestInterceptor(new BasicAuthRequestInterceptor((String) args[0], (String) args[1]))
+                        .options(new Request.Options((Integer) args[2], (Integer) args[3]))
+                        .target((Class<?>) args[4], (String) args[5])
+                        : null);
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + DATABASE_NAME + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS AM_SYSTEM_APPS (ID INTEGER AUTO_INCREMENT, "
+                    + "NAME VARCHAR(50) NOT NULL, CONSUMER_KEY VARCHAR(512) NOT NULL, "
+                    + "CONSUMER_SECRET VARCHAR(512) NOT NULL, TENANT_DOMAIN VARCHAR(255) DEFAULT 'carbon.super', "
+                    + "CREATED_TIME TIMESTAMP DEFAULT CURRENT_TIMESTAMP, UNIQUE (NAME, TENANT_DOMAIN), "
+                    + "PRIMARY KEY (ID))");
+        }
+        DataSourceService dataSourceService = newProxy(DataSourceService.class,
+                (method, args) -> "getDataSource".equals(method.getName()) ? dataSource : null);
+
+        Map<String, OAuthApplicationInfo> oAuthAppInfoMap = new ConcurrentHashMap<>();
+        oAuthAppInfoMap.put(ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT,
+                new OAuthApplicationInfo(ApimIdPClientConstants.SP_APP_NAME, null, null));
+        oAuthAppInfoMap.put(ApimIdPClientConstants.DEFAULT_PORTAL_APP_CONTEXT,
+                new OAuthApplicationInfo(ApimIdPClientConstants.PORTAL_APP_NAME, null, null));
+        oAuthAppInfoMap.put(ApimIdPClientConstants.DEFAULT_BR_DB_APP_CONTEXT,
+                new OAuthApplicationInfo(ApimIdPClientConstants.BR_DB_APP_NAME, null, null));
+
+        String kmUsername = ApimIdPClientConstants.DEFAULT_KM_USERNAME;
+        String kmPassword = ApimIdPClientConstants.DEFAULT_KM_PASSWORD;
+        DCRMServiceStub dcrmServiceStub = httpClientBuilderService.build(kmUsername, kmPassword, CONNECTION_TIMEOUT,
+                READ_TIMEOUT, DCRMServiceStub.class, baseUrl + KeyManagerStandIn.DCR_CONTEXT);
+        OAuth2ServiceStubs oAuth2ServiceStubs;
+        AsyncOAuth2ServiceStubs asyncOAuth2ServiceStubs = null;
+        if (keyManagerHttpClient == null) {
+            oAuth2ServiceStubs = new OAuth2ServiceStubs(httpClientBuilderService,
+                    kmUrl + ApimIdPClientConstants.TOKEN_POSTFIX, kmUrl + ApimIdPClientConstants.REVOKE_POSTFIX,
+                    kmUrl + ApimIdPClientConstants.INTROSPECT_POSTFIX, kmUsername, kmPassword, CONNECTION_TIMEOUT,
+                    READ_TIMEOUT);
+        } else {
+            oAuth2ServiceStubs = new PooledOAuth2ServiceStubs(httpClientBuilderService, keyManagerHttpClient,
+                    kmUrl + ApimIdPClientConstants.TOKEN_POSTFIX, kmUrl + ApimIdPClientConstants.REVOKE_POSTFIX,
+                    kmUrl + ApimIdPClientConstants.INTROSPECT_POSTFIX, kmUsername, kmPassword, CONNECTION_TIMEOUT,
+                    READ_TIMEOUT);
+            asyncOAuth2ServiceStubs = new AsyncOAuth2ServiceStubs(keyManagerHttpClient,
+                    kmUrl + ApimIdPClientConstants.TOKEN_POSTFIX, kmUrl + ApimIdPClientConstants.INTROSPECT_POSTFIX,
+                    kmUsername, kmPassword);
+        }
+        ApimAdminApiClient apimAdminApiClient = httpClientBuilderService.build(kmUsername, kmPassword,
+                CONNECTION_TIMEOUT, READ_TIMEOUT, ApimAdminApiClient.class,
+                baseUrl + KeyManagerStandIn.CUSTOM_URL_CONTEXT);
+
+        return new ApimIdPClientBuilder()
+                .setAdminServiceUsername(kmUsername)
+                .setBaseUrl(ApimIdPClientConstants.DEFAULT_BASE_URL)
+                .setoAuthAppDAO(new OAuthAppDAO(dataSourceService, DATABASE_NAME, new ArrayList<>()))
+                .setAuthorizeEndpoint(kmUrl + ApimIdPClientConstants.AUTHORIZE_POSTFIX)
+                .setGrantType(IdPClientConstants.AUTHORIZATION_CODE_GRANT_TYPE)
+                .setAdminScopeName(ApimIdPClientConstants.DEFAULT_ADMIN_SCOPE)
+                .setAllScopes(ApimIdPClientConstants.DEFAULT_ALL_SCOPES)
+                .setoAuthAppInfoMap(oAuthAppInfoMap)
+                .setCacheTimeout(Integer.parseInt(ApimIdPClientConstants.DEFAULT_CACHE_TIMEOUT))
+                .setNegativeCacheTimeout(Integer.parseInt(ApimIdPClientConstants.DEFAULT_NEGATIVE_CACHE_TIMEOUT))
+                .setTenantInfoRefreshInterval(
+                        Integer.parseInt(ApimIdPClientConstants.DEFAULT_TENANT_INFO_REFRESH_INTERVAL))
+                .setKmUserName(kmUsername)
+                .setDcrmServiceStub(dcrmServiceStub)
+                .setoAuth2ServiceStubs(oAuth2ServiceStubs)
+                .setIsSSOEnabled(false)
+                .setSsoLogoutURL(ApimIdPClientConstants.DEFAULT_EXTERNAL_SSO_LOGOUT_URL)
+                .setIsHostnameVerifierEnabled(true)
+                .setApimAdminApiClient(apimAdminApiClient)
+                .setAsyncOAuth2ServiceStubs(asyncOAuth2ServiceStubs)
+                .setPortalAppContext(ApimIdPClientConstants.DEFAULT_PORTAL_APP_CONTEXT)
+                .setBrAppContext(ApimIdPClientConstants.DEFAULT_BR_DB_APP_CONTEXT)
+                .createApimIdPClient();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, ProxyMethod proxyMethod) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName() + " stand-in";
+                }
+            }
+            Object result = proxyMethod.invoke(method, args == null ? new Object[0] : args);
+            if (result == null) {
+                throw new UnsupportedOperationException(method.getName() + " is not supported by the stand-in.");
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    /**
+     * Implementation of the methods of a stand-in service.
+     */
+    private interface ProxyMethod {
+
+        /**
+         * @return the result, or null if the method is not supported.
+         */
+        Object invoke(Method method, Object[] args);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.perf;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the API Manager endpoints used by the IdP client: token, introspect, revoke and JWKS of the key
+ * manager, DCR, and the admin custom URL API. It issues opaque tokens, answers after a configurable delay to model
+ * the key manager round trip, and counts the calls made to each endpoint.
+ */
+public class KeyManagerStandIn {
+
+    public static final String TOKEN_ENDPOINT = "token";
+    public static final String INTROSPECT_ENDPOINT = "introspect";
+    public static final String REVOKE_ENDPOINT = "revoke";
+    public static final String JWKS_ENDPOINT = "jwks";
+    public static final String DCR_ENDPOINT = "dcr";
+    public static final String CUSTOM_URL_ENDPOINT = "customUrl";
+
+    static final String OAUTH2_CONTEXT = "/oauth2";
+    static final String DCR_CONTEXT = "/client-registration/v0.15/register";
+    static final String CUSTOM_URL_CONTEXT = "/api/am/admin/v1/custom-urls";
+
+    private static final long TOKEN_VALIDITY_SECONDS = 3600;
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String APPLICATION_JSON = "application/json";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final String username;
+    private final String scope;
+    private final Gson gson = new Gson();
+    private final Map<String, IssuedToken> accessTokens = new ConcurrentHashMap<>();
+    private final Map<String, IssuedToken> refreshTokens = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> callCounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param port port to listen on, 0 for any free port.
+     * @param threads number of threads serving requests.
+     * @param latencyMillis delay added to every response.
+     * @param username tenant qualified user the tokens are issued to.
+     * @param scope scopes of the issued tokens.
+     * @throws IOException if the server cannot be bound.
+     */
+    public KeyManagerStandIn(int port, int threads, long latencyMillis, String username, String scope)
+            throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.username = username;
+        this.scope = scope;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("km-stand-in-%d").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.createContext(OAUTH2_CONTEXT + "/token", exchange -> handle(exchange, TOKEN_ENDPOINT));
+        server.createContext(OAUTH2_CONTEXT + "/introspect", exchange -> handle(exchange, INTROSPECT_ENDPOINT));
+        server.createContext(OAUTH2_CONTEXT + "/revoke", exchange -> handle(exchange, REVOKE_ENDPOINT));
+        server.createContext(OAUTH2_CONTEXT + "/jwks", exchange -> handle(exchange, JWKS_ENDPOINT));
+        server.createContext(DCR_CONTEXT, exchange -> handle(exchange, DCR_ENDPOINT));
+        server.createContext(CUSTOM_URL_CONTEXT, exchange -> handle(exchange, CUSTOM_URL_ENDPOINT));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Issues an access token without a call to the token endpoint.
+     * @return the access token.
+     */
+    public String issueAccessToken() {
+        return issueToken().accessToken;
+    }
+
+    /**
+     * Issues a refresh token without a call to the token endpoint.
+     * @return the refresh token.
+     */
+    public String issueRefreshToken() {
+        return issueToken().refreshToken;
+    }
+
+    /**
+     * Returns the number of calls made to each endpoint so far.
+     * @return call counts by endpoint name.
+     */
+    public Map<String, Long> getCallCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> callCount : callCounts.entrySet()) {
+            counts.put(callCount.getKey(), callCount.getValue().sum());
+        }
+        return counts;
+    }
+
+    private IssuedToken issueToken() {
+        IssuedToken token = new IssuedToken(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + TOKEN_VALIDITY_SECONDS);
+        accessTokens.put(token.accessToken, token);
+        refreshTokens.put(token.refreshToken, token);
+        return token;
+    }
+
+    private void handle(HttpExchange exchange, String endpoint) throws IOException {
+        callCounts.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+        try {
+            String body = readBody(exchange.getRequestBody());
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            String response;
+            switch (endpoint) {
+                case TOKEN_ENDPOINT:
+                    response = token(parseForm(body));
+                    break;
+                case INTROSPECT_ENDPOINT:
+                    response = introspect(parseForm(body));
+                    break;
+                case JWKS_ENDPOINT:
+                    response = "{\"keys\":[]}";
+                    break;
+                case DCR_ENDPOINT:
+                    response = register(body);
+                    break;
+                case CUSTOM_URL_ENDPOINT:
+                    response = customUrl(exchange.getRequestURI().getPath());
+                    break;
+                default:
+                    response = "";
+                    break;
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set(CONTENT_TYPE, APPLICATION_JSON);
+            exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(bytes);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String token(Map<String, String> form) {
+        IssuedToken previous = "refresh_token".equals(form.get("grant_type"))
+                ? refreshTokens.remove(form.get("refresh_token")) : null;
+        if (previous != null) {
+            accessTokens.remove(previous.accessToken);
+        }
+        IssuedToken token = issueToken();
+        JsonObject response = new JsonObject();
+        response.addProperty("access_token", token.accessToken);
+        response.addProperty("refresh_token", token.refreshToken);
+        response.addProperty("id_token", UUID.randomUUID().toString());
+        response.addProperty("scope", scope);
+        response.addProperty("token_type", "Bearer");
+        response.addProperty("expires_in", TOKEN_VALIDITY_SECONDS);
+        return gson.toJson(response);
+    }
+
+    private String introspect(Map<String, String> form) {
+        IssuedToken token = accessTokens.get(form.getOrDefault("token", ""));
+        JsonObject response = new JsonObject();
+        response.addProperty("active", token != null);
+        if (token != null) {
+            response.addProperty("username", username);
+            response.addProperty("scope", scope);
+            response.addProperty("exp", token.expiryTime);
+            response.addProperty("token_type", "Bearer");
+        }
+        return gson.toJson(response);
+    }
+
+    private String register(String body) {
+        JsonObject request = gson.fromJson(body, JsonObject.class);
+        JsonObject response = new JsonObject();
+        response.addProperty("clientId", UUID.randomUUID().toString());
+        response.addProperty("clientSecret", UUID.randomUUID().toString());
+        response.addProperty("clientName", request != null && request.has("clientName")
+                ? request.get("clientName").getAsString() : "app");
+        return gson.toJson(response);
+    }
+
+    private String customUrl(String path) {
+        String tenantDomain = path.substring(path.lastIndexOf('/') + 1);
+        JsonObject response = new JsonObject();
+        response.addProperty("tenantDomain", tenantDomain);
+        response.addProperty("tenantAdminUsername", "admin@" + tenantDomain);
+        response.addProperty("enabled", false);
+        return gson.toJson(response);
+    }
+
+    private static String readBody(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseForm(String body) throws UnsupportedEncodingException {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8.name()),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8.name()));
+            }
+        }
+        return form;
+    }
+
+    /**
+     * Access and refresh token pair issued by the stand-in.
+     */
+    private static final class IssuedToken {
+
+        private final String accessToken;
+        private final String refreshToken;
+        private final long expiryTime;
+
+        private IssuedToken(String accessToken, String refreshToken, long expiryTime) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -15,50 +15,67 @@
  */
 package org.wso2.analytics.apim.rest.api.proxy;
 
-import feign.Client;
 import feign.Feign;
 import feign.Headers;
 import feign.Param;
+import feign.Request;
 import feign.RequestLine;
 import feign.Response;
 import feign.gson.GsonDecoder;
 import feign.gson.GsonEncoder;
-import feign.okhttp.OkHttpClient;
-import org.wso2.analytics.apim.rest.api.proxy.internal.ServiceHolder;
-import org.wso2.carbon.kernel.config.model.CarbonConfiguration;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+import java.util.concurrent.TimeUnit;
 
 /**
- * This is the stub class for APIM Publisher and Store REST APIs.
+ * This is the stub class for APIM Publisher and Store REST APIs. The stubs are thread safe and are built once, over
+ * a single HTTP client which keeps the connections to the servers alive in a sized pool.
  */
 public class APIMServiceStubs {
 
-    private String publisherEndpoint;
-    private String storeEndpoint;
-
+    private final OkHttpClient httpClient;
+    private final PublisherServiceStub publisherServiceStub;
+    private final StoreServiceStub storeServiceStub;
 
     /**
-     * Get a new OkHttpClient instance.
+     * Constructor.
      *
-     * @return a OkHttpClient instance
+     * @param publisherEndpoint Publisher REST API endpoint, or null if there is no publisher
+     * @param storeEndpoint     Store REST API endpoint, or null if there is no store
+     * @param configuration     proxy configuration with the timeouts and the connection pool size
      */
-    public Client newOkHttpClientInstance() {
-        CarbonConfiguration carbonConfiguration = ServiceHolder.getInstance().getCarbonConfiguration();
-        if (!carbonConfiguration.isHostnameVerificationEnabled()) {
-            return new OkHttpClient.Default(null, (hostName, sslSession) -> true);
-        } else {
-            return new OkHttpClient.Default(null, null);
+    public APIMServiceStubs(String publisherEndpoint, String storeEndpoint, ProxyConfiguration configuration) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(configuration.getHttpMaxIdleConnections(),
+                        configuration.getHttpKeepAliveDuration(), TimeUnit.SECONDS))
+                .connectTimeout(configuration.getConnectionTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(configuration.getReadTimeout(), TimeUnit.MILLISECONDS);
+        if (!configuration.isHostnameVerificationEnabled()) {
+            builder.hostnameVerifier((hostName, sslSession) -> true);
         }
+        this.httpClient = builder.build();
+        Request.Options options = new Request.Options(configuration.getConnectionTimeout(),
+                configuration.getReadTimeout());
+        this.publisherServiceStub = publisherEndpoint == null ? null :
+                newFeignBuilder(options).target(PublisherServiceStub.class, publisherEndpoint);
+        this.storeServiceStub = storeEndpoint == null ? null :
+                newFeignBuilder(options).target(StoreServiceStub.class, storeEndpoint);
+    }
+
+    private Feign.Builder newFeignBuilder(Request.Options options) {
+        return Feign.builder()
+                .encoder(new GsonEncoder())
+                .decoder(new GsonDecoder())
+                .options(options)
+                .client(new feign.okhttp.OkHttpClient(httpClient));
     }
 
     /**
-     * Constructor.
-     *
-     * @param publisherEndpoint Publisher REST API endpoint
-     * @param storeEndpoint     Store REST API endpoint
+     * Closes the idle connections of the pool. Calls which are in progress are not affected.
      */
-    public APIMServiceStubs(String publisherEndpoint, String storeEndpoint) {
-        this.publisherEndpoint = publisherEndpoint;
-        this.storeEndpoint = storeEndpoint;
+    public void close() {
+        httpClient.connectionPool().evictAll();
     }
 
     /**
@@ -99,16 +116,12 @@ public class APIMServiceStubs {
     }
 
     /**
-     * Create and return APIM Publisher REST API service stub.
+     * Return APIM Publisher REST API service stub.
      *
-     * @return Publisher REST API service stub
+     * @return Publisher REST API service stub, or null if there is no publisher endpoint
      */
     public APIMServiceStubs.PublisherServiceStub getPublisherServiceStub() {
-        return Feign.builder()
-                .encoder(new GsonEncoder())
-                .decoder(new GsonDecoder())
-                .client(newOkHttpClientInstance())
-                .target(APIMServiceStubs.PublisherServiceStub.class, publisherEndpoint);
+        return publisherServiceStub;
     }
 
     /**
@@ -133,15 +146,11 @@ public class APIMServiceStubs {
     }
 
     /**
-     * Create and return APIM Store REST API service stub.
+     * Return APIM Store REST API service stub.
      *
-     * @return Store REST API service stub
+     * @return Store REST API service stub, or null if there is no store endpoint
      */
     public APIMServiceStubs.StoreServiceStub getStoreServiceStub() {
-        return Feign.builder()
-                .encoder(new GsonEncoder())
-                .decoder(new GsonDecoder())
-                .client(newOkHttpClientInstance())
-                .target(APIMServiceStubs.StoreServiceStub.class, storeEndpoint);
+        return storeServiceStub;
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.analytics.apim.rest.api.proxy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Properties of auth.configs used by the proxy, read once from the deployment file when the config provider is bound.
+ * Changes to auth.configs take effect after a restart.
+ */
+public final class ProxyConfiguration {
+
+    private static final Log log = LogFactory.getLog(ProxyConfiguration.class);
+    private static final String CONNECTION_TIMEOUT = "connectionTimeout";
+    private static final String DEV_PORTAL_URL = "devPortalUrl";
+    private static final String HTTP_KEEP_ALIVE_DURATION = "httpKeepAliveDuration";
+    private static final String HTTP_MAX_IDLE_CONNECTIONS = "httpMaxIdleConnections";
+    private static final String INTROSPECTION_URL = "introspectionUrl";
+    private static final String INTROSPECT_POSTFIX = "/introspect";
+    private static final String KM_PASSWORD = "kmPassword";
+    private static final String KM_TOKEN_URL = "kmTokenUrl";
+    private static final String KM_USERNAME = "kmUsername";
+    private static final String PROPERTIES = "properties";
+    private static final String PUBLISHER_URL = "publisherUrl";
+    private static final String READ_TIMEOUT = "readTimeout";
+    private static final String DEFAULT_KM_USERNAME = "admin";
+    private static final String DEFAULT_KM_PASSWORD = "admin";
+    private static final String DEFAULT_KM_TOKEN_URL = "https://localhost:9443/oauth2";
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 10000;
+    private static final int DEFAULT_READ_TIMEOUT = 60000;
+    private static final int DEFAULT_HTTP_MAX_IDLE_CONNECTIONS = 20;
+    private static final int DEFAULT_HTTP_KEEP_ALIVE_DURATION = 300;
+
+    private final String publisherUrl;
+    private final String devPortalUrl;
+    private final String kmTokenUrl;
+    private final String introspectionUrl;
+    private final String kmUsername;
+    private final String kmPassword;
+    private final int connectionTimeout;
+    private final int readTimeout;
+    private final int httpMaxIdleConnections;
+    private final int httpKeepAliveDuration;
+    private final boolean hostnameVerificationEnabled;
+
+    private ProxyConfiguration(Map<?, ?> properties, boolean hostnameVerificationEnabled) {
+        this.publisherUrl = getProperty(properties, PUBLISHER_URL, null);
+        this.devPortalUrl = getProperty(properties, DEV_PORTAL_URL, publisherUrl);
+        this.kmTokenUrl = getProperty(properties, KM_TOKEN_URL, DEFAULT_KM_TOKEN_URL);
+        this.introspectionUrl = getProperty(properties, INTROSPECTION_URL, kmTokenUrl + INTROSPECT_POSTFIX);
+        this.kmUsername = getProperty(properties, KM_USERNAME, DEFAULT_KM_USERNAME);
+        this.kmPassword = getProperty(properties, KM_PASSWORD, DEFAULT_KM_PASSWORD);
+        this.connectionTimeout = getIntProperty(properties, CONNECTION_TIMEOUT, DEFAULT_CONNECTION_TIMEOUT);
+        this.readTimeout = getIntProperty(properties, READ_TIMEOUT, DEFAULT_READ_TIMEOUT);
+        this.httpMaxIdleConnections = getIntProperty(properties, HTTP_MAX_IDLE_CONNECTIONS,
+                DEFAULT_HTTP_MAX_IDLE_CONNECTIONS);
+        this.httpKeepAliveDuration = getIntProperty(properties, HTTP_KEEP_ALIVE_DURATION,
+                DEFAULT_HTTP_KEEP_ALIVE_DURATION);
+        this.hostnameVerificationEnabled = hostnameVerificationEnabled;
+    }
+
+    /**
+     * Reads the proxy configuration from auth.configs.
+     *
+     * @param authConfig                  the auth.configs object of the deployment file
+     * @param hostnameVerificationEnabled whether the hostnames of the APIM servers are verified
+     * @return the proxy configuration, or null if auth.configs has no properties
+     */
+    public static ProxyConfiguration fromAuthConfig(Map<?, ?> authConfig, boolean hostnameVerificationEnabled) {
+        if (authConfig == null || !(authConfig.get(PROPERTIES) instanceof Map)) {
+            return null;
+        }
+        return new ProxyConfiguration((Map<?, ?>) authConfig.get(PROPERTIES), hostnameVerificationEnabled);
+    }
+
+    private static String getProperty(Map<?, ?> properties, String key, String defaultValue) {
+        Object value = properties.get(key);
+        return value != null ? String.valueOf(value) : defaultValue;
+    }
+
+    private static int getIntProperty(Map<?, ?> properties, String key, int defaultValue) {
+        Object value = properties.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            log.error("Value '" + value + "' of '" + key + "' in auth.configs is invalid. Using the default value "
+                    + defaultValue + ".", e);
+            return defaultValue;
+        }
+    }
+
+    public String getPublisherUrl() {
+        return publisherUrl;
+    }
+
+    /**
+     * Returns the developer portal url, which is the publisher url if the developer portal url is not configured.
+     *
+     * @return the developer portal url
+     */
+    public String getDevPortalUrl() {
+        return devPortalUrl;
+    }
+
+    public String getKmTokenUrl() {
+        return kmTokenUrl;
+    }
+
+    public String getIntrospectionUrl() {
+        return introspectionUrl;
+    }
+
+    public String getKmUsername() {
+        return kmUsername;
+    }
+
+    public String getKmPassword() {
+        return kmPassword;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getHttpMaxIdleConnections() {
+        return httpMaxIdleConnections;
+    }
+
+    public int getHttpKeepAliveDuration() {
+        return httpKeepAliveDuration;
+    }
+
+    public boolean isHostnameVerificationEnabled() {
+        return hostnameVerificationEnabled;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProxyConfiguration)) {
+            return false;
+        }
+        ProxyConfiguration that = (ProxyConfiguration) o;
+        return connectionTimeout == that.connectionTimeout && readTimeout == that.readTimeout
+                && httpMaxIdleConnections == that.httpMaxIdleConnections
+                && httpKeepAliveDuration == that.httpKeepAliveDuration
+                && hostnameVerificationEnabled == that.hostnameVerificationEnabled
+                && Objects.equals(publisherUrl, that.publisherUrl) && Objects.equals(devPortalUrl, that.devPortalUrl)
+                && Objects.equals(kmTokenUrl, that.kmTokenUrl)
+                && Objects.equals(introspectionUrl, that.introspectionUrl)
+                && Objects.equals(kmUsername, that.kmUsername) && Objects.equals(kmPassword, that.kmPassword);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(publisherUrl, devPortalUrl, kmTokenUrl, introspectionUrl, kmUsername, kmPassword,
+                connectionTimeout, readTimeout, httpMaxIdleConnections, httpKeepAliveDuration,
+                hostnameVerificationEnabled);
+    }
+}
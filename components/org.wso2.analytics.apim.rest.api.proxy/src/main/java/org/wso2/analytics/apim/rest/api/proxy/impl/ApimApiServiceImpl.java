@@ -30,18 +30,13 @@ import org.wso2.analytics.apim.rest.api.proxy.dto.APIListDTO;
 import org.wso2.analytics.apim.rest.api.proxy.dto.ApplicationListDTO;
 import org.wso2.analytics.apim.rest.api.proxy.dto.ManagerVerificationInfoDTO;
 import org.wso2.analytics.apim.rest.api.proxy.internal.ServiceHolder;
-import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
 import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
 import org.wso2.carbon.analytics.idp.client.external.dto.OAuth2IntrospectionResponse;
 import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
-import org.wso2.carbon.config.ConfigurationException;
-import org.wso2.carbon.config.provider.ConfigProvider;
 import org.wso2.msf4j.Request;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import javax.ws.rs.core.Response;
 
@@ -49,36 +44,13 @@ import javax.ws.rs.core.Response;
  * Proxy service for APIM REST APIs.
  */
 public class ApimApiServiceImpl extends ApimApiService {
-    private OAuth2ServiceStubs oAuth2ServiceStubs;
     private static final String AM_COOKIE_P1 = "SDID";
     private static final String AM_COOKIE_P2 = "HID=";
-    private static final String AUTH_CONFIGS = "auth.configs";
-    private static final String CONNECTION_TIMEOUT = "connectionTimeout";
     private static final String COOKIE = "Cookie";
     private static final String DASHBOARD_USER = "DASHBOARD_USER=";
-    private static final String DEFAULT_KM_USERNAME = "admin";
-    private static final String DEFAULT_KM_PASSWORD = "admin";
-    private static final String DEFAULT_CONNECTION_TIMEOUT = "10000";
-    private static final String DEFAULT_KM_TOKEN_URL = "https://localhost:9443/oauth2";
-    private static final String DEFAULT_READ_TIMEOUT = "60000";
-    private static final String DEV_PORTAL_URL = "devPortalUrl";
-    private static final String ENDPOINT = "{serverUrl}/api/am/{serverName}/v1";
-    private static final String KM_PASSWORD = "kmPassword";
-    private static final String KM_TOKEN_URL = "kmTokenUrl";
-    private static final String KM_USERNAME = "kmUsername";
-    private static final String INTROSPECT_POSTFIX = "/introspect";
-    private static final String INTROSPECTION_URL = "introspectionUrl";
-    private static final String PROPERTIES = "properties";
-    private static final String PUBLISHER = "publisher";
-    private static final String PUBLISHER_URL = "publisherUrl";
-    private static final String READ_TIMEOUT = "readTimeout";
     private static final String SCOPE_MONITORING_DASHBOARD = "apim_analytics:monitoring_dashboard";
     private static final String SCOPE_MANAGER_DASHBOARD = "apim_analytics:business_analytics";
-    private static final String SERVER_NAME_TEMPLATE = "{serverName}";
-    private static final String SERVER_URL_TEMPLATE = "{serverUrl}";
-    private static final String STORE = "store";
-    private static final String TOKEN_POSTFIX = "/token";
-    private static final String REVOKE_POSTFIX = "/revoke";
+    private static final GsonDecoder DECODER = new GsonDecoder();
     private final Util util = new Util();
     private static final Logger log = LoggerFactory.getLogger(ApimApiServiceImpl.class);
 
@@ -92,19 +64,16 @@ public class ApimApiServiceImpl extends ApimApiService {
     @Override
     public Response apimApisGet(Request request) throws NotFoundException {
         try {
-            String publisherUrl = getServerURL(PUBLISHER);
+            APIMServiceStubs serviceStubs = ServiceHolder.getInstance().getApimServiceStubs();
 
-            if (publisherUrl != null) {
-                String publisherEndpoint = ENDPOINT.replace(SERVER_URL_TEMPLATE, publisherUrl)
-                        .replace(SERVER_NAME_TEMPLATE, PUBLISHER);
-                APIMServiceStubs serviceStubs = new APIMServiceStubs(publisherEndpoint, null);
+            if (serviceStubs != null && serviceStubs.getPublisherServiceStub() != null) {
                 String authToken = getAccessToken(request.getHeader(COOKIE));
                 feign.Response responseOfApiList = serviceStubs.getPublisherServiceStub().getApis(authToken);
 
                 APIListDTO aggregatedList = new APIListDTO();
 
                 if (responseOfApiList.status() == 200) {
-                    APIListDTO apisDetails = (APIListDTO) new GsonDecoder().decode(responseOfApiList, APIListDTO.class);
+                    APIListDTO apisDetails = (APIListDTO) DECODER.decode(responseOfApiList, APIListDTO.class);
                     aggregatedList.setList(apisDetails.getList());
                 } else {
                     log.error("Unable to retrieve API list via publisher API. Response status :" ,
@@ -115,7 +84,7 @@ public class ApimApiServiceImpl extends ApimApiService {
                 feign.Response responseOfProductList = serviceStubs.getPublisherServiceStub().
                         getApiProducts(authToken);
                 if (responseOfProductList.status() == 200) {
-                    APIListDTO productDetails = (APIListDTO) new GsonDecoder().decode(responseOfProductList,
+                    APIListDTO productDetails = (APIListDTO) DECODER.decode(responseOfProductList,
                             APIListDTO.class);
                     for (APIInfoDTO apiInfoDTO : productDetails.getList()) {
                         aggregatedList.addListItem(apiInfoDTO);
@@ -132,8 +101,6 @@ public class ApimApiServiceImpl extends ApimApiService {
             } else {
                 util.handleBadRequest("Unable to find Publisher server URL.");
             }
-        } catch (ConfigurationException e) {
-            util.handleInternalServerError("Error occurred while retrieving Publisher server URL.", e);
         } catch (IOException e) {
             util.handleInternalServerError("Error occurred while processing server response.", e);
         }
@@ -150,18 +117,15 @@ public class ApimApiServiceImpl extends ApimApiService {
     @Override
     public Response apimApplicationsGet(Request request) throws NotFoundException {
         try {
-            String storeUrl = getServerURL(STORE);
+            APIMServiceStubs serviceStubs = ServiceHolder.getInstance().getApimServiceStubs();
 
-            if (storeUrl != null) {
-                String storeEndpoint = ENDPOINT.replace(SERVER_URL_TEMPLATE, storeUrl)
-                        .replace(SERVER_NAME_TEMPLATE, STORE);
-                APIMServiceStubs serviceStubs = new APIMServiceStubs(null, storeEndpoint);
+            if (serviceStubs != null && serviceStubs.getStoreServiceStub() != null) {
                 String authToken = getAccessToken(request.getHeader(COOKIE));
                 feign.Response response = serviceStubs.getStoreServiceStub().getApplications(authToken);
 
                 if (response.status() == 200) {
                     ApplicationListDTO appDetails =
-                            (ApplicationListDTO) new GsonDecoder().decode(response, ApplicationListDTO.class);
+                            (ApplicationListDTO) DECODER.decode(response, ApplicationListDTO.class);
                     int status = response.status();
                     response.close();
                     return Response.status(status).entity(appDetails).build();
@@ -171,8 +135,6 @@ public class ApimApiServiceImpl extends ApimApiService {
             } else {
                 util.handleBadRequest("Unable to find Developer Portal server URL.");
             }
-        } catch (ConfigurationException e) {
-            util.handleInternalServerError("Error occurred while retrieving Developer Portal server URL.", e);
         } catch (IOException e) {
             util.handleInternalServerError("Error occurred while processing server response.", e);
         }
@@ -183,14 +145,17 @@ public class ApimApiServiceImpl extends ApimApiService {
     public Response apimIsManagerGet(Request request) throws NotFoundException {
         String authToken = getAccessToken(request.getHeader(COOKIE));
         try {
-            OAuth2ServiceStubs oAuth2Stub = getOAuth2ServiceStubs();
+            OAuth2ServiceStubs oAuth2Stub = ServiceHolder.getInstance().getOAuth2ServiceStubs();
+            if (oAuth2Stub == null) {
+                util.handleInternalServerError("Unable to retrieve key manager configuration");
+            }
             feign.Response introspectTokenResponse = oAuth2Stub.getIntrospectionServiceStub()
                     .introspectAccessToken(authToken);
             if (introspectTokenResponse == null) {
                 util.handleInternalServerError("Error occurred while introspecting token. Response is null.");
             }
             if (introspectTokenResponse.status() == 200) {   //200 - Success
-                OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) new GsonDecoder()
+                OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) DECODER
                         .decode(introspectTokenResponse, OAuth2IntrospectionResponse.class);
                 String scopes = introspectResponse.getScope();
                 if (scopes != null) {
@@ -211,42 +176,12 @@ public class ApimApiServiceImpl extends ApimApiService {
             introspectTokenResponse.close();
             util.handleInternalServerError("Unable to retrieve scopes from token introspection." +
                     " Response code:" + introspectTokenResponse.status());
-        } catch (ConfigurationException e) {
-            util.handleInternalServerError("Error occurred while retrieving key manager configuration.", e);
         } catch (IdPClientException | IOException e) {
             util.handleInternalServerError("Error occurred while introspecting the access token.", e);
         }
         return null;
     }
 
-    /**
-     * Retrieve the server url from the deployment file.
-     *
-     * @param serverName the name of the server, i.e. Publisher/Store
-     * @return server URL of the requested endpoint
-     * @throws ConfigurationException if an error occurs while retrieving configuration
-     */
-    private String getServerURL(String serverName) throws ConfigurationException {
-        ConfigProvider configProvider = ServiceHolder.getInstance().getConfigProvider();
-        LinkedHashMap authConfig = (LinkedHashMap) configProvider.getConfigurationObject(AUTH_CONFIGS);
-
-        if (authConfig != null) {
-            LinkedHashMap properties = (LinkedHashMap) authConfig.get(PROPERTIES);
-            if (properties != null) {
-                if (serverName.equalsIgnoreCase(PUBLISHER)) {
-                    return (String) properties.get(PUBLISHER_URL);
-                } else {
-                    if (properties.get(DEV_PORTAL_URL) != null) {
-                        return (String) properties.get(DEV_PORTAL_URL);
-                    } else {
-                        return (String) properties.get(PUBLISHER_URL);
-                    }
-                }
-            }
-        }
-        return null;
-    }
-
     /**
      * Construct the access token from cookies.
      *
@@ -273,65 +208,4 @@ public class ApimApiServiceImpl extends ApimApiService {
 
         return accessTokenP1 + accessTokenP2;
     }
-
-    /**
-     * Get OAuth2ServiceStubs instance
-     *
-     * @return the an OAuth2ServiceStubs instance
-     */
-    private OAuth2ServiceStubs getOAuth2ServiceStubs() throws ConfigurationException {
-        if (oAuth2ServiceStubs != null) {
-            return oAuth2ServiceStubs;
-        } else {
-            HashMap<String, String> kmConfig = getKmConfig();
-            if (kmConfig != null) {
-                AnalyticsHttpClientBuilderService analyticsHttpClientBuilderService =
-                        ServiceHolder.getInstance().getAnalyticsHttpClientBuilderService();
-                oAuth2ServiceStubs = new OAuth2ServiceStubs(
-                        analyticsHttpClientBuilderService, kmConfig.get(KM_TOKEN_URL) + TOKEN_POSTFIX,
-                        kmConfig.get(KM_TOKEN_URL) + REVOKE_POSTFIX, kmConfig.get(INTROSPECTION_URL),
-                        kmConfig.get(KM_USERNAME), kmConfig.get(KM_PASSWORD),
-                        Integer.parseInt(kmConfig.get(CONNECTION_TIMEOUT)),
-                        Integer.parseInt(kmConfig.get(READ_TIMEOUT)));
-                return oAuth2ServiceStubs;
-            } else {
-                util.handleInternalServerError("Unable to retrieve key manager configuration");
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Get key manager configuration from auth.configs
-     *
-     * @return the an key manager configuration
-     */
-    private HashMap getKmConfig() throws ConfigurationException {
-        ConfigProvider configProvider = ServiceHolder.getInstance().getConfigProvider();
-        LinkedHashMap authConfig = (LinkedHashMap) configProvider.getConfigurationObject(AUTH_CONFIGS);
-
-        if (authConfig != null) {
-            LinkedHashMap<String, String> properties = (LinkedHashMap) authConfig.get(PROPERTIES);
-            if (properties != null) {
-                String kmTokenUrl = properties.getOrDefault(KM_TOKEN_URL, DEFAULT_KM_TOKEN_URL);
-                String introspectionUrl = properties.getOrDefault(INTROSPECTION_URL,
-                        kmTokenUrl + INTROSPECT_POSTFIX);
-                String kmUsername = properties.getOrDefault(KM_USERNAME, DEFAULT_KM_USERNAME);
-                String kmPassword = properties.getOrDefault(KM_PASSWORD, DEFAULT_KM_PASSWORD);
-                String connectionTimeout = properties.getOrDefault(CONNECTION_TIMEOUT, DEFAULT_CONNECTION_TIMEOUT);
-                String readTimeout = properties.getOrDefault(READ_TIMEOUT, DEFAULT_READ_TIMEOUT);
-
-                HashMap<String, String> kmConfig = new HashMap<>();
-                kmConfig.put(KM_TOKEN_URL, kmTokenUrl);
-                kmConfig.put(INTROSPECTION_URL, introspectionUrl);
-                kmConfig.put(KM_USERNAME, kmUsername);
-                kmConfig.put(KM_PASSWORD, kmPassword);
-                kmConfig.put(CONNECTION_TIMEOUT, connectionTimeout);
-                kmConfig.put(READ_TIMEOUT, readTimeout);
-                return kmConfig;
-            }
-        }
-        return null;
-    }
 }
-
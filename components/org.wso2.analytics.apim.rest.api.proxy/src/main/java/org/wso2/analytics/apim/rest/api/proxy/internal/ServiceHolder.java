@@ -18,20 +18,37 @@ package org.wso2.analytics.apim.rest.api.proxy.internal;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.apim.rest.api.proxy.APIMServiceStubs;
+import org.wso2.analytics.apim.rest.api.proxy.ProxyConfiguration;
 import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
+import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
 import org.wso2.carbon.config.ConfigurationException;
 import org.wso2.carbon.config.provider.ConfigProvider;
 import org.wso2.carbon.kernel.config.model.CarbonConfiguration;
 
+import java.util.Map;
+import java.util.Objects;
+
 /**
  *  Service Holder class for this component.
  */
 public class ServiceHolder {
     private static ServiceHolder instance = new ServiceHolder();
     private final Log log = LogFactory.getLog(ServiceHolder.class);
+    private static final String AUTH_CONFIGS = "auth.configs";
+    private static final String ENDPOINT = "{serverUrl}/api/am/{serverName}/v1";
+    private static final String PUBLISHER = "publisher";
+    private static final String SERVER_NAME_TEMPLATE = "{serverName}";
+    private static final String SERVER_URL_TEMPLATE = "{serverUrl}";
+    private static final String STORE = "store";
+    private static final String TOKEN_POSTFIX = "/token";
+    private static final String REVOKE_POSTFIX = "/revoke";
     private ConfigProvider configProvider;
     private CarbonConfiguration carbonConfiguration;
     private AnalyticsHttpClientBuilderService analyticsHttpClientBuilderService;
+    private volatile ProxyConfiguration proxyConfiguration;
+    private volatile APIMServiceStubs apimServiceStubs;
+    private volatile OAuth2ServiceStubs oAuth2ServiceStubs;
 
     private ServiceHolder() {
     }
@@ -64,15 +81,21 @@ public class ServiceHolder {
     }
 
     /**
-     * Set the configProvider object.
+     * Set the configProvider object. auth.configs is read only here, i.e. when the config provider is bound, since
+     * the deployment file is not reloaded while the server is running. Changes to auth.configs take effect after a
+     * restart.
      *
      * @param configProvider configProvider object
      */
     public void setConfigProvider(ConfigProvider configProvider) {
+        ProxyConfiguration newProxyConfiguration = null;
         try {
             this.configProvider = configProvider;
             if (configProvider != null) {
                 this.carbonConfiguration = configProvider.getConfigurationObject(CarbonConfiguration.class);
+                newProxyConfiguration = ProxyConfiguration.fromAuthConfig(
+                        (Map<?, ?>) configProvider.getConfigurationObject(AUTH_CONFIGS),
+                        carbonConfiguration == null || carbonConfiguration.isHostnameVerificationEnabled());
             } else {
                 this.carbonConfiguration = null;
             }
@@ -80,15 +103,83 @@ public class ServiceHolder {
             log.error("Error occurred while initializing service holder for carbon configuration : "
                             + e.getMessage(), e);
         }
+        updateProxyConfiguration(newProxyConfiguration);
+    }
+
+    /**
+     * Rebuilds the APIM service stubs if the proxy configuration changed. The stubs are kept otherwise, so that
+     * their pooled connections are reused.
+     *
+     * @param newProxyConfiguration the proxy configuration read from auth.configs, or null if there is none
+     */
+    private synchronized void updateProxyConfiguration(ProxyConfiguration newProxyConfiguration) {
+        if (Objects.equals(proxyConfiguration, newProxyConfiguration)) {
+            return;
+        }
+        APIMServiceStubs oldServiceStubs = apimServiceStubs;
+        if (newProxyConfiguration != null) {
+            apimServiceStubs = new APIMServiceStubs(getEndpoint(newProxyConfiguration.getPublisherUrl(), PUBLISHER),
+                    getEndpoint(newProxyConfiguration.getDevPortalUrl(), STORE), newProxyConfiguration);
+        } else {
+            apimServiceStubs = null;
+        }
+        proxyConfiguration = newProxyConfiguration;
+        oAuth2ServiceStubs = null;
+        if (oldServiceStubs != null) {
+            oldServiceStubs.close();
+        }
+    }
+
+    private static String getEndpoint(String serverUrl, String serverName) {
+        if (serverUrl == null) {
+            return null;
+        }
+        return ENDPOINT.replace(SERVER_URL_TEMPLATE, serverUrl).replace(SERVER_NAME_TEMPLATE, serverName);
+    }
+
+    /**
+     * Return the proxy configuration read from auth.configs.
+     *
+     * @return the proxy configuration, or null if auth.configs has no properties
+     */
+    public ProxyConfiguration getProxyConfiguration() {
+        return proxyConfiguration;
+    }
+
+    /**
+     * Return the shared APIM Publisher and Store service stubs.
+     *
+     * @return the APIM service stubs, or null if auth.configs has no properties
+     */
+    public APIMServiceStubs getApimServiceStubs() {
+        return apimServiceStubs;
+    }
+
+    /**
+     * Return the OAuth2 service stubs of the key manager. The stubs are created on first use and are kept until the
+     * proxy configuration or the http client builder service changes.
+     *
+     * @return the OAuth2 service stubs, or null if auth.configs has no properties
+     */
+    public synchronized OAuth2ServiceStubs getOAuth2ServiceStubs() {
+        if (oAuth2ServiceStubs == null && proxyConfiguration != null) {
+            ProxyConfiguration configuration = proxyConfiguration;
+            oAuth2ServiceStubs = new OAuth2ServiceStubs(analyticsHttpClientBuilderService,
+                    configuration.getKmTokenUrl() + TOKEN_POSTFIX, configuration.getKmTokenUrl() + REVOKE_POSTFIX,
+                    configuration.getIntrospectionUrl(), configuration.getKmUsername(), configuration.getKmPassword(),
+                    configuration.getConnectionTimeout(), configuration.getReadTimeout());
+        }
+        return oAuth2ServiceStubs;
     }
 
     public AnalyticsHttpClientBuilderService getAnalyticsHttpClientBuilderService() {
         return analyticsHttpClientBuilderService;
     }
 
-    public void setAnalyticsHttpClientBuilderService(
+    public synchronized void setAnalyticsHttpClientBuilderService(
             AnalyticsHttpClientBuilderService analyticsHttpClientBuilderService) {
         this.analyticsHttpClientBuilderService = analyticsHttpClientBuilderService;
+        this.oAuth2ServiceStubs = null;
     }
 
 }
@@ -49,16 +49,94 @@ public class ReportApi implements Microservice  {
     
     
     
-    @io.swagger.annotations.ApiOperation(value = "Retrieve PDF Report ", notes = "Downloads a PDF report with API traffic data for a given month ", response = void.class, tags={  })
+    @io.swagger.annotations.ApiOperation(value = "Retrieve PDF Report ", notes = "Downloads a PDF, CSV or NDJSON report with API traffic data for a given month. The report is generated by a report job, and the request waits until it is generated. Use the report jobs resource to generate a report without waiting. Reports of every format are written to a file first and then sent with their length, so a report which cannot be generated returns an error status instead of a truncated download. ", response = void.class, tags={  })
     @io.swagger.annotations.ApiResponses(value = { 
         @io.swagger.annotations.ApiResponse(code = 200, message = "", response = void.class),
         
-        @io.swagger.annotations.ApiResponse(code = 400, message = "Bad Request. Invalid request or validation error. ", response = void.class) })
+        @io.swagger.annotations.ApiResponse(code = 400, message = "Bad Request. Invalid request or validation error. ", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 503, message = "Service Unavailable. Too many report jobs are pending, or the report was not generated within the configured synchronous report timeout. ", response = void.class) })
     public Response reportGet(@ApiParam(value = "The month of the required report.") @QueryParam("month") String month
 ,@ApiParam(value = "The year of the required report.") @QueryParam("year") String year
+,@ApiParam(value = "The format of the required report. One of pdf, csv or ndjson. Defaults to pdf.") @QueryParam("format") String format
+ ,@Context Request request)
+    throws NotFoundException {
+        
+        return delegate.reportGet(month,year,format,request);
+    }
+
+    @GET
+    @Path("/range")
+    
+    
+    @io.swagger.annotations.ApiOperation(value = "Retrieve Report of a Range of Months ", notes = "Downloads a PDF, CSV or NDJSON report with API traffic data for a range of months. The report is generated by a report job, and the request waits until it is generated. As for the monthly report, reports of every format are written to a file first and then sent with their length. The report lists at most the configured maximum number of rows, with the highest request counts, and its total request count includes all rows. ", response = void.class, tags={  })
+    @io.swagger.annotations.ApiResponses(value = { 
+        @io.swagger.annotations.ApiResponse(code = 200, message = "", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 400, message = "Bad Request. Invalid request or validation error. ", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 503, message = "Service Unavailable. Too many report jobs are pending, or the report was not generated within the configured synchronous report timeout. ", response = void.class) })
+    public Response reportRangeGet(@ApiParam(value = "The first month of the required report, in the format YYYY-MM.") @QueryParam("from") String from
+,@ApiParam(value = "The last month of the required report, in the format YYYY-MM.") @QueryParam("to") String to
+,@ApiParam(value = "The format of the required report. One of pdf, csv or ndjson. Defaults to pdf.") @QueryParam("format") String format
+ ,@Context Request request)
+    throws NotFoundException {
+        
+        return delegate.reportRangeGet(from,to,format,request);
+    }
+
+    @POST
+    @Path("/jobs")
+    
+    
+    @io.swagger.annotations.ApiOperation(value = "Submit PDF Report Job ", notes = "Submits a job to generate a PDF report with API traffic data for a given month ", response = void.class, tags={  })
+    @io.swagger.annotations.ApiResponses(value = { 
+        @io.swagger.annotations.ApiResponse(code = 202, message = "Accepted. The report job is submitted. ", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 400, message = "Bad Request. Invalid request or validation error. ", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 503, message = "Service Unavailable. Too many report jobs are pending. ", response = void.class) })
+    public Response reportJobsPost(@ApiParam(value = "The month of the required report.") @QueryParam("month") String month
+,@ApiParam(value = "The year of the required report.") @QueryParam("year") String year
+ ,@Context Request request)
+    throws NotFoundException {
+        
+        return delegate.reportJobsPost(month,year,request);
+    }
+
+    @GET
+    @Path("/jobs/{jobId}")
+    
+    
+    @io.swagger.annotations.ApiOperation(value = "Retrieve PDF Report Job Status ", notes = "Retrieves the status of a report job ", response = void.class, tags={  })
+    @io.swagger.annotations.ApiResponses(value = { 
+        @io.swagger.annotations.ApiResponse(code = 200, message = "", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 404, message = "Not Found. The report job does not exist. ", response = void.class) })
+    public Response reportJobsJobIdGet(@ApiParam(value = "The id of the report job.",required=true) @PathParam("jobId") String jobId
+ ,@Context Request request)
+    throws NotFoundException {
+        
+        return delegate.reportJobsJobIdGet(jobId,request);
+    }
+
+    @GET
+    @Path("/jobs/{jobId}/download")
+    
+    
+    @io.swagger.annotations.ApiOperation(value = "Retrieve PDF Report of a Job ", notes = "Downloads the PDF report generated by a report job ", response = void.class, tags={  })
+    @io.swagger.annotations.ApiResponses(value = { 
+        @io.swagger.annotations.ApiResponse(code = 200, message = "", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 404, message = "Not Found. The report job does not exist. ", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 409, message = "Conflict. The report job is not finished yet. ", response = void.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 410, message = "Gone. The report is no longer available. ", response = void.class) })
+    public Response reportJobsJobIdDownloadGet(@ApiParam(value = "The id of the report job.",required=true) @PathParam("jobId") String jobId
  ,@Context Request request)
     throws NotFoundException {
         
-        return delegate.reportGet(month,year,request);
+        return delegate.reportJobsJobIdDownloadGet(jobId,request);
     }
 }
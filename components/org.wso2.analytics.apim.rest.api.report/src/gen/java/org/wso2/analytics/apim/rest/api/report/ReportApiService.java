@@ -20,5 +20,17 @@ import javax.ws.rs.core.SecurityContext;
 public abstract class ReportApiService {
     public abstract Response reportGet(String month
  ,String year
+ ,String format
+  ,Request request) throws NotFoundException;
+    public abstract Response reportRangeGet(String from
+ ,String to
+ ,String format
+  ,Request request) throws NotFoundException;
+    public abstract Response reportJobsPost(String month
+ ,String year
+  ,Request request) throws NotFoundException;
+    public abstract Response reportJobsJobIdGet(String jobId
+  ,Request request) throws NotFoundException;
+    public abstract Response reportJobsJobIdDownloadGet(String jobId
   ,Request request) throws NotFoundException;
 }
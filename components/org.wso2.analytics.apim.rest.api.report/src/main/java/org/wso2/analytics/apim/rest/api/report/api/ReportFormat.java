@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.api;
+
+import java.util.Locale;
+
+/**
+ * Formats in which a report can be downloaded.
+ */
+public enum ReportFormat {
+
+    PDF("application/pdf", "pdf"),
+    CSV("text/csv; charset=UTF-8", "csv"),
+    NDJSON("application/x-ndjson; charset=UTF-8", "ndjson");
+
+    private final String mediaType;
+    private final String fileExtension;
+
+    ReportFormat(String mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Returns the format with the given name, ignoring the case.
+     * @param name name of the format. PDF is returned if the name is empty.
+     * @return the format, or null if there is no such format.
+     */
+    public static ReportFormat fromName(String name) {
+        if (name == null || name.isEmpty()) {
+            return PDF;
+        }
+        for (ReportFormat format : values()) {
+            if (format.name().equals(name.toUpperCase(Locale.ENGLISH))) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -17,9 +17,12 @@
  */
 package org.wso2.analytics.apim.rest.api.report.api;
 
+import org.apache.commons.io.IOUtils;
 import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  *  Report Generator interface. All implementations of report generators need to implement this.
@@ -33,4 +36,74 @@ public interface ReportGenerator {
      */
     InputStream generateMonthlyRequestSummaryPDF() throws PDFReportException;
 
+    /**
+     * Returns whether there is no data for the report. Implementations which return null from
+     * generateMonthlyRequestSummaryPDF should override this, so that an empty report is not streamed.
+     * @return true if there is no data for the report.
+     * @throws PDFReportException
+     */
+    default boolean isEmpty() throws PDFReportException {
+        return false;
+    }
+
+    /**
+     * Writes the monthly request summary report to the given stream. Implementations should override this to write
+     * the report progressively instead of building it in memory. Part of the report may be written before an error,
+     * hence callers write the report to a file and send it only once it is complete.
+     * @param outputStream stream to write the report to.
+     * @throws PDFReportException
+     */
+    default void writeMonthlyRequestSummaryPDF(OutputStream outputStream) throws PDFReportException {
+        InputStream report = generateMonthlyRequestSummaryPDF();
+        if (report == null) {
+            return;
+        }
+        try (InputStream in = report) {
+            IOUtils.copy(in, outputStream);
+        } catch (IOException e) {
+            throw new PDFReportException("Error while writing the monthly request summary report.", e);
+        }
+    }
+
+    /**
+     * Writes the rows of the monthly request summary report to the given stream as CSV, with a header line. Values
+     * are written in full, without the truncation applied to fit them in the PDF table.
+     * @param outputStream stream to write the report to.
+     * @throws PDFReportException if the format is not supported or the report cannot be written.
+     */
+    default void writeMonthlyRequestSummaryCSV(OutputStream outputStream) throws PDFReportException {
+        throw new PDFReportException("CSV reports are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Writes the rows of the monthly request summary report to the given stream as newline delimited JSON, with one
+     * object per row.
+     * @param outputStream stream to write the report to.
+     * @throws PDFReportException if the format is not supported or the report cannot be written.
+     */
+    default void writeMonthlyRequestSummaryNDJSON(OutputStream outputStream) throws PDFReportException {
+        throw new PDFReportException("NDJSON reports are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Writes the monthly request summary report in the given format.
+     * @param format format of the report.
+     * @param outputStream stream to write the report to.
+     * @throws PDFReportException
+     */
+    default void writeMonthlyRequestSummary(ReportFormat format, OutputStream outputStream)
+            throws PDFReportException {
+        switch (format) {
+            case CSV:
+                writeMonthlyRequestSummaryCSV(outputStream);
+                break;
+            case NDJSON:
+                writeMonthlyRequestSummaryNDJSON(outputStream);
+                break;
+            default:
+                writeMonthlyRequestSummaryPDF(outputStream);
+                break;
+        }
+    }
+
 }
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.cache;
+
+import io.siddhi.core.event.Event;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local disk cache of the rows of monthly request summaries, which range reports merge instead of querying each
+ * month again. Only months which are over are cached, since their rows no longer change. Rows are kept sorted by API
+ * name, API version, application name and application owner, so that the rows of several months can be merged while
+ * they are read. Partials are laid out as {@code <cache directory>/<tenant domain>/<year>-<month>.rows}. Partials which
+ * are not read for a while expire, and the least recently read partials are evicted to keep the cache within its size
+ * limit. Months without rows are not cached, since their rows may not be persisted yet.
+ */
+public class MonthlyPartialCache {
+
+    private static final Log log = LogFactory.getLog(MonthlyPartialCache.class);
+    private static final String PARTIAL_FILE_EXTENSION = ".rows";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final String SPILL_FILE_PREFIX = "apim-report-rows-";
+    private static final int FORMAT_VERSION = 1;
+    // Events of a month can still arrive shortly after it ends, e.g. through analytics file uploads.
+    private static final long CLOSED_MONTH_GRACE_PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final long expireAfterAccessMillis;
+    // Entries in access order, hence the first entry is the least recently read one.
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    /**
+     * @param directory directory to keep the partials in.
+     * @param maxSizeBytes maximum total size of the partials.
+     * @param expireAfterAccessMillis time to keep a partial after it is last read.
+     */
+    public MonthlyPartialCache(Path directory, long maxSizeBytes, long expireAfterAccessMillis) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+        this.expireAfterAccessMillis = expireAfterAccessMillis;
+    }
+
+    /**
+     * Loads the partials cached by previous runs, and removes the partials which were being written when the server
+     * stopped.
+     * @throws IOException if the cache directory cannot be created or read.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> tenantDirs = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path tenantDir : tenantDirs) {
+                try (DirectoryStream<Path> partialFiles = Files.newDirectoryStream(tenantDir)) {
+                    for (Path file : partialFiles) {
+                        if (file.getFileName().toString().endsWith(PARTIAL_FILE_EXTENSION)) {
+                            files.add(file);
+                        } else {
+                            deleteFile(file);
+                        }
+                    }
+                }
+            }
+        }
+        // Least recently modified first, so they are the first to be evicted.
+        files.sort((first, second) -> Long.compare(first.toFile().lastModified(), second.toFile().lastModified()));
+        synchronized (this) {
+            for (Path file : files) {
+                addEntry(file, new Entry(file.toFile().length(), file.toFile().lastModified()));
+            }
+            evict(System.currentTimeMillis());
+        }
+        log.debug("Loaded " + entries.size() + " cached report partials from " + directory);
+    }
+
+    /**
+     * Returns whether the rows of a month can be cached, i.e. whether the month is over.
+     * @param month the month.
+     * @return true if the month is over.
+     */
+    public boolean isCacheable(YearMonth month) {
+        long monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        return System.currentTimeMillis() >= monthEnd + CLOSED_MONTH_GRACE_PERIOD_MILLIS;
+    }
+
+    /**
+     * Opens the cached rows of a month.
+     * @param tenantDomain tenant domain of the rows.
+     * @param month month of the rows.
+     * @return reader of the rows, or null if the rows are not cached.
+     */
+    public PartialReader open(String tenantDomain, YearMonth month) {
+        Path file = toPath(tenantDomain, month);
+        if (file == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(file);
+            if (entry == null) {
+                return null;
+            }
+            if (now >= entry.lastAccessTime + expireAfterAccessMillis) {
+                removeEntry(file);
+                return null;
+            }
+            entry.lastAccessTime = now;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown format of the cached rows.");
+            }
+            return new PartialReader(in);
+        } catch (NoSuchFileException e) {
+            synchronized (this) {
+                removeEntry(file);
+            }
+            return null;
+        } catch (IOException e) {
+            log.warn("Discarding the unreadable cached rows in " + file, e);
+            closeQuietly(in);
+            synchronized (this) {
+                removeEntry(file);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Caches the rows of a month.
+     * @param tenantDomain tenant domain of the rows.
+     * @param month month of the rows, which must be over.
+     * @param rows rows sorted by API name, API version, application name and application owner. Empty rows are not
+     * cached.
+     * @throws IOException if the rows cannot be written.
+     */
+    public void put(String tenantDomain, YearMonth month, Event[] rows) throws IOException {
+        Path file = toPath(tenantDomain, month);
+        // An empty month may only be missing its persisted rows, hence it is queried again next time.
+        if (file == null || rows.length == 0 || !isCacheable(month)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), month.toString(), TEMP_FILE_EXTENSION);
+        try {
+            writeRows(tempFile, rows);
+            synchronized (this) {
+                // Readers see either the previous or the complete partial.
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                long now = System.currentTimeMillis();
+                Entry previous = entries.remove(file);
+                if (previous != null) {
+                    sizeBytes -= previous.sizeBytes;
+                }
+                addEntry(file, new Entry(file.toFile().length(), now));
+                evict(now);
+            }
+        } finally {
+            deleteFile(tempFile);
+        }
+    }
+
+    /**
+     * Writes rows which are not cached to a temporary file, so that they do not have to be kept in memory while they
+     * are merged. The file is deleted when the returned reader is closed.
+     * @param rows rows in the order they are read.
+     * @return reader of the rows.
+     * @throws IOException if the rows cannot be written.
+     */
+    public static PartialReader spill(Event[] rows) throws IOException {
+        Path file = Files.createTempFile(SPILL_FILE_PREFIX, PARTIAL_FILE_EXTENSION);
+        DataInputStream in = null;
+        try {
+            writeRows(file, rows);
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file, StandardOpenOption.READ,
+                    StandardOpenOption.DELETE_ON_CLOSE)));
+            in.readInt();
+            return new PartialReader(in);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(in);
+            deleteFile(file);
+            throw e;
+        }
+    }
+
+    private static void writeRows(Path file, Event[] rows) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(rows.length);
+            for (Event row : rows) {
+                for (int i = 0; i < 4; i++) {
+                    writeNullableString(out, (String) row.getData(i));
+                }
+                out.writeLong((Long) row.getData(4));
+            }
+        }
+    }
+
+    private void addEntry(Path file, Entry entry) {
+        entries.put(file, entry);
+        sizeBytes += entry.sizeBytes;
+    }
+
+    private void removeEntry(Path file) {
+        Entry entry = entries.remove(file);
+        if (entry != null) {
+            sizeBytes -= entry.sizeBytes;
+        }
+        // Open readers keep reading a deleted partial.
+        deleteFile(file);
+    }
+
+    /**
+     * Removes the expired partials, and then the least recently read partials until the cache is within its size
+     * limit.
+     */
+    private void evict(long now) {
+        Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Entry> entry = iterator.next();
+            if (sizeBytes <= maxSizeBytes && now < entry.getValue().lastAccessTime + expireAfterAccessMillis) {
+                break;
+            }
+            iterator.remove();
+            sizeBytes -= entry.getValue().sizeBytes;
+            deleteFile(entry.getKey());
+        }
+    }
+
+    private Path toPath(String tenantDomain, YearMonth month) {
+        // Tenant domains are used as directory names.
+        if (tenantDomain == null || tenantDomain.isEmpty() || ".".equals(tenantDomain)
+                || "..".equals(tenantDomain)) {
+            return null;
+        }
+        try {
+            return directory.resolve(URLEncoder.encode(tenantDomain, StandardCharsets.UTF_8.name()))
+                    .resolve(month + PARTIAL_FILE_EXTENSION);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete the cached rows in " + file, e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Unable to close the cached rows.", e);
+        }
+    }
+
+    /**
+     * Size and last read time of a cached partial.
+     */
+    private static final class Entry {
+
+        private final long sizeBytes;
+        private long lastAccessTime;
+
+        private Entry(long sizeBytes, long lastAccessTime) {
+            this.sizeBytes = sizeBytes;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+
+    /**
+     * Reads the cached rows of a month one at a time.
+     */
+    public static final class PartialReader implements Closeable {
+
+        private final DataInputStream in;
+        private int remainingRows = -1;
+
+        private PartialReader(DataInputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return the next row, or null if there are no more rows.
+         * @throws IOException if the rows cannot be read.
+         */
+        public Event next() throws IOException {
+            if (remainingRows < 0) {
+                remainingRows = in.readInt();
+            }
+            if (remainingRows == 0) {
+                return null;
+            }
+            remainingRows--;
+            try {
+                return new Event(0, new Object[]{readNullableString(in), readNullableString(in),
+                        readNullableString(in), readNullableString(in), in.readLong()});
+            } catch (EOFException e) {
+                throw new IOException("Cached rows are truncated.", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local disk cache of generated reports, keyed by tenant domain, year, month and report generator class. A report
+ * generated after its month is over never changes, hence it is kept until it is evicted to keep the cache within its
+ * size limit. A report generated while its month was still open expires after a short time. Cached reports are laid
+ * out as {@code <cache directory>/<tenant domain>/<year>-<month>/<generator class>.pdf}, so that they are reused
+ * after a restart. A cached report is handed out as a {@link Report}, and its file is not deleted while it is in use,
+ * even if it is evicted or expires in the meantime.
+ */
+public class ReportCache {
+
+    private static final Log log = LogFactory.getLog(ReportCache.class);
+    private static final String REPORT_FILE_EXTENSION = ".pdf";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    // Events of a month can still arrive shortly after it ends, e.g. through analytics file uploads.
+    private static final long CLOSED_MONTH_GRACE_PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final long openMonthTtlMillis;
+    // Entries in access order, hence the first entry is the least recently used one.
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    /**
+     * @param directory directory to keep the cached reports in.
+     * @param maxSizeBytes maximum total size of the cached reports.
+     * @param openMonthTtlMillis time to keep reports generated before their month is over.
+     */
+    public ReportCache(Path directory, long maxSizeBytes, long openMonthTtlMillis) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+        this.openMonthTtlMillis = openMonthTtlMillis;
+    }
+
+    /**
+     * Loads the reports cached in the cache directory by previous runs.
+     * @throws IOException if the cache directory cannot be created or read.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> tenantDirs = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path tenantDir : tenantDirs) {
+                try (DirectoryStream<Path> periodDirs = Files.newDirectoryStream(tenantDir, Files::isDirectory)) {
+                    for (Path periodDir : periodDirs) {
+                        try (DirectoryStream<Path> reportFiles = Files.newDirectoryStream(periodDir)) {
+                            reportFiles.forEach(files::add);
+                        }
+                    }
+                }
+            }
+        }
+        // Least recently modified first, so they are the first to be evicted.
+        files.sort((first, second) -> Long.compare(first.toFile().lastModified(), second.toFile().lastModified()));
+        synchronized (this) {
+            for (Path file : files) {
+                Key key = Key.fromPath(directory, file);
+                if (key == null) {
+                    // Left over by a report which was being cached when the server stopped.
+                    deleteFile(file);
+                    continue;
+                }
+                File reportFile = file.toFile();
+                addEntry(key, new Entry(key, file, reportFile.length(), reportFile.lastModified()));
+            }
+            evict();
+        }
+        log.debug("Loaded " + entries.size() + " cached reports from " + directory);
+    }
+
+    /**
+     * Returns the cached report for the given key, if it is still valid. The report must be closed once its file is
+     * no longer used.
+     * @param key key of the report.
+     * @return the report, or null if the report is not cached.
+     */
+    public Report get(Key key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (isValid(key, entry, now) && Files.isRegularFile(entry.file)) {
+                return new Report(entry);
+            }
+            removeEntry(key);
+        }
+        return null;
+    }
+
+    /**
+     * Generates a report into the cache. The returned report must be closed once its file is no longer used.
+     * @param key key of the report.
+     * @param writer writes the report.
+     * @return the cached report.
+     * @throws PDFReportException if the report cannot be generated or stored.
+     */
+    public Report put(Key key, ReportWriter writer) throws PDFReportException {
+        Path file = key.toPath(directory);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tempFile = Files.createTempFile(file.getParent(), "report-", TEMP_FILE_EXTENSION);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                writer.write(out);
+            }
+            synchronized (this) {
+                // Readers holding the previous file keep reading it, since the new file replaces only the name. The
+                // file is moved with the lock held, so that the file of a released report is not mistaken for it.
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                tempFile = null;
+                Entry entry = new Entry(key, file, file.toFile().length(), System.currentTimeMillis());
+                removeEntry(key, false);
+                addEntry(key, entry);
+                // Referenced before eviction, so that the file is kept even if it is evicted right away.
+                Report report = new Report(entry);
+                evict();
+                return report;
+            }
+        } catch (IOException e) {
+            throw new PDFReportException("Error while storing the report in the report cache.", e);
+        } finally {
+            if (tempFile != null) {
+                deleteFile(tempFile);
+            }
+        }
+    }
+
+    private boolean isValid(Key key, Entry entry, long now) {
+        long monthEnd = key.period.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        boolean closed = entry.generatedTime >= monthEnd + CLOSED_MONTH_GRACE_PERIOD_MILLIS;
+        return closed || now < entry.generatedTime + openMonthTtlMillis;
+    }
+
+    private void addEntry(Key key, Entry entry) {
+        entries.put(key, entry);
+        sizeBytes += entry.sizeBytes;
+    }
+
+    private void removeEntry(Key key) {
+        removeEntry(key, true);
+    }
+
+    private void removeEntry(Key key, boolean deleteFile) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            sizeBytes -= entry.sizeBytes;
+            // A replaced file is not deleted, since the same path now holds the new file.
+            removed(entry, deleteFile);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            sizeBytes -= entry.sizeBytes;
+            removed(entry, true);
+        }
+    }
+
+    /**
+     * Deletes the file of an entry which is no longer in the cache, or defers that until its last report is closed.
+     */
+    private void removed(Entry entry, boolean deleteFile) {
+        entry.removed = true;
+        entry.deleteOnRelease = deleteFile;
+        if (deleteFile && entry.references == 0) {
+            deleteFile(entry.file);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.references--;
+        // The path may already hold the file of a newer report of the same key.
+        if (entry.removed && entry.deleteOnRelease && entry.references == 0 && !entries.containsKey(entry.key)) {
+            deleteFile(entry.file);
+        }
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete the cached report file " + file, e);
+        }
+    }
+
+    /**
+     * Writes a report to a stream.
+     */
+    @FunctionalInterface
+    public interface ReportWriter {
+
+        void write(OutputStream outputStream) throws PDFReportException;
+    }
+
+    /**
+     * A cached report in use. The file of the report is kept until the report is closed.
+     */
+    public final class Report implements Closeable {
+
+        private final Entry entry;
+        private boolean closed;
+
+        // Called with the lock of the cache held.
+        private Report(Entry entry) {
+            this.entry = entry;
+            entry.references++;
+        }
+
+        public File getFile() {
+            return entry.file.toFile();
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+
+    /**
+     * Key of a cached report.
+     */
+    public static final class Key {
+
+        private final String tenantDomain;
+        private final YearMonth period;
+        private final String generatorClass;
+
+        private Key(String tenantDomain, YearMonth period, String generatorClass) {
+            this.tenantDomain = tenantDomain;
+            this.period = period;
+            this.generatorClass = generatorClass;
+        }
+
+        /**
+         * Creates the key of a report.
+         * @param tenantDomain tenant domain of the report.
+         * @param year year of the report.
+         * @param month month of the report, with or without a leading zero.
+         * @param generatorClass name of the report generator class.
+         * @return the key, or null if the tenant domain, the year or the month is not valid.
+         */
+        public static Key of(String tenantDomain, String year, String month, String generatorClass) {
+            // Tenant domains are used as directory names.
+            if (tenantDomain == null || tenantDomain.isEmpty() || ".".equals(tenantDomain)
+                    || "..".equals(tenantDomain)) {
+                return null;
+            }
+            try {
+                return new Key(tenantDomain, YearMonth.of(Integer.parseInt(year), Integer.parseInt(month)),
+                        generatorClass);
+            } catch (NumberFormatException | DateTimeException e) {
+                return null;
+            }
+        }
+
+        private Path toPath(Path directory) {
+            return directory.resolve(encode(tenantDomain)).resolve(period.toString())
+                    .resolve(encode(generatorClass) + REPORT_FILE_EXTENSION);
+        }
+
+        private static Key fromPath(Path directory, Path file) {
+            Path relativePath = directory.relativize(file);
+            String fileName = relativePath.getFileName().toString();
+            if (relativePath.getNameCount() != 3 || !fileName.endsWith(REPORT_FILE_EXTENSION)) {
+                return null;
+            }
+            try {
+                return new Key(decode(relativePath.getName(0).toString()),
+                        YearMonth.parse(relativePath.getName(1).toString()),
+                        decode(fileName.substring(0, fileName.length() - REPORT_FILE_EXTENSION.length())));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static String encode(String value) {
+            try {
+                return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static String decode(String value) {
+            try {
+                return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return tenantDomain.equals(key.tenantDomain) && period.equals(key.period)
+                    && generatorClass.equals(key.generatorClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return (tenantDomain.hashCode() * 31 + period.hashCode()) * 31 + generatorClass.hashCode();
+        }
+    }
+
+    /**
+     * A cached report file.
+     */
+    private static final class Entry {
+
+        private final Key key;
+        private final Path file;
+        private final long sizeBytes;
+        private final long generatedTime;
+        // Guarded by the cache.
+        private int references;
+        private boolean removed;
+        private boolean deleteOnRelease;
+
+        private Entry(Key key, Path file, long sizeBytes, long generatedTime) {
+            this.key = key;
+            this.file = file;
+            this.sizeBytes = sizeBytes;
+            this.generatedTime = generatedTime;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.dao;
+
+import io.siddhi.core.event.Event;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
+import org.wso2.analytics.apim.rest.api.report.internal.ServiceHolder;
+import org.wso2.carbon.database.query.manager.QueryProvider;
+import org.wso2.carbon.database.query.manager.exception.QueryMappingNotAvailableException;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.datasource.core.exception.DataSourceException;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.CustomClassLoaderConstructor;
+import org.yaml.snakeyaml.introspector.BeanAccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.sql.DataSource;
+
+/**
+ * DAO for the monthly request summary, which runs the summary as a SQL aggregation directly against the months table
+ * of the ApiUserPerAppAgg aggregation, so that the database groups, sorts and pages the rows. Only the database types
+ * which have queries in the queries.yaml file are supported, and only months which are persisted in the months table
+ * are read, since the aggregation keeps the current month in memory. Callers fall back to the Siddhi store query when
+ * a summary is not available from this DAO.
+ */
+public class RequestSummaryDAO {
+
+    private static final Log log = LogFactory.getLog(RequestSummaryDAO.class);
+    private static final String FILE_SQL_QUERIES = "/queries.yaml";
+    private static final String DB2_DB_TYPE = "DB2";
+    private static final String REQUEST_SUMMARY = "REQUEST_SUMMARY";
+    private static final String REQUEST_SUMMARY_PAGE = "REQUEST_SUMMARY_PAGE";
+    private static final String LIMIT_PLACEHOLDER = "{{LIMIT}}";
+    private static final String OFFSET_PLACEHOLDER = "{{OFFSET}}";
+    // The months table is written when the first event of the next month is processed, which is assumed to happen
+    // within a day after the month is over.
+    private static final long PERSIST_DELAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final String dataSourceName;
+    private volatile DataSource dataSource;
+    private volatile Map<String, String> queries;
+    private volatile boolean unsupported;
+
+    /**
+     * @param dataSourceName name of the data source of the report aggregations.
+     */
+    public RequestSummaryDAO(String dataSourceName) {
+        this.dataSourceName = dataSourceName;
+    }
+
+    /**
+     * Returns the request summary of a month, sorted by the request count in descending order.
+     * @param tenantDomain tenant domain of the API creators.
+     * @param month month of the summary.
+     * @param offset number of rows to skip, if the number of rows is limited.
+     * @param limit maximum number of rows to return, or 0 to return all rows.
+     * @return events with the API name, API version, application name, application owner and request count, or null
+     * if the summary of the month cannot be read from the database. Null is also returned if the month has no rows
+     * in the database, since the month may not be persisted yet.
+     * @throws PDFReportException if the summary query fails.
+     */
+    public Event[] getRequestSummary(String tenantDomain, YearMonth month, int offset, int limit)
+            throws PDFReportException {
+        long monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        if (unsupported || System.currentTimeMillis() < monthEnd + PERSIST_DELAY_MILLIS) {
+            return null;
+        }
+        Map<String, String> queries = getQueries();
+        if (queries == null) {
+            return null;
+        }
+        String query = limit > 0 ? queries.get(REQUEST_SUMMARY_PAGE).replace(LIMIT_PLACEHOLDER, String.valueOf(limit))
+                .replace(OFFSET_PLACEHOLDER, String.valueOf(Math.max(0, offset))) : queries.get(REQUEST_SUMMARY);
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(query)) {
+            ps.setString(1, tenantDomain);
+            ps.setLong(2, monthStart);
+            ps.setLong(3, monthEnd);
+            if (log.isDebugEnabled()) {
+                log.debug("Executing query: " + query);
+            }
+            List<Event> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Event(monthStart, new Object[]{rs.getString(1), rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getLong(5)}));
+                }
+            }
+            if (rows.isEmpty() && offset <= 0) {
+                // The months table is only written once an event of a later month is processed, so a month without
+                // rows is read from the aggregation instead.
+                return null;
+            }
+            return rows.toArray(new Event[0]);
+        } catch (SQLException e) {
+            throw new PDFReportException("Unable to retrieve the request summary. [Query=" + query + "]", e);
+        }
+    }
+
+    /**
+     * Returns the queries for the type of the database, or null if the database type is not supported.
+     */
+    private Map<String, String> getQueries() throws PDFReportException {
+        if (queries != null) {
+            return queries;
+        }
+        synchronized (this) {
+            if (queries != null || unsupported) {
+                return queries;
+            }
+            String databaseType;
+            String databaseVersion;
+            try (Connection conn = getDataSource().getConnection()) {
+                DatabaseMetaData databaseMetaData = conn.getMetaData();
+                databaseType = databaseMetaData.getDatabaseProductName();
+                databaseVersion = databaseMetaData.getDatabaseProductVersion();
+            } catch (SQLException e) {
+                throw new PDFReportException("Unable to connect to the datasource: '" + dataSourceName + "'.", e);
+            }
+            // DB2 product name changes with the specific versions(For an example DB2/LINUXX8664, DB2/NT).
+            if (databaseType.toLowerCase(Locale.ENGLISH).contains(DB2_DB_TYPE.toLowerCase(Locale.ENGLISH))) {
+                databaseType = DB2_DB_TYPE;
+            }
+            try (InputStream in = RequestSummaryDAO.class.getResourceAsStream(FILE_SQL_QUERIES)) {
+                if (in == null) {
+                    throw new PDFReportException("Unable to load " + FILE_SQL_QUERIES + " file.");
+                }
+                Yaml yaml = new Yaml(new CustomClassLoaderConstructor(ReportQueriesConfiguration.class,
+                        ReportQueriesConfiguration.class.getClassLoader()));
+                yaml.setBeanAccess(BeanAccess.FIELD);
+                ReportQueriesConfiguration configuration = yaml.loadAs(in, ReportQueriesConfiguration.class);
+                Map<String, String> mappings = QueryProvider.mergeMapping(databaseType, databaseVersion,
+                        configuration.getQueries(), new ArrayList<>());
+                if (isBlank(mappings.get(REQUEST_SUMMARY)) || isBlank(mappings.get(REQUEST_SUMMARY_PAGE))) {
+                    throw new QueryMappingNotAvailableException("No report queries for " + databaseType);
+                }
+                queries = mappings;
+            } catch (QueryMappingNotAvailableException e) {
+                log.info("Report queries are not available for the database type '" + databaseType + "'. Reports "
+                        + "will be generated with Siddhi store queries.");
+                unsupported = true;
+            } catch (IOException e) {
+                throw new PDFReportException("Unable to load content from " + FILE_SQL_QUERIES + " file.", e);
+            }
+            return queries;
+        }
+    }
+
+    private DataSource getDataSource() throws PDFReportException {
+        if (dataSource != null) {
+            return dataSource;
+        }
+        DataSourceService dataSourceService = ServiceHolder.getInstance().getDataSourceService();
+        if (dataSourceService == null) {
+            throw new PDFReportException("Datasource service is null. Cannot retrieve datasource '"
+                    + dataSourceName + "'.");
+        }
+        try {
+            dataSource = (DataSource) dataSourceService.getDataSource(dataSourceName);
+        } catch (DataSourceException e) {
+            throw new PDFReportException("Unable to retrieve the datasource: '" + dataSourceName + "'.", e);
+        }
+        return dataSource;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -22,11 +22,14 @@ import com.google.gson.JsonObject;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.apim.idp.client.ApimIdPClient;
 import org.wso2.analytics.apim.rest.api.report.NotFoundException;
 import org.wso2.analytics.apim.rest.api.report.ReportApiService;
-import org.wso2.analytics.apim.rest.api.report.api.ReportGenerator;
+import org.wso2.analytics.apim.rest.api.report.api.ReportFormat;
 import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
+import org.wso2.analytics.apim.rest.api.report.exception.ReportJobRejectedException;
 import org.wso2.analytics.apim.rest.api.report.internal.ServiceHolder;
+import org.wso2.analytics.apim.rest.api.report.job.ReportJob;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
 import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
@@ -34,9 +37,14 @@ import org.wso2.carbon.analytics.idp.client.core.models.Role;
 import org.wso2.carbon.analytics.idp.client.core.models.User;
 import org.wso2.msf4j.Request;
 
-import java.io.InputStream;
+import java.io.File;
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.core.Response;
 
 import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.AT;
@@ -51,72 +59,352 @@ public class ReportApiServiceImpl extends ReportApiService {
     private static final String DASHBOARD_USER = "DASHBOARD_USER=";
     private static final String AM_COOKIE_P1 = "SDID";
     private static final String AM_COOKIE_P2 = "HID=";
+    private static final String INVALID_PERIOD_MESSAGE = "Invalid year or month.";
+    private static final String JOB_NOT_FOUND_MESSAGE = "Report job not found.";
+    private static final String REPORT_JOBS_PATH = "/analytics-dashboard/apis/v1.0/report/jobs/";
+    private static final String DOWNLOAD_PATH = "/download";
+    private static final String NO_DATA_MESSAGE = "No data found for requested time period";
+    private static final int MAX_RANGE_MONTHS = 24;
+
+    /**
+     *
+     * @param month month in number format. e.g 01, 02
+     * @param year year in  number format. e.g 2019, 2020
+     * @param format format of the report. e.g pdf, csv, ndjson
+     * @param request
+     * @return report for request summary
+     * @throws NotFoundException
+     */
+    @Override
+    public Response reportGet(String month, String year, String format, Request request) throws NotFoundException {
+
+        AuthenticatedAdmin admin = authenticateAdmin(request);
+        if (admin.error != null) {
+            return admin.error;
+        }
+        if (StringUtils.isEmpty(year) || StringUtils.isEmpty(month)) {
+            String errorMsg = "Missing required parameters.";
+            log.error(errorMsg);
+            return Response.status(Response.Status.BAD_REQUEST).entity(errorMsg).build();
+        }
+        YearMonth period = parsePeriod(year, month);
+        if (period == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(INVALID_PERIOD_MESSAGE).build();
+        }
+        ReportFormat reportFormat = ReportFormat.fromName(format);
+        if (reportFormat == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Unsupported report format: " + format)
+                    .build();
+        }
+        try {
+            String tenantDomain = extractTenantDomainFromUserName(admin.username);
+            // The report is generated by the bounded report generator threads, and not by the request thread.
+            ReportJob job = ServiceHolder.getInstance().getReportJobManager().submit(tenantDomain, period,
+                    reportFormat);
+            return awaitJobResult(job);
+        } catch (PDFReportException e) {
+            String errorMsg = "Unable to fetch report.";
+            log.error(errorMsg, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build();
+        } catch (ReportJobRejectedException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(e.getMessage()).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Unable to fetch report.").build();
+        }
+    }
+
+    /**
+     * Returns the report of a range of months, built from the rows of each month.
+     *
+     * @param from first month of the range, in the format YYYY-MM. e.g 2020-01
+     * @param to last month of the range, in the format YYYY-MM. e.g 2020-03
+     * @param format format of the report. e.g pdf, csv, ndjson
+     * @param request
+     * @return report for request summary of the range
+     * @throws NotFoundException
+     */
+    @Override
+    public Response reportRangeGet(String from, String to, String format, Request request) throws NotFoundException {
+
+        AuthenticatedAdmin admin = authenticateAdmin(request);
+        if (admin.error != null) {
+            return admin.error;
+        }
+        YearMonth fromPeriod = parsePeriod(from);
+        YearMonth toPeriod = parsePeriod(to);
+        if (fromPeriod == null || toPeriod == null || fromPeriod.isAfter(toPeriod)) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid range. The first and the last "
+                    + "months of the range are required in the format YYYY-MM.").build();
+        }
+        if (fromPeriod.plusMonths(MAX_RANGE_MONTHS).compareTo(toPeriod) <= 0) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("A range cannot have more than "
+                    + MAX_RANGE_MONTHS + " months.").build();
+        }
+        ReportFormat reportFormat = ReportFormat.fromName(format);
+        if (reportFormat == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Unsupported report format: " + format)
+                    .build();
+        }
+        try {
+            String tenantDomain = extractTenantDomainFromUserName(admin.username);
+            // The months of the range are queried and merged by the report job, and not by the request thread.
+            ReportJob job = ServiceHolder.getInstance().getReportJobManager().submit(tenantDomain, fromPeriod,
+                    toPeriod, reportFormat);
+            return awaitJobResult(job);
+        } catch (PDFReportException e) {
+            String errorMsg = "Unable to fetch report.";
+            log.error(errorMsg, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build();
+        } catch (ReportJobRejectedException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(e.getMessage()).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Unable to fetch report.").build();
+        }
+    }
+
     /**
+     * Submits a job to generate a report.
      *
      * @param month month in number format. e.g 01, 02
      * @param year year in  number format. e.g 2019, 2020
      * @param request
+     * @return status of the job
+     * @throws NotFoundException
+     */
+    @Override
+    public Response reportJobsPost(String month, String year, Request request) throws NotFoundException {
+
+        AuthenticatedAdmin admin = authenticateAdmin(request);
+        if (admin.error != null) {
+            return admin.error;
+        }
+        YearMonth period = parsePeriod(year, month);
+        if (period == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(INVALID_PERIOD_MESSAGE).build();
+        }
+        try {
+            String tenantDomain = extractTenantDomainFromUserName(admin.username);
+            ReportJob job = ServiceHolder.getInstance().getReportJobManager().submit(tenantDomain, period);
+            return accepted(job);
+        } catch (PDFReportException e) {
+            String errorMsg = "Unable to submit report job.";
+            log.error(errorMsg, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build();
+        } catch (ReportJobRejectedException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Returns the status of a report job.
+     *
+     * @param jobId id of the job
+     * @param request
+     * @return status of the job
+     * @throws NotFoundException
+     */
+    @Override
+    public Response reportJobsJobIdGet(String jobId, Request request) throws NotFoundException {
+
+        AuthenticatedAdmin admin = authenticateAdmin(request);
+        if (admin.error != null) {
+            return admin.error;
+        }
+        try {
+            ReportJob job = getJobOfTenant(jobId, extractTenantDomainFromUserName(admin.username));
+            if (job == null) {
+                return Response.status(Response.Status.NOT_FOUND).entity(JOB_NOT_FOUND_MESSAGE).build();
+            }
+            return Response.ok().entity(toJson(job)).build();
+        } catch (PDFReportException e) {
+            String errorMsg = "Unable to fetch report job.";
+            log.error(errorMsg, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build();
+        }
+    }
+
+    /**
+     * Downloads the report generated by a report job.
+     *
+     * @param jobId id of the job
+     * @param request
      * @return PDF report for request summary
      * @throws NotFoundException
      */
     @Override
-    public Response reportGet(String month, String year, Request request) throws NotFoundException {
+    public Response reportJobsJobIdDownloadGet(String jobId, Request request) throws NotFoundException {
+
+        AuthenticatedAdmin admin = authenticateAdmin(request);
+        if (admin.error != null) {
+            return admin.error;
+        }
+        try {
+            ReportJob job = getJobOfTenant(jobId, extractTenantDomainFromUserName(admin.username));
+            if (job == null) {
+                return Response.status(Response.Status.NOT_FOUND).entity(JOB_NOT_FOUND_MESSAGE).build();
+            }
+            if (!job.isFinished()) {
+                return Response.status(Response.Status.CONFLICT).entity(toJson(job)).build();
+            }
+            return getJobResult(job);
+        } catch (PDFReportException e) {
+            String errorMsg = "Unable to fetch report.";
+            log.error(errorMsg, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build();
+        }
+    }
+
+    /**
+     * Authenticates the user of the request and checks whether the user is an admin.
+     *
+     * @param request the request
+     * @return name of the user, or the error response if the user is not an admin
+     */
+    private AuthenticatedAdmin authenticateAdmin(Request request) {
 
         String cookie = getAccessToken(request.getHeader("Cookie"));
         //If no authorization information present; block access
         if (StringUtils.isEmpty(cookie)) {
             String errorMsg = "Received a request to PDF Reporting REST API without Cookie header.";
             log.error(errorMsg);
-            return Response.status(Response.Status.UNAUTHORIZED).entity(errorMsg).build();
+            return new AuthenticatedAdmin(null,
+                    Response.status(Response.Status.UNAUTHORIZED).entity(errorMsg).build());
         }
         IdPClient idPClient = ServiceHolder.getInstance().getApimAdminClient();
         boolean isAdmin = false;
         String username;
         try {
             username = idPClient.authenticate(cookie);
-            User user = idPClient.getUser(username);
-            List<Role> rolesOfUser = user.getRoles();
-            for (Role role : rolesOfUser) {
-                if (role.getDisplayName().equals(ADMIN_SCOPE)) {
-                    isAdmin = true;
+            if (idPClient instanceof ApimIdPClient) {
+                isAdmin = ((ApimIdPClient) idPClient).hasRole(username, ADMIN_SCOPE);
+            } else {
+                User user = idPClient.getUser(username);
+                List<Role> rolesOfUser = user.getRoles();
+                for (Role role : rolesOfUser) {
+                    if (role.getDisplayName().equals(ADMIN_SCOPE)) {
+                        isAdmin = true;
+                    }
                 }
             }
         } catch (IdPClientException | AuthenticationException e) {
             String errorMsg = "Error during authentication for report generation API.";
             log.error(errorMsg, e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build();
+            return new AuthenticatedAdmin(null,
+                    Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build());
         }
-        if (isAdmin) {
-            if (StringUtils.isEmpty(year) || StringUtils.isEmpty(month)) {
-                String errorMsg = "Missing required parameters.";
-                log.error(errorMsg);
-                return Response.status(Response.Status.BAD_REQUEST).entity(errorMsg).build();
-            }
-            InputStream data;
-            try {
-                String tenantDomain = extractTenantDomainFromUserName(username);
-                ReportGenerator reportGeneratorImpl = (ReportGenerator) (ServiceHolder.getInstance().
-                        getReportImplClassConstructor()).newInstance(year, month, tenantDomain);
-                data = reportGeneratorImpl.generateMonthlyRequestSummaryPDF();
-                if (data != null) {
-                    return Response.ok().entity(data).build();
-                } else {
-                    String msg = "No data found for requested time period";
-                    return Response.ok().entity(msg).build();
-                }
-            } catch (PDFReportException | ReflectiveOperationException e) {
-                String errorMsg = "Unable to fetch report.";
-                log.error(errorMsg, e);
-                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(errorMsg).build();
-            }
-        } else {
+        if (!isAdmin) {
             String errorMsg = "Access token does not contain admin scope. Hence unable to fetch report for user :" +
                     username;
             log.error(errorMsg);
-            return Response.status(Response.Status.UNAUTHORIZED).entity(errorMsg).build();
+            return new AuthenticatedAdmin(null,
+                    Response.status(Response.Status.UNAUTHORIZED).entity(errorMsg).build());
+        }
+        return new AuthenticatedAdmin(username, null);
+    }
+
+    private YearMonth parsePeriod(String year, String month) {
+
+        try {
+            return YearMonth.of(Integer.parseInt(year), Integer.parseInt(month));
+        } catch (NumberFormatException | DateTimeException e) {
+            return null;
+        }
+    }
+
+    private YearMonth parsePeriod(String period) {
+
+        if (StringUtils.isEmpty(period)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(period);
+        } catch (DateTimeParseException e) {
+            return null;
         }
     }
 
+    private ReportJob getJobOfTenant(String jobId, String tenantDomain) {
+
+        ReportJob job = ServiceHolder.getInstance().getReportJobManager().getJob(jobId);
+        // Jobs of other tenants are reported as not found.
+        return job != null && job.getTenantDomain().equals(tenantDomain) ? job : null;
+    }
+
+    /**
+     * Waits for the job of a synchronous report request and returns its report. The wait is only bounded when a
+     * synchronous report timeout is configured.
+     */
+    private Response awaitJobResult(ReportJob job) throws InterruptedException {
+
+        long timeout = ServiceHolder.getInstance().getSynchronousReportTimeoutSeconds();
+        if (timeout <= 0) {
+            job.awaitCompletion();
+        } else if (!job.awaitCompletion(timeout, TimeUnit.SECONDS)) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Report was not generated within "
+                    + timeout + " seconds. It can be downloaded from " + REPORT_JOBS_PATH + job.getId()
+                    + DOWNLOAD_PATH + " once it is generated.").build();
+        }
+        return getJobResult(job);
+    }
+
+    private Response getJobResult(ReportJob job) {
+
+        switch (job.getStatus()) {
+            case COMPLETED:
+                File report = job.getResult();
+                if (!report.isFile()) {
+                    return Response.status(Response.Status.GONE).entity("Report is no longer available. Please "
+                            + "submit the report job again.").build();
+                }
+                // The file entity is sent by the transport directly from the file, which is complete at this point.
+                ReportFormat format = job.getFormat();
+                Response.ResponseBuilder response = Response.ok(report, format.getMediaType());
+                if (format != ReportFormat.PDF) {
+                    String name = job.isRange() ? job.getPeriod() + "-to-" + job.getEndPeriod()
+                            : job.getPeriod().toString();
+                    response.header("Content-Disposition", "attachment; filename=\"report-" + name + "."
+                            + format.getFileExtension() + "\"");
+                }
+                return response.build();
+            case NO_DATA:
+                return Response.ok().entity(NO_DATA_MESSAGE).build();
+            default:
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Unable to fetch report.")
+                        .build();
+        }
+    }
+
+    /**
+     * Returns the status of a job which is not finished yet, with the url to poll in the Location header.
+     */
+    private Response accepted(ReportJob job) {
+
+        return Response.status(Response.Status.ACCEPTED).header("Location", REPORT_JOBS_PATH + job.getId())
+                .entity(toJson(job)).build();
+    }
+
+    private String toJson(ReportJob job) {
+
+        JsonObject status = new JsonObject();
+        status.addProperty("jobId", job.getId());
+        status.addProperty("statusUrl", REPORT_JOBS_PATH + job.getId());
+        status.addProperty("downloadUrl", REPORT_JOBS_PATH + job.getId() + DOWNLOAD_PATH);
+        status.addProperty("status", job.getStatus().name());
+        status.addProperty("format", job.getFormat().name().toLowerCase(Locale.ENGLISH));
+        status.addProperty("year", job.getPeriod().getYear());
+        status.addProperty("month", job.getPeriod().getMonthValue());
+        if (job.isRange()) {
+            status.addProperty("toYear", job.getEndPeriod().getYear());
+            status.addProperty("toMonth", job.getEndPeriod().getMonthValue());
+        }
+        if (job.getError() != null) {
+            status.addProperty("error", job.getError());
+        }
+        return new Gson().toJson(status);
+    }
+
     /**
      * Construct the access token from cookies.
      *
@@ -160,4 +448,18 @@ public class ReportApiServiceImpl extends ReportApiService {
         return tenantDomain;
     }
 
+    /**
+     * Result of authenticating an admin user.
+     */
+    private static final class AuthenticatedAdmin {
+
+        private final String username;
+        private final Response error;
+
+        private AuthenticatedAdmin(String username, Response error) {
+
+            this.username = username;
+            this.error = error;
+        }
+    }
 }
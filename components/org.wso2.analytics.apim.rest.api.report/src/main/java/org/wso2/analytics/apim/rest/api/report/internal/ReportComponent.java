@@ -15,6 +15,7 @@
 */
 package org.wso2.analytics.apim.rest.api.report.internal;
 
+import org.apache.commons.io.IOUtils;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -24,12 +25,24 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wso2.analytics.apim.rest.api.report.cache.MonthlyPartialCache;
+import org.wso2.analytics.apim.rest.api.report.cache.ReportCache;
+import org.wso2.analytics.apim.rest.api.report.dao.RequestSummaryDAO;
+import org.wso2.analytics.apim.rest.api.report.job.ReportJobManager;
+import org.wso2.analytics.apim.rest.api.report.reportgen.StoreQueryRuntimePool;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 import org.wso2.carbon.config.ConfigurationException;
 import org.wso2.carbon.config.provider.ConfigProvider;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service component to get Carbon Config Provider OSGi service.
@@ -41,16 +54,48 @@ import java.util.LinkedHashMap;
 public class ReportComponent {
 
     private static final Logger log = LoggerFactory.getLogger(ReportComponent.class);
+    private static final String REPORT_SIDDHI_APP = "/APIMTopAppUsersReport.siddhi";
+    private static final String STORE_QUERY_RUNTIME_POOL_SIZE = "storeQueryRuntimePoolSize";
+    private static final int DEFAULT_STORE_QUERY_RUNTIME_POOL_SIZE = 2;
+    private static final String CACHE_ENABLED = "cacheEnabled";
+    private static final String CACHE_DIRECTORY = "cacheDirectory";
+    private static final String DEFAULT_CACHE_DIRECTORY_NAME = "apim-report-cache";
+    private static final String CACHE_MAX_SIZE_MB = "cacheMaxSizeMB";
+    private static final int DEFAULT_CACHE_MAX_SIZE_MB = 512;
+    private static final String OPEN_MONTH_CACHE_TTL_MINUTES = "openMonthCacheTtlMinutes";
+    private static final int DEFAULT_OPEN_MONTH_CACHE_TTL_MINUTES = 15;
+    private static final String PARTIAL_CACHE_ENABLED = "partialCacheEnabled";
+    private static final String PARTIAL_CACHE_DIRECTORY = "partialCacheDirectory";
+    private static final String DEFAULT_PARTIAL_CACHE_DIRECTORY_NAME = "apim-report-partials";
+    private static final String PARTIAL_CACHE_MAX_SIZE_MB = "partialCacheMaxSizeMB";
+    private static final int DEFAULT_PARTIAL_CACHE_MAX_SIZE_MB = 256;
+    private static final String PARTIAL_CACHE_EXPIRY_DAYS = "partialCacheExpiryDays";
+    private static final int DEFAULT_PARTIAL_CACHE_EXPIRY_DAYS = 30;
+    private static final String RANGE_REPORT_MAX_ROWS = "rangeReportMaxRows";
+    private static final int DEFAULT_RANGE_REPORT_MAX_ROWS = 100000;
+    private static final String JOB_THREADS = "jobThreads";
+    private static final int DEFAULT_JOB_THREADS = 2;
+    private static final String JOB_QUEUE_SIZE = "jobQueueSize";
+    private static final int DEFAULT_JOB_QUEUE_SIZE = 20;
+    private static final String MAX_PENDING_JOBS_PER_TENANT = "maxPendingJobsPerTenant";
+    private static final int DEFAULT_MAX_PENDING_JOBS_PER_TENANT = 2;
+    private static final String JOB_RETENTION_MINUTES = "jobRetentionMinutes";
+    private static final int DEFAULT_JOB_RETENTION_MINUTES = 60;
+    private static final String JOB_RESULT_DIRECTORY_NAME = "apim-report-jobs";
+    private static final String SYNCHRONOUS_REPORT_TIMEOUT_SECONDS = "synchronousReportTimeoutSeconds";
+    private static final String SQL_PUSHDOWN_ENABLED = "sqlPushdownEnabled";
+    // Data source of the aggregations of the report Siddhi app.
+    private static final String REPORT_DATA_SOURCE = "APIM_ANALYTICS_DB";
 
     @Activate
     protected void activate(BundleContext bundleContext) {
         log.debug("activating ReportComponent bundle");
         ConfigProvider configProvider = ServiceHolder.getInstance().getConfigProvider();
+        Map<String, Object> reportConfigs = null;
         try {
-            LinkedHashMap<String, String> reportConfigs = (LinkedHashMap<String, String>) configProvider.
-                    getConfigurationObject("report");
+            reportConfigs = (LinkedHashMap<String, Object>) configProvider.getConfigurationObject("report");
             if (reportConfigs != null) {
-                String implClass = reportConfigs.get("implClass");
+                String implClass = (String) reportConfigs.get("implClass");
                 Class<?> reportGeneratorClass = Class.forName(implClass);
                 Constructor<?> constructor = reportGeneratorClass.
                         getDeclaredConstructor(String.class, String.class, String.class);
@@ -59,10 +104,112 @@ public class ReportComponent {
         } catch (ConfigurationException | ClassNotFoundException | NoSuchMethodException e) {
             log.error("Error during activating ReportComponent.", e);
         }
+        int storeQueryRuntimePoolSize = getIntConfig(reportConfigs, STORE_QUERY_RUNTIME_POOL_SIZE,
+                DEFAULT_STORE_QUERY_RUNTIME_POOL_SIZE);
+
+        try (InputStream inputStream = ReportComponent.class.getResourceAsStream(REPORT_SIDDHI_APP)) {
+            String siddhiApp = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+            StoreQueryRuntimePool storeQueryRuntimePool = new StoreQueryRuntimePool(siddhiApp,
+                    storeQueryRuntimePoolSize);
+            storeQueryRuntimePool.start();
+            ServiceHolder.getInstance().setStoreQueryRuntimePool(storeQueryRuntimePool);
+        } catch (IOException e) {
+            log.error("Error while reading the report Siddhi app.", e);
+        }
+
+        if (Boolean.parseBoolean(getConfig(reportConfigs, SQL_PUSHDOWN_ENABLED, "true"))) {
+            ServiceHolder.getInstance().setRequestSummaryDAO(new RequestSummaryDAO(REPORT_DATA_SOURCE));
+        }
+
+        if (Boolean.parseBoolean(getConfig(reportConfigs, CACHE_ENABLED, "true"))) {
+            String cacheDirectory = getConfig(reportConfigs, CACHE_DIRECTORY,
+                    Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_CACHE_DIRECTORY_NAME).toString());
+            ReportCache reportCache = new ReportCache(Paths.get(cacheDirectory),
+                    getIntConfig(reportConfigs, CACHE_MAX_SIZE_MB, DEFAULT_CACHE_MAX_SIZE_MB) * 1024L * 1024L,
+                    TimeUnit.MINUTES.toMillis(getIntConfig(reportConfigs, OPEN_MONTH_CACHE_TTL_MINUTES,
+                            DEFAULT_OPEN_MONTH_CACHE_TTL_MINUTES)));
+            try {
+                reportCache.start();
+                ServiceHolder.getInstance().setReportCache(reportCache);
+            } catch (IOException e) {
+                log.error("Error while initializing the report cache in " + cacheDirectory
+                        + ". Reports will not be cached.", e);
+            }
+        }
+        if (Boolean.parseBoolean(getConfig(reportConfigs, PARTIAL_CACHE_ENABLED, "true"))) {
+            String partialCacheDirectory = getConfig(reportConfigs, PARTIAL_CACHE_DIRECTORY,
+                    Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_PARTIAL_CACHE_DIRECTORY_NAME).toString());
+            MonthlyPartialCache monthlyPartialCache = new MonthlyPartialCache(Paths.get(partialCacheDirectory),
+                    getIntConfig(reportConfigs, PARTIAL_CACHE_MAX_SIZE_MB, DEFAULT_PARTIAL_CACHE_MAX_SIZE_MB)
+                            * 1024L * 1024L,
+                    TimeUnit.DAYS.toMillis(getIntConfig(reportConfigs, PARTIAL_CACHE_EXPIRY_DAYS,
+                            DEFAULT_PARTIAL_CACHE_EXPIRY_DAYS)));
+            try {
+                monthlyPartialCache.start();
+                ServiceHolder.getInstance().setMonthlyPartialCache(monthlyPartialCache);
+            } catch (IOException e) {
+                log.error("Error while initializing the report partial cache in " + partialCacheDirectory
+                        + ". Range reports will query each month.", e);
+            }
+        }
+        ServiceHolder.getInstance().setRangeReportMaxRows(Math.max(1, getIntConfig(reportConfigs,
+                RANGE_REPORT_MAX_ROWS, DEFAULT_RANGE_REPORT_MAX_ROWS)));
+
+        ServiceHolder.getInstance().setReportJobManager(new ReportJobManager(
+                Math.max(1, getIntConfig(reportConfigs, JOB_THREADS, DEFAULT_JOB_THREADS)),
+                Math.max(1, getIntConfig(reportConfigs, JOB_QUEUE_SIZE, DEFAULT_JOB_QUEUE_SIZE)),
+                Math.max(1, getIntConfig(reportConfigs, MAX_PENDING_JOBS_PER_TENANT,
+                        DEFAULT_MAX_PENDING_JOBS_PER_TENANT)),
+                TimeUnit.MINUTES.toMillis(getIntConfig(reportConfigs, JOB_RETENTION_MINUTES,
+                        DEFAULT_JOB_RETENTION_MINUTES)),
+                Paths.get(System.getProperty("java.io.tmpdir"), JOB_RESULT_DIRECTORY_NAME)));
+        // 0 lets the GET report requests wait until their report is generated.
+        ServiceHolder.getInstance().setSynchronousReportTimeoutSeconds(
+                getIntConfig(reportConfigs, SYNCHRONOUS_REPORT_TIMEOUT_SECONDS, 0));
+    }
+
+    /**
+     * Returns the value of a report configuration.
+     * @param reportConfigs report configurations in the deployment.yaml file.
+     * @param key name of the configuration.
+     * @param defaultValue value to return if the configuration is not set.
+     * @return the value of the configuration.
+     */
+    private static String getConfig(Map<String, Object> reportConfigs, String key, String defaultValue) {
+        // Values which are not quoted in the deployment.yaml file are read as numbers and booleans.
+        Object value = reportConfigs == null ? null : reportConfigs.get(key);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    private static int getIntConfig(Map<String, Object> reportConfigs, String key, int defaultValue) {
+        String value = getConfig(reportConfigs, key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid value '" + value + "' for the report configuration " + key + ". Using the default "
+                    + "value " + defaultValue + ".");
+            return defaultValue;
+        }
     }
 
     @Deactivate
     protected void deactivate() {
+        ReportJobManager reportJobManager = ServiceHolder.getInstance().getReportJobManager();
+        ServiceHolder.getInstance().setReportJobManager(null);
+        if (reportJobManager != null) {
+            reportJobManager.shutdown();
+        }
+        ServiceHolder.getInstance().setReportCache(null);
+        ServiceHolder.getInstance().setMonthlyPartialCache(null);
+        ServiceHolder.getInstance().setRequestSummaryDAO(null);
+        StoreQueryRuntimePool storeQueryRuntimePool = ServiceHolder.getInstance().getStoreQueryRuntimePool();
+        ServiceHolder.getInstance().setStoreQueryRuntimePool(null);
+        if (storeQueryRuntimePool != null) {
+            storeQueryRuntimePool.shutdown();
+        }
     }
 
     @Reference(
@@ -92,4 +239,19 @@ public class ReportComponent {
         ServiceHolder.getInstance().setConfigProvider(null);
     }
 
+    @Reference(
+            name = "org.wso2.carbon.datasource.DataSourceService",
+            service = DataSourceService.class,
+            cardinality = ReferenceCardinality.MANDATORY,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unregisterDataSourceService"
+    )
+    protected void registerDataSourceService(DataSourceService dataSourceService) {
+        ServiceHolder.getInstance().setDataSourceService(dataSourceService);
+    }
+
+    protected void unregisterDataSourceService(DataSourceService dataSourceService) {
+        ServiceHolder.getInstance().setDataSourceService(null);
+    }
+
 }
@@ -15,8 +15,14 @@
 */
 package org.wso2.analytics.apim.rest.api.report.internal;
 
+import org.wso2.analytics.apim.rest.api.report.cache.MonthlyPartialCache;
+import org.wso2.analytics.apim.rest.api.report.cache.ReportCache;
+import org.wso2.analytics.apim.rest.api.report.dao.RequestSummaryDAO;
+import org.wso2.analytics.apim.rest.api.report.job.ReportJobManager;
+import org.wso2.analytics.apim.rest.api.report.reportgen.StoreQueryRuntimePool;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 import org.wso2.carbon.config.provider.ConfigProvider;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
 
 import java.lang.reflect.Constructor;
 
@@ -29,6 +35,14 @@ public class ServiceHolder {
     private static ServiceHolder instance = new ServiceHolder();
     private  ConfigProvider configProvider;
     private Constructor<?> reportImplClassConstructor;
+    private volatile StoreQueryRuntimePool storeQueryRuntimePool;
+    private volatile ReportCache reportCache;
+    private volatile MonthlyPartialCache monthlyPartialCache;
+    private volatile ReportJobManager reportJobManager;
+    private volatile DataSourceService dataSourceService;
+    private volatile RequestSummaryDAO requestSummaryDAO;
+    private volatile long synchronousReportTimeoutSeconds;
+    private volatile int rangeReportMaxRows = Integer.MAX_VALUE;
 
     private ServiceHolder() {
     }
@@ -43,6 +57,86 @@ public class ServiceHolder {
         this.reportImplClassConstructor = reportImplClassConstructor;
     }
 
+    public StoreQueryRuntimePool getStoreQueryRuntimePool() {
+
+        return storeQueryRuntimePool;
+    }
+
+    public void setStoreQueryRuntimePool(StoreQueryRuntimePool storeQueryRuntimePool) {
+
+        this.storeQueryRuntimePool = storeQueryRuntimePool;
+    }
+
+    public ReportCache getReportCache() {
+
+        return reportCache;
+    }
+
+    public void setReportCache(ReportCache reportCache) {
+
+        this.reportCache = reportCache;
+    }
+
+    public MonthlyPartialCache getMonthlyPartialCache() {
+
+        return monthlyPartialCache;
+    }
+
+    public void setMonthlyPartialCache(MonthlyPartialCache monthlyPartialCache) {
+
+        this.monthlyPartialCache = monthlyPartialCache;
+    }
+
+    public ReportJobManager getReportJobManager() {
+
+        return reportJobManager;
+    }
+
+    public void setReportJobManager(ReportJobManager reportJobManager) {
+
+        this.reportJobManager = reportJobManager;
+    }
+
+    public DataSourceService getDataSourceService() {
+
+        return dataSourceService;
+    }
+
+    public void setDataSourceService(DataSourceService dataSourceService) {
+
+        this.dataSourceService = dataSourceService;
+    }
+
+    public RequestSummaryDAO getRequestSummaryDAO() {
+
+        return requestSummaryDAO;
+    }
+
+    public void setRequestSummaryDAO(RequestSummaryDAO requestSummaryDAO) {
+
+        this.requestSummaryDAO = requestSummaryDAO;
+    }
+
+    public long getSynchronousReportTimeoutSeconds() {
+
+        return synchronousReportTimeoutSeconds;
+    }
+
+    public void setSynchronousReportTimeoutSeconds(long synchronousReportTimeoutSeconds) {
+
+        this.synchronousReportTimeoutSeconds = synchronousReportTimeoutSeconds;
+    }
+
+    public int getRangeReportMaxRows() {
+
+        return rangeReportMaxRows;
+    }
+
+    public void setRangeReportMaxRows(int rangeReportMaxRows) {
+
+        this.rangeReportMaxRows = rangeReportMaxRows;
+    }
+
     public void setAPIMAdminClient(IdPClient service) {
         this.apimAdminClient = service;
     }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.job;
+
+import org.wso2.analytics.apim.rest.api.report.api.ReportFormat;
+import org.wso2.analytics.apim.rest.api.report.cache.ReportCache;
+
+import java.io.File;
+import java.time.YearMonth;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A report generation job. Identical requests which are submitted while a job is pending share the job.
+ */
+public class ReportJob {
+
+    /**
+     * Status of a report job.
+     */
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        NO_DATA,
+        FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String tenantDomain;
+    private final YearMonth period;
+    private final YearMonth endPeriod;
+    private final ReportFormat format;
+    private final String deduplicationKey;
+    private final CountDownLatch completion = new CountDownLatch(1);
+    private volatile Status status = Status.QUEUED;
+    private volatile File result;
+    private volatile boolean ownsResult;
+    // Keeps the cached report file while the job is kept.
+    private volatile ReportCache.Report cachedResult;
+    private volatile String error;
+    private volatile long finishedTime;
+
+    ReportJob(String tenantDomain, YearMonth period, YearMonth endPeriod, ReportFormat format,
+              String deduplicationKey) {
+        this.tenantDomain = tenantDomain;
+        this.period = period;
+        this.endPeriod = endPeriod;
+        this.format = format;
+        this.deduplicationKey = deduplicationKey;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTenantDomain() {
+        return tenantDomain;
+    }
+
+    /**
+     * @return the month of the report, or the first month if the report is of a range of months.
+     */
+    public YearMonth getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return the last month of the report, which is the same as the first month unless the report is of a range of
+     * months.
+     */
+    public YearMonth getEndPeriod() {
+        return endPeriod;
+    }
+
+    public ReportFormat getFormat() {
+        return format;
+    }
+
+    public boolean isRange() {
+        return !period.equals(endPeriod);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the generated report, if the job is completed.
+     */
+    public File getResult() {
+        return result;
+    }
+
+    /**
+     * @return the reason the job failed, if it failed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isFinished() {
+        return completion.getCount() == 0;
+    }
+
+    /**
+     * Waits until the job is finished.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        completion.await();
+    }
+
+    /**
+     * Waits until the job is finished.
+     * @param timeout maximum time to wait.
+     * @param unit unit of the timeout.
+     * @return true if the job is finished.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return completion.await(timeout, unit);
+    }
+
+    String getDeduplicationKey() {
+        return deduplicationKey;
+    }
+
+    boolean ownsResult() {
+        return ownsResult;
+    }
+
+    ReportCache.Report getCachedResult() {
+        return cachedResult;
+    }
+
+    long getFinishedTime() {
+        return finishedTime;
+    }
+
+    void started() {
+        status = Status.RUNNING;
+    }
+
+    void completed(File result, boolean ownsResult) {
+        this.result = result;
+        this.ownsResult = ownsResult;
+        finish(Status.COMPLETED);
+    }
+
+    void completed(ReportCache.Report cachedResult) {
+        this.cachedResult = cachedResult;
+        completed(cachedResult.getFile(), false);
+    }
+
+    void completedWithoutData() {
+        finish(Status.NO_DATA);
+    }
+
+    void failed(String error) {
+        this.error = error;
+        finish(Status.FAILED);
+    }
+
+    private void finish(Status status) {
+        this.finishedTime = System.currentTimeMillis();
+        this.status = status;
+        completion.countDown();
+    }
+}
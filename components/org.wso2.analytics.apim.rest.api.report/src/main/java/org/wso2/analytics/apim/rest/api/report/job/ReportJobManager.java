@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.job;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.apim.rest.api.report.api.ReportFormat;
+import org.wso2.analytics.apim.rest.api.report.api.ReportGenerator;
+import org.wso2.analytics.apim.rest.api.report.cache.ReportCache;
+import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
+import org.wso2.analytics.apim.rest.api.report.exception.ReportJobRejectedException;
+import org.wso2.analytics.apim.rest.api.report.internal.ServiceHolder;
+import org.wso2.analytics.apim.rest.api.report.reportgen.RangeReportGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs report generation jobs on a bounded pool of threads with a bounded queue, so that report generation does not
+ * take the threads of the rest of the REST APIs. Each tenant can have only a limited number of pending jobs, and
+ * a request for a report which is already being generated joins the pending job. Finished jobs are kept for a while,
+ * so that their reports can be downloaded.
+ */
+public class ReportJobManager {
+
+    private static final Log log = LogFactory.getLog(ReportJobManager.class);
+    private static final String RESULT_FILE_PREFIX = "report-";
+
+    private final ThreadPoolExecutor executor;
+    private final int maxPendingJobsPerTenant;
+    private final long retentionMillis;
+    private final Path resultDirectory;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    // Guarded by this.
+    private final Map<String, ReportJob> pendingJobs = new HashMap<>();
+    private final Map<String, Integer> pendingJobsPerTenant = new HashMap<>();
+
+    /**
+     * @param threads number of reports generated at once.
+     * @param queueSize maximum number of jobs waiting for a thread.
+     * @param maxPendingJobsPerTenant maximum number of queued and running jobs of a tenant.
+     * @param retentionMillis time to keep finished jobs.
+     * @param resultDirectory directory to keep the reports which are not kept in the report cache.
+     */
+    public ReportJobManager(int threads, int queueSize, int maxPendingJobsPerTenant, long retentionMillis,
+                            Path resultDirectory) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "report-generator-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.maxPendingJobsPerTenant = maxPendingJobsPerTenant;
+        this.retentionMillis = retentionMillis;
+        this.resultDirectory = resultDirectory;
+    }
+
+    /**
+     * Submits a job to generate a PDF report, or returns the pending job which generates the same report.
+     * @param tenantDomain tenant domain of the report.
+     * @param period month of the report.
+     * @return the job.
+     * @throws ReportJobRejectedException if the job queue or the job limit of the tenant is full.
+     */
+    public ReportJob submit(String tenantDomain, YearMonth period) throws ReportJobRejectedException {
+        return submit(tenantDomain, period, period, ReportFormat.PDF);
+    }
+
+    /**
+     * Submits a job to generate a report in the given format, or returns the pending job which generates the same
+     * report.
+     * @param tenantDomain tenant domain of the report.
+     * @param period month of the report.
+     * @param format format of the report.
+     * @return the job.
+     * @throws ReportJobRejectedException if the job queue or the job limit of the tenant is full.
+     */
+    public ReportJob submit(String tenantDomain, YearMonth period, ReportFormat format)
+            throws ReportJobRejectedException {
+        return submit(tenantDomain, period, period, format);
+    }
+
+    /**
+     * Submits a job to generate the report of a range of months, or returns the pending job which generates the same
+     * report.
+     * @param tenantDomain tenant domain of the report.
+     * @param from first month of the report.
+     * @param to last month of the report.
+     * @param format format of the report.
+     * @return the job.
+     * @throws ReportJobRejectedException if the job queue or the job limit of the tenant is full.
+     */
+    public ReportJob submit(String tenantDomain, YearMonth from, YearMonth to, ReportFormat format)
+            throws ReportJobRejectedException {
+        removeExpiredJobs();
+        Constructor<?> constructor = ServiceHolder.getInstance().getReportImplClassConstructor();
+        String deduplicationKey = tenantDomain + '\n' + from + '\n' + to + '\n' + format + '\n'
+                + constructor.getDeclaringClass().getName();
+        synchronized (this) {
+            ReportJob pendingJob = pendingJobs.get(deduplicationKey);
+            if (pendingJob != null) {
+                return pendingJob;
+            }
+            int tenantJobs = pendingJobsPerTenant.getOrDefault(tenantDomain, 0);
+            if (tenantJobs >= maxPendingJobsPerTenant) {
+                throw new ReportJobRejectedException("Too many reports are being generated for the tenant. Please "
+                        + "try again later.");
+            }
+            ReportJob job = new ReportJob(tenantDomain, from, to, format, deduplicationKey);
+            try {
+                executor.execute(() -> run(job, constructor));
+            } catch (RejectedExecutionException e) {
+                throw new ReportJobRejectedException("Too many reports are being generated. Please try again later.");
+            }
+            pendingJobs.put(deduplicationKey, job);
+            pendingJobsPerTenant.put(tenantDomain, tenantJobs + 1);
+            jobs.put(job.getId(), job);
+            return job;
+        }
+    }
+
+    /**
+     * Returns a job which is pending or finished recently.
+     * @param jobId id of the job.
+     * @return the job, or null if there is no such job.
+     */
+    public ReportJob getJob(String jobId) {
+        removeExpiredJobs();
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Stops running jobs, deletes the reports which are not kept in the report cache and releases the cached ones.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        for (ReportJob job : jobs.values()) {
+            deleteResult(job);
+        }
+        jobs.clear();
+    }
+
+    private void run(ReportJob job, Constructor<?> constructor) {
+        job.started();
+        String year = String.valueOf(job.getPeriod().getYear());
+        String month = String.format("%02d", job.getPeriod().getMonthValue());
+        try {
+            if (job.isRange()) {
+                // Range reports are built from the cached rows of each month, and are not cached themselves.
+                ReportGenerator reportGenerator = RangeReportGenerator.create(job.getTenantDomain(), job.getPeriod(),
+                        job.getEndPeriod());
+                if (reportGenerator.isEmpty()) {
+                    job.completedWithoutData();
+                } else {
+                    job.completed(writeResult(reportGenerator, job.getFormat()), true);
+                }
+                return;
+            }
+            // Only PDF reports are cached, since the data formats are cheap to write from the rows.
+            ReportCache reportCache = job.getFormat() == ReportFormat.PDF
+                    ? ServiceHolder.getInstance().getReportCache() : null;
+            ReportCache.Key cacheKey = reportCache == null ? null : ReportCache.Key.of(job.getTenantDomain(), year,
+                    month, constructor.getDeclaringClass().getName());
+            ReportCache.Report cachedReport = cacheKey == null ? null : reportCache.get(cacheKey);
+            if (cachedReport != null) {
+                job.completed(cachedReport);
+                return;
+            }
+            ReportGenerator reportGenerator = (ReportGenerator) constructor.newInstance(year, month,
+                    job.getTenantDomain());
+            if (reportGenerator.isEmpty()) {
+                job.completedWithoutData();
+            } else if (cacheKey != null) {
+                job.completed(reportCache.put(cacheKey, reportGenerator::writeMonthlyRequestSummaryPDF));
+            } else {
+                job.completed(writeResult(reportGenerator, job.getFormat()), true);
+            }
+        } catch (PDFReportException | ReflectiveOperationException | IOException | RuntimeException e) {
+            log.error("Unable to generate the report of " + job.getPeriod()
+                    + (job.isRange() ? " to " + job.getEndPeriod() : "") + " for the tenant "
+                    + job.getTenantDomain() + ".", e);
+            job.failed("Unable to generate the report.");
+        } finally {
+            synchronized (this) {
+                pendingJobs.remove(job.getDeduplicationKey(), job);
+                pendingJobsPerTenant.computeIfPresent(job.getTenantDomain(), (tenant, count) -> count > 1 ? count - 1
+                        : null);
+            }
+        }
+    }
+
+    /**
+     * Writes the report of any format to a result file, which is then sent by the report requests. Monthly and range
+     * reports are both written to a file first, so that a report which fails half way is reported with an error
+     * status instead of a truncated download, and so that a slow client does not hold a report generator thread.
+     */
+    private File writeResult(ReportGenerator reportGenerator, ReportFormat format)
+            throws IOException, PDFReportException {
+        Files.createDirectories(resultDirectory);
+        Path resultFile = Files.createTempFile(resultDirectory, RESULT_FILE_PREFIX, "." + format.getFileExtension());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(resultFile))) {
+            reportGenerator.writeMonthlyRequestSummary(format, out);
+        } catch (IOException | PDFReportException | RuntimeException e) {
+            Files.deleteIfExists(resultFile);
+            throw e;
+        }
+        return resultFile.toFile();
+    }
+
+    private void removeExpiredJobs() {
+        long expiryTime = System.currentTimeMillis() - retentionMillis;
+        Iterator<ReportJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            ReportJob job = iterator.next();
+            if (job.isFinished() && job.getFinishedTime() < expiryTime) {
+                iterator.remove();
+                deleteResult(job);
+            }
+        }
+    }
+
+    private static void deleteResult(ReportJob job) {
+        ReportCache.Report cachedResult = job.getCachedResult();
+        if (cachedResult != null) {
+            // The cached report is deleted by the cache, once it is evicted and no other job uses it.
+            cachedResult.close();
+            return;
+        }
+        File result = job.getResult();
+        if (result != null && job.ownsResult()) {
+            try {
+                Files.deleteIfExists(result.toPath());
+            } catch (IOException e) {
+                log.warn("Unable to delete the report file " + result, e);
+            }
+        }
+    }
+}
@@ -16,49 +16,75 @@
  */
 package org.wso2.analytics.apim.rest.api.report.reportgen;
 
-import io.siddhi.core.SiddhiAppRuntime;
-import io.siddhi.core.SiddhiManager;
+import com.google.gson.stream.JsonWriter;
 import io.siddhi.core.event.Event;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.io.RandomAccessFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
 import org.wso2.analytics.apim.rest.api.report.api.ReportGenerator;
+import org.wso2.analytics.apim.rest.api.report.dao.RequestSummaryDAO;
 import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
+import org.wso2.analytics.apim.rest.api.report.internal.ServiceHolder;
 import org.wso2.analytics.apim.rest.api.report.reportgen.model.RowEntry;
-import org.wso2.analytics.apim.rest.api.report.reportgen.model.TableData;
 import org.wso2.analytics.apim.rest.api.report.reportgen.util.ReportGeneratorUtil;
+import org.wso2.analytics.apim.rest.api.report.reportgen.util.ReportPageTemplate;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.YearMonth;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
- * This class is responsible for generating the PDF report
+ * This class is responsible for generating the PDF report. Pages are rendered one at a time while the rows are read
+ * from the database a page of rows at a time, and the page content is kept in a scratch file instead of the heap, so
+ * the memory used for a report does not grow with the number of rows.
  */
 public class DefaultReportGeneratorImpl implements ReportGenerator {
 
     private static final Log log = LogFactory.getLog(DefaultReportGeneratorImpl.class);
-    private static final String REQUEST_SUMMARY_MONTHLY_APP_NAME = "/APIMTopAppUsersReport.siddhi";
-    private List<Integer> recordsPerPageList;
-    private TableData table;
-    private PDDocument document;
-    private Map<Integer, PDPage> pageMap = new HashMap<>();
-    private String period;
-    private int numOfPages;
+    private static final String TEMP_FILE_PREFIX = "apim-report-";
+    private static final float[] COLUMN_WIDTHS = {40, 110, 50, 110, 110, 110};
+    private static final String[] COLUMN_HEADERS = {"#", "API Name", "Version", "Application Name",
+            "Application Owner", "Request Count"};
+    // Static content of the pages, built once and added to each report.
+    private static final ReportPageTemplate PAGE_TEMPLATE = new ReportPageTemplate(COLUMN_WIDTHS, COLUMN_HEADERS);
+    private static final String[] DATA_FIELDS = {"apiName", "apiVersion", "applicationName", "applicationOwner",
+            "requestCount"};
+    private static final int REQUEST_COUNT_INDEX = 4;
+    // Number of rows read at once from the database.
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    // First characters of CSV values which spreadsheets read as formulas.
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+    private static final String MONTHLY_REPORT_TITLE = "Monthly Usage Summary";
+    private final String year;
+    private final String month;
+    private final String tenantDomain;
+    private final YearMonth reportMonth;
+    private final String title;
+    private final String period;
     private final String[] months = {"January", "February", "March", "April", "May", "June", "July", "August",
             "September", "October", "November", "December"};
-    private SiddhiAppRuntime siddhiAppRuntime = null;
-    private long totalRequestCount;
+    // All rows of the report, read on first use.
+    private Event[] events;
+    // Null if the rows are not read from the database.
+    private RequestSummaryDAO requestSummaryDAO;
+    // Total request count of the report, or -1 if it is the sum of the rows.
+    private final long reportTotalRequestCount;
 
     /**
      * The default implementation of Monthly request report.
@@ -66,86 +92,289 @@ public class DefaultReportGeneratorImpl implements ReportGenerator {
      * @param month month of the report.
      * @param tenantDomain
      */
-    public DefaultReportGeneratorImpl(String year, String month, String tenantDomain) throws IOException {
+    public DefaultReportGeneratorImpl(String year, String month, String tenantDomain) throws PDFReportException {
 
-        this.table = getRecordsFromAggregations(year, month, tenantDomain);
-        if (table.getRows().size() > 0) {
-            String[] columnHeaders = {"#", "API Name", "Version", "Application Name", "Application Owner",
-                    "Request Count"};
-            table.setColumnHeaders(columnHeaders);
-            String monthName = months[Integer.parseInt(month) - 1];
-            this.period = monthName + " " + year;
-            this.numOfPages = ReportGeneratorUtil.getNumberOfPages(table.getRows().size());
-            this.document = initializePages();
-            this.recordsPerPageList = ReportGeneratorUtil.getRecordsPerPage(table.getRows().size());
+        this.year = year;
+        this.month = month;
+        this.tenantDomain = tenantDomain;
+        try {
+            this.reportMonth = YearMonth.of(Integer.parseInt(year), Integer.parseInt(month));
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new PDFReportException("Invalid report period " + year + "-" + month + ".", e);
         }
+        this.title = MONTHLY_REPORT_TITLE;
+        this.period = months[reportMonth.getMonthValue() - 1] + " " + year;
+        this.requestSummaryDAO = ServiceHolder.getInstance().getRequestSummaryDAO();
+        this.reportTotalRequestCount = -1;
     }
 
-    private void initializeSiddhiAPPRuntime() throws IOException {
-        InputStream inputStream = DefaultReportGeneratorImpl.class.
-                getResourceAsStream(REQUEST_SUMMARY_MONTHLY_APP_NAME);
-        String siddhiApp = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
-        SiddhiManager siddhiManager = new SiddhiManager();
-        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
-        siddhiAppRuntime.start();
-    }
+    /**
+     * Report of rows which are already read, e.g. the merged rows of several months.
+     * @param title title of the report.
+     * @param period time period shown below the title.
+     * @param events rows of the report, sorted in the order they are shown.
+     * @param totalRequestCount total request count of the report, which includes rows that are not shown.
+     */
+    DefaultReportGeneratorImpl(String title, String period, Event[] events, long totalRequestCount) {
 
-    private PDDocument initializePages() {
+        this.year = null;
+        this.month = null;
+        this.tenantDomain = null;
+        this.reportMonth = null;
+        this.title = title;
+        this.period = period;
+        this.events = events;
+        this.reportTotalRequestCount = totalRequestCount;
+    }
 
-        PDDocument document = new PDDocument();
-        for (int i = 1; i <= numOfPages; i++) {
-            PDPage nextPage = new PDPage();
-            nextPage.setMediaBox(PDPage.PAGE_SIZE_A4);
-            nextPage.setRotation(0);
-            document.addPage(nextPage);
-            pageMap.put(i, nextPage);
+    @Override
+    public boolean isEmpty() throws PDFReportException {
+        if (events == null && requestSummaryDAO != null) {
+            Event[] firstRow = queryRequestSummary(0, 1);
+            if (events == null) {
+                return firstRow.length == 0;
+            }
         }
-        return document;
+        return getEvents().length == 0;
     }
 
     @Override
     public InputStream generateMonthlyRequestSummaryPDF() throws PDFReportException {
 
-        if (table.getRows().size() == 0) {
+        if (isEmpty()) {
             return null;
         }
+        Path reportFile = null;
+        try {
+            reportFile = Files.createTempFile(TEMP_FILE_PREFIX, ".pdf");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(reportFile))) {
+                writeMonthlyRequestSummaryPDF(out);
+            }
+            // The report file is deleted when the returned stream is closed.
+            return Files.newInputStream(reportFile, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            deleteTempFile(reportFile);
+            throw new PDFReportException("Error during generating monthly request summary report.", e);
+        } catch (PDFReportException e) {
+            deleteTempFile(reportFile);
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeMonthlyRequestSummaryPDF(OutputStream outputStream) throws PDFReportException {
+
+        if (isEmpty()) {
+            return;
+        }
         log.debug("Starting to generate PDF.");
-        PDPageContentStream contentStream = null;
+        Path scratchFile = null;
+        RandomAccessFile scratch = null;
+        PDDocument document = null;
         try {
-            contentStream = new PDPageContentStream(document, pageMap.get(1), true, false);
-            ReportGeneratorUtil.insertLogo(document, contentStream);
-            ReportGeneratorUtil.insertPageNumber(contentStream, 1);
-            ReportGeneratorUtil.insertReportTitleToHeader(contentStream, "Monthly Usage Summary");
-            ReportGeneratorUtil.insertReportTimePeriodToHeader(contentStream, period);
-            ReportGeneratorUtil.insertReportGeneratedTimeToHeader(contentStream);
-            contentStream.close();
-
-            float[] columnWidths = {40, 110, 50, 110, 110, 110};
-            ReportGeneratorUtil.drawTableGrid(document, pageMap, recordsPerPageList, columnWidths,
-                    table.getRows().size());
-            ReportGeneratorUtil.writeRowsContent(table.getColumnHeaders(), columnWidths, document, pageMap,
-                    table.getRows());
-
-            // write total request count to the header.
-            PDPageContentStream contentStreamForInitialPage = new PDPageContentStream(document, pageMap.get(1),
-                    true, false);
-            ReportGeneratorUtil.insertTotalRequestCountToHeader(contentStreamForInitialPage, totalRequestCount);
-            contentStreamForInitialPage.close();
-
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            document.save(out);
-            document.close();
+            scratchFile = Files.createTempFile(TEMP_FILE_PREFIX, ".scratch");
+            scratch = new RandomAccessFile(scratchFile.toFile(), "rw");
+            document = new PDDocument(scratch);
+            renderPages(document);
+            document.save(outputStream);
+            outputStream.flush();
             log.debug("PDF generation complete.");
-            return new ByteArrayInputStream(out.toByteArray());
         } catch (IOException | COSVisitorException e) {
             throw new PDFReportException("Error during generating monthly request summary report.", e);
+        } finally {
+            try {
+                if (document != null) {
+                    document.close();
+                }
+                if (scratch != null) {
+                    scratch.close();
+                }
+            } catch (IOException e) {
+                log.warn("Error while closing the report document.", e);
+            }
+            deleteTempFile(scratchFile);
+        }
+    }
+
+    /**
+     * Writes the rows as CSV straight from the query events, with values in full. Null values are written as empty
+     * fields.
+     * @param outputStream stream to write the report to.
+     * @throws PDFReportException
+     */
+    @Override
+    public void writeMonthlyRequestSummaryCSV(OutputStream outputStream) throws PDFReportException {
+
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writeCSVLine(writer, DATA_FIELDS);
+            String[] values = new String[DATA_FIELDS.length];
+            forEachRow(event -> {
+                for (int i = 0; i < values.length; i++) {
+                    Object value = event.getData(i);
+                    values[i] = value == null ? "" : value.toString();
+                }
+                writeCSVLine(writer, values);
+            });
+            writer.flush();
+        } catch (IOException e) {
+            throw new PDFReportException("Error during writing monthly request summary CSV report.", e);
         }
     }
 
-    private TableData getRecordsFromAggregations(String year, String month, String apiCreatorTenantDomain)
-            throws IOException {
+    /**
+     * Writes the rows as newline delimited JSON straight from the query events. Null values are written as JSON
+     * nulls.
+     * @param outputStream stream to write the report to.
+     * @throws PDFReportException
+     */
+    @Override
+    public void writeMonthlyRequestSummaryNDJSON(OutputStream outputStream) throws PDFReportException {
+
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            // Lenient mode allows one top level object per row.
+            jsonWriter.setLenient(true);
+            forEachRow(event -> {
+                jsonWriter.beginObject();
+                for (int i = 0; i < REQUEST_COUNT_INDEX; i++) {
+                    Object value = event.getData(i);
+                    jsonWriter.name(DATA_FIELDS[i]).value(value == null ? null : value.toString());
+                }
+                jsonWriter.name(DATA_FIELDS[REQUEST_COUNT_INDEX]).value((Long) event.getData(REQUEST_COUNT_INDEX));
+                jsonWriter.endObject();
+                writer.write('\n');
+            });
+            jsonWriter.flush();
+        } catch (IOException e) {
+            throw new PDFReportException("Error during writing monthly request summary NDJSON report.", e);
+        }
+    }
+
+    /**
+     * Passes each row to the given writer. Rows read from the database are read a page at a time, so that they are
+     * not all kept in memory.
+     */
+    private void forEachRow(RowWriter rowWriter) throws PDFReportException, IOException {
+
+        if (events != null || requestSummaryDAO == null) {
+            for (Event event : getEvents()) {
+                rowWriter.write(event);
+            }
+            return;
+        }
+        Event[] page = queryRequestSummary(0, EXPORT_PAGE_SIZE);
+        int offset = 0;
+        while (true) {
+            for (Event event : page) {
+                rowWriter.write(event);
+            }
+            // All rows are returned at once if the rows could not be read from the database.
+            if (requestSummaryDAO == null || page.length < EXPORT_PAGE_SIZE) {
+                return;
+            }
+            offset += page.length;
+            page = requestSummaryDAO.getRequestSummary(tenantDomain, reportMonth, offset, EXPORT_PAGE_SIZE);
+            if (page == null) {
+                throw new PDFReportException("Request summary is no longer available from the database.");
+            }
+        }
+    }
+
+    private static void writeCSVLine(Writer writer, String[] values) throws IOException {
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i];
+            if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+                // Spreadsheets would run values such as API names starting with '=' as formulas.
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                    || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        // Line breaks of RFC 4180.
+        writer.write("\r\n");
+    }
+
+    /**
+     * Writes a row of a report.
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+
+        void write(Event row) throws IOException;
+    }
+
+    private void renderPages(PDDocument document) throws IOException, PDFReportException {
+
+        PageWriter pageWriter = new PageWriter(document, PAGE_TEMPLATE.addTo(document));
+        forEachRow(pageWriter::addRow);
+        pageWriter.finish();
+    }
+
+    private static void deleteTempFile(Path file) {
+
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete the temporary report file " + file, e);
+        }
+    }
+
+    /**
+     * Returns all rows of the report, sorted by the request count in descending order.
+     * @return the rows.
+     * @throws PDFReportException
+     */
+    Event[] getEvents() throws PDFReportException {
+
+        if (events == null) {
+            events = queryRequestSummary(0, 0);
+        }
+        return events;
+    }
+
+    /**
+     * Reads rows of the report from the database if possible, and from the aggregation with a Siddhi store query
+     * otherwise. The store query reads all rows, which are kept for the rest of the report.
+     * @param offset number of rows to skip, if the number of rows is limited.
+     * @param limit maximum number of rows to read, or 0 to read all rows.
+     * @return the rows.
+     * @throws PDFReportException
+     */
+    private Event[] queryRequestSummary(int offset, int limit) throws PDFReportException {
+
+        if (requestSummaryDAO != null) {
+            try {
+                Event[] rows = requestSummaryDAO.getRequestSummary(tenantDomain, reportMonth, offset, limit);
+                if (rows != null) {
+                    return rows;
+                }
+            } catch (PDFReportException e) {
+                log.warn("Unable to read the report from the database. Falling back to the Siddhi store query.", e);
+            }
+            requestSummaryDAO = null;
+        }
+        events = getRecordsFromAggregations(year, month, tenantDomain);
+        return events;
+    }
+
+    private Event[] getRecordsFromAggregations(String year, String month, String apiCreatorTenantDomain)
+            throws PDFReportException {
 
-        TableData table = new TableData();
         String date = year + "-" + month;
         String requestCountQuery = "from ApiUserPerAppAgg on apiCreatorTenantDomain==" + "\'" +
                 apiCreatorTenantDomain +
@@ -154,15 +383,39 @@ public class DefaultReportGeneratorImpl implements ReportGenerator {
                 "RequestCount group by " +
                 "apiName, apiVersion, applicationName, applicationOwner order by RequestCount desc";
 
-        initializeSiddhiAPPRuntime();
-        Event[] events = siddhiAppRuntime.query(requestCountQuery);
-        siddhiAppRuntime.shutdown();
-        if (events == null) {
-            return table; // no data found
+        StoreQueryRuntimePool storeQueryRuntimePool = ServiceHolder.getInstance().getStoreQueryRuntimePool();
+        if (storeQueryRuntimePool == null) {
+            throw new PDFReportException("Report Siddhi app runtimes are not available.");
+        }
+        Event[] events = storeQueryRuntimePool.query(requestCountQuery);
+        return events == null ? new Event[0] : events;
+    }
+
+    /**
+     * Renders the rows of the PDF report into pages as they are read, so that only the rows of the current page are
+     * kept in memory. The total request count is known only after the last row, hence it is added to the first page
+     * at the end.
+     */
+    private final class PageWriter {
+
+        private final PDDocument document;
+        private final ReportPageTemplate.Stamp template;
+        private final List<RowEntry> pageRows = new ArrayList<>(ReportGeneratorUtil.RECORD_COUNT_PER_PAGE);
+        private PDPage firstPage;
+        private int pageNumber;
+        private int recordNumber;
+        private long totalRequestCount;
+
+        private PageWriter(PDDocument document, ReportPageTemplate.Stamp template) {
+
+            this.document = document;
+            this.template = template;
         }
-        List<RowEntry> rowData = new ArrayList<>();
-        int recordNumber = 1;
-        for (Event event : events) {
+
+        private void addRow(Event event) throws IOException {
+
+            totalRequestCount += (Long) event.getData(REQUEST_COUNT_INDEX);
+            recordNumber += 1;
             RowEntry entry = new RowEntry();
             entry.setEntry(recordNumber + ")");
             entry.setEntry(ReportGeneratorUtil.trimLongEntry(event.getData(0).toString(), 21));
@@ -170,11 +423,49 @@ public class DefaultReportGeneratorImpl implements ReportGenerator {
             entry.setEntry(ReportGeneratorUtil.trimLongEntry(event.getData(2).toString(), 21));
             entry.setEntry(ReportGeneratorUtil.trimLongEntry(event.getData(3).toString(), 21));
             entry.setEntry(ReportGeneratorUtil.trimLongEntry(event.getData(4).toString(), 21));
-            totalRequestCount += (Long) event.getData(4);
-            rowData.add(entry);
-            table.setRows(rowData);
-            recordNumber += 1;
+            pageRows.add(entry);
+            if (pageRows.size() == ReportGeneratorUtil.RECORD_COUNT_PER_PAGE) {
+                writePage();
+            }
+        }
+
+        private void finish() throws IOException {
+
+            if (!pageRows.isEmpty() || firstPage == null) {
+                writePage();
+            }
+            PDPageContentStream contentStream = new PDPageContentStream(document, firstPage, true, false);
+            try {
+                ReportGeneratorUtil.insertTotalRequestCountToHeader(contentStream,
+                        reportTotalRequestCount >= 0 ? reportTotalRequestCount : totalRequestCount);
+            } finally {
+                contentStream.close();
+            }
+        }
+
+        private void writePage() throws IOException {
+
+            pageNumber += 1;
+            PDPage page = new PDPage();
+            page.setMediaBox(PDPage.PAGE_SIZE_A4);
+            page.setRotation(0);
+            document.addPage(page);
+            PDPageContentStream contentStream = new PDPageContentStream(document, page);
+            try {
+                // Only the first page has the column headers.
+                template.apply(contentStream, pageNumber == 1, pageRows.size());
+                ReportGeneratorUtil.insertPageNumber(contentStream, pageNumber);
+                if (pageNumber == 1) {
+                    firstPage = page;
+                    ReportGeneratorUtil.insertReportTitleToHeader(contentStream, title);
+                    ReportGeneratorUtil.insertReportTimePeriodToHeader(contentStream, period);
+                    ReportGeneratorUtil.insertReportGeneratedTimeToHeader(contentStream);
+                }
+                ReportGeneratorUtil.writePageRows(contentStream, COLUMN_WIDTHS, pageNumber == 1, pageRows);
+            } finally {
+                contentStream.close();
+            }
+            pageRows.clear();
         }
-        return table;
     }
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.reportgen;
+
+import io.siddhi.core.event.Event;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.apim.rest.api.report.api.ReportGenerator;
+import org.wso2.analytics.apim.rest.api.report.cache.MonthlyPartialCache;
+import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
+import org.wso2.analytics.apim.rest.api.report.internal.ServiceHolder;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Builds usage reports of a range of months by merging the rows of each month. The rows of months which are over are
+ * cached in the monthly partial cache, hence only months which are not cached yet or which are still open are
+ * queried. The rows of each queried month are sorted and written to disk before the next month is queried, so that
+ * only the rows of one month are kept in memory. The rows of the months are then merged with a k-way merge on API
+ * name, API version, application name and application owner while they are read, and only the rows with the highest
+ * request counts are kept for the report.
+ */
+public final class RangeReportGenerator {
+
+    private static final Log log = LogFactory.getLog(RangeReportGenerator.class);
+    private static final String RANGE_REPORT_TITLE = "Usage Summary";
+    private static final int REQUEST_COUNT_INDEX = 4;
+    private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+    // Order of the rows in the monthly partials.
+    private static final Comparator<Event> KEY_ORDER = (first, second) -> {
+        for (int i = 0; i < REQUEST_COUNT_INDEX; i++) {
+            int result = NULLS_FIRST.compare((String) first.getData(i), (String) second.getData(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    };
+    // Order of the rows in the report, which is the order of the monthly reports.
+    private static final Comparator<Event> REPORT_ORDER = Comparator.<Event>comparingLong(
+            row -> (Long) row.getData(REQUEST_COUNT_INDEX)).reversed().thenComparing(KEY_ORDER);
+
+    private RangeReportGenerator() {
+
+    }
+
+    /**
+     * Creates the report generator of a range of months.
+     * @param tenantDomain tenant domain of the report.
+     * @param from first month of the range.
+     * @param to last month of the range.
+     * @return the report generator.
+     * @throws PDFReportException if the rows of a month cannot be read.
+     */
+    public static ReportGenerator create(String tenantDomain, YearMonth from, YearMonth to)
+            throws PDFReportException {
+
+        MonthlyPartialCache partialCache = ServiceHolder.getInstance().getMonthlyPartialCache();
+        List<RowCursor> cursors = new ArrayList<>();
+        try {
+            for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                MonthlyPartialCache.PartialReader reader = partialCache == null ? null
+                        : partialCache.open(tenantDomain, month);
+                if (reader == null) {
+                    reader = queryMonth(partialCache, tenantDomain, month);
+                }
+                if (reader != null) {
+                    cursors.add(new PartialCursor(reader));
+                }
+            }
+            TopRows topRows = new TopRows(ServiceHolder.getInstance().getRangeReportMaxRows());
+            merge(cursors, topRows);
+            if (topRows.truncated) {
+                log.info("The report of " + from + " to " + to + " for the tenant " + tenantDomain + " lists the "
+                        + topRows.maxRows + " rows with the highest request counts only.");
+            }
+            return new DefaultReportGeneratorImpl(RANGE_REPORT_TITLE, toPeriod(from, to), topRows.toArray(),
+                    topRows.totalRequestCount);
+        } catch (IOException e) {
+            throw new PDFReportException("Unable to read the cached report rows.", e);
+        } finally {
+            for (RowCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Queries the rows of a month, and writes them sorted by the key order to the partial cache, or to a temporary
+     * file if they cannot be cached.
+     * @return reader of the rows, or null if the month has no rows.
+     */
+    private static MonthlyPartialCache.PartialReader queryMonth(MonthlyPartialCache partialCache, String tenantDomain,
+                                                                YearMonth month)
+            throws PDFReportException, IOException {
+
+        DefaultReportGeneratorImpl monthlyReport = new DefaultReportGeneratorImpl(String.valueOf(month.getYear()),
+                String.format("%02d", month.getMonthValue()), tenantDomain);
+        // The monthly report is not used again, hence its rows are sorted in place.
+        Event[] rows = monthlyReport.getEvents();
+        if (rows.length == 0) {
+            return null;
+        }
+        Arrays.sort(rows, KEY_ORDER);
+        if (partialCache != null && partialCache.isCacheable(month)) {
+            try {
+                partialCache.put(tenantDomain, month, rows);
+                MonthlyPartialCache.PartialReader reader = partialCache.open(tenantDomain, month);
+                if (reader != null) {
+                    return reader;
+                }
+            } catch (IOException e) {
+                log.warn("Unable to cache the report rows of " + month + " for the tenant " + tenantDomain
+                        + ".", e);
+            }
+        }
+        return MonthlyPartialCache.spill(rows);
+    }
+
+    /**
+     * Merges rows of the same API and application, summing up their request counts, and passes the merged rows to
+     * the given top rows.
+     * @param cursors cursors of rows sorted by the key order.
+     * @param topRows top rows of the report.
+     */
+    private static void merge(List<RowCursor> cursors, TopRows topRows) throws IOException {
+
+        PriorityQueue<RowCursor> queue = new PriorityQueue<>(Math.max(1, cursors.size()),
+                (first, second) -> KEY_ORDER.compare(first.head, second.head));
+        for (RowCursor cursor : cursors) {
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        while (!queue.isEmpty()) {
+            RowCursor cursor = queue.poll();
+            Event row = cursor.head;
+            long requestCount = (Long) row.getData(REQUEST_COUNT_INDEX);
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+            while (!queue.isEmpty() && KEY_ORDER.compare(queue.peek().head, row) == 0) {
+                RowCursor next = queue.poll();
+                requestCount += (Long) next.head.getData(REQUEST_COUNT_INDEX);
+                if (next.advance()) {
+                    queue.add(next);
+                }
+            }
+            topRows.add(new Event(0, new Object[]{row.getData(0), row.getData(1), row.getData(2), row.getData(3),
+                    requestCount}));
+        }
+    }
+
+    private static String toPeriod(YearMonth from, YearMonth to) {
+
+        return toPeriod(from) + " - " + toPeriod(to);
+    }
+
+    private static String toPeriod(YearMonth month) {
+
+        return month.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + month.getYear();
+    }
+
+    /**
+     * Keeps the rows with the highest request counts, and the total request count of all rows.
+     */
+    private static final class TopRows {
+
+        private final int maxRows;
+        // The first row is the last one in the report order, which is dropped when there are too many rows.
+        private final PriorityQueue<Event> rows;
+        private long totalRequestCount;
+        private boolean truncated;
+
+        private TopRows(int maxRows) {
+
+            this.maxRows = maxRows;
+            this.rows = new PriorityQueue<>(Collections.reverseOrder(REPORT_ORDER));
+        }
+
+        private void add(Event row) {
+
+            totalRequestCount += (Long) row.getData(REQUEST_COUNT_INDEX);
+            rows.add(row);
+            if (rows.size() > maxRows) {
+                rows.poll();
+                truncated = true;
+            }
+        }
+
+        /**
+         * @return the rows in the report order.
+         */
+        private Event[] toArray() {
+
+            Event[] events = rows.toArray(new Event[0]);
+            Arrays.sort(events, REPORT_ORDER);
+            return events;
+        }
+    }
+
+    /**
+     * Cursor over the sorted rows of a month.
+     */
+    private abstract static class RowCursor {
+
+        Event head;
+
+        /**
+         * Moves to the next row.
+         * @return false if there are no more rows.
+         */
+        abstract boolean advance() throws IOException;
+
+        void close() {
+
+        }
+    }
+
+    private static final class PartialCursor extends RowCursor {
+
+        private final MonthlyPartialCache.PartialReader reader;
+
+        private PartialCursor(MonthlyPartialCache.PartialReader reader) {
+
+            this.reader = reader;
+        }
+
+        @Override
+        boolean advance() throws IOException {
+
+            head = reader.next();
+            return head != null;
+        }
+
+        @Override
+        void close() {
+
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.debug("Unable to close the cached report rows.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.reportgen;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.apim.rest.api.report.exception.PDFReportException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small pool of started runtimes of the report Siddhi app, used to run store queries against the report aggregations.
+ * Runtimes are created once and reused by all report requests, so a report only pays for its query and not for
+ * parsing the app and initializing the aggregation tables. A runtime runs one store query at a time, hence each query
+ * borrows a runtime from the pool. All runtimes are created by the same Siddhi manager, which is shut down with the
+ * pool.
+ */
+public class StoreQueryRuntimePool {
+
+    private static final Log log = LogFactory.getLog(StoreQueryRuntimePool.class);
+    private static final long BORROW_TIMEOUT_SECONDS = 60;
+
+    private final String siddhiApp;
+    private final int size;
+    // Guarded by this pool.
+    private final Deque<SiddhiAppRuntime> idleRuntimes = new ArrayDeque<>();
+    private final List<SiddhiAppRuntime> runtimes = new ArrayList<>();
+    private final SiddhiManager siddhiManager = new SiddhiManager();
+    private int borrowedRuntimes;
+    private boolean shutdown;
+
+    /**
+     * @param siddhiApp Siddhi app which defines the report aggregations.
+     * @param size maximum number of runtimes.
+     */
+    public StoreQueryRuntimePool(String siddhiApp, int size) {
+        this.siddhiApp = siddhiApp;
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Creates and starts all runtimes of the pool. Runtimes which cannot be created now, e.g. since the data source
+     * is not available yet, are created when a query needs them.
+     */
+    public void start() {
+        try {
+            for (int i = 0; i < size; i++) {
+                SiddhiAppRuntime runtime = createRuntime();
+                if (runtime == null) {
+                    return;
+                }
+                releaseRuntime(runtime);
+            }
+        } catch (PDFReportException | RuntimeException e) {
+            log.warn("Unable to start the report Siddhi app runtimes. They will be created on the first report "
+                    + "request.", e);
+        }
+    }
+
+    /**
+     * Runs a store query on one of the runtimes of the pool.
+     * @param query store query.
+     * @return events returned by the query, or null if there are none.
+     * @throws PDFReportException if no runtime is available or the query fails.
+     */
+    public Event[] query(String query) throws PDFReportException {
+        SiddhiAppRuntime runtime = null;
+        try {
+            runtime = borrowRuntime();
+            return runtime.query(query);
+        } catch (RuntimeException e) {
+            throw new PDFReportException("Error while running the report store query.", e);
+        } finally {
+            if (runtime != null) {
+                releaseRuntime(runtime);
+            }
+        }
+    }
+
+    /**
+     * Shuts down the idle runtimes of the pool. Runtimes which are running a query are shut down when the query
+     * completes, and the Siddhi manager once all runtimes are shut down.
+     */
+    public void shutdown() {
+        List<SiddhiAppRuntime> runtimesToShutdown = new ArrayList<>();
+        boolean shutdownManager;
+        synchronized (this) {
+            shutdown = true;
+            runtimesToShutdown.addAll(idleRuntimes);
+            idleRuntimes.clear();
+            runtimes.removeAll(runtimesToShutdown);
+            shutdownManager = borrowedRuntimes == 0;
+        }
+        for (SiddhiAppRuntime runtime : runtimesToShutdown) {
+            shutdownRuntime(runtime);
+        }
+        if (shutdownManager) {
+            shutdownSiddhiManager();
+        }
+    }
+
+    private SiddhiAppRuntime borrowRuntime() throws PDFReportException {
+        SiddhiAppRuntime runtime = pollIdleRuntime();
+        if (runtime != null) {
+            return runtime;
+        }
+        runtime = createRuntime();
+        if (runtime != null) {
+            return runtime;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(BORROW_TIMEOUT_SECONDS);
+        try {
+            synchronized (this) {
+                while ((runtime = pollIdleRuntime()) == null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new PDFReportException("Timed out while waiting for a report Siddhi app runtime.");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PDFReportException("Interrupted while waiting for a report Siddhi app runtime.", e);
+        }
+        return runtime;
+    }
+
+    /**
+     * Takes an idle runtime and marks it as borrowed.
+     * @return the runtime, or null if no runtime is idle.
+     */
+    private synchronized SiddhiAppRuntime pollIdleRuntime() throws PDFReportException {
+        if (shutdown) {
+            throw new PDFReportException("Report Siddhi app runtimes are shut down.");
+        }
+        SiddhiAppRuntime runtime = idleRuntimes.poll();
+        if (runtime != null) {
+            borrowedRuntimes++;
+        }
+        return runtime;
+    }
+
+    private void releaseRuntime(SiddhiAppRuntime runtime) {
+        boolean shutdownManager;
+        synchronized (this) {
+            borrowedRuntimes--;
+            if (!shutdown) {
+                idleRuntimes.offer(runtime);
+                notifyAll();
+                return;
+            }
+            runtimes.remove(runtime);
+            shutdownManager = borrowedRuntimes == 0;
+        }
+        // The pool was shut down while the runtime was running a query.
+        shutdownRuntime(runtime);
+        if (shutdownManager) {
+            shutdownSiddhiManager();
+        }
+    }
+
+    private void shutdownRuntime(SiddhiAppRuntime runtime) {
+        try {
+            runtime.shutdown();
+        } catch (RuntimeException e) {
+            log.warn("Error while shutting down a report Siddhi app runtime.", e);
+        }
+    }
+
+    private void shutdownSiddhiManager() {
+        try {
+            siddhiManager.shutdown();
+        } catch (RuntimeException e) {
+            log.warn("Error while shutting down the Siddhi manager of the report Siddhi app runtimes.", e);
+        }
+    }
+
+    /**
+     * Creates and starts a new runtime, if the pool is not full. The runtime is marked as borrowed.
+     * @return the new runtime, or null if the pool is full.
+     */
+    private synchronized SiddhiAppRuntime createRuntime() throws PDFReportException {
+        if (shutdown) {
+            throw new PDFReportException("Report Siddhi app runtimes are shut down.");
+        }
+        if (runtimes.size() >= size) {
+            return null;
+        }
+        SiddhiAppRuntime runtime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        try {
+            runtime.start();
+        } catch (RuntimeException e) {
+            shutdownRuntime(runtime);
+            throw e;
+        }
+        runtimes.add(runtime);
+        borrowedRuntimes++;
+        log.debug("Report Siddhi app runtime " + runtimes.size() + " of " + size + " started.");
+        return runtime;
+    }
+}
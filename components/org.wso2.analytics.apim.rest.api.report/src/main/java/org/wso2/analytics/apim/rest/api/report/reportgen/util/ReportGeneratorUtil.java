@@ -28,54 +28,29 @@ import org.wso2.analytics.apim.rest.api.report.reportgen.model.RowEntry;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Util class for report generation.
  */
 public class ReportGeneratorUtil {
 
-    private static final float ROW_HEIGHT = 25;
-    private static final float CELL_PADDING = 5;
-    private static final float CELL_MARGIN = 40; // margin on left side;
-    private static final float TABLE_WIDTH = 500;
-    private static final float TABLE_TOP_Y = 700;
+    static final float ROW_HEIGHT = 25;
+    static final float CELL_PADDING = 5;
+    static final float CELL_MARGIN = 40; // margin on left side;
+    static final float TABLE_WIDTH = 500;
+    static final float TABLE_TOP_Y = 700;
+    static final float LOGO_X = 375;
+    static final float LOGO_Y = 755;
 
     // Font configuration
     private static final PDFont TEXT_FONT = PDType1Font.HELVETICA;
-    private static final float FONT_SIZE = 9;
-    private static final float RECORD_COUNT_PER_PAGE = 25;
-
-    /**
-     * Get List of integers with the number of records in each page.
-     * @param numberOfRows total number of rows across the document.
-     * @return list of integers with the number of records. Each index represents the page number - 1.
-     */
-    public static List<Integer> getRecordsPerPage(int numberOfRows) {
-
-        int numOfPages = (int) Math.ceil(numberOfRows / RECORD_COUNT_PER_PAGE);
-        List<Integer> recordCountPerPage = new ArrayList<>();
-
-        int remainingRows = numberOfRows;
-
-        if (numberOfRows < RECORD_COUNT_PER_PAGE) {
-            recordCountPerPage.add(numberOfRows);
-            return recordCountPerPage;
-        } else {
-            for (int i = 0; i < numOfPages; i++) {
-                if (remainingRows >= RECORD_COUNT_PER_PAGE) {
-                    recordCountPerPage.add((int) RECORD_COUNT_PER_PAGE);
-                    remainingRows -= RECORD_COUNT_PER_PAGE;
-                } else {
-                    recordCountPerPage.add(remainingRows);
-                }
-            }
-        }
-        return recordCountPerPage;
-    }
+    static final float FONT_SIZE = 9;
+    public static final int RECORD_COUNT_PER_PAGE = 25;
+    // Baseline of the text of the first row, computed once from the font metrics.
+    static final float FIRST_ROW_TEXT_Y = TABLE_TOP_Y - (ROW_HEIGHT / 2)
+            - ((TEXT_FONT.getFontDescriptor().getFontBoundingBox().getHeight() / 1000 * FONT_SIZE) / 4);
 
     /**
      * Inserts page number onto the bottom center of the page.
@@ -94,16 +69,27 @@ public class ReportGeneratorUtil {
     }
 
     /**
-     * Inserts logo onto the top right of the page.
-     * @param document
-     * @param contentStream
+     * Loads the logo into the document, so that it can be drawn on each page without embedding it again.
+     * @param document the document.
+     * @return the logo image.
+     * @throws IOException
+     */
+    public static PDJpeg loadLogo(PDDocument document) throws IOException {
+
+        try (InputStream in = ReportApiServiceImpl.class.getResourceAsStream("/wso2-logo.jpg")) {
+            return new PDJpeg(document, in);
+        }
+    }
+
+    /**
+     * Inserts a loaded logo onto the top right of the page.
+     * @param contentStream content stream of the page.
+     * @param logo logo loaded into the document.
      * @throws IOException
      */
-    public static void insertLogo(PDDocument document, PDPageContentStream contentStream) throws IOException {
+    public static void insertLogo(PDPageContentStream contentStream, PDJpeg logo) throws IOException {
 
-        InputStream in = ReportApiServiceImpl.class.getResourceAsStream("/wso2-logo.jpg");
-        PDJpeg img = new PDJpeg(document, in);
-        contentStream.drawImage(img, 375, 755);
+        contentStream.drawImage(logo, LOGO_X, LOGO_Y);
     }
 
     /**
@@ -173,54 +159,6 @@ public class ReportGeneratorUtil {
         contentStream.endText();
     }
 
-    /**
-     * Prints a table with column headers and data.
-     * @param columnHeaders the table column headers.
-     * @param columnWidths widths of each column.
-     * @param document the document.
-     * @param pageMap page map with each page object stored against each page index.
-     * @param rowEntries list of rows.
-     * @throws IOException
-     */
-    public static void writeRowsContent(String[] columnHeaders, float[] columnWidths, PDDocument document, Map<Integer,
-            PDPage> pageMap, List<RowEntry> rowEntries) throws IOException {
-
-        float startX = CELL_MARGIN + CELL_PADDING; // space between entry and the column line
-        float startY = TABLE_TOP_Y - (ROW_HEIGHT / 2)
-                - ((TEXT_FONT.getFontDescriptor().getFontBoundingBox().getHeight() / 1000 * FONT_SIZE) / 4);
-
-        PDPageContentStream contentStream = new PDPageContentStream(document, pageMap.get(1), true, false);
-
-        // write table column headers
-        writeColumnHeader(contentStream, columnWidths, startX, startY, columnHeaders);
-
-        PDPageContentStream contentStreamForData = new PDPageContentStream(document, pageMap.get(1), true, false);
-        contentStreamForData.setFont(TEXT_FONT, FONT_SIZE);
-        startY -= ROW_HEIGHT;
-        startX = CELL_MARGIN + CELL_PADDING;
-
-        int currentPageNum = 1;
-        int rowNum = 0;
-        // write content
-        for (RowEntry entry : rowEntries) {
-            rowNum += 1;
-            if (rowNum > RECORD_COUNT_PER_PAGE) {
-                contentStreamForData.close();
-                currentPageNum += 1;
-                contentStreamForData = new PDPageContentStream(document, pageMap.get(currentPageNum), true, false);
-                contentStreamForData.setFont(TEXT_FONT, FONT_SIZE);
-                startY = TABLE_TOP_Y - (ROW_HEIGHT / 2)
-                        - ((TEXT_FONT.getFontDescriptor().getFontBoundingBox().getHeight() / 1000 * FONT_SIZE) / 4);
-                startX = CELL_MARGIN + CELL_PADDING;
-                rowNum = 1;
-            }
-            writeToRow(contentStreamForData, columnWidths, startX, startY, entry);
-            startY -= ROW_HEIGHT;
-            startX = CELL_MARGIN + CELL_PADDING;
-        }
-        contentStreamForData.close();
-    }
-
     /**
      *  Writes a row.
      * @param contentStream content stream of the page.
@@ -241,92 +179,71 @@ public class ReportGeneratorUtil {
     }
 
     /**
-     * Writes the column header.
+     * Draws the table grid of a single page.
      * @param contentStream content stream of the page.
-     * @param columnWidths widths of each column.
-     * @param positionX x-axis position
-     * @param positionY y-axis position
-     * @param content data to write in column header.
+     * @param columnWidths widths of the columns.
+     * @param numberOfRows number of rows in the page.
+     * @param withColumnHeader whether the page has a column header row above the rows.
      * @throws IOException
      */
-    public static void writeColumnHeader(PDPageContentStream contentStream, float[] columnWidths, float positionX,
-                                         float positionY, String[] content)
-            throws IOException {
+    public static void drawPageGrid(PDPageContentStream contentStream, float[] columnWidths, int numberOfRows,
+                                    boolean withColumnHeader) throws IOException {
 
-        contentStream.setFont(PDType1Font.HELVETICA_BOLD, FONT_SIZE);
-        for (int i = 0; i < columnWidths.length; i++) {
-            writeContent(contentStream, positionX, positionY, content[i]);
-            positionX += columnWidths[i];
+        int numberOfLines = numberOfRows + (withColumnHeader ? 1 : 0);
+        float tableBottomY = TABLE_TOP_Y - ROW_HEIGHT * numberOfLines;
+
+        // draw horizontal lines
+        for (int i = 0; i <= numberOfLines; i++) {
+            float y = TABLE_TOP_Y - ROW_HEIGHT * i;
+            contentStream.drawLine(CELL_MARGIN, y, CELL_MARGIN + TABLE_WIDTH, y);
         }
-        contentStream.setFont(TEXT_FONT, FONT_SIZE);
-        contentStream.close();
+
+        // draw vertical lines
+        float nextX = CELL_MARGIN;
+        for (float columnWidth : columnWidths) {
+            contentStream.drawLine(nextX, TABLE_TOP_Y, nextX, tableBottomY);
+            nextX += columnWidth;
+        }
+        contentStream.drawLine(CELL_MARGIN + TABLE_WIDTH, TABLE_TOP_Y, CELL_MARGIN + TABLE_WIDTH, tableBottomY);
     }
 
     /**
-     *  Draws a table.
-     * @param document document to draw the table.
-     * @param pageMap map of page objects against page numbers.
-     * @param recordsPerPageList a list of integers with number of records for each page.
-     * @param columnWidths widths of the columns.
-     * @param numberOfRows total number of rows.
+     * Writes the column headers in the first row of the table.
+     * @param contentStream content stream of the page.
+     * @param columnWidths widths of each column.
+     * @param columnHeaders the table column headers.
      * @throws IOException
      */
-    public static void drawTableGrid(PDDocument document, Map<Integer,
-            PDPage> pageMap, List<Integer> recordsPerPageList, float[] columnWidths, int numberOfRows)
-            throws IOException {
-
-        float nextY = TABLE_TOP_Y;
+    public static void writeColumnHeaders(PDPageContentStream contentStream, float[] columnWidths,
+                                          String[] columnHeaders) throws IOException {
 
-        // draw horizontal lines
-        int currentPageNum = 1;
-        PDPageContentStream contentStream = new PDPageContentStream(document, pageMap.get(currentPageNum), true,
-                false);
-        int rowNum = 0;
-        for (int i = 0; i <= numberOfRows + 1; i++) {
-            contentStream.drawLine(CELL_MARGIN, nextY, CELL_MARGIN + TABLE_WIDTH, nextY);
-            nextY -= ROW_HEIGHT;
-            if (rowNum > RECORD_COUNT_PER_PAGE) {
-                contentStream.close();
-                currentPageNum++;
-                contentStream = new PDPageContentStream(document, pageMap.get(currentPageNum), true, false);
-                insertPageNumber(contentStream, currentPageNum);
-                insertLogo(document, contentStream);
-                nextY = TABLE_TOP_Y;
-                rowNum = 0;
-                numberOfRows++; // at each new page add one more horizontal line
-            }
-            rowNum++;
-        }
-
-        contentStream.close();
-
-        // draw vertical lines
-        for (int k = 1; k <= pageMap.size(); k++) {
-            float tableYLength = (ROW_HEIGHT * (recordsPerPageList.get(k - 1)));
-            float tableBottomY = TABLE_TOP_Y - tableYLength;
-            if (k == 1) {
-                tableBottomY -= ROW_HEIGHT;
-            }
-            float nextX = CELL_MARGIN;
-
-            contentStream = new PDPageContentStream(document, pageMap.get(k), true, false);
-            for (float columnWidth : columnWidths) {
-                contentStream.drawLine(nextX, TABLE_TOP_Y, nextX, tableBottomY);
-                nextX += columnWidth;
-            }
-            contentStream.drawLine(CELL_MARGIN + TABLE_WIDTH, TABLE_TOP_Y, CELL_MARGIN + TABLE_WIDTH, tableBottomY);
-            contentStream.close();
+        contentStream.setFont(PDType1Font.HELVETICA_BOLD, FONT_SIZE);
+        float positionX = CELL_MARGIN + CELL_PADDING;
+        for (int i = 0; i < columnWidths.length; i++) {
+            writeContent(contentStream, positionX, FIRST_ROW_TEXT_Y, columnHeaders[i]);
+            positionX += columnWidths[i];
         }
     }
 
     /**
-     * Returns the number of pages in the document.
-     * @param numberOfRows number of records.
-     * @return number of pages in the document.
+     * Writes the rows of a single page.
+     * @param contentStream content stream of the page.
+     * @param columnWidths widths of each column.
+     * @param belowColumnHeader whether the first row of the table is the column header row.
+     * @param rowEntries rows of the page.
+     * @throws IOException
      */
-    public static int getNumberOfPages(int numberOfRows) {
+    public static void writePageRows(PDPageContentStream contentStream, float[] columnWidths,
+                                     boolean belowColumnHeader, List<RowEntry> rowEntries) throws IOException {
+
+        float startX = CELL_MARGIN + CELL_PADDING; // space between entry and the column line
+        float startY = FIRST_ROW_TEXT_Y - (belowColumnHeader ? ROW_HEIGHT : 0);
 
-        return (int) Math.ceil(numberOfRows / RECORD_COUNT_PER_PAGE);
+        contentStream.setFont(TEXT_FONT, FONT_SIZE);
+        for (RowEntry entry : rowEntries) {
+            writeToRow(contentStream, columnWidths, startX, startY, entry);
+            startY -= ROW_HEIGHT;
+        }
     }
 
     /**
@@ -0,0 +1,253 @@
+/*
+ *  Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.rest.api.report.reportgen.util;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDJpeg;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDXObjectForm;
+import org.wso2.analytics.apim.rest.api.report.impl.ReportApiServiceImpl;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * Template of the static content of the report pages: the logo, the table grid and the column headers. The content
+ * of the template is built once per JVM, and is added to each document once as a form XObject which is stamped onto
+ * each full page, instead of drawing the logo and the grid on every page. The logo is read and decoded once per JVM,
+ * and is embedded into each document as it is.
+ */
+public class ReportPageTemplate {
+
+    private static final String FONT_NAME = "F1";
+    private static final String LOGO_NAME = "Logo";
+    private static volatile Logo logo;
+
+    private final float[] columnWidths;
+    private final String[] columnHeaders;
+    private final int rowsPerPage = ReportGeneratorUtil.RECORD_COUNT_PER_PAGE;
+    // Built on first use, since they depend on the size of the logo.
+    private volatile byte[] firstPageContent;
+    private volatile byte[] pageContent;
+
+    /**
+     * @param columnWidths widths of the table columns.
+     * @param columnHeaders headers of the table columns, shown on the first page.
+     */
+    public ReportPageTemplate(float[] columnWidths, String[] columnHeaders) {
+        this.columnWidths = Arrays.copyOf(columnWidths, columnWidths.length);
+        this.columnHeaders = Arrays.copyOf(columnHeaders, columnHeaders.length);
+    }
+
+    /**
+     * Adds the template to a document.
+     * @param document the document.
+     * @return the stamp which draws the template onto the pages of the document.
+     * @throws IOException
+     */
+    public Stamp addTo(PDDocument document) throws IOException {
+        Logo logo = getLogo();
+        if (pageContent == null) {
+            synchronized (this) {
+                if (pageContent == null) {
+                    firstPageContent = buildContent(logo, true);
+                    pageContent = buildContent(logo, false);
+                }
+            }
+        }
+        PDJpeg logoImage = logo.embed(document);
+        PDResources resources = new PDResources();
+        COSDictionary fonts = new COSDictionary();
+        fonts.setItem(COSName.getPDFName(FONT_NAME), PDType1Font.HELVETICA_BOLD);
+        resources.getCOSDictionary().setItem(COSName.FONT, fonts);
+        COSDictionary xObjects = new COSDictionary();
+        xObjects.setItem(COSName.getPDFName(LOGO_NAME), logoImage);
+        resources.getCOSDictionary().setItem(COSName.XOBJECT, xObjects);
+        return new Stamp(logoImage, createForm(document, firstPageContent, resources),
+                createForm(document, pageContent, resources));
+    }
+
+    private static PDXObjectForm createForm(PDDocument document, byte[] content, PDResources resources)
+            throws IOException {
+        PDStream stream = new PDStream(document, new ByteArrayInputStream(content), false);
+        stream.addCompression();
+        PDXObjectForm form = new PDXObjectForm(stream);
+        form.setResources(resources);
+        form.setBBox(PDPage.PAGE_SIZE_A4);
+        return form;
+    }
+
+    /**
+     * Builds the content operators of a full page, which are the same operators drawn by
+     * ReportGeneratorUtil.insertLogo, drawPageGrid and writeColumnHeaders.
+     */
+    private byte[] buildContent(Logo logo, boolean firstPage) {
+        StringBuilder content = new StringBuilder();
+        content.append("q\n").append(logo.width).append(" 0 0 ").append(logo.height).append(' ')
+                .append(ReportGeneratorUtil.LOGO_X).append(' ').append(ReportGeneratorUtil.LOGO_Y).append(" cm\n/")
+                .append(LOGO_NAME).append(" Do\nQ\n");
+
+        int numberOfLines = rowsPerPage + (firstPage ? 1 : 0);
+        float left = ReportGeneratorUtil.CELL_MARGIN;
+        float right = ReportGeneratorUtil.CELL_MARGIN + ReportGeneratorUtil.TABLE_WIDTH;
+        float top = ReportGeneratorUtil.TABLE_TOP_Y;
+        float bottom = top - ReportGeneratorUtil.ROW_HEIGHT * numberOfLines;
+        for (int i = 0; i <= numberOfLines; i++) {
+            float y = top - ReportGeneratorUtil.ROW_HEIGHT * i;
+            appendLine(content, left, y, right, y);
+        }
+        float x = left;
+        for (float columnWidth : columnWidths) {
+            appendLine(content, x, top, x, bottom);
+            x += columnWidth;
+        }
+        appendLine(content, right, top, right, bottom);
+
+        if (firstPage) {
+            float positionX = ReportGeneratorUtil.CELL_MARGIN + ReportGeneratorUtil.CELL_PADDING;
+            for (int i = 0; i < columnWidths.length; i++) {
+                content.append("BT\n/").append(FONT_NAME).append(' ').append(ReportGeneratorUtil.FONT_SIZE)
+                        .append(" Tf\n").append(positionX).append(' ').append(ReportGeneratorUtil.FIRST_ROW_TEXT_Y)
+                        .append(" Td\n(").append(escape(columnHeaders[i])).append(") Tj\nET\n");
+                positionX += columnWidths[i];
+            }
+        }
+        return content.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void appendLine(StringBuilder content, float x1, float y1, float x2, float y2) {
+        content.append(x1).append(' ').append(y1).append(" m\n").append(x2).append(' ').append(y2).append(" l\nS\n");
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("(", "\\(").replace(")", "\\)");
+    }
+
+    private static Logo getLogo() throws IOException {
+        Logo current = logo;
+        if (current == null) {
+            synchronized (ReportPageTemplate.class) {
+                current = logo;
+                if (current == null) {
+                    current = Logo.load();
+                    logo = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Draws the template of a document onto its pages.
+     */
+    public final class Stamp {
+
+        private final PDJpeg logoImage;
+        private final PDXObjectForm firstPageForm;
+        private final PDXObjectForm pageForm;
+
+        private Stamp(PDJpeg logoImage, PDXObjectForm firstPageForm, PDXObjectForm pageForm) {
+            this.logoImage = logoImage;
+            this.firstPageForm = firstPageForm;
+            this.pageForm = pageForm;
+        }
+
+        /**
+         * Draws the logo, the table grid and, on the first page, the column headers. Full pages are drawn with the
+         * form XObject of the document, and the last page, which can be shorter, is drawn directly.
+         * @param contentStream content stream of the page.
+         * @param firstPage whether the page is the first page.
+         * @param numberOfRows number of rows in the page.
+         * @throws IOException
+         */
+        public void apply(PDPageContentStream contentStream, boolean firstPage, int numberOfRows) throws IOException {
+            if (numberOfRows == rowsPerPage) {
+                contentStream.drawXObject(firstPage ? firstPageForm : pageForm, new AffineTransform());
+                return;
+            }
+            ReportGeneratorUtil.insertLogo(contentStream, logoImage);
+            ReportGeneratorUtil.drawPageGrid(contentStream, columnWidths, numberOfRows, firstPage);
+            if (firstPage) {
+                ReportGeneratorUtil.writeColumnHeaders(contentStream, columnWidths, columnHeaders);
+            }
+        }
+    }
+
+    /**
+     * The logo image, kept as the JPEG data so that it is embedded without decoding and encoding it again.
+     */
+    private static final class Logo {
+
+        private final byte[] data;
+        private final int width;
+        private final int height;
+        private final boolean gray;
+
+        private Logo(byte[] data, int width, int height, boolean gray) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            this.gray = gray;
+        }
+
+        private static Logo load() throws IOException {
+            byte[] data;
+            try (InputStream in = ReportApiServiceImpl.class.getResourceAsStream("/wso2-logo.jpg")) {
+                if (in == null) {
+                    throw new IOException("Report logo is not available.");
+                }
+                data = IOUtils.toByteArray(in);
+            }
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+            if (image == null) {
+                throw new IOException("Report logo is not a valid JPEG image.");
+            }
+            return new Logo(data, image.getWidth(), image.getHeight(),
+                    image.getColorModel().getNumColorComponents() == 1);
+        }
+
+        private PDJpeg embed(PDDocument document) throws IOException {
+            // The JPEG data is kept as it is and decoded by the viewer.
+            PDStream stream = new PDStream(document, new ByteArrayInputStream(data), true);
+            stream.getStream().setItem(COSName.TYPE, COSName.XOBJECT);
+            stream.getStream().setItem(COSName.SUBTYPE, COSName.getPDFName("Image"));
+            stream.getStream().setItem(COSName.FILTER, COSName.DCT_DECODE);
+            PDJpeg image = new PDJpeg(stream);
+            image.setWidth(width);
+            image.setHeight(height);
+            image.setBitsPerComponent(8);
+            image.setColorSpace(gray ? new PDDeviceGray() : PDDeviceRGB.INSTANCE);
+            return image;
+        }
+    }
+}
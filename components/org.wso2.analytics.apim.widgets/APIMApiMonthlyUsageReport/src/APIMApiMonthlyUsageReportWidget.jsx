@@ -88,6 +88,12 @@ const language = (navigator.languages && navigator.languages[0]) || navigator.la
  */
 const languageWithoutRegionCode = language.toLowerCase().split(/[_-]+/)[0];
 
+/**
+ * Interval in milliseconds to poll the status of a report job
+ * @type {number}
+ */
+const REPORT_JOB_POLL_INTERVAL = 2000;
+
 
 /**
  *
@@ -128,6 +134,9 @@ class APIMApiMonthlyUsageReportWidget extends Widget {
                 height: this.props.glContainer.height,
             }));
         }
+
+        this.downloadReport = this.downloadReport.bind(this);
+        this.awaitReportJob = this.awaitReportJob.bind(this);
     }
 
     /**
@@ -176,15 +185,52 @@ class APIMApiMonthlyUsageReportWidget extends Widget {
         this.setState({ page: 1, pages });
     }
 
+    /**
+     * Submits a report job for the selected month, and opens the report once the job is finished
+     * @param {object} event submit event of the form
+     * @memberof APIMApiMonthlyUsageReportWidget
+     */
+    downloadReport(event) {
+        event.preventDefault();
+        const { year, month } = this.state;
+        const monthInt = month + 1; // Date is 0 based in the widget
+        const monthString = (monthInt < 10) ? '0' + monthInt : monthInt; // prefix by 0;
+        // Opened while handling the click, so that it is not blocked as a popup.
+        const reportWindow = window.open('', '_blank');
+        if (!reportWindow) {
+            return;
+        }
+        Axios.post(`${window.contextPath}/apis/v1.0/report/jobs`, null, { params: { year, month: monthString } })
+            .then(response => this.awaitReportJob(response.data))
+            .then((job) => {
+                reportWindow.location = job.downloadUrl;
+            })
+            .catch(() => {
+                reportWindow.close();
+            });
+    }
+
+    /**
+     * Polls the status of a report job until the job is finished
+     * @param {object} job status of the report job
+     * @returns {Promise} resolved with the status of the finished job
+     * @memberof APIMApiMonthlyUsageReportWidget
+     */
+    awaitReportJob(job) {
+        if (job.status !== 'QUEUED' && job.status !== 'RUNNING') {
+            return Promise.resolve(job);
+        }
+        return new Promise(resolve => setTimeout(resolve, REPORT_JOB_POLL_INTERVAL))
+            .then(() => Axios.get(job.statusUrl))
+            .then(response => this.awaitReportJob(response.data));
+    }
+
     render() {
         const {
             localeMessages,
         } = this.state;
         const { muiTheme, height } = this.props;
         const themeName = muiTheme.name;
-        const pdfBaseUrl = `${window.contextPath}/apis/v1.0/report`;
-        const monthInt = this.state.month + 1; // Date is 0 based in the widget
-        const monthString = (monthInt < 10) ? '0' + monthInt : monthInt; // prefix by 0;
 
         return (
             <IntlProvider locale={language} messages={localeMessages}>
@@ -208,12 +254,8 @@ class APIMApiMonthlyUsageReportWidget extends Widget {
                                 <form
                                     noValidate
                                     autoComplete='off'
-                                    method='get'
-                                    target='_blank'
-                                    action={pdfBaseUrl}
+                                    onSubmit={this.downloadReport}
                                 >
-                                    <input type='hidden' name='year' value={this.state.year} />
-                                    <input type='hidden' name='month' value={monthString} />
                                     <div style={styles.form}>
                                         <DateWidget
                                             year={this.state.year}
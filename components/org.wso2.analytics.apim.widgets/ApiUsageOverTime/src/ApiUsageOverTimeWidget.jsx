@@ -54,6 +54,13 @@ const APP_ID_CALLBACK = '-app-id';
 const APPLICATION_CALLBACK = '-applications';
 const USAGE_CALLBACK = '-usage';
 
+/**
+ * The usage query is published incrementally: the full result first, and afterwards only the rows of the latest
+ * buckets which changed. Those are merged into the rows received before.
+ */
+const USAGE_PROVIDER = 'IncrementalSiddhiStoreDataProvider';
+const USAGE_PUBLISHING_INTERVAL = 60;
+
 /**
  * Language
  * @type {string}
@@ -110,6 +117,9 @@ class ApiUsageOverTimeWidget extends Widget {
             appIds: [],
         };
 
+        // Rows of the usage query by AGG_TIMESTAMP and the group by columns.
+        this.usageRows = new Map();
+
         // This will re-size the widget when the glContainer's width is changed.
         if (this.props.glContainer !== undefined) {
             this.props.glContainer.on('resize', () => this.setState({
@@ -391,6 +401,8 @@ class ApiUsageOverTimeWidget extends Widget {
                 filterCondition = '(' + filterCondition.join(' OR ') + ')';
 
                 const dataProviderConfigs = cloneDeep(providerConfig);
+                dataProviderConfigs.configs.type = USAGE_PROVIDER;
+                dataProviderConfigs.configs.config.publishingInterval = USAGE_PUBLISHING_INTERVAL;
                 dataProviderConfigs.configs.config.queryData.queryName = 'apiusagequery';
                 dataProviderConfigs.configs.config.queryData.queryValues = {
                     '{{filterCondition}}': filterCondition,
@@ -398,6 +410,8 @@ class ApiUsageOverTimeWidget extends Widget {
                     '{{to}}': timeTo,
                     '{{per}}': perValue,
                 };
+                super.getWidgetChannelManager().unsubscribeWidget(id + USAGE_CALLBACK);
+                this.usageRows = new Map();
                 super.getWidgetChannelManager()
                     .subscribeWidget(id + USAGE_CALLBACK, widgetName, this.handleApiUsageReceived, dataProviderConfigs);
             } else {
@@ -414,10 +428,15 @@ class ApiUsageOverTimeWidget extends Widget {
      * @memberof ApiUsageOverTimeWidget
      * */
     handleApiUsageReceived(message) {
-        const { data } = message;
         const { selectedOptions } = this.state;
 
-        if (data && data.length > 0) {
+        if (message.data) {
+            message.data.forEach((row) => {
+                this.usageRows.set([row[4], row[0], row[1], row[3]].join('|'), row);
+            });
+        }
+        const data = Array.from(this.usageRows.values());
+        if (data.length > 0) {
             const apiList = selectedOptions
                 .sort((a, b) => { return a.name.toLowerCase().localeCompare(b.name.toLowerCase()); })
                 .map((api) => { return api.name + ' :: ' + api.version + ' (' + api.provider + ')'; });
@@ -442,7 +461,7 @@ class ApiUsageOverTimeWidget extends Widget {
                 });
                 usage.push(parseInt(key, 10));
                 return usage;
-            });
+            }).sort((a, b) => { return a[a.length - 1] - b[b.length - 1]; });
             this.setState({ usageData, apiList, inProgress: false });
         } else {
             this.setState({ usageData: [], inProgress: false });
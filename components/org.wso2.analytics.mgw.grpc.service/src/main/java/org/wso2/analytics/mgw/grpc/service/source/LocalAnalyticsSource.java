@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.mgw.grpc.service.source;
+
+import com.google.protobuf.Empty;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import io.grpc.stub.StreamObserver;
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.ServiceDeploymentInfo;
+import io.siddhi.core.stream.input.source.Source;
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.transport.OptionHolder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsSendServiceGrpc;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+import org.wso2.analytics.mgw.grpc.service.transport.LocalTransports;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Receives microgateway analytics events from co-located publishers over a Unix domain socket and/or an in-process
+ * channel. It serves the same AnalyticsSendService contract as the TCP gRPC receiver, so a publisher only changes the
+ * address it connects to.
+ */
+@Extension(name = "mgwgrpc", namespace = "source", description = "Event source to receive WSO2 Microgateway "
+        + "analytics events from publishers on the same host over a Unix domain socket, or from the same JVM over an "
+        + "in-process channel. Events are passed to the mapper as AnalyticsStreamMessage objects.",
+        parameters = {
+                @Parameter(
+                        name = "enabled",
+                        description = "Whether the source listens for events. A disabled source keeps the stream "
+                                + "deployable, so that the local transports can be switched on from the "
+                                + "configuration only.",
+                        type = {DataType.BOOL},
+                        optional = true,
+                        defaultValue = "true"),
+                @Parameter(
+                        name = "socket.path",
+                        description = "Path of the Unix domain socket to listen on. Requires the native epoll "
+                                + "transport, which is available on Linux only. Publishers are not authenticated, "
+                                + "hence the socket is restricted to the user running the worker (mode 0600), and "
+                                + "should be placed in a directory which only that user can write to. A file at the "
+                                + "path which is not a socket is never removed.",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(
+                        name = "inprocess.name",
+                        description = "Name under which an in-process server is registered.",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(
+                        name = "worker.threads",
+                        description = "Number of event loop threads of the domain socket server. 0 uses the "
+                                + "netty default.",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "0")},
+        examples = {
+                @Example(
+                        syntax = "@source(type='mgwgrpc', socket.path='/var/run/wso2/analytics.sock', "
+                                + "@map(type='protobuf', "
+                                + "class='org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage'))",
+                        description = "Receives analytics events sent to the given Unix domain socket."
+                )
+        }
+)
+public class LocalAnalyticsSource extends Source {
+
+    private static final Log log = LogFactory.getLog(LocalAnalyticsSource.class);
+    private static final String ENABLED = "enabled";
+    private static final String SOCKET_PATH = "socket.path";
+    private static final String INPROCESS_NAME = "inprocess.name";
+    private static final String WORKER_THREADS = "worker.threads";
+
+    private SourceEventListener sourceEventListener;
+    private boolean enabled;
+    private String socketPath;
+    private String inProcessName;
+    private int workerThreads;
+    private Server domainSocketServer;
+    private Server inProcessServer;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private volatile boolean paused;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+
+    @Override
+    protected ServiceDeploymentInfo exposeServiceDeploymentInfo() {
+        return null;
+    }
+
+    @Override
+    public StateFactory init(SourceEventListener sourceEventListener, OptionHolder optionHolder,
+                             String[] requestedTransportPropertyNames, ConfigReader configReader,
+                             SiddhiAppContext siddhiAppContext) {
+        this.sourceEventListener = sourceEventListener;
+        this.enabled = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(ENABLED, "true"));
+        this.socketPath = optionHolder.validateAndGetStaticValue(SOCKET_PATH, null);
+        this.inProcessName = optionHolder.validateAndGetStaticValue(INPROCESS_NAME, null);
+        this.workerThreads = Integer.parseInt(optionHolder.validateAndGetStaticValue(WORKER_THREADS, "0"));
+        if (enabled && socketPath == null && inProcessName == null) {
+            throw new SiddhiAppCreationException("Either '" + SOCKET_PATH + "' or '" + INPROCESS_NAME
+                    + "' should be given for the mgwgrpc source of stream "
+                    + sourceEventListener.getStreamDefinition().getId());
+        }
+        return null;
+    }
+
+    @Override
+    public Class[] getOutputEventClasses() {
+        return new Class[]{AnalyticsStreamMessage.class};
+    }
+
+    @Override
+    public void connect(ConnectionCallback connectionCallback, State state) throws ConnectionUnavailableException {
+        if (!enabled) {
+            if (log.isDebugEnabled()) {
+                log.debug("The mgwgrpc source of stream " + sourceEventListener.getStreamDefinition().getId()
+                        + " is disabled.");
+            }
+            return;
+        }
+        AnalyticsReceiver receiver = new AnalyticsReceiver();
+        try {
+            if (socketPath != null) {
+                if (LocalTransports.isDomainSocketAvailable()) {
+                    bossGroup = LocalTransports.newEventLoopGroup(1,
+                            new DefaultThreadFactory("mgw-analytics-uds-boss", true));
+                    workerGroup = LocalTransports.newEventLoopGroup(workerThreads,
+                            new DefaultThreadFactory("mgw-analytics-uds-worker", true));
+                    domainSocketServer = LocalTransports.domainSocketServerBuilder(socketPath, bossGroup, workerGroup)
+                            .addService(receiver)
+                            .build()
+                            .start();
+                    LocalTransports.restrictToOwner(socketPath);
+                    log.info("Receiving microgateway analytics events on Unix domain socket " + socketPath);
+                } else {
+                    log.warn("Unix domain sockets are not supported on this platform. Not listening on "
+                            + socketPath, LocalTransports.getDomainSocketUnavailabilityCause());
+                }
+            }
+            if (inProcessName != null) {
+                inProcessServer = LocalTransports.inProcessServerBuilder(inProcessName)
+                        .addService(receiver)
+                        .build()
+                        .start();
+                log.info("Receiving microgateway analytics events on in-process channel " + inProcessName);
+            }
+        } catch (IOException e) {
+            stopServers();
+            throw new ConnectionUnavailableException("Error while starting the microgateway analytics receiver for "
+                    + "stream " + sourceEventListener.getStreamDefinition().getId(), e);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        stopServers();
+    }
+
+    @Override
+    public void destroy() {
+        stopServers();
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        lock.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stopServers() {
+        if (inProcessServer != null) {
+            inProcessServer.shutdown();
+            inProcessServer = null;
+        }
+        if (domainSocketServer != null) {
+            domainSocketServer.shutdown();
+            try {
+                domainSocketServer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            domainSocketServer = null;
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+            try {
+                LocalTransports.deleteSocketFile(socketPath);
+            } catch (IOException e) {
+                log.warn("Could not remove the Unix domain socket file " + socketPath, e);
+            }
+        }
+    }
+
+    private void waitIfPaused() {
+        if (paused) {
+            lock.lock();
+            try {
+                while (paused) {
+                    condition.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * AnalyticsSendService implementation which hands the received messages to the Siddhi mapper.
+     */
+    private class AnalyticsReceiver extends AnalyticsSendServiceGrpc.AnalyticsSendServiceImplBase {
+
+        @Override
+        public StreamObserver<AnalyticsStreamMessage> sendAnalytics(StreamObserver<Empty> responseObserver) {
+            return new StreamObserver<AnalyticsStreamMessage>() {
+                @Override
+                public void onNext(AnalyticsStreamMessage message) {
+                    waitIfPaused();
+                    sourceEventListener.onEvent(message, null);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Analytics stream closed by the publisher with an error.", throwable);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onNext(Empty.getDefaultInstance());
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.mgw.grpc.service.transport;
+
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.unix.DomainSocketAddress;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds servers and channels for publishers which run on the same host or in the same JVM as the analytics worker.
+ * Unix domain sockets use the native epoll transport and skip the loopback TCP stack and TLS. In-process channels
+ * skip serialization altogether and hand over the message objects directly. Both carry the same
+ * AnalyticsSendService contract as the TCP receiver.
+ */
+public final class LocalTransports {
+
+    // File type bits of st_mode, and the type of a socket.
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFSOCK = 0140000;
+
+    private static EventLoopGroup clientEventLoopGroup;
+
+    private LocalTransports() {
+    }
+
+    /**
+     * Returns whether Unix domain sockets can be used on this platform.
+     * @return true if the native epoll transport is available.
+     */
+    public static boolean isDomainSocketAvailable() {
+        return Epoll.isAvailable();
+    }
+
+    /**
+     * Returns the reason why Unix domain sockets cannot be used on this platform.
+     * @return the cause, or null if they are available.
+     */
+    public static Throwable getDomainSocketUnavailabilityCause() {
+        return Epoll.unavailabilityCause();
+    }
+
+    /**
+     * Creates a server builder bound to a Unix domain socket. A stale socket file left behind by a previous run is
+     * removed, since binding would fail otherwise. Any other file at the path is left as it is.
+     * @param socketPath path of the socket file.
+     * @param bossGroup epoll event loop group accepting connections. The caller owns the group.
+     * @param workerGroup epoll event loop group serving connections. The caller owns the group.
+     * @return the server builder.
+     * @throws IOException if the path is not a socket, or the stale socket file cannot be removed.
+     */
+    public static NettyServerBuilder domainSocketServerBuilder(String socketPath, EventLoopGroup bossGroup,
+                                                               EventLoopGroup workerGroup) throws IOException {
+        deleteSocketFile(socketPath);
+        return NettyServerBuilder.forAddress(new DomainSocketAddress(socketPath))
+                .channelType(EpollServerDomainSocketChannel.class)
+                .bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup);
+    }
+
+    /**
+     * Removes a Unix domain socket file. The file is only removed if it is a socket, so that a misconfigured path
+     * does not remove an unrelated file.
+     * @param socketPath path of the socket file.
+     * @throws IOException if the path is not a socket, or the socket file cannot be removed.
+     */
+    public static void deleteSocketFile(String socketPath) throws IOException {
+        Path path = Paths.get(socketPath);
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        int mode;
+        try {
+            mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            throw new IOException("Unable to check whether " + socketPath + " is a socket.", e);
+        }
+        if ((mode & S_IFMT) != S_IFSOCK) {
+            throw new IOException("Refusing to remove " + socketPath + ", since it is not a Unix domain socket.");
+        }
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Restricts a bound Unix domain socket to the owner of the process, since clients connecting over the socket are
+     * not authenticated. Connecting to a socket requires write permission on the socket file.
+     * @param socketPath path of the socket file.
+     * @throws IOException if the permissions cannot be changed.
+     */
+    public static void restrictToOwner(String socketPath) throws IOException {
+        Files.setPosixFilePermissions(Paths.get(socketPath),
+                EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+    }
+
+    /**
+     * Creates an epoll event loop group for a domain socket server.
+     * @param threads number of threads, 0 for the netty default.
+     * @param threadFactory factory of the event loop threads.
+     * @return the event loop group.
+     */
+    public static EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        return new EpollEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * Creates a server builder registered under an in-process name.
+     * @param name name of the in-process server, unique within the JVM.
+     * @return the server builder.
+     */
+    public static InProcessServerBuilder inProcessServerBuilder(String name) {
+        return InProcessServerBuilder.forName(name);
+    }
+
+    /**
+     * Creates a plaintext channel to a receiver listening on a Unix domain socket.
+     * @param socketPath path of the socket file.
+     * @return the channel.
+     */
+    public static ManagedChannel newDomainSocketChannel(String socketPath) {
+        return NettyChannelBuilder.forAddress(new DomainSocketAddress(socketPath))
+                .channelType(EpollDomainSocketChannel.class)
+                .eventLoopGroup(getClientEventLoopGroup())
+                .usePlaintext()
+                .build();
+    }
+
+    /**
+     * Creates a channel to a receiver registered in this JVM.
+     * @param name name of the in-process server.
+     * @return the channel.
+     */
+    public static ManagedChannel newInProcessChannel(String name) {
+        return InProcessChannelBuilder.forName(name).build();
+    }
+
+    private static synchronized EventLoopGroup getClientEventLoopGroup() {
+        // Channels do not own the event loop group given to them, so a single daemon group is shared by all domain
+        // socket channels for the lifetime of the JVM.
+        if (clientEventLoopGroup == null) {
+            clientEventLoopGroup = new EpollEventLoopGroup(0,
+                    new DefaultThreadFactory("analytics-uds-client", true));
+        }
+        return clientEventLoopGroup;
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.mgw.grpc.service.loadgen;
+
+import com.google.protobuf.Empty;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext;
+import io.grpc.netty.shaded.io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.grpc.stub.StreamObserver;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.ParseException;
+import org.wso2.analytics.apim.commons.metrics.LatencyHistogram;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsSendServiceGrpc;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+import org.wso2.analytics.mgw.grpc.service.transport.LocalTransports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Replays analytics traffic against an AnalyticsSendService receiver and reports how many events per second it
+ * sustains. Each connection is a separate gRPC channel which opens one client stream per batch, so a batch size of 1
+ * measures the single message protocol and larger values measure batched streams. The acknowledgement latency of a
+ * call is measured from the time the batch was scheduled to be sent, so that a receiver which falls behind shows up
+ * in the percentiles instead of silently lowering the offered load.
+ *
+ * The load generator is a test tool, and is not shipped in the bundle. It is run from the module with the test class
+ * path, e.g. {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.wso2.analytics.mgw.grpc.service.loadgen.AnalyticsLoadGenerator -Dexec.args="..."}.
+ *
+ * Example, comparing single and batched messages against a local worker:
+ * <pre>
+ * java org.wso2.analytics.mgw.grpc.service.loadgen.AnalyticsLoadGenerator -tls -rate 20000 -connections 4 \
+ *     -jmxUrl service:jmx:rmi://localhost:11111/jndi/rmi://localhost:9999/jmxrmi -resultFile results.csv
+ * java org.wso2.analytics.mgw.grpc.service.loadgen.AnalyticsLoadGenerator -tls -rate 20000 -connections 4 \
+ *     -batchSize 100 -jmxUrl service:jmx:rmi://localhost:11111/jndi/rmi://localhost:9999/jmxrmi \
+ *     -resultFile results.csv
+ * </pre>
+ */
+public class AnalyticsLoadGenerator {
+
+    private static final String COMMAND_NAME = "AnalyticsLoadGenerator";
+    private static final String RESULT_HEADER = "label,connections,batchSize,targetRate,durationSeconds,sentEvents,"
+            + "ackedEvents,errors,eventsPerSecond,p50AckMillis,p99AckMillis,maxAckMillis,serverCpuCores,"
+            + "serverAllocMBPerSecond,serverAllocBytesPerEvent";
+
+    private final LoadGeneratorConfig config;
+    private final MessageSource messageSource;
+    private final LatencyHistogram histogram = new LatencyHistogram(LatencyHistogram.PRECISE_SUB_BUCKET_BITS);
+    private final LongAdder sentEvents = new LongAdder();
+    private final LongAdder ackedEvents = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean running = true;
+    private volatile boolean measuring = false;
+
+    public AnalyticsLoadGenerator(LoadGeneratorConfig config, MessageSource messageSource) {
+        this.config = config;
+        this.messageSource = messageSource;
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(LoadGeneratorConfig.getOptions(), args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp(COMMAND_NAME, LoadGeneratorConfig.getOptions());
+            return;
+        }
+        if (cmd.hasOption(LoadGeneratorConfig.OPTION_HELP)) {
+            new HelpFormatter().printHelp(COMMAND_NAME, LoadGeneratorConfig.getOptions());
+            return;
+        }
+        LoadGeneratorConfig config = LoadGeneratorConfig.fromCommandLine(cmd);
+        MessageSource messageSource = config.getRecording() != null
+                ? MessageSource.recorded(Paths.get(config.getRecording()), !config.isKeepTimestamps())
+                : MessageSource.synthetic(config.getApiCount(), 42L);
+
+        LocalAnalyticsReceiver receiver = null;
+        ResourceUsageProbe probe = null;
+        try {
+            if (config.isLocalReceiver()) {
+                receiver = new LocalAnalyticsReceiver(config);
+                receiver.start(config.getReceiverThreads());
+                probe = ResourceUsageProbe.forLocalThreads(receiver.getThreadIds());
+            } else if (config.getJmxUrl() != null) {
+                probe = ResourceUsageProbe.forRemoteJvm(config.getJmxUrl(), config.getJmxUsername(),
+                        config.getJmxPassword());
+            }
+            new AnalyticsLoadGenerator(config, messageSource).run(probe);
+        } finally {
+            if (probe != null) {
+                probe.close();
+            }
+            if (receiver != null) {
+                receiver.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs the warm up and the measured phase and prints the summary.
+     * @param probe probe for the receiver side resource usage, or null if it is not measured.
+     * @throws Exception if the channels cannot be created or the result file cannot be written.
+     */
+    public void run(ResourceUsageProbe probe) throws Exception {
+        SslContext sslContext = config.isTls() ? buildSslContext() : null;
+        List<ManagedChannel> channels = new ArrayList<>();
+        List<Thread> senders = new ArrayList<>();
+        List<Semaphore> inFlightPermits = new ArrayList<>();
+        for (int i = 0; i < config.getConnections(); i++) {
+            ManagedChannel channel = newChannel(sslContext);
+            Semaphore permits = new Semaphore(config.getMaxInFlight());
+            Thread sender = new Thread(() -> send(channel, permits), "analytics-load-sender-" + i);
+            channels.add(channel);
+            inFlightPermits.add(permits);
+            senders.add(sender);
+        }
+        System.out.println("Sending " + messageSource.size() + " distinct messages to " + describeTarget() + " over "
+                + config.getConnections() + " connection(s), batch size "
+                + config.getBatchSize() + ", target rate " + (config.getRate() == 0 ? "unbounded"
+                : config.getRate() + " events/s") + ".");
+        for (Thread sender : senders) {
+            sender.start();
+        }
+
+        TimeUnit.SECONDS.sleep(config.getWarmupSeconds());
+        long ackedAtStart = ackedEvents.sum();
+        long sentAtStart = sentEvents.sum();
+        long errorsAtStart = errors.sum();
+        ResourceUsageProbe.Usage usageAtStart = probe != null ? probe.sample() : null;
+        long startNanos = System.nanoTime();
+        measuring = true;
+
+        TimeUnit.SECONDS.sleep(config.getDurationSeconds());
+
+        measuring = false;
+        long elapsedNanos = System.nanoTime() - startNanos;
+        ResourceUsageProbe.Usage usageAtEnd = probe != null ? probe.sample() : null;
+        long measuredAcked = ackedEvents.sum() - ackedAtStart;
+        long measuredSent = sentEvents.sum() - sentAtStart;
+        long measuredErrors = errors.sum() - errorsAtStart;
+
+        running = false;
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        for (Semaphore permits : inFlightPermits) {
+            permits.tryAcquire(config.getMaxInFlight(), 10, TimeUnit.SECONDS);
+        }
+        for (ManagedChannel channel : channels) {
+            channel.shutdown().awaitTermination(10, TimeUnit.SECONDS);
+        }
+        report(elapsedNanos, measuredSent, measuredAcked, measuredErrors, usageAtStart, usageAtEnd);
+    }
+
+    private void send(ManagedChannel channel, Semaphore permits) {
+        AnalyticsSendServiceGrpc.AnalyticsSendServiceStub stub = AnalyticsSendServiceGrpc.newStub(channel);
+        double ratePerConnection = (double) config.getRate() / config.getConnections();
+        long intervalNanos = config.getRate() == 0 ? 0
+                : (long) (TimeUnit.SECONDS.toNanos(1) * config.getBatchSize() / ratePerConnection);
+        long nextSendNanos = System.nanoTime();
+        while (running) {
+            if (intervalNanos > 0) {
+                long waitNanos;
+                while ((waitNanos = nextSendNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long scheduledNanos = intervalNanos > 0 ? nextSendNanos : System.nanoTime();
+            StreamObserver<AnalyticsStreamMessage> requestObserver =
+                    stub.sendAnalytics(new AckObserver(scheduledNanos, permits));
+            for (int i = 0; i < config.getBatchSize(); i++) {
+                requestObserver.onNext(messageSource.next());
+            }
+            requestObserver.onCompleted();
+            sentEvents.add(config.getBatchSize());
+            nextSendNanos += intervalNanos;
+        }
+    }
+
+    private ManagedChannel newChannel(SslContext sslContext) {
+        if (LoadGeneratorConfig.TRANSPORT_DOMAIN_SOCKET.equals(config.getTransport())) {
+            return LocalTransports.newDomainSocketChannel(config.getSocketPath());
+        }
+        if (LoadGeneratorConfig.TRANSPORT_IN_PROCESS.equals(config.getTransport())) {
+            return LocalTransports.newInProcessChannel(LoadGeneratorConfig.IN_PROCESS_NAME);
+        }
+        NettyChannelBuilder builder = NettyChannelBuilder.forAddress(config.getHost(), config.getPort());
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        } else {
+            builder.usePlaintext();
+        }
+        return builder.build();
+    }
+
+    private String describeTarget() {
+        if (LoadGeneratorConfig.TRANSPORT_DOMAIN_SOCKET.equals(config.getTransport())) {
+            return "unix:" + config.getSocketPath();
+        }
+        if (LoadGeneratorConfig.TRANSPORT_IN_PROCESS.equals(config.getTransport())) {
+            return "in-process receiver";
+        }
+        return config.getHost() + ":" + config.getPort();
+    }
+
+    private SslContext buildSslContext() throws IOException, GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory;
+        if (config.getTruststore() != null) {
+            KeyStore trustStore = KeyStore.getInstance("JKS");
+            try (InputStream in = Files.newInputStream(Paths.get(config.getTruststore()))) {
+                trustStore.load(in, config.getTruststorePassword().toCharArray());
+            }
+            trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(trustStore);
+        } else {
+            trustManagerFactory = InsecureTrustManagerFactory.INSTANCE;
+        }
+        return GrpcSslContexts.forClient().trustManager(trustManagerFactory).build();
+    }
+
+    private void report(long elapsedNanos, long sent, long acked, long errorCount,
+                        ResourceUsageProbe.Usage usageAtStart, ResourceUsageProbe.Usage usageAtEnd)
+            throws IOException {
+        double seconds = elapsedNanos / 1e9;
+        double eventsPerSecond = acked / seconds;
+        double p50 = histogram.getValueAtPercentile(50) / 1000.0;
+        double p99 = histogram.getValueAtPercentile(99) / 1000.0;
+        double max = histogram.getMaxValue() / 1000.0;
+        double cpuCores = -1;
+        double allocMBPerSecond = -1;
+        double allocBytesPerEvent = -1;
+        if (usageAtStart != null && usageAtEnd != null) {
+            cpuCores = (usageAtEnd.getCpuTimeNanos() - usageAtStart.getCpuTimeNanos()) / (double) elapsedNanos;
+            long allocated = usageAtEnd.getAllocatedBytes() - usageAtStart.getAllocatedBytes();
+            allocMBPerSecond = allocated / seconds / (1024 * 1024);
+            allocBytesPerEvent = acked > 0 ? (double) allocated / acked : 0;
+        }
+
+        System.out.println(String.format(Locale.ENGLISH, "Variant            : %s", config.getLabel()));
+        System.out.println(String.format(Locale.ENGLISH, "Measured for       : %.1f s", seconds));
+        System.out.println(String.format(Locale.ENGLISH, "Sent / acked       : %d / %d events (%d failed calls)",
+                sent, acked, errorCount));
+        System.out.println(String.format(Locale.ENGLISH, "Sustained rate     : %.0f events/s", eventsPerSecond));
+        System.out.println(String.format(Locale.ENGLISH, "Ack latency        : p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                p50, p99, max));
+        if (cpuCores >= 0) {
+            System.out.println(String.format(Locale.ENGLISH, "Server CPU         : %.2f cores", cpuCores));
+            System.out.println(String.format(Locale.ENGLISH, "Server allocation  : %.1f MB/s, %.0f bytes/event",
+                    allocMBPerSecond, allocBytesPerEvent));
+        }
+
+        if (config.getResultFile() != null) {
+            Path resultFile = Paths.get(config.getResultFile());
+            boolean writeHeader = !Files.exists(resultFile) || Files.size(resultFile) == 0;
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                if (writeHeader) {
+                    writer.println(RESULT_HEADER);
+                }
+                writer.println(String.format(Locale.ENGLISH,
+                        "%s,%d,%d,%d,%d,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.2f,%.1f",
+                        config.getLabel(), config.getConnections(), config.getBatchSize(), config.getRate(),
+                        config.getDurationSeconds(), sent, acked, errorCount, eventsPerSecond, p50, p99, max,
+                        cpuCores, allocMBPerSecond, allocBytesPerEvent));
+            }
+        }
+    }
+
+    /**
+     * Receives the acknowledgement of one sendAnalytics call.
+     */
+    private class AckObserver implements StreamObserver<Empty> {
+
+        private final long scheduledNanos;
+        private final Semaphore permits;
+
+        AckObserver(long scheduledNanos, Semaphore permits) {
+            this.scheduledNanos = scheduledNanos;
+            this.permits = permits;
+        }
+
+        @Override
+        public void onNext(Empty empty) {
+            // Acknowledgement is handled on completion.
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (measuring) {
+                errors.increment();
+            }
+            permits.release();
+        }
+
+        @Override
+        public void onCompleted() {
+            if (measuring) {
+                histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos));
+                ackedEvents.add(config.getBatchSize());
+            }
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.mgw.grpc.service.loadgen;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+
+/**
+ * Settings of a single load generator run.
+ */
+public class LoadGeneratorConfig {
+
+    static final String TRANSPORT_TCP = "tcp";
+    static final String TRANSPORT_DOMAIN_SOCKET = "uds";
+    static final String TRANSPORT_IN_PROCESS = "inprocess";
+    static final String IN_PROCESS_NAME = "analytics-load-generator";
+
+    static final String OPTION_TRANSPORT = "transport";
+    static final String OPTION_SOCKET_PATH = "socketPath";
+    static final String OPTION_HOST = "host";
+    static final String OPTION_PORT = "port";
+    static final String OPTION_CONNECTIONS = "connections";
+    static final String OPTION_RATE = "rate";
+    static final String OPTION_BATCH_SIZE = "batchSize";
+    static final String OPTION_DURATION = "duration";
+    static final String OPTION_WARMUP = "warmup";
+    static final String OPTION_MAX_IN_FLIGHT = "maxInFlight";
+    static final String OPTION_RECORDING = "recording";
+    static final String OPTION_KEEP_TIMESTAMPS = "keepTimestamps";
+    static final String OPTION_API_COUNT = "apiCount";
+    static final String OPTION_TLS = "tls";
+    static final String OPTION_TRUSTSTORE = "truststore";
+    static final String OPTION_TRUSTSTORE_PASSWORD = "truststorePassword";
+    static final String OPTION_LOCAL_RECEIVER = "localReceiver";
+    static final String OPTION_RECEIVER_THREADS = "receiverThreads";
+    static final String OPTION_JMX_URL = "jmxUrl";
+    static final String OPTION_JMX_USERNAME = "jmxUsername";
+    static final String OPTION_JMX_PASSWORD = "jmxPassword";
+    static final String OPTION_LABEL = "label";
+    static final String OPTION_RESULT_FILE = "resultFile";
+    static final String OPTION_HELP = "help";
+
+    private String transport = TRANSPORT_TCP;
+    private String socketPath = "/tmp/wso2-analytics.sock";
+    private String host = "localhost";
+    private int port = 9806;
+    private int connections = 1;
+    private long rate = 10000;
+    private int batchSize = 1;
+    private int durationSeconds = 60;
+    private int warmupSeconds = 10;
+    private int maxInFlight = 128;
+    private String recording;
+    private boolean keepTimestamps;
+    private int apiCount = 100;
+    private boolean tls;
+    private String truststore;
+    private String truststorePassword = "wso2carbon";
+    private boolean localReceiver;
+    private int receiverThreads = Runtime.getRuntime().availableProcessors();
+    private String jmxUrl;
+    private String jmxUsername;
+    private String jmxPassword;
+    private String label;
+    private String resultFile;
+
+    static Options getOptions() {
+        Options options = new Options();
+        options.addOption(OPTION_TRANSPORT, true, "Transport to the receiver: tcp, uds (Unix domain socket) or "
+                + "inprocess. inprocess requires -localReceiver (default: tcp)");
+        options.addOption(OPTION_SOCKET_PATH, true, "Unix domain socket path used with the uds transport "
+                + "(default: /tmp/wso2-analytics.sock)");
+        options.addOption(OPTION_HOST, true, "Receiver host (default: localhost)");
+        options.addOption(OPTION_PORT, true, "Receiver port (default: 9806)");
+        options.addOption(OPTION_CONNECTIONS, true, "Number of gRPC connections (default: 1)");
+        options.addOption(OPTION_RATE, true, "Target events per second over all connections, 0 for as fast as "
+                + "possible (default: 10000)");
+        options.addOption(OPTION_BATCH_SIZE, true, "Messages sent per sendAnalytics stream. 1 sends each event in "
+                + "its own call (default: 1)");
+        options.addOption(OPTION_DURATION, true, "Measured duration in seconds (default: 60)");
+        options.addOption(OPTION_WARMUP, true, "Warm up duration in seconds, excluded from results (default: 10)");
+        options.addOption(OPTION_MAX_IN_FLIGHT, true, "Maximum unacknowledged calls per connection (default: 128)");
+        options.addOption(OPTION_RECORDING, true, "File of length delimited AnalyticsStreamMessages to replay "
+                + "instead of synthetic traffic");
+        options.addOption(OPTION_KEEP_TIMESTAMPS, false, "Keep the recorded request timestamps instead of "
+                + "stamping the send time");
+        options.addOption(OPTION_API_COUNT, true, "Number of distinct APIs in synthetic traffic (default: 100)");
+        options.addOption(OPTION_TLS, false, "Connect using TLS");
+        options.addOption(OPTION_TRUSTSTORE, true, "JKS trust store used with TLS. Trusts any certificate if not "
+                + "given");
+        options.addOption(OPTION_TRUSTSTORE_PASSWORD, true, "Trust store password (default: wso2carbon)");
+        options.addOption(OPTION_LOCAL_RECEIVER, false, "Start an in-process receiver on the given port and "
+                + "measure its CPU and allocation");
+        options.addOption(OPTION_RECEIVER_THREADS, true, "Handler threads of the in-process receiver");
+        options.addOption(OPTION_JMX_URL, true, "JMX service URL of a remote worker to sample CPU and allocation "
+                + "from");
+        options.addOption(OPTION_JMX_USERNAME, true, "JMX username");
+        options.addOption(OPTION_JMX_PASSWORD, true, "JMX password");
+        options.addOption(OPTION_LABEL, true, "Name of the protocol variant, written to the result file");
+        options.addOption(OPTION_RESULT_FILE, true, "CSV file to append the run summary to");
+        options.addOption(OPTION_HELP, false, "Help");
+        return options;
+    }
+
+    static LoadGeneratorConfig fromCommandLine(CommandLine cmd) {
+        LoadGeneratorConfig config = new LoadGeneratorConfig();
+        config.transport = cmd.getOptionValue(OPTION_TRANSPORT, config.transport);
+        config.socketPath = cmd.getOptionValue(OPTION_SOCKET_PATH, config.socketPath);
+        config.host = cmd.getOptionValue(OPTION_HOST, config.host);
+        config.port = getInt(cmd, OPTION_PORT, config.port);
+        config.connections = getInt(cmd, OPTION_CONNECTIONS, config.connections);
+        config.rate = Long.parseLong(cmd.getOptionValue(OPTION_RATE, Long.toString(config.rate)));
+        config.batchSize = getInt(cmd, OPTION_BATCH_SIZE, config.batchSize);
+        config.durationSeconds = getInt(cmd, OPTION_DURATION, config.durationSeconds);
+        config.warmupSeconds = getInt(cmd, OPTION_WARMUP, config.warmupSeconds);
+        config.maxInFlight = getInt(cmd, OPTION_MAX_IN_FLIGHT, config.maxInFlight);
+        config.recording = cmd.getOptionValue(OPTION_RECORDING);
+        config.keepTimestamps = cmd.hasOption(OPTION_KEEP_TIMESTAMPS);
+        config.apiCount = getInt(cmd, OPTION_API_COUNT, config.apiCount);
+        config.tls = cmd.hasOption(OPTION_TLS);
+        config.truststore = cmd.getOptionValue(OPTION_TRUSTSTORE);
+        config.truststorePassword = cmd.getOptionValue(OPTION_TRUSTSTORE_PASSWORD, config.truststorePassword);
+        config.localReceiver = cmd.hasOption(OPTION_LOCAL_RECEIVER);
+        config.receiverThreads = getInt(cmd, OPTION_RECEIVER_THREADS, config.receiverThreads);
+        config.jmxUrl = cmd.getOptionValue(OPTION_JMX_URL);
+        config.jmxUsername = cmd.getOptionValue(OPTION_JMX_USERNAME);
+        config.jmxPassword = cmd.getOptionValue(OPTION_JMX_PASSWORD);
+        config.label = cmd.getOptionValue(OPTION_LABEL, (config.batchSize == 1 ? "single" : "batch-"
+                + config.batchSize) + (TRANSPORT_TCP.equals(config.transport) ? "" : "-" + config.transport));
+        config.resultFile = cmd.getOptionValue(OPTION_RESULT_FILE);
+        if (config.connections < 1 || config.batchSize < 1 || config.maxInFlight < 1 || config.durationSeconds < 1
+                || config.rate < 0 || config.warmupSeconds < 0) {
+            throw new IllegalArgumentException("connections, batchSize, maxInFlight and duration must be positive "
+                    + "and rate and warmup cannot be negative.");
+        }
+        if (!TRANSPORT_TCP.equals(config.transport) && !TRANSPORT_DOMAIN_SOCKET.equals(config.transport)
+                && !TRANSPORT_IN_PROCESS.equals(config.transport)) {
+            throw new IllegalArgumentException("Unknown transport: " + config.transport);
+        }
+        if (TRANSPORT_IN_PROCESS.equals(config.transport) && !config.localReceiver) {
+            throw new IllegalArgumentException("The inprocess transport can only be used with -"
+                    + OPTION_LOCAL_RECEIVER);
+        }
+        if (config.tls && !TRANSPORT_TCP.equals(config.transport)) {
+            throw new IllegalArgumentException("TLS is only supported with the tcp transport.");
+        }
+        return config;
+    }
+
+    private static int getInt(CommandLine cmd, String option, int defaultValue) {
+        return Integer.parseInt(cmd.getOptionValue(option, Integer.toString(defaultValue)));
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public String getSocketPath() {
+        return socketPath;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public String getRecording() {
+        return recording;
+    }
+
+    public boolean isKeepTimestamps() {
+        return keepTimestamps;
+    }
+
+    public int getApiCount() {
+        return apiCount;
+    }
+
+    public boolean isTls() {
+        return tls;
+    }
+
+    public String getTruststore() {
+        return truststore;
+    }
+
+    public String getTruststorePassword() {
+        return truststorePassword;
+    }
+
+    public boolean isLocalReceiver() {
+        return localReceiver;
+    }
+
+    public int getReceiverThreads() {
+        return receiverThreads;
+    }
+
+    public String getJmxUrl() {
+        return jmxUrl;
+    }
+
+    public String getJmxUsername() {
+        return jmxUsername;
+    }
+
+    public String getJmxPassword() {
+        return jmxPassword;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getResultFile() {
+        return resultFile;
+    }
+}
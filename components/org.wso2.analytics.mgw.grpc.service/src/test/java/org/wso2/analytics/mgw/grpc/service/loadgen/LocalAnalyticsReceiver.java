@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.mgw.grpc.service.loadgen;
+
+import com.google.protobuf.Empty;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.stub.StreamObserver;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsSendServiceGrpc;
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+import org.wso2.analytics.mgw.grpc.service.transport.LocalTransports;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal in-process implementation of the AnalyticsSendService which acknowledges and counts messages. It gives the
+ * transport and protobuf baseline against which a real analytics worker can be compared. All of its threads are
+ * created through a tracking factory so that the CPU time and allocation of the receiver can be measured in isolation
+ * from the load generating threads.
+ */
+public class LocalAnalyticsReceiver extends AnalyticsSendServiceGrpc.AnalyticsSendServiceImplBase {
+
+    private final LoadGeneratorConfig config;
+    private final Collection<Long> threadIds = new ConcurrentLinkedQueue<>();
+    private final LongAdder receivedEvents = new LongAdder();
+    private Server server;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ExecutorService executor;
+
+    public LocalAnalyticsReceiver(LoadGeneratorConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Starts the receiver on the transport selected in the configuration.
+     * @param workerThreads number of threads used to run the service handlers.
+     * @throws IOException if the server cannot bind to the port or socket.
+     */
+    public void start(int workerThreads) throws IOException {
+        ThreadFactory threadFactory = new TrackingThreadFactory();
+        this.executor = Executors.newFixedThreadPool(workerThreads, threadFactory);
+        if (LoadGeneratorConfig.TRANSPORT_IN_PROCESS.equals(config.getTransport())) {
+            this.server = LocalTransports.inProcessServerBuilder(LoadGeneratorConfig.IN_PROCESS_NAME)
+                    .executor(executor)
+                    .addService(this)
+                    .build()
+                    .start();
+            return;
+        }
+        NettyServerBuilder builder;
+        if (LoadGeneratorConfig.TRANSPORT_DOMAIN_SOCKET.equals(config.getTransport())) {
+            this.bossGroup = LocalTransports.newEventLoopGroup(1, threadFactory);
+            this.workerGroup = LocalTransports.newEventLoopGroup(0, threadFactory);
+            builder = LocalTransports.domainSocketServerBuilder(config.getSocketPath(), bossGroup, workerGroup);
+        } else {
+            this.bossGroup = new NioEventLoopGroup(1, threadFactory);
+            this.workerGroup = new NioEventLoopGroup(0, threadFactory);
+            builder = NettyServerBuilder.forPort(config.getPort())
+                    .bossEventLoopGroup(bossGroup)
+                    .workerEventLoopGroup(workerGroup)
+                    .channelType(NioServerSocketChannel.class);
+        }
+        this.server = builder.executor(executor)
+                .addService(this)
+                .build()
+                .start();
+    }
+
+    /**
+     * Stops the receiver and releases its threads.
+     * @throws InterruptedException if interrupted while waiting for termination.
+     */
+    public void stop() throws InterruptedException {
+        if (server != null) {
+            server.shutdown();
+            server.awaitTermination(10, TimeUnit.SECONDS);
+            executor.shutdown();
+            if (bossGroup != null) {
+                bossGroup.shutdownGracefully();
+                workerGroup.shutdownGracefully();
+            }
+        }
+    }
+
+    @Override
+    public StreamObserver<AnalyticsStreamMessage> sendAnalytics(StreamObserver<Empty> responseObserver) {
+        return new StreamObserver<AnalyticsStreamMessage>() {
+            @Override
+            public void onNext(AnalyticsStreamMessage message) {
+                receivedEvents.increment();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                // The client cancelled the stream. Nothing to acknowledge.
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    /**
+     * Returns the ids of all threads created by this receiver.
+     * @return live view of the receiver thread ids.
+     */
+    public Collection<Long> getThreadIds() {
+        return threadIds;
+    }
+
+    /**
+     * Returns the number of messages received so far.
+     * @return received message count.
+     */
+    public long getReceivedEvents() {
+        return receivedEvents.sum();
+    }
+
+    private class TrackingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "analytics-receiver-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            threadIds.add(thread.getId());
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.mgw.grpc.service.loadgen;
+
+import org.wso2.analytics.mgw.grpc.service.AnalyticsStreamMessage;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Supplies the analytics messages replayed by the load generator. Messages are either synthesized from a fixed pool
+ * of request events or read from a recording of length delimited {@link AnalyticsStreamMessage}s, which is the format
+ * written by {@code AnalyticsStreamMessage#writeDelimitedTo}.
+ */
+public class MessageSource {
+
+    private static final String REQUEST_STREAM_NAME = "InComingRequestStream";
+    private static final int SYNTHETIC_POOL_SIZE = 1024;
+
+    private final AnalyticsStreamMessage[] messages;
+    private final boolean restampTimestamps;
+    private final AtomicLong cursor = new AtomicLong();
+
+    private MessageSource(List<AnalyticsStreamMessage> messages, boolean restampTimestamps) {
+        this.messages = messages.toArray(new AnalyticsStreamMessage[0]);
+        this.restampTimestamps = restampTimestamps;
+    }
+
+    /**
+     * Creates a source of synthetic request events spread over a number of APIs, applications and tenants.
+     * @param apiCount number of distinct APIs to generate traffic for.
+     * @param seed random seed, so that runs can be repeated with the same traffic mix.
+     * @return the message source.
+     */
+    public static MessageSource synthetic(int apiCount, long seed) {
+        Random random = new Random(seed);
+        List<AnalyticsStreamMessage> pool = new ArrayList<>(SYNTHETIC_POOL_SIZE);
+        for (int i = 0; i < SYNTHETIC_POOL_SIZE; i++) {
+            int api = random.nextInt(Math.max(1, apiCount));
+            int app = random.nextInt(50);
+            String tenantDomain = api % 10 == 0 ? "tenant" + (api % 7) + ".com" : "carbon.super";
+            String context = "carbon.super".equals(tenantDomain) ? "/api" + api + "/1.0.0"
+                    : "/t/" + tenantDomain + "/api" + api + "/1.0.0";
+            long responseTime = 5 + random.nextInt(500);
+            pool.add(AnalyticsStreamMessage.newBuilder()
+                    .setMessageStreamName(REQUEST_STREAM_NAME)
+                    .setMetaClientType("{\"correlationID\":\"" + i + "\"}")
+                    .setApplicationConsumerKey("consumerKey" + app)
+                    .setApplicationName("Application" + app)
+                    .setApplicationId(Integer.toString(app))
+                    .setApplicationOwner("owner" + app)
+                    .setApiContext(context)
+                    .setApiName("API" + api)
+                    .setApiVersion("1.0.0")
+                    .setApiResourcePath("/resource" + random.nextInt(5))
+                    .setApiResourceTemplate("/resource*")
+                    .setApiMethod(random.nextBoolean() ? "GET" : "POST")
+                    .setApiCreator("admin@" + tenantDomain)
+                    .setApiCreatorTenantDomain(tenantDomain)
+                    .setApiTier("Unlimited")
+                    .setApiHostname("localhost")
+                    .setUsername("user" + random.nextInt(200) + "@" + tenantDomain)
+                    .setUserTenantDomain(tenantDomain)
+                    .setUserIp("10.0." + random.nextInt(256) + "." + random.nextInt(256))
+                    .setUserAgent("Mozilla/5.0")
+                    .setRequestTimestamp(System.currentTimeMillis())
+                    .setThrottledOut(false)
+                    .setResponseTime(responseTime)
+                    .setServiceTime(responseTime / 5)
+                    .setBackendTime(responseTime - responseTime / 5)
+                    .setResponseCacheHit(false)
+                    .setResponseSize(256 + random.nextInt(4096))
+                    .setProtocol("https-8443")
+                    .setResponseCode(random.nextInt(100) < 95 ? 200 : 500)
+                    .setDestination("https://backend.local/api" + api)
+                    .setSecurityLatency(1)
+                    .setThrottlingLatency(1)
+                    .setRequestMedLat(0)
+                    .setResponseMedLat(0)
+                    .setBackendLatency(responseTime - responseTime / 5)
+                    .setOtherLatency(0)
+                    .setGatewayType("MICRO")
+                    .setLabel("Microgateway")
+                    .build());
+        }
+        return new MessageSource(pool, true);
+    }
+
+    /**
+     * Creates a source which replays recorded messages in a loop.
+     * @param recording file containing length delimited messages.
+     * @param restampTimestamps whether the request timestamps should be replaced with the send time. This keeps the
+     *                          traffic inside the current aggregation buckets of the Siddhi apps.
+     * @return the message source.
+     * @throws IOException if the recording cannot be read or is empty.
+     */
+    public static MessageSource recorded(Path recording, boolean restampTimestamps) throws IOException {
+        List<AnalyticsStreamMessage> recorded = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(recording))) {
+            AnalyticsStreamMessage message;
+            while ((message = AnalyticsStreamMessage.parseDelimitedFrom(in)) != null) {
+                recorded.add(message);
+            }
+        }
+        if (recorded.isEmpty()) {
+            throw new IOException("No analytics messages found in the recording: " + recording);
+        }
+        return new MessageSource(recorded, restampTimestamps);
+    }
+
+    /**
+     * Returns the next message to be sent. Safe for concurrent use by multiple connections.
+     * @return the next message.
+     */
+    public AnalyticsStreamMessage next() {
+        AnalyticsStreamMessage message = messages[(int) (cursor.getAndIncrement() % messages.length)];
+        if (restampTimestamps) {
+            return message.toBuilder().setRequestTimestamp(System.currentTimeMillis()).build();
+        }
+        return message;
+    }
+
+    /**
+     * Returns the number of distinct messages in the source.
+     * @return size of the message pool.
+     */
+    public int size() {
+        return messages.length;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.mgw.grpc.service.loadgen;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.ThreadMXBean;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Samples the CPU time and the heap allocation of the receiving side of a load test.
+ */
+public abstract class ResourceUsageProbe implements AutoCloseable {
+
+    /**
+     * Takes a snapshot of the cumulative CPU time and allocated bytes.
+     * @return the current usage.
+     * @throws IOException if a remote JVM cannot be reached.
+     */
+    public abstract Usage sample() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        // Nothing to release by default.
+    }
+
+    /**
+     * Creates a probe which accounts only for the given threads of this JVM. Used with the embedded receiver so that
+     * the load generating threads are not counted as server cost.
+     * @param threadIds live view of the ids of the receiver threads.
+     * @return the probe.
+     */
+    public static ResourceUsageProbe forLocalThreads(Collection<Long> threadIds) {
+        return new LocalThreadsProbe(threadIds);
+    }
+
+    /**
+     * Creates a probe for a remote analytics worker exposing the platform MBeans over JMX.
+     * @param serviceUrl JMX service URL, e.g. service:jmx:rmi://localhost:11111/jndi/rmi://localhost:9999/jmxrmi
+     * @param username JMX username, or null if authentication is disabled.
+     * @param password JMX password.
+     * @return the probe.
+     * @throws IOException if the connection cannot be established.
+     */
+    public static ResourceUsageProbe forRemoteJvm(String serviceUrl, String username, String password)
+            throws IOException {
+        Map<String, Object> environment = new HashMap<>();
+        if (username != null) {
+            environment.put(JMXConnector.CREDENTIALS, new String[]{username, password});
+        }
+        JMXConnector connector = JMXConnectorFactory.connect(new JMXServiceURL(serviceUrl), environment);
+        return new RemoteJvmProbe(connector);
+    }
+
+    /**
+     * Cumulative resource usage at a point in time.
+     */
+    public static class Usage {
+
+        private final long cpuTimeNanos;
+        private final long allocatedBytes;
+
+        Usage(long cpuTimeNanos, long allocatedBytes) {
+            this.cpuTimeNanos = cpuTimeNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long getCpuTimeNanos() {
+            return cpuTimeNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private static class LocalThreadsProbe extends ResourceUsageProbe {
+
+        private final Collection<Long> threadIds;
+        private final ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        LocalThreadsProbe(Collection<Long> threadIds) {
+            this.threadIds = threadIds;
+        }
+
+        @Override
+        public Usage sample() {
+            long cpu = 0;
+            long allocated = 0;
+            for (long threadId : threadIds) {
+                cpu += Math.max(0, threadMXBean.getThreadCpuTime(threadId));
+                allocated += Math.max(0, threadMXBean.getThreadAllocatedBytes(threadId));
+            }
+            return new Usage(cpu, allocated);
+        }
+    }
+
+    private static class RemoteJvmProbe extends ResourceUsageProbe {
+
+        private final JMXConnector connector;
+        private final OperatingSystemMXBean operatingSystemMXBean;
+        private final ThreadMXBean threadMXBean;
+
+        RemoteJvmProbe(JMXConnector connector) throws IOException {
+            this.connector = connector;
+            MBeanServerConnection connection = connector.getMBeanServerConnection();
+            this.operatingSystemMXBean = ManagementFactory.newPlatformMXBeanProxy(connection,
+                    ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME, OperatingSystemMXBean.class);
+            this.threadMXBean = ManagementFactory.newPlatformMXBeanProxy(connection,
+                    ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+        }
+
+        @Override
+        public Usage sample() {
+            // Allocation is summed over live threads only, so bytes allocated by threads which die during the run
+            // are not counted. Worker threads of the gRPC receiver and Siddhi are long lived.
+            long allocated = 0;
+            for (long bytes : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+                allocated += Math.max(0, bytes);
+            }
+            return new Usage(operatingSystemMXBean.getProcessCpuTime(), allocated);
+        }
+
+        @Override
+        public void close() throws IOException {
+            connector.close();
+        }
+    }
+}